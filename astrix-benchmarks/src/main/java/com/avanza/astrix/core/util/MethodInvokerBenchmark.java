@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost per invocation of {@link MethodInvoker} and reflective invocation using
+ * {@link ReflectionUtil#invokeMethod(Method, Object, Object[])} for methods with 0, 1 and 5 arguments.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MethodInvokerBenchmark {
+	
+	@Param({ "0", "1", "5" })
+	public int argumentCount;
+	
+	private final Ping target = new PingImpl();
+	private Method method;
+	private MethodInvoker invoker;
+	private Object[] args;
+	
+	@Setup
+	public void setup() throws Exception {
+		switch (argumentCount) {
+		case 0:
+			method = Ping.class.getMethod("ping0");
+			args = null;
+			break;
+		case 1:
+			method = Ping.class.getMethod("ping1", String.class);
+			args = new Object[] { "a" };
+			break;
+		case 5:
+			method = Ping.class.getMethod("ping5", String.class, int.class, long.class, Object.class, String.class);
+			args = new Object[] { "a", 1, 2L, "b", "c" };
+			break;
+		default:
+			throw new IllegalArgumentException("argumentCount: " + argumentCount);
+		}
+		invoker = MethodInvoker.create(method);
+	}
+	
+	@Benchmark
+	public Object reflective() throws Throwable {
+		return ReflectionUtil.invokeMethod(method, target, args);
+	}
+	
+	@Benchmark
+	public Object methodInvoker() throws Throwable {
+		return invoker.invoke(target, args);
+	}
+	
+	public interface Ping {
+		String ping0();
+		String ping1(String a);
+		String ping5(String a, int b, long c, Object d, String e);
+	}
+	
+	public static class PingImpl implements Ping {
+		@Override
+		public String ping0() {
+			return "";
+		}
+		@Override
+		public String ping1(String a) {
+			return a;
+		}
+		@Override
+		public String ping5(String a, int b, long c, Object d, String e) {
+			return e;
+		}
+	}
+
+}
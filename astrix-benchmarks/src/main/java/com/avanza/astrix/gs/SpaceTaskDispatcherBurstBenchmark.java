@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openspaces.core.executor.Task;
+
+import com.avanza.astrix.beans.async.ContextPropagation;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.gs.test.PuConfigurers;
+import com.avanza.gs.test.RunningPu;
+
+/**
+ * Measures the time it takes to complete a burst of tasks submitted at once through the 
+ * {@link SpaceTaskDispatcher}, for each {@link SpaceTaskDispatcherMode}, against an embedded 
+ * space with two partitions. <p>
+ * 
+ * The dispatcher parameter is the execution mode, optionally followed by the maxConcurrency 
+ * used in VIRTUAL_THREAD mode. Note that VIRTUAL_THREAD falls back to THREAD_POOL unless the 
+ * jvm supports virtual threads.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SpaceTaskDispatcherBurstBenchmark {
+	
+	private static final int BURST_SIZE = 5_000;
+	
+	@Param({ "THREAD_POOL", "VIRTUAL_THREAD", "VIRTUAL_THREAD:100" })
+	public String dispatcher;
+	
+	private RunningPu pu;
+	private SpaceTaskDispatcher spaceTaskDispatcher;
+	
+	@Setup
+	public void setup() throws Exception {
+		pu = PuConfigurers.partitionedPu("classpath:/META-INF/spring/benchmark-pu.xml")
+						  .numberOfPrimaries(2)
+						  .numberOfBackups(0)
+						  .startAsync(false)
+						  .configure();
+		pu.start();
+		String[] modeAndConcurrency = dispatcher.split(":");
+		String configPrefix = "astrix.beans.gigaspace." + pu.getClusteredGigaSpace().getName() + ".spaceTaskDispatcher.";
+		MapConfigSource config = new MapConfigSource();
+		config.set(configPrefix + "executionMode", SpaceTaskDispatcherMode.valueOf(modeAndConcurrency[0]).name());
+		config.set(configPrefix + "maxConcurrency", modeAndConcurrency.length > 1 ? modeAndConcurrency[1] : "0");
+		spaceTaskDispatcher = new SpaceTaskDispatcher(pu.getClusteredGigaSpace(), DynamicConfig.create(config), ContextPropagation.NONE);
+	}
+	
+	@TearDown
+	public void tearDown() throws Exception {
+		spaceTaskDispatcher.destroy();
+		pu.stop();
+	}
+	
+	@Benchmark
+	public int burst() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(BURST_SIZE);
+		AtomicInteger failures = new AtomicInteger();
+		for (int i = 0; i < BURST_SIZE; i++) {
+			spaceTaskDispatcher.observe(new EchoTask(i), i).subscribe(
+					result -> { },
+					error -> {
+						failures.incrementAndGet();
+						done.countDown();
+					},
+					done::countDown);
+		}
+		if (!done.await(60, TimeUnit.SECONDS) || failures.get() > 0) {
+			throw new IllegalStateException("Burst did not complete. failures=" + failures.get() + " remaining=" + done.getCount());
+		}
+		return BURST_SIZE;
+	}
+	
+	public static class EchoTask implements Task<Integer> {
+		
+		private static final long serialVersionUID = 1L;
+		private final int value;
+		
+		public EchoTask(int value) {
+			this.value = value;
+		}
+
+		@Override
+		public Integer execute() throws Exception {
+			return value;
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.avanza.astrix.beans.core.ReactiveTypeConverterImpl;
+import com.avanza.astrix.beans.core.ReactiveTypeHandlerPlugin;
+import com.avanza.astrix.beans.tracing.DefaultTraceProvider;
+import com.avanza.astrix.context.JavaSerializationSerializer;
+import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.core.remoting.RoutingStrategy;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+import rx.Observable;
+
+/**
+ * Measures the time per invocation on a proxy created by {@link RemotingProxy}, using a transport 
+ * that immediately returns a prepared response. Hence only the client side invocation path is measured. <p>
+ * 
+ * Run with the gc profiler to measure the number of bytes allocated per invocation:
+ * 
+ * <pre>
+ * java -jar astrix-benchmarks/target/benchmarks.jar RemotingProxyAllocationBenchmark -prof gc
+ * </pre>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class RemotingProxyAllocationBenchmark {
+	
+	private final AstrixObjectSerializer objectSerializer = new JavaSerializationSerializer(1);
+	private Ping ping;
+	
+	@Setup
+	public void setup() {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody(objectSerializer.serialize("pong", objectSerializer.version()));
+		ping = RemotingProxy.create(Ping.class, 
+									Ping.class, 
+									RemotingTransport.create(new PreparedResponseTransport(response)), 
+									objectSerializer, 
+									new RoutingStrategy.Static(), 
+									new ReactiveTypeConverterImpl(Collections.<ReactiveTypeHandlerPlugin<?>>emptyList()), 
+									new DefaultTraceProvider());
+	}
+	
+	@Benchmark
+	public String blockingInvocation() {
+		return ping.ping("a");
+	}
+	
+	@Benchmark
+	public String observableInvocation() {
+		return ping.observePing("a").toBlocking().first();
+	}
+	
+	public interface Ping {
+		String ping(String msg);
+		Observable<String> observePing(String msg);
+	}
+	
+	private static class PreparedResponseTransport implements RemotingTransportSpi {
+		
+		private final Observable<AstrixServiceInvocationResponse> response;
+		
+		public PreparedResponseTransport(AstrixServiceInvocationResponse response) {
+			this.response = Observable.just(response);
+		}
+
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			return response;
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int partitionCount() {
+			return 1;
+		}
+		
+	}
+
+}
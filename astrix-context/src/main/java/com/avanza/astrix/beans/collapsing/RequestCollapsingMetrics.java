@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.collapsing;
+
+final class RequestCollapsingMetrics implements RequestCollapsingMetricsMBean {
+	
+	private final RequestCollapsingProxy proxy;
+	
+	RequestCollapsingMetrics(RequestCollapsingProxy proxy) {
+		this.proxy = proxy;
+	}
+
+	@Override
+	public long getInvocationCount() {
+		return proxy.getInvocationCount();
+	}
+
+	@Override
+	public long getCollapsedInvocationCount() {
+		return proxy.getCollapsedInvocationCount();
+	}
+
+}
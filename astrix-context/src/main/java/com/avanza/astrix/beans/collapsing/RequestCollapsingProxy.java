@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.collapsing;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.avanza.astrix.beans.core.BeanProxy;
+import com.avanza.astrix.beans.core.BeanProxyNames;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.core.function.CheckedCommand;
+
+import rx.Observable;
+
+/**
+ * BeanProxy that collapses concurrent invocations of the same method with equal arguments 
+ * into a single invocation. The first invocation is executed, and each invocation with equal 
+ * arguments that arrives before it completes receives the same result (or exception) instead of 
+ * being executed. <p>
+ * 
+ * Invocations of methods without a return value are never collapsed. Invocations of methods without
+ * arguments are collapsed like any other invocation, i.e. concurrent invocations share the result. <p>
+ * 
+ * Only invocations with equal arguments are collapsed. Invocations with different arguments are 
+ * never merged into a single bulk invocation since a BeanProxy only sees the command of the invoked 
+ * method. 
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class RequestCollapsingProxy implements BeanProxy {
+	
+	private final ConcurrentMap<InvocationKey, CompletableFuture<Object>> inFlightInvocations = new ConcurrentHashMap<>();
+	private final ConcurrentMap<InvocationKey, Observable<Object>> inFlightReactiveInvocations = new ConcurrentHashMap<>();
+	private final LongAdder invocationCount = new LongAdder();
+	private final LongAdder collapsedInvocationCount = new LongAdder();
+	private final DynamicBooleanProperty enabled;
+	
+	RequestCollapsingProxy(DynamicBooleanProperty enabled) {
+		this.enabled = Objects.requireNonNull(enabled);
+	}
+
+	@Override
+	public <T> CheckedCommand<T> proxyInvocation(CheckedCommand<T> command) {
+		return command;
+	}
+
+	@Override
+	public <T> Supplier<Observable<T>> proxyReactiveInvocation(Supplier<Observable<T>> command) {
+		return command;
+	}
+	
+	@Override
+	public <T> CheckedCommand<T> proxyInvocation(Method method, Object[] args, CheckedCommand<T> command) {
+		if (!isCollapsible(method)) {
+			return command;
+		}
+		InvocationKey key = new InvocationKey(method, args);
+		return () -> invokeCollapsed(key, command);
+	}
+	
+	@Override
+	public <T> Supplier<Observable<T>> proxyReactiveInvocation(Method method, Object[] args, Supplier<Observable<T>> command) {
+		if (!isCollapsible(method)) {
+			return command;
+		}
+		InvocationKey key = new InvocationKey(method, args);
+		return () -> observeCollapsed(key, command);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> T invokeCollapsed(InvocationKey key, CheckedCommand<T> command) throws Throwable {
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		CompletableFuture<Object> inFlight = inFlightInvocations.putIfAbsent(key, result);
+		invocationCount.increment();
+		if (inFlight != null) {
+			collapsedInvocationCount.increment();
+			return (T) awaitResult(inFlight);
+		}
+		try {
+			T value = command.call();
+			result.complete(value);
+			return value;
+		} catch (Throwable e) {
+			result.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlightInvocations.remove(key, result);
+		}
+	}
+	
+	/**
+	 * The underlying Observable is only created, and subscribed to, if there is no Observable with equal arguments 
+	 * in flight when subscribed, in which case the in flight Observable is subscribed instead. The in flight Observable
+	 * is removed when it terminates, hence the result is never shared with subsequent invocations.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Observable<T> observeCollapsed(InvocationKey key, Supplier<Observable<T>> command) {
+		return Observable.defer(() -> {
+			AtomicReference<Observable<Object>> candidate = new AtomicReference<>();
+			Observable<Object> invocation = (Observable<Object>) Observable.defer(command::get);
+			candidate.set(invocation.doAfterTerminate(() -> inFlightReactiveInvocations.remove(key, candidate.get()))
+									.cache());
+			Observable<Object> inFlight = inFlightReactiveInvocations.putIfAbsent(key, candidate.get());
+			invocationCount.increment();
+			if (inFlight != null) {
+				collapsedInvocationCount.increment();
+				return (Observable<T>) inFlight;
+			}
+			return (Observable<T>) candidate.get();
+		});
+	}
+	
+	private static Object awaitResult(CompletableFuture<Object> inFlight) throws Throwable {
+		try {
+			return inFlight.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+	
+	private static boolean isCollapsible(Method method) {
+		return !method.getReturnType().equals(Void.TYPE);
+	}
+	
+	long getInvocationCount() {
+		return invocationCount.sum();
+	}
+	
+	long getCollapsedInvocationCount() {
+		return collapsedInvocationCount.sum();
+	}
+
+	@Override
+	public String name() {
+		return BeanProxyNames.REQUEST_COLLAPSING;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled.get();
+	}
+	
+	private static final class InvocationKey {
+		
+		private final Method method;
+		private final Object[] args;
+		private final int hashCode;
+		
+		InvocationKey(Method method, Object[] args) {
+			this.method = method;
+			this.args = args != null ? args.clone() : new Object[0]; // a java.lang.reflect.Proxy passes null when there are no arguments
+			this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof InvocationKey)) {
+				return false;
+			}
+			InvocationKey other = (InvocationKey) obj;
+			return hashCode == other.hashCode
+					&& method.equals(other.method)
+					&& Arrays.deepEquals(args, other.args);
+		}
+	}
+
+}
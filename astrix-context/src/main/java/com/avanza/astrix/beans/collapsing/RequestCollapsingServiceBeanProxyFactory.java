@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.collapsing;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.beans.config.BeanConfiguration;
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
+import com.avanza.astrix.beans.core.BeanProxy;
+import com.avanza.astrix.beans.service.ServiceBeanProxyFactory;
+import com.avanza.astrix.context.mbeans.MBeanExporter;
+
+final class RequestCollapsingServiceBeanProxyFactory implements ServiceBeanProxyFactory {
+	
+	private final AstrixConfig astrixConfig;
+	private final MBeanExporter mbeanExporter;
+	
+	public RequestCollapsingServiceBeanProxyFactory(AstrixConfig astrixConfig, MBeanExporter mbeanExporter) {
+		this.astrixConfig = astrixConfig;
+		this.mbeanExporter = mbeanExporter;
+	}
+
+	@Override
+	public BeanProxy create(AstrixBeanKey<?> beanKey) {
+		BeanConfiguration beanConfiguration = astrixConfig.getBeanConfiguration(beanKey);
+		RequestCollapsingProxy result = new RequestCollapsingProxy(beanConfiguration.get(AstrixBeanSettings.REQUEST_COLLAPSING_ENABLED));
+		this.mbeanExporter.registerMBean(new RequestCollapsingMetrics(result), "RequestCollapsing", beanKey.toString());
+		return result;
+	}
+	
+	/**
+	 * Applied outside of fault tolerance and bean metrics, hence a collapsed invocation
+	 * is executed and measured once.
+	 */
+	@Override
+	public int order() {
+		return 3;
+	}
+
+}
@@ -16,6 +16,7 @@
 package com.avanza.astrix.beans.core;
 
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.provider.core.DefaultBeanSettings;
 
 /**
@@ -39,6 +40,14 @@ public final class AstrixBeanSettings {
 	public static final BooleanBeanSetting BEAN_METRICS_ENABLED = 
 			new BooleanBeanSetting("beanMetrics.enabled", DefaultBeanSettings.DEFAULT_BEAN_METRICS_ENABLED);
 	
+	/**
+	 * Determines whether concurrent invocations of the same method with equal arguments on the 
+	 * associated service bean should be collapsed into a single invocation, whose result is shared
+	 * by all callers. Only enable for read operations whose result is not mutated by the caller.
+	 */
+	public static final BooleanBeanSetting REQUEST_COLLAPSING_ENABLED = 
+			new BooleanBeanSetting("requestCollapsing.enabled", false);
+	
 
 	/**
 	 * When fault tolerance is enabled this setting defines the timeout 
@@ -101,6 +110,57 @@ public final class AstrixBeanSettings {
 	 */
 	public static final BooleanBeanSetting AVAILABLE = 
 			new BooleanBeanSetting("available", true);
+	
+	/**
+	 * Defines the {@link Partitioner} used to route invocations on a partitioned remote service 
+	 * by transports that support more than one partitioner, one of "modulo", "jumpConsistentHash" 
+	 * and "rendezvous". GigaSpaces remoting always uses "modulo".
+	 */
+	public static final StringBeanSetting PARTITIONER = 
+			new StringBeanSetting("remoting.partitioner", Partitioner.Modulo.NAME);
+	
+	/**
+	 * The minimum number of target partitions of an invocation on a remote service method using 
+	 * partitioned routing for the arguments to each partition to be marshalled in parallel, and
+	 * each partition to be invoked as soon as its arguments are marshalled. Zero disables parallel 
+	 * marshalling.
+	 */
+	public static final IntBeanSetting PARALLEL_MARSHALLING_MIN_PARTITIONS = 
+			new IntBeanSetting("remoting.parallelMarshalling.minPartitions", 0);
+	
+	/**
+	 * Overrides {@link com.avanza.astrix.core.AstrixBroadcast#partialResultDeadlineMillis()} for all broadcasted
+	 * methods on a remote service. Zero disables the deadline regardless of the annotation, and a negative value
+	 * means that the value on the annotation is used.
+	 */
+	public static final IntBeanSetting BROADCAST_PARTIAL_RESULT_DEADLINE = 
+			new IntBeanSetting("remoting.broadcast.partialResultDeadlineMillis", -1);
+	
+	/**
+	 * Overrides {@link com.avanza.astrix.core.AstrixBroadcast#minResponses()} for all broadcasted
+	 * methods on a remote service. Zero waits for all members to respond regardless of the annotation, and a 
+	 * negative value means that the value on the annotation is used.
+	 */
+	public static final IntBeanSetting BROADCAST_MIN_RESPONSES = 
+			new IntBeanSetting("remoting.broadcast.minResponses", -1);
+	
+	/**
+	 * Overrides {@link com.avanza.astrix.core.AstrixBroadcast#hedgeDelayMillis()} for all broadcasted
+	 * methods on a remote service. Zero disables hedging regardless of the annotation, and a negative value
+	 * means that the value on the annotation is used. Ignored, with a warning, on transports that can't invoke a 
+	 * replica of a cluster member.
+	 */
+	public static final IntBeanSetting BROADCAST_HEDGE_DELAY = 
+			new IntBeanSetting("remoting.broadcast.hedgeDelayMillis", -1);
+	
+	/**
+	 * Whether the proxy of a service bean, and the proxy of its remoting client, are instances of a class generated
+	 * for the bean type rather than a {@link java.lang.reflect.Proxy}. A generated proxy passes the index of the invoked
+	 * method to the invocation handler, which avoids a Method keyed lookup on each invocation. Read when the 
+	 * bean is created, hence changing the setting does not affect already created beans.
+	 */
+	public static final BooleanBeanSetting GENERATED_PROXIES = 
+			new BooleanBeanSetting("generatedProxies", false);
 
 	
 	private AstrixBeanSettings() {
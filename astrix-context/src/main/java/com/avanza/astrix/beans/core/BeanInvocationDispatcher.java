@@ -19,10 +19,12 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 
 import com.avanza.astrix.core.function.CheckedCommand;
-import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.core.util.MethodInvoker;
 
 import rx.Observable;
 
@@ -31,6 +33,7 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 	private final List<BeanProxy> proxys;
 	private final ReactiveTypeConverter reactiveTypeConverter;
 	private final Object targetBean;
+	private final ConcurrentMap<Method, MethodInvoker> invokerByMethod = new ConcurrentHashMap<>();
 	
 	public BeanInvocationDispatcher(List<BeanProxy> proxys, ReactiveTypeConverter reactiveTypeConverter, Object targetBean) {
 		this.proxys = Objects.requireNonNull(proxys);
@@ -47,10 +50,11 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 	}
 	
 	private Object proxyInvocation(final Method method, final Object[] args) throws Throwable {
-		CheckedCommand<Object> serviceInvocation = () -> ReflectionUtil.invokeMethod(method, targetBean, args);
+		MethodInvoker invoker = getInvoker(method);
+		CheckedCommand<Object> serviceInvocation = () -> invoker.invoke(targetBean, args);
 		for (BeanProxy proxy : proxys) {
 			if (proxy.isEnabled()) {
-				serviceInvocation = proxy.proxyInvocation(serviceInvocation);
+				serviceInvocation = proxy.proxyInvocation(method, args, serviceInvocation);
 			}
 		}
 		return serviceInvocation.call();
@@ -58,9 +62,10 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 
 	@SuppressWarnings("unchecked")
 	private Object proxyReactiveInvocation(final Method method, final Object[] args) {
+		MethodInvoker invoker = getInvoker(method);
 		Supplier<Observable<Object>> serviceInvocation = () -> {
 			try {
-				Object reactiveResult = ReflectionUtil.invokeMethod(method, targetBean, args);
+				Object reactiveResult = invoker.invoke(targetBean, args);
 				if (isObservableType(method.getReturnType())) {
 					return (Observable<Object>) reactiveResult;
 				}
@@ -71,7 +76,7 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 		};
 		for (BeanProxy proxy : proxys) {
 			if (proxy.isEnabled()) {
-				serviceInvocation = proxy.proxyReactiveInvocation(serviceInvocation);
+				serviceInvocation = proxy.proxyReactiveInvocation(method, args, serviceInvocation);
 			}
 		}
 		
@@ -85,6 +90,10 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 		return this.reactiveTypeConverter.toCustomReactiveType(method.getReturnType(), asyncResult);
 	}
 
+	private MethodInvoker getInvoker(Method method) {
+		return invokerByMethod.computeIfAbsent(method, MethodInvoker::create);
+	}
+
 	private <T> Observable<Object> toObservable(Class<T> reactiveType , Object reactiveInstance) {
 		return reactiveTypeConverter.toObservable(reactiveType, reactiveType.cast(reactiveInstance));
 	}
@@ -15,6 +15,7 @@
  */
 package com.avanza.astrix.beans.core;
 
+import java.lang.reflect.Method;
 import java.util.function.Supplier;
 
 import com.avanza.astrix.core.function.CheckedCommand;
@@ -45,6 +46,32 @@ public interface BeanProxy {
 	 */
 	<T> Supplier<Observable<T>> proxyReactiveInvocation(Supplier<Observable<T>> command);
 	
+	/**
+	 * Proxy a synchronous invocation of the given method. Proxies that depend on which method 
+	 * is invoked, or on its arguments, overrides this method. <p>
+	 * 
+	 * @param method
+	 * @param args
+	 * @param command
+	 * @return
+	 */
+	default <T> CheckedCommand<T> proxyInvocation(Method method, Object[] args, CheckedCommand<T> command) {
+		return proxyInvocation(command);
+	}
+	
+	/**
+	 * Proxy a reactive invocation of the given method, see {@link #proxyReactiveInvocation(Supplier)}. Proxies 
+	 * that depend on which method is invoked, or on its arguments, overrides this method. <p>
+	 * 
+	 * @param method
+	 * @param args
+	 * @param command
+	 * @return
+	 */
+	default <T> Supplier<Observable<T>> proxyReactiveInvocation(Method method, Object[] args, Supplier<Observable<T>> command) {
+		return proxyReactiveInvocation(command);
+	}
+	
 	String name();
 	
 	boolean isEnabled();
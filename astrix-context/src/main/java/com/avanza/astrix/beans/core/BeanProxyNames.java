@@ -19,6 +19,7 @@ public final class BeanProxyNames {
 
 	public static final String FAULT_TOLERANCE = "faultTolerance";
 	public static final String METRICS = "beanMetrics";
+	public static final String REQUEST_COLLAPSING = "requestCollapsing";
 	
 	private BeanProxyNames() {};
 
@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import com.avanza.astrix.beans.core.AstrixBeanKey;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
+import com.avanza.astrix.core.util.MethodInvoker;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -81,13 +82,14 @@ public class DirectComponent implements ServiceComponent {
 	
 	private <T> T createProxy(Class<T> proxyApi, final Object targetProvider) {
 		return ReflectionUtil.newProxy(proxyApi, new InvocationHandler() {
+			private final ConcurrentMap<Method, MethodInvoker> targetMethodByMethod = new ConcurrentHashMap<>();
 			@Override
 			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 				try {
-					Method targetMethod = targetProvider.getClass().getMethod(method.getName(), method.getParameterTypes());
+					MethodInvoker targetMethod = getTargetMethod(method);
 					Observable<Object> observableResult = Observable.unsafeCreate((s) -> {
 						try {
-							Object result = ReflectionUtil.invokeMethod(targetMethod, targetProvider, args);
+							Object result = targetMethod.invoke(targetProvider, args);
 							s.onNext(result);
 							s.onCompleted();
 						} catch (Throwable e) {
@@ -105,6 +107,15 @@ public class DirectComponent implements ServiceComponent {
 					throw new RuntimeException("Target service does not contain method: " + e.getMessage());
 				}
 			}
+			
+			private MethodInvoker getTargetMethod(Method method) throws NoSuchMethodException {
+				MethodInvoker result = targetMethodByMethod.get(method);
+				if (result == null) {
+					result = MethodInvoker.create(targetProvider.getClass().getMethod(method.getName(), method.getParameterTypes()));
+					targetMethodByMethod.put(method, result);
+				}
+				return result;
+			}
 		});
 	}
 	
@@ -229,6 +240,7 @@ public class DirectComponent implements ServiceComponent {
 		private AstrixObjectSerializer serverSerializer;
 		private AstrixObjectSerializer clientSerializer;
 		private int clientVersion;
+		private final ConcurrentMap<Method, MethodInvoker> invokerByMethod = new ConcurrentHashMap<>();
 		
 		public VersionedServiceProviderProxy(Object provider, int clientVersion, AstrixObjectSerializer clientSerializer, AstrixObjectSerializer serverSerializer) {
 			this.serverSerializer = serverSerializer;
@@ -251,7 +263,7 @@ public class DirectComponent implements ServiceComponent {
 				}
 				marshalledAndUnmarshalledArgs[i] = deserialized;
 			}
-			Object result = ReflectionUtil.invokeMethod(method, provider, marshalledAndUnmarshalledArgs);
+			Object result = invokerByMethod.computeIfAbsent(method, MethodInvoker::create).invoke(provider, marshalledAndUnmarshalledArgs);
 			// simulate server serialization before sending response over network
 			Object serialized = serverSerializer.serialize(result, clientVersion);
 			// simulate client deserialization after receiving response from server.
@@ -17,9 +17,12 @@ package com.avanza.astrix.beans.service;
 
 import java.lang.reflect.Proxy;
 import java.util.Objects;
+import java.util.Optional;
 
 import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.factory.DynamicFactoryBean;
+import com.avanza.astrix.core.util.ProxyClass;
 
 /**
  * 
@@ -46,6 +49,12 @@ public class ServiceFactory<T> implements DynamicFactoryBean<T> {
 		serviceBeanInstance.bind();
 		serviceBeanContext.getLeaseManager().startManageLease(serviceBeanInstance);
 		serviceBeanContext.getServiceMbeanExporter().register(serviceBeanInstance);
+		if (serviceBeanContext.getConfig().getBeanConfiguration(beanKey).get(AstrixBeanSettings.GENERATED_PROXIES).get()) {
+			Optional<ProxyClass<T>> proxyClass = ProxyClass.forType(beanKey.getBeanType(), StatefulAstrixBean.class);
+			if (proxyClass.isPresent()) {
+				return proxyClass.get().newInstance(serviceBeanInstance);
+			}
+		}
 		return beanKey.getBeanType().cast(
 				Proxy.newProxyInstance(beanKey.getBeanType().getClassLoader(), 
 									   new Class[]{beanKey.getBeanType(), StatefulAstrixBean.class}, 
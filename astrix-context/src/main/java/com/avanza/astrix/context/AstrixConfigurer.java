@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avanza.astrix.beans.api.ApiProviderBeanPublisherModule;
+import com.avanza.astrix.beans.collapsing.RequestCollapsingModule;
 import com.avanza.astrix.beans.config.AstrixConfigModule;
 import com.avanza.astrix.beans.configdiscovery.ConfigDiscoveryModule;
 import com.avanza.astrix.beans.core.AstrixBeanKey;
@@ -157,6 +158,7 @@ public class AstrixConfigurer {
 		modulesConfigurer.register(new Jackson2SerializerModule());
 		modulesConfigurer.register(new ApiProviderBeanPublisherModule());
 		modulesConfigurer.register(new FaultToleranceModule());
+		modulesConfigurer.register(new RequestCollapsingModule());
 		modulesConfigurer.register(new BeanFactoryModule());
 		if (this.applicationDescriptor != null) {
 			// Init server parts
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.collapsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.core.function.CheckedCommand;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class RequestCollapsingProxyTest {
+	
+	private final RequestCollapsingProxy proxy = new RequestCollapsingProxy(new DynamicBooleanProperty(true));
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void concurrentInvocationsWithEqualArgumentsShareResult() throws Exception {
+		CountDownLatch invocationLatch = new CountDownLatch(1);
+		AtomicInteger executionCount = new AtomicInteger();
+		Object sharedResult = new Object();
+		CheckedCommand<Object> invocation = () -> {
+			executionCount.incrementAndGet();
+			invocationLatch.await();
+			return sharedResult;
+		};
+		
+		Future<Object> first = lookupAsync("foo", invocation);
+		awaitCount(proxy::getInvocationCount, 1);
+		Future<Object> second = lookupAsync("foo", invocation);
+		awaitCount(proxy::getCollapsedInvocationCount, 1);
+		invocationLatch.countDown();
+		
+		assertSame(sharedResult, first.get(1, TimeUnit.SECONDS));
+		assertSame(sharedResult, second.get(1, TimeUnit.SECONDS));
+		assertEquals(1, executionCount.get());
+	}
+	
+	@Test
+	public void invocationsWithDifferentArgumentsAreNotCollapsed() throws Throwable {
+		Method lookup = Lookup.class.getMethod("lookup", String.class);
+		assertEquals("foo", proxy.proxyInvocation(lookup, new Object[] { "foo" }, () -> "foo").call());
+		assertEquals("bar", proxy.proxyInvocation(lookup, new Object[] { "bar" }, () -> "bar").call());
+		assertEquals(2, proxy.getInvocationCount());
+		assertEquals(0, proxy.getCollapsedInvocationCount());
+	}
+	
+	@Test
+	public void collapsedInvocationsRethrowExceptionFromSharedInvocation() throws Exception {
+		CountDownLatch invocationLatch = new CountDownLatch(1);
+		CheckedCommand<Object> invocation = () -> {
+			invocationLatch.await();
+			throw new IllegalStateException("lookup failed");
+		};
+		
+		Future<Object> first = lookupAsync("foo", invocation);
+		awaitCount(proxy::getInvocationCount, 1);
+		Future<Object> second = lookupAsync("foo", invocation);
+		awaitCount(proxy::getCollapsedInvocationCount, 1);
+		invocationLatch.countDown();
+		
+		assertThrowsIllegalState(first);
+		assertThrowsIllegalState(second);
+	}
+	
+	@Test
+	public void concurrentReactiveInvocationsWithEqualArgumentsOnlyCreateOneObservable() throws Exception {
+		Method lookup = Lookup.class.getMethod("lookup", String.class);
+		AtomicInteger createdObservableCount = new AtomicInteger();
+		PublishSubject<Object> sharedResult = PublishSubject.create();
+		Supplier<Observable<Object>> invocation = () -> {
+			createdObservableCount.incrementAndGet();
+			return sharedResult;
+		};
+		
+		TestSubscriber<Object> first = new TestSubscriber<>();
+		TestSubscriber<Object> second = new TestSubscriber<>();
+		proxy.proxyReactiveInvocation(lookup, new Object[] { "foo" }, invocation).get().subscribe(first);
+		proxy.proxyReactiveInvocation(lookup, new Object[] { "foo" }, invocation).get().subscribe(second);
+		sharedResult.onNext("bar");
+		sharedResult.onCompleted();
+		
+		first.assertValue("bar");
+		second.assertValue("bar");
+		assertEquals(1, createdObservableCount.get());
+		assertEquals(1, proxy.getCollapsedInvocationCount());
+	}
+	
+	@Test
+	public void reactiveInvocationIsNotSharedAfterItTerminates() throws Exception {
+		Method lookup = Lookup.class.getMethod("lookup", String.class);
+		AtomicInteger createdObservableCount = new AtomicInteger();
+		Supplier<Observable<Object>> invocation = () -> Observable.just(createdObservableCount.incrementAndGet());
+		
+		assertEquals(1, proxy.proxyReactiveInvocation(lookup, new Object[] { "foo" }, invocation).get().toBlocking().single());
+		assertEquals(2, proxy.proxyReactiveInvocation(lookup, new Object[] { "foo" }, invocation).get().toBlocking().single());
+		assertEquals(0, proxy.getCollapsedInvocationCount());
+	}
+	
+	@Test
+	public void concurrentInvocationsOfMethodWithoutArgumentsShareResult() throws Exception {
+		Method lookupAll = Lookup.class.getMethod("lookupAll");
+		CountDownLatch invocationLatch = new CountDownLatch(1);
+		AtomicInteger executionCount = new AtomicInteger();
+		CheckedCommand<Object> invocation = () -> {
+			executionCount.incrementAndGet();
+			invocationLatch.await();
+			return "all";
+		};
+		
+		Future<Object> first = executor.submit(() -> call(proxy.proxyInvocation(lookupAll, null, invocation)));
+		awaitCount(proxy::getInvocationCount, 1);
+		Future<Object> second = executor.submit(() -> call(proxy.proxyInvocation(lookupAll, new Object[0], invocation)));
+		awaitCount(proxy::getCollapsedInvocationCount, 1);
+		invocationLatch.countDown();
+		
+		assertEquals("all", first.get(1, TimeUnit.SECONDS));
+		assertEquals("all", second.get(1, TimeUnit.SECONDS));
+		assertEquals(1, executionCount.get());
+	}
+	
+	@Test
+	public void invocationsOfVoidMethodsAreNotCollapsed() throws Exception {
+		Method update = Lookup.class.getMethod("update", String.class);
+		CheckedCommand<Void> invocation = () -> null;
+		
+		assertSame(invocation, proxy.proxyInvocation(update, new Object[] { "foo" }, invocation));
+	}
+	
+	private static Object call(CheckedCommand<Object> command) throws Exception {
+		try {
+			return command.call();
+		} catch (Exception | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private Future<Object> lookupAsync(String key, CheckedCommand<Object> invocation) throws Exception {
+		Method lookup = Lookup.class.getMethod("lookup", String.class);
+		return executor.submit(() -> call(proxy.proxyInvocation(lookup, new Object[] { key }, invocation)));
+	}
+	
+	private static void assertThrowsIllegalState(Future<Object> invocation) throws Exception {
+		try {
+			invocation.get(1, TimeUnit.SECONDS);
+			fail("Expected IllegalStateException");
+		} catch (ExecutionException e) {
+			assertEquals(IllegalStateException.class, e.getCause().getClass());
+		}
+	}
+	
+	private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 1000;
+		while (count.getAsLong() < expected) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Expected count: " + expected + ", but was: " + count.getAsLong());
+			}
+			Thread.sleep(1);
+		}
+	}
+	
+	public interface Lookup {
+		String lookup(String key);
+		String lookupAll();
+		void update(String key);
+	}
+
+}
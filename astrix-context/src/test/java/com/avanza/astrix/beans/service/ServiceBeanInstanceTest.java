@@ -24,6 +24,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.lang.reflect.Proxy;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
@@ -158,6 +159,24 @@ public class ServiceBeanInstanceTest {
 		AstrixTestUtil.assertThrows(() -> ping.ping("foo"), ServiceUnavailableException.class);
 	}
 	
+	@Test
+	public void serviceBeanIsInstanceOfGeneratedProxyClassWhenGeneratedProxiesIsEnabled() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		serviceRegistry.registerProvider(Ping.class, new PingImpl());
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		astrixConfigurer.set(AstrixBeanSettings.GENERATED_PROXIES, AstrixBeanKey.create(Ping.class), true);
+		astrixContext = astrixConfigurer.configure();
+		
+		Ping ping = astrixContext.getBean(Ping.class);
+		assertFalse(Proxy.isProxyClass(ping.getClass()));
+		assertTrue(ping instanceof StatefulAstrixBean);
+		assertEquals("foo", ping.ping("foo"));
+		((StatefulAstrixBean) ping).waitUntilBound(1000);
+	}
+	
 	@Test
 	public void waitForBeanReturnsWhenServiceIsBound() throws Exception {
 		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
@@ -23,6 +23,15 @@ import java.lang.annotation.Target;
 
 
 /**
+ * Broadcasts an invocation to all members of the cluster and reduces the results using the given reducer. <p>
+ * 
+ * When any of {@link #partialResultDeadlineMillis()}, {@link #minResponses()} or {@link #hedgeDelayMillis()}
+ * is set, a member that fails with an error is passed to the reducer as a result that is
+ * {@link AstrixRemoteResult#isMissing() missing}, rather than failing the whole invocation. These 
+ * settings only apply to broadcasted methods, not to methods using {@link AstrixPartitionedRouting}.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
  */
 @Target(value={ElementType.METHOD})
 @Retention(value=RetentionPolicy.RUNTIME)
@@ -32,4 +41,32 @@ public @interface AstrixBroadcast {
 	@SuppressWarnings("rawtypes")
 	Class<? extends RemoteResultReducer> reducer() default DefaultAstrixRemoteResultReducer.class;
 	
+	/**
+	 * Completes the invocation with the responses received within the given number of milliseconds.
+	 * The members that did not respond in time are passed to the reducer as results that are 
+	 * {@link AstrixRemoteResult#isMissing() missing}. Zero waits for all members to respond.
+	 * 
+	 * Note that the deadline must be shorter than the timeout of the service bean for partial
+	 * results to be returned. 
+	 */
+	int partialResultDeadlineMillis() default 0;
+	
+	/**
+	 * Completes the invocation as soon as the given number of members have responded, the 
+	 * remaining members are passed to the reducer as results that are {@link AstrixRemoteResult#isMissing() missing}.
+	 * Zero waits for all members to respond.
+	 */
+	int minResponses() default 0;
+	
+	/**
+	 * Re-issues the invocation to a replica of a member that has not responded within the given number of 
+	 * milliseconds, and uses the first of the two responses. Typically set to a high percentile
+	 * of the latency of the service method. Since a member might receive the invocation twice, hedging 
+	 * must only be used on idempotent, read-only, service methods. Only applies to transports that can
+	 * invoke a distinct replica of each member of the cluster, for instance the http transport when several
+	 * members share the same cluster instance id, on other transports it's ignored and a warning is logged. 
+	 * Zero disables hedging.
+	 */
+	int hedgeDelayMillis() default 0;
+	
 }
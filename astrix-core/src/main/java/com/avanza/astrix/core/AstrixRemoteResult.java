@@ -160,6 +160,57 @@ public abstract class AstrixRemoteResult<T> {
 		}
 	}
 	
+	private static class MissingResult<T> extends AstrixRemoteResult<T> {
+		
+		private final CorrelationId correlationId;
+		private final String msg;
+		
+		public MissingResult(String msg, CorrelationId correlationId) {
+			this.msg = msg;
+			this.correlationId = correlationId;
+		}
+
+		public T getResult() {
+			throw getThrownException();
+		}
+		
+		public boolean hasThrownException() {
+			return true;
+		}
+		
+		@Override
+		public boolean isMissing() {
+			return true;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			@SuppressWarnings("unchecked")
+			MissingResult<T> other = (MissingResult<T>) obj;
+			return Objects.equals(correlationId, other.correlationId) 
+					&& Objects.equals(msg, other.msg);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(msg, correlationId);
+		}
+		
+		@Override
+		public ServiceUnavailableException getThrownException() {
+			return new ServiceUnavailableException(msg + " correlationId=" + correlationId);
+		}
+	}
+	
 	private AstrixRemoteResult() {
 		
 	}
@@ -179,6 +230,14 @@ public abstract class AstrixRemoteResult<T> {
 		return new ServiceUnavailableResult<T>(msg, correlationId);
 	}
 	
+	/**
+	 * Creates a result for a cluster member that did not respond before a broadcasted service
+	 * invocation completed with partial results.
+	 */
+	public static <T> AstrixRemoteResult<T> missing(String msg, CorrelationId correlationId) {
+		return new MissingResult<T>(msg, correlationId);
+	}
+	
 	/**
 	 * Returns the result from the underlying service invocation.
 	 * 
@@ -198,5 +257,13 @@ public abstract class AstrixRemoteResult<T> {
 	 * @return The exception if the underlying service invocation threw an exception.   
 	 */
 	public abstract Exception getThrownException();
+	
+	/**
+	 * @return true if no response was received from the underlying service invocation, i.e the 
+	 * broadcasted service invocation completed with partial results without waiting for this response. 
+	 */
+	public boolean isMissing() {
+		return false;
+	}
 
 }
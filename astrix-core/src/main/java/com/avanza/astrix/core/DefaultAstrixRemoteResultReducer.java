@@ -22,12 +22,17 @@ import java.util.List;
 /**
  *
  */
-public class DefaultAstrixRemoteResultReducer<T> implements RemoteResultReducer<List<T>> {
+public class DefaultAstrixRemoteResultReducer<T> implements StreamingRemoteResultReducer<List<T>> {
 
+	private final List<T> result = new ArrayList<>();
+	
 	@Override
 	public List<T> reduce(List<AstrixRemoteResult<List<T>>> results) {
 		List<T> result = new ArrayList<>();
 		for (AstrixRemoteResult<List<T>> remoteResult : results) {
+			if (remoteResult.isMissing()) {
+				continue;
+			}
 			Collection<T> r = remoteResult.getResult();
 			if (result != null) {
 				result.addAll(r);
@@ -35,5 +40,21 @@ public class DefaultAstrixRemoteResultReducer<T> implements RemoteResultReducer<
 		}
 		return result;
 	}
+	
+	@Override
+	public void accumulate(AstrixRemoteResult<List<T>> remoteResult) {
+		if (remoteResult.isMissing()) {
+			return;
+		}
+		Collection<T> r = remoteResult.getResult();
+		if (r != null) {
+			result.addAll(r);
+		}
+	}
+	
+	@Override
+	public List<T> finish() {
+		return result;
+	}
 
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.util.List;
+
+/**
+ * A {@link RemoteResultReducer} that folds the individual responses from a broadcasted or 
+ * partitioned service invocation into the result one at a time, as they are received. <p>
+ * 
+ * A new reducer instance is created for each service invocation, and the responses are
+ * passed to {@link #accumulate(AstrixRemoteResult)} one at a time (never concurrently) in 
+ * the order they are received. When all responses are accumulated {@link #finish()} is 
+ * invoked to create the result. Hence, each response can be discarded as soon as it is 
+ * accumulated, and no response is kept waiting for the slowest cluster member to respond. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ * @param <T>
+ */
+public interface StreamingRemoteResultReducer<T> extends RemoteResultReducer<T> {
+	
+	/**
+	 * Folds the response from a single service invocation into the result.
+	 * 
+	 * @param result
+	 */
+	void accumulate(AstrixRemoteResult<T> result);
+	
+	/**
+	 * Invoked after all responses are accumulated. 
+	 * 
+	 * @return the reduced result
+	 */
+	T finish();
+	
+	@Override
+	default T reduce(List<AstrixRemoteResult<T>> results) {
+		for (AstrixRemoteResult<T> result : results) {
+			accumulate(result);
+		}
+		return finish();
+	}
+
+}
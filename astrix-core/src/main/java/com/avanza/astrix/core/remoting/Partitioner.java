@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.remoting;
+
+/**
+ * Maps a {@link RoutingKey} to the partition of a partitioned service that should receive 
+ * the invocation. <p>
+ * 
+ * The partitioner is defined by the transport used to invoke the service, and is used
+ * both when routing a single invocation and when partitioning the argument of a service
+ * method using partitioned routing, hence all elements routed to the same partition are
+ * sent in the same request. <p>
+ * 
+ * The number of partitions of a transport is fixed for the lifetime of the transport, Astrix does not
+ * support resizing a cluster while clients are running. The consistent hash partitioners only reduce
+ * the number of keys that move to another partition when a cluster is redeployed with a different
+ * number of partitions. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@FunctionalInterface
+public interface Partitioner {
+	
+	/**
+	 * @param routingKey
+	 * @param partitionCount - the number of partitions, at least 1
+	 * @return the target partition, in the range [0, partitionCount)
+	 */
+	int partition(RoutingKey routingKey, int partitionCount);
+	
+	/**
+	 * Returns the Partitioner with a given name, one of "modulo", "jumpConsistentHash" and "rendezvous".
+	 * 
+	 * @param name
+	 * @return
+	 */
+	static Partitioner create(String name) {
+		switch (name) {
+		case Modulo.NAME:
+			return new Modulo();
+		case JumpConsistentHash.NAME:
+			return new JumpConsistentHash();
+		case Rendezvous.NAME:
+			return new Rendezvous();
+		default:
+			throw new IllegalArgumentException("Unknown partitioner: " + name);
+		}
+	}
+
+	/**
+	 * Routes to partition routingKey.hashCode() % partitionCount, which is how GigaSpaces 
+	 * routes a task. Almost all keys are remapped when the number of partitions changes.
+	 */
+	public static class Modulo implements Partitioner {
+		public static final String NAME = "modulo";
+		@Override
+		public int partition(RoutingKey routingKey, int partitionCount) {
+			return routingKey.hashCode() % partitionCount;
+		}
+	}
+	
+	/**
+	 * Jump consistent hash (Lamping and Veach). When a partition is added only the keys moving to
+	 * the new partition are remapped, i.e. 1/partitionCount of the keys. Requires partitions
+	 * to be added and removed at the end of the partition range.
+	 */
+	public static class JumpConsistentHash implements Partitioner {
+		public static final String NAME = "jumpConsistentHash";
+		@Override
+		public int partition(RoutingKey routingKey, int partitionCount) {
+			long key = routingKey.hashCode();
+			long bucket = -1;
+			long next = 0;
+			while (next < partitionCount) {
+				bucket = next;
+				key = key * 2862933555777941757L + 1;
+				next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+			}
+			return (int) bucket;
+		}
+	}
+	
+	/**
+	 * Rendezvous (highest random weight) hashing, the key is routed to the partition with the highest
+	 * hash of the key and the partition. As with {@link JumpConsistentHash} only the keys moving to a new 
+	 * partition are remapped when a partition is added. Linear in the number of partitions, but the 
+	 * weights are independent of each other which makes it straightforward to extend to other sets 
+	 * of partitions than a range.
+	 */
+	public static class Rendezvous implements Partitioner {
+		public static final String NAME = "rendezvous";
+		@Override
+		public int partition(RoutingKey routingKey, int partitionCount) {
+			long key = (long) routingKey.hashCode() << 32;
+			int result = 0;
+			long highestWeight = Long.MIN_VALUE;
+			for (int partition = 0; partition < partitionCount; partition++) {
+				long weight = mix(key | partition);
+				if (weight > highestWeight) {
+					highestWeight = weight;
+					result = partition;
+				}
+			}
+			return result;
+		}
+		
+		// Finalizer of MurmurHash3
+		private static long mix(long value) {
+			value ^= value >>> 33;
+			value *= 0xff51afd7ed558ccdL;
+			value ^= value >>> 33;
+			value *= 0xc4ceb9fe1a85ec53L;
+			value ^= value >>> 33;
+			return value;
+		}
+	}
+
+}
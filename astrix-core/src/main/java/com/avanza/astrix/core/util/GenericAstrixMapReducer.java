@@ -20,20 +20,38 @@ import java.util.List;
 import java.util.Map;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
-import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.StreamingRemoteResultReducer;
 
 /**
- * Reduce {@link Map}s into one {@link Map} containing the union of all input data
+ * Reduce {@link Map}s into one {@link Map} containing the union of all input data.
+ * The responses are merged into the result as they are received.
+ * 
  * @author joasah
  */
-public class GenericAstrixMapReducer<K, V> implements RemoteResultReducer<Map<K, V>> {
+public class GenericAstrixMapReducer<K, V> implements StreamingRemoteResultReducer<Map<K, V>> {
 
+	private final Map<K, V> map = new HashMap<K, V>();
+	
 	@Override
 	public Map<K, V> reduce(List<AstrixRemoteResult<Map<K, V>>> results) {
 		Map<K, V> map = new HashMap<K, V>();
 		for (AstrixRemoteResult<Map<K, V>> result : results) {
+			if (!result.isMissing()) {
+				map.putAll(result.getResult());
+			}
+		}
+		return map;
+	}
+	
+	@Override
+	public void accumulate(AstrixRemoteResult<Map<K, V>> result) {
+		if (!result.isMissing()) {
 			map.putAll(result.getResult());
 		}
+	}
+	
+	@Override
+	public Map<K, V> finish() {
 		return map;
 	}
 
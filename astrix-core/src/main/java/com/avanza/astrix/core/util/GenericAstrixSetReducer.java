@@ -20,20 +20,37 @@ import java.util.List;
 import java.util.Set;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
-import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.StreamingRemoteResultReducer;
 
 /**
  * Reduce {@link Set}s into one {@link Set} containing the union of all unique input data.
+ * The responses are merged into the result as they are received.
  * 
  */
-public class GenericAstrixSetReducer<T> implements RemoteResultReducer<Set<T>> {
+public class GenericAstrixSetReducer<T> implements StreamingRemoteResultReducer<Set<T>> {
 
+	private final Set<T> set = new HashSet<>();
+	
 	@Override
 	public Set<T> reduce(List<AstrixRemoteResult<Set<T>>> results) {
 		Set<T> set = new HashSet<>();
 		for (AstrixRemoteResult<Set<T>> result : results) {
+			if (!result.isMissing()) {
+				set.addAll(result.getResult());
+			}
+		}
+		return set;
+	}
+	
+	@Override
+	public void accumulate(AstrixRemoteResult<Set<T>> result) {
+		if (!result.isMissing()) {
 			set.addAll(result.getResult());
 		}
+	}
+	
+	@Override
+	public Set<T> finish() {
 		return set;
 	}
 
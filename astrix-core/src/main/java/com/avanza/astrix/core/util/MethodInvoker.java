@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+/**
+ * Invokes a given Method using a MethodHandle that is created once, typically when a service is 
+ * exported or a proxy is bound, rather than using reflection on each invocation. <p>
+ * 
+ * The MethodHandle is adapted to a uniform (Object target, Object[] args)Object type, so invoking it
+ * does not require any access checks, and exceptions thrown by the invoked method are propagated as is, 
+ * i.e. they are not wrapped in an InvocationTargetException. Arguments that does not match the parameter
+ * types of the method are reported using an IllegalArgumentException, just as by Method.invoke. <p>
+ * 
+ * Methods that can't be accessed using a MethodHandle are invoked reflectively, see {@link ReflectionUtil#invokeMethod(Method, Object, Object[])}. <p>
+ * 
+ * Note that the cost of an invocation is in the same range as using Method.invoke, see MethodInvokerBenchmark 
+ * in astrix-benchmarks. 
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class MethodInvoker {
+	
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+	private static final MethodHandle WRAP_TARGET_EXCEPTION;
+	
+	static {
+		try {
+			WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(MethodInvoker.class, "wrapTargetException", MethodType.methodType(Object.class, Throwable.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	private final Method method;
+	private final MethodHandle methodHandle;
+	
+	private MethodInvoker(Method method, MethodHandle methodHandle) {
+		this.method = method;
+		this.methodHandle = methodHandle;
+	}
+	
+	public static MethodInvoker create(Method method) {
+		return new MethodInvoker(Objects.requireNonNull(method), createMethodHandle(method));
+	}
+
+	private static MethodHandle createMethodHandle(Method method) {
+		try {
+			if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+				// For instance anonymous classes, or package private service interfaces 
+				method.trySetAccessible();
+			}
+			MethodHandle methodHandle = MethodHandles.lookup().unreflect(method).asFixedArity();
+			// Exceptions thrown by the method are wrapped to tell them apart from failures to adapt the arguments
+			MethodType methodType = methodHandle.type();
+			MethodHandle exceptionHandler = MethodHandles.dropArguments(WRAP_TARGET_EXCEPTION.asType(MethodType.methodType(methodType.returnType(), Throwable.class)), 
+																		 1, methodType.parameterList());
+			methodHandle = MethodHandles.catchException(methodHandle, Throwable.class, exceptionHandler);
+			if (Modifier.isStatic(method.getModifiers())) {
+				methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+			}
+			return methodHandle.asSpreader(Object[].class, method.getParameterCount())
+							   .asType(INVOKER_TYPE);
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Invokes the underlying Method on the given target. Exceptions thrown by the Method
+	 * are propagated as is.
+	 * 
+	 * @param target - the target instance, ignored for static methods 
+	 * @param args - the arguments, might be null for methods without parameters
+	 * @return the return value of the Method, null for void methods 
+	 * @throws Throwable
+	 */
+	public Object invoke(Object target, Object[] args) throws Throwable {
+		if (methodHandle == null) {
+			return ReflectionUtil.invokeMethod(method, target, args);
+		}
+		try {
+			return methodHandle.invokeExact(target, args);
+		} catch (TargetException e) {
+			throw e.getCause();
+		} catch (ClassCastException | NullPointerException e) {
+			throw argumentMismatch(e);
+		}
+	}
+	
+	/**
+	 * Invokes the underlying Method on the given target using the same contract as 
+	 * {@link Method#invoke(Object, Object...)}, i.e. exceptions thrown by the Method are wrapped
+	 * in an InvocationTargetException.
+	 * 
+	 * @param target - the target instance, ignored for static methods 
+	 * @param args - the arguments, might be null for methods without parameters
+	 * @return the return value of the Method, null for void methods 
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Object invokeWrapped(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+		if (methodHandle == null) {
+			return method.invoke(target, args);
+		}
+		try {
+			return methodHandle.invokeExact(target, args);
+		} catch (TargetException e) {
+			throw new InvocationTargetException(e.getCause());
+		} catch (ClassCastException | NullPointerException e) {
+			throw argumentMismatch(e);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			// Not expected since all exceptions thrown by the method are wrapped in a TargetException
+			throw new InvocationTargetException(e);
+		}
+	}
+	
+	private IllegalArgumentException argumentMismatch(RuntimeException cause) {
+		return new IllegalArgumentException("Argument type mismatch when invoking: " + ReflectionUtil.fullMethodName(method), cause);
+	}
+	
+	@SuppressWarnings("unused")
+	private static Object wrapTargetException(Throwable e) {
+		throw new TargetException(e);
+	}
+	
+	public Method getMethod() {
+		return method;
+	}
+	
+	@Override
+	public String toString() {
+		return "MethodInvoker[" + ReflectionUtil.fullMethodName(method) + "]";
+	}
+	
+	private static final class TargetException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		TargetException(Throwable cause) {
+			super(null, cause, false, false);
+		}
+		
+	}
+
+}
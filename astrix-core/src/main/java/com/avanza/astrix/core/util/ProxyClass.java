@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A proxy class generated for a given interface, an alternative to {@link java.lang.reflect.Proxy}. <p>
+ * 
+ * Each method of the proxied interfaces, including equals, hashCode and toString, is assigned an index, see {@link #getMethods()}, 
+ * and the generated implementation passes the index of the invoked method to the {@link ProxyDispatcher}. The dispatcher
+ * can therefore lookup the state associated with a method in an array, rather than using the invoked Method as key
+ * in a Map on each invocation. <p> 
+ * 
+ * As with {@link java.lang.reflect.Proxy}, a checked exception thrown by the dispatcher that is not declared 
+ * by the invoked method is wrapped in an {@link UndeclaredThrowableException}. <p>
+ * 
+ * Whether to use a generated proxy class is decided by the caller, astrix beans use a generated proxy 
+ * class when the "generatedProxies" bean setting is enabled.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class ProxyClass<T> {
+	
+	private static final AtomicInteger proxyClassCount = new AtomicInteger();
+	private static final ClassValue<ConcurrentMap<List<Class<?>>, Optional<ProxyClass<?>>>> proxyClassesByType = new ClassValue<>() {
+		@Override
+		protected ConcurrentMap<List<Class<?>>, Optional<ProxyClass<?>>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private final Class<T> type;
+	private final Method[] methods;
+	private final Class<?>[][] exceptionTypes;
+	private final MethodHandle constructor;
+	
+	private ProxyClass(Class<T> type, Method[] methods, MethodHandle constructor) {
+		this.type = type;
+		this.methods = methods;
+		this.constructor = constructor;
+		this.exceptionTypes = new Class<?>[methods.length][];
+		for (int methodIndex = 0; methodIndex < methods.length; methodIndex++) {
+			this.exceptionTypes[methodIndex] = methods[methodIndex].getExceptionTypes();
+		}
+	}
+	
+	/**
+	 * Returns the proxy class for a given interface, the class is generated the first time it is requested. <p>
+	 * 
+	 * Empty if no class could be generated for the given types, for instance when a type is not an interface, 
+	 * when an additional interface is not visible from the class loader of type, or when the generated class 
+	 * can't access the {@link ProxyDispatcher} from the class loader of the interface. Use {@link java.lang.reflect.Proxy} 
+	 * for such types.
+	 * 
+	 * @param type - the interface that the proxy is cast to, the proxy class is defined in the package of this interface
+	 * @param additionalInterfaces - other interfaces implemented by the proxy, for instance a StatefulAstrixBean
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Optional<ProxyClass<T>> forType(Class<T> type, Class<?>... additionalInterfaces) {
+		return proxyClassesByType.get(type)
+								 .computeIfAbsent(Arrays.asList(additionalInterfaces), interfaces -> Optional.ofNullable(generate(type, interfaces)))
+								 .map(proxyClass -> (ProxyClass<T>) proxyClass);
+	}
+	
+	/**
+	 * Creates a proxy that dispatches all invocations to a given InvocationHandler, i.e. the
+	 * same semantics as {@link java.lang.reflect.Proxy#newProxyInstance(ClassLoader, Class[], InvocationHandler)}. 
+	 */
+	public T newInstance(InvocationHandler handler) {
+		return newDispatchingInstance((proxy, methodIndex, args) -> handler.invoke(proxy, methods[methodIndex], args));
+	}
+	
+	/**
+	 * Creates a proxy that dispatches all invocations to the given dispatcher, along with the index of the invoked method.
+	 */
+	public T newDispatchingInstance(ProxyDispatcher dispatcher) {
+		ProxyDispatcher exceptionWrappingDispatcher = (proxy, methodIndex, args) -> {
+			try {
+				return dispatcher.dispatch(proxy, methodIndex, args);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw isDeclared(methodIndex, e) ? e : new UndeclaredThrowableException(e);
+			}
+		};
+		try {
+			return type.cast(constructor.invoke(exceptionWrappingDispatcher));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException("Failed to create proxy for: " + type.getName(), e);
+		}
+	}
+	
+	private boolean isDeclared(int methodIndex, Throwable exception) {
+		for (Class<?> exceptionType : exceptionTypes[methodIndex]) {
+			if (exceptionType.isInstance(exception)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the methods of the proxy class, indexed by the methodIndex passed to the {@link ProxyDispatcher}
+	 */
+	public Method[] getMethods() {
+		return methods.clone();
+	}
+	
+	static <T> ProxyClass<T> generate(Class<T> type, Class<?>... additionalInterfaces) {
+		return generate(type, Arrays.asList(additionalInterfaces));
+	}
+	
+	private static <T> ProxyClass<T> generate(Class<T> type, List<Class<?>> additionalInterfaces) {
+		if (!type.isInterface()) {
+			return null;
+		}
+		try {
+			if (Class.forName(ProxyDispatcher.class.getName(), false, type.getClassLoader()) != ProxyDispatcher.class) {
+				return null;
+			}
+			for (Class<?> additionalInterface : additionalInterfaces) {
+				if (!additionalInterface.isInterface()
+						|| !Modifier.isPublic(additionalInterface.getModifiers()) && additionalInterface.getPackage() != type.getPackage()
+						|| Class.forName(additionalInterface.getName(), false, type.getClassLoader()) != additionalInterface) {
+					return null;
+				}
+			}
+			ProxyClassWriter writer = new ProxyClassWriter(type, additionalInterfaces, type.getName() + "$$AstrixProxy" + proxyClassCount.incrementAndGet());
+			// Defined in the same package and class loader as the proxied interface
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+			Class<?> proxyClass = lookup.defineClass(writer.toByteArray());
+			MethodHandle constructor = lookup.findConstructor(proxyClass, MethodType.methodType(void.class, ProxyDispatcher.class));
+			return new ProxyClass<>(type, writer.getMethods(), constructor);
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the class file for a {@link ProxyClass}. <p>
+ * 
+ * The generated class has a single ProxyDispatcher field, assigned in the constructor, and each method
+ * boxes its arguments into an Object[], invokes the dispatcher with the index of the method and unboxes
+ * the result. The generated code contains no branches, hence no StackMapTable is required. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class ProxyClassWriter {
+	
+	private static final int CLASS_FILE_VERSION = 52; // Java 8
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+	private static final String OBJECT = "java/lang/Object";
+	private static final String DISPATCHER = internalName(ProxyDispatcher.class);
+	private static final String DISPATCHER_DESCRIPTOR = "L" + DISPATCHER + ";";
+	private static final String DISPATCH_DESCRIPTOR = "(Ljava/lang/Object;I[Ljava/lang/Object;)Ljava/lang/Object;";
+	private static final String DISPATCHER_FIELD = "dispatcher";
+	
+	private final ConstantPool constantPool = new ConstantPool();
+	private final String className;
+	private final List<Class<?>> interfaces;
+	private final Method[] methods;
+	
+	ProxyClassWriter(Class<?> type, List<Class<?>> additionalInterfaces, String className) {
+		this.className = className.replace('.', '/');
+		this.interfaces = new ArrayList<>();
+		this.interfaces.add(type);
+		this.interfaces.addAll(additionalInterfaces);
+		this.methods = proxiedMethods(this.interfaces);
+	}
+	
+	Method[] getMethods() {
+		return methods;
+	}
+	
+	/**
+	 * All abstract and default methods of the interfaces, and equals, hashCode and toString. Methods
+	 * are distinguished by name, parameter types and return type, since an interface might inherit 
+	 * several methods with the same parameters but different return types. A method declared by 
+	 * several of the interfaces is dispatched as the method of the first interface declaring it.
+	 */
+	private static Method[] proxiedMethods(List<Class<?>> interfaces) {
+		Map<String, Method> methodByDescriptor = new LinkedHashMap<>();
+		for (Method objectMethod : new Method[] { 
+				ReflectionUtil.getMethod(Object.class, "equals", Object.class),
+				ReflectionUtil.getMethod(Object.class, "hashCode"),
+				ReflectionUtil.getMethod(Object.class, "toString") }) {
+			methodByDescriptor.put(objectMethod.getName() + descriptor(objectMethod), objectMethod);
+		}
+		for (Class<?> type : interfaces) {
+			for (Method method : type.getMethods()) {
+				if (!Modifier.isStatic(method.getModifiers())) {
+					methodByDescriptor.putIfAbsent(method.getName() + descriptor(method), method);
+				}
+			}
+		}
+		return methodByDescriptor.values().toArray(new Method[0]);
+	}
+	
+	byte[] toByteArray() {
+		try {
+			// Methods are written first to populate the constant pool
+			ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+			DataOutputStream methodsOut = new DataOutputStream(methodBytes);
+			writeConstructor(methodsOut);
+			for (int methodIndex = 0; methodIndex < methods.length; methodIndex++) {
+				writeMethod(methodsOut, methodIndex, methods[methodIndex]);
+			}
+			int thisClass = constantPool.classRef(className);
+			int superClass = constantPool.classRef(OBJECT);
+			int[] proxiedInterfaces = new int[interfaces.size()];
+			for (int i = 0; i < proxiedInterfaces.length; i++) {
+				proxiedInterfaces[i] = constantPool.classRef(internalName(interfaces.get(i)));
+			}
+			int fieldName = constantPool.utf8(DISPATCHER_FIELD);
+			int fieldDescriptor = constantPool.utf8(DISPATCHER_DESCRIPTOR);
+			
+			ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(classBytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(CLASS_FILE_VERSION);
+			constantPool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(proxiedInterfaces.length);
+			for (int proxiedInterface : proxiedInterfaces) {
+				out.writeShort(proxiedInterface);
+			}
+			out.writeShort(1);
+			out.writeShort(ACC_PRIVATE | ACC_FINAL);
+			out.writeShort(fieldName);
+			out.writeShort(fieldDescriptor);
+			out.writeShort(0);
+			out.writeShort(methods.length + 1);
+			methodBytes.writeTo(out);
+			out.writeShort(0);
+			return classBytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeConstructor(DataOutputStream out) throws IOException {
+		Code code = new Code();
+		code.op(0x2a); // aload_0
+		code.op(0xb7).u2(constantPool.methodRef(OBJECT, "<init>", "()V")); // invokespecial
+		code.op(0x2a); // aload_0
+		code.op(0x2b); // aload_1
+		code.op(0xb5).u2(constantPool.fieldRef(className, DISPATCHER_FIELD, DISPATCHER_DESCRIPTOR)); // putfield
+		code.op(0xb1); // return
+		writeMethod(out, ACC_PUBLIC, "<init>", "(" + DISPATCHER_DESCRIPTOR + ")V", code, 2, 2);
+	}
+
+	private void writeMethod(DataOutputStream out, int methodIndex, Method method) throws IOException {
+		Code code = new Code();
+		code.op(0x2a); // aload_0
+		code.op(0xb4).u2(constantPool.fieldRef(className, DISPATCHER_FIELD, DISPATCHER_DESCRIPTOR)); // getfield
+		code.op(0x2a); // aload_0, the proxy
+		code.pushInt(methodIndex);
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		int local = 1;
+		if (parameterTypes.length == 0) {
+			code.op(0x01); // aconst_null
+		} else {
+			code.pushInt(parameterTypes.length);
+			code.op(0xbd).u2(constantPool.classRef(OBJECT)); // anewarray
+			for (int i = 0; i < parameterTypes.length; i++) {
+				code.op(0x59); // dup
+				code.pushInt(i);
+				local += code.load(parameterTypes[i], local);
+				box(code, parameterTypes[i]);
+				code.op(0x53); // aastore
+			}
+		}
+		code.op(0xb9).u2(constantPool.interfaceMethodRef(DISPATCHER, "dispatch", DISPATCH_DESCRIPTOR)).u1(4).u1(0); // invokeinterface
+		unboxAndReturn(code, method.getReturnType());
+		// dispatcher, proxy, methodIndex, args, args, index, value (2 slots for long/double)
+		writeMethod(out, ACC_PUBLIC | ACC_FINAL, method.getName(), descriptor(method), code, 8, local);
+	}
+	
+	private void writeMethod(DataOutputStream out, int access, String name, String descriptor, Code code, int maxStack, int maxLocals) throws IOException {
+		out.writeShort(access);
+		out.writeShort(constantPool.utf8(name));
+		out.writeShort(constantPool.utf8(descriptor));
+		out.writeShort(1);
+		out.writeShort(constantPool.utf8("Code"));
+		out.writeInt(12 + code.size());
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.size());
+		code.writeTo(out);
+		out.writeShort(0); // exception_table_length
+		out.writeShort(0); // attributes_count
+	}
+	
+	private void box(Code code, Class<?> type) {
+		if (!type.isPrimitive()) {
+			return;
+		}
+		String wrapper = internalName(wrapperType(type));
+		code.op(0xb8).u2(constantPool.methodRef(wrapper, "valueOf", "(" + descriptor(type) + ")L" + wrapper + ";")); // invokestatic
+	}
+
+	private void unboxAndReturn(Code code, Class<?> returnType) {
+		if (returnType == void.class) {
+			code.op(0x57); // pop
+			code.op(0xb1); // return
+			return;
+		}
+		if (!returnType.isPrimitive()) {
+			if (returnType != Object.class) {
+				code.op(0xc0).u2(constantPool.classRef(internalName(returnType))); // checkcast
+			}
+			code.op(0xb0); // areturn
+			return;
+		}
+		String wrapper = internalName(wrapperType(returnType));
+		code.op(0xc0).u2(constantPool.classRef(wrapper)); // checkcast
+		code.op(0xb6).u2(constantPool.methodRef(wrapper, returnType.getName() + "Value", "()" + descriptor(returnType))); // invokevirtual
+		if (returnType == long.class) {
+			code.op(0xad); // lreturn
+		} else if (returnType == float.class) {
+			code.op(0xae); // freturn
+		} else if (returnType == double.class) {
+			code.op(0xaf); // dreturn
+		} else {
+			code.op(0xac); // ireturn
+		}
+	}
+	
+	private static Class<?> wrapperType(Class<?> primitiveType) {
+		return MethodType.methodType(primitiveType).wrap().returnType();
+	}
+	
+	private static String descriptor(Method method) {
+		return MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+	}
+
+	private static String descriptor(Class<?> type) {
+		return MethodType.methodType(type).toMethodDescriptorString().substring(2);
+	}
+	
+	private static String internalName(Class<?> type) {
+		if (type.isArray()) {
+			return descriptor(type);
+		}
+		return type.getName().replace('.', '/');
+	}
+	
+	private static final class Code {
+		
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		Code op(int opcode) {
+			bytes.write(opcode);
+			return this;
+		}
+		
+		Code u1(int value) {
+			bytes.write(value);
+			return this;
+		}
+		
+		Code u2(int value) {
+			bytes.write(value >>> 8);
+			bytes.write(value);
+			return this;
+		}
+		
+		void pushInt(int value) {
+			if (value <= 5) {
+				op(0x03 + value); // iconst_<n>
+			} else if (value <= Byte.MAX_VALUE) {
+				op(0x10).u1(value); // bipush
+			} else {
+				op(0x11).u2(value); // sipush
+			}
+		}
+		
+		/**
+		 * @return the number of local variable slots used by the given type
+		 */
+		int load(Class<?> type, int local) {
+			if (type == long.class) {
+				op(0x16).u1(local); // lload
+				return 2;
+			}
+			if (type == double.class) {
+				op(0x18).u1(local); // dload
+				return 2;
+			}
+			if (type == float.class) {
+				op(0x17).u1(local); // fload
+			} else if (type.isPrimitive()) {
+				op(0x15).u1(local); // iload
+			} else {
+				op(0x19).u1(local); // aload
+			}
+			return 1;
+		}
+		
+		int size() {
+			return bytes.size();
+		}
+		
+		void writeTo(DataOutputStream out) throws IOException {
+			bytes.writeTo(out);
+		}
+	}
+	
+	private static final class ConstantPool {
+		
+		private final List<byte[]> entries = new ArrayList<>();
+		private final Map<String, Integer> indexByKey = new HashMap<>();
+		
+		int utf8(String value) {
+			return entry("Utf8:" + value, out -> {
+				out.writeByte(1);
+				out.writeUTF(value);
+			});
+		}
+		
+		int classRef(String internalName) {
+			int name = utf8(internalName);
+			return entry("Class:" + internalName, out -> {
+				out.writeByte(7);
+				out.writeShort(name);
+			});
+		}
+		
+		int fieldRef(String owner, String name, String descriptor) {
+			return memberRef(9, owner, name, descriptor);
+		}
+		
+		int methodRef(String owner, String name, String descriptor) {
+			return memberRef(10, owner, name, descriptor);
+		}
+		
+		int interfaceMethodRef(String owner, String name, String descriptor) {
+			return memberRef(11, owner, name, descriptor);
+		}
+		
+		private int memberRef(int tag, String owner, String name, String descriptor) {
+			int ownerClass = classRef(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			int nameAndType = entry("NameAndType:" + name + descriptor, out -> {
+				out.writeByte(12);
+				out.writeShort(nameIndex);
+				out.writeShort(descriptorIndex);
+			});
+			return entry(tag + ":" + owner + "." + name + descriptor, out -> {
+				out.writeByte(tag);
+				out.writeShort(ownerClass);
+				out.writeShort(nameAndType);
+			});
+		}
+		
+		private int entry(String key, EntryWriter writer) {
+			Integer index = indexByKey.get(key);
+			if (index != null) {
+				return index;
+			}
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				writer.write(new DataOutputStream(bytes));
+				entries.add(bytes.toByteArray());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			int result = entries.size();
+			indexByKey.put(key, result);
+			return result;
+		}
+		
+		void writeTo(DataOutputStream out) throws IOException {
+			out.writeShort(entries.size() + 1);
+			for (byte[] entry : entries) {
+				out.write(entry);
+			}
+		}
+		
+		private interface EntryWriter {
+			void write(DataOutputStream out) throws IOException;
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+/**
+ * Receives the invocations on a proxy created by a {@link ProxyClass}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@FunctionalInterface
+public interface ProxyDispatcher {
+
+	/**
+	 * @param proxy - the proxy instance the method was invoked on
+	 * @param methodIndex - index of the invoked method in {@link ProxyClass#getMethods()}
+	 * @param args - the arguments, primitives are boxed. null for methods without parameters
+	 * @return the return value of the invoked method, ignored for void methods
+	 * @throws Throwable
+	 */
+	Object dispatch(Object proxy, int methodIndex, Object[] args) throws Throwable;
+
+}
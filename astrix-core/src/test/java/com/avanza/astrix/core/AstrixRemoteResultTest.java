@@ -43,6 +43,21 @@ public class AstrixRemoteResultTest {
 		}
 	}
 	
+	@Test
+	public void missingResult() throws Exception {
+		AstrixRemoteResult<String> result = AstrixRemoteResult.missing("missing", CorrelationId.valueOf("foo"));
+		
+		assertTrue(result.isMissing());
+		assertTrue(result.hasThrownException());
+		assertEquals(ServiceUnavailableException.class, result.getThrownException().getClass());
+		try {
+			result.getResult();
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+		}
+		assertFalse(AstrixRemoteResult.unavailable("unavailable", CorrelationId.valueOf("foo")).isMissing());
+	}
+	
 	@Test
 	public void serviceInvocationExceptionResult() throws Exception {
 		AstrixRemoteResult<String> result = AstrixRemoteResult.failure(new FakeServiceInvocationException(), CorrelationId.valueOf("foo"));
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DefaultAstrixRemoteResultReducerTest {
+	
+	private final DefaultAstrixRemoteResultReducer<String> reducer = new DefaultAstrixRemoteResultReducer<>();
+	
+	@Test
+	public void reduce_concatenatesAllResults() throws Exception {
+		List<String> reduced = reducer.reduce(Arrays.asList(
+				AstrixRemoteResult.successful(Arrays.asList("a", "b")),
+				AstrixRemoteResult.successful(Collections.singletonList("c"))));
+		
+		assertEquals(Arrays.asList("a", "b", "c"), reduced);
+	}
+	
+	@Test
+	public void accumulate_appendsEachResultInOrderOfArrival() throws Exception {
+		reducer.accumulate(AstrixRemoteResult.successful(Collections.singletonList("c")));
+		reducer.accumulate(AstrixRemoteResult.successful(Arrays.asList("a", "b")));
+		
+		assertEquals(Arrays.asList("c", "a", "b"), reducer.finish());
+	}
+	
+	@Test
+	public void accumulate_ignoresMissingAndNullResults() throws Exception {
+		reducer.accumulate(AstrixRemoteResult.successful(Collections.singletonList("a")));
+		reducer.accumulate(AstrixRemoteResult.missing("No response from partition 1", CorrelationId.undefined()));
+		reducer.accumulate(AstrixRemoteResult.successful(null));
+		
+		assertEquals(Collections.singletonList("a"), reducer.finish());
+	}
+	
+	@Test(expected = MyServiceException.class)
+	public void accumulate_rethrowsException() throws Exception {
+		reducer.accumulate(AstrixRemoteResult.successful(Collections.singletonList("a")));
+		reducer.accumulate(AstrixRemoteResult.<List<String>>failure(new MyServiceException(), CorrelationId.undefined()));
+	}
+	
+	private static final class MyServiceException extends ServiceInvocationException {
+		private static final long serialVersionUID = 1L;
+		@Override
+		public ServiceInvocationException recreateOnClientSide() {
+			return new MyServiceException();
+		}
+	}
+
+}
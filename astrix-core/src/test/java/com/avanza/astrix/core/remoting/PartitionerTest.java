@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PartitionerTest {
+	
+	private static final int KEY_COUNT = 10_000;
+	
+	@Test
+	public void moduloRoutesLikeGigaSpaces() throws Exception {
+		Partitioner partitioner = Partitioner.create("modulo");
+		for (int hash = 0; hash < KEY_COUNT; hash++) {
+			assertEquals(hash % 7, partitioner.partition(RoutingKey.create(hash), 7));
+		}
+		assertEquals(Integer.MAX_VALUE % 7, partitioner.partition(RoutingKey.create(Integer.MIN_VALUE), 7));
+	}
+	
+	@Test
+	public void allPartitionersRouteToPartitionInRange() throws Exception {
+		for (String name : new String[] { "modulo", "jumpConsistentHash", "rendezvous" }) {
+			Partitioner partitioner = Partitioner.create(name);
+			for (int partitionCount = 1; partitionCount <= 16; partitionCount++) {
+				for (int hash = 0; hash < KEY_COUNT; hash += 7) {
+					int partition = partitioner.partition(RoutingKey.create(hash * 31), partitionCount);
+					assertTrue(name + " routed to partition: " + partition, partition >= 0 && partition < partitionCount);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void jumpConsistentHashOnlyRemapsKeysToAddedPartition() throws Exception {
+		assertOnlyRemapsKeysToAddedPartition(new Partitioner.JumpConsistentHash());
+	}
+	
+	@Test
+	public void rendezvousOnlyRemapsKeysToAddedPartition() throws Exception {
+		assertOnlyRemapsKeysToAddedPartition(new Partitioner.Rendezvous());
+	}
+	
+	@Test
+	public void consistentPartitionersSpreadKeysEvenly() throws Exception {
+		assertEvenSpread(new Partitioner.JumpConsistentHash());
+		assertEvenSpread(new Partitioner.Rendezvous());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void throwsIllegalArgumentExceptionForUnknownPartitioner() throws Exception {
+		Partitioner.create("foo");
+	}
+
+	private void assertOnlyRemapsKeysToAddedPartition(Partitioner partitioner) {
+		int partitionCount = 8;
+		int remapped = 0;
+		for (int hash = 0; hash < KEY_COUNT; hash++) {
+			RoutingKey key = RoutingKey.create(hash);
+			int before = partitioner.partition(key, partitionCount);
+			int after = partitioner.partition(key, partitionCount + 1);
+			if (before != after) {
+				assertEquals("Key remapped to existing partition: " + hash, partitionCount, after);
+				remapped++;
+			}
+		}
+		// Expected KEY_COUNT / (partitionCount + 1) ~ 1111
+		assertTrue("remapped: " + remapped, remapped > 800 && remapped < 1400);
+	}
+	
+	private void assertEvenSpread(Partitioner partitioner) {
+		int partitionCount = 10;
+		int[] keysByPartition = new int[partitionCount];
+		for (int hash = 0; hash < KEY_COUNT; hash++) {
+			keysByPartition[partitioner.partition(RoutingKey.create(hash), partitionCount)]++;
+		}
+		for (int keys : keysByPartition) {
+			assertTrue("keys in partition: " + keys, keys > 800 && keys < 1200);
+		}
+	}
+
+}
@@ -52,6 +52,21 @@ public class GenericAstrixMapReducerTest {
 				AstrixRemoteResult.<Map<String, Integer>>failure(new MyRuntimeException(), CorrelationId.undefined())));
 	}
 	
+	@Test
+	public void accumulate_mergesEachResultIntoTheReducedMap() throws Exception {
+		GenericAstrixMapReducer<String, Integer> reducer = new GenericAstrixMapReducer<>();
+		reducer.accumulate(AstrixRemoteResult.successful(newMap("a", 1).with("c", 3).build()));
+		reducer.accumulate(AstrixRemoteResult.successful(newMap("b", 2).build()));
+		assertEquals(newMap("a", 1).with("b", 2).with("c", 3).build(), reducer.finish());
+	}
+	
+	@Test(expected = MyRuntimeException.class)
+	public void accumulate_rethrowsException() throws Exception {
+		GenericAstrixMapReducer<String, Integer> reducer = new GenericAstrixMapReducer<>();
+		reducer.accumulate(AstrixRemoteResult.successful(newMap("a", 1).build()));
+		reducer.accumulate(AstrixRemoteResult.<Map<String, Integer>>failure(new MyRuntimeException(), CorrelationId.undefined()));
+	}
+	
 	public static MapBuilder newMap(String key, Integer value) {
 		return new MapBuilder(key, value);
 	}
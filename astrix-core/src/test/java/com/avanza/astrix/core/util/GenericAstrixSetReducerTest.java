@@ -17,10 +17,12 @@ package com.avanza.astrix.core.util;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Before;
@@ -63,6 +65,28 @@ public class GenericAstrixSetReducerTest {
 				AstrixRemoteResult.<Set<String>>failure(new MyRuntimeException(), CorrelationId.undefined())));
 	}
 
+	@Test
+	public void accumulate_mergesUniqueElementsOfEachResult() {
+		reducer.accumulate(AstrixRemoteResult.successful(Collections.singleton("1")));
+		reducer.accumulate(AstrixRemoteResult.successful(new HashSet<>(Arrays.asList("1", "2"))));
+		
+		assertEquals(new HashSet<>(Arrays.asList("1", "2")), reducer.finish());
+	}
+	
+	@Test
+	public void accumulate_ignoresMissingResults() {
+		reducer.accumulate(AstrixRemoteResult.successful(Collections.singleton("1")));
+		reducer.accumulate(AstrixRemoteResult.missing("No response from partition 1", CorrelationId.undefined()));
+		
+		assertEquals(Collections.singleton("1"), reducer.finish());
+	}
+	
+	@Test(expected = MyRuntimeException.class)
+	public void accumulate_rethrowsException() throws Exception {
+		reducer.accumulate(AstrixRemoteResult.successful(Collections.singleton("hello world")));
+		reducer.accumulate(AstrixRemoteResult.<Set<String>>failure(new MyRuntimeException(), CorrelationId.undefined()));
+	}
+
 	private static class MyRuntimeException extends ServiceInvocationException {
 		private static final long serialVersionUID = 1L;
 	}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Test;
+
+public class MethodInvokerTest {
+	
+	@Test
+	public void invokesMethodWithoutArguments() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("zero"));
+		
+		assertEquals(0, invoker.invoke(new CalculatorImpl(), null));
+		assertEquals(0, invoker.invoke(new CalculatorImpl(), new Object[0]));
+	}
+	
+	@Test
+	public void invokesMethodWithPrimitiveAndReferenceArguments() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("add", int.class, Integer.class));
+		
+		assertEquals(3, invoker.invoke(new CalculatorImpl(), new Object[] { 1, 2 }));
+	}
+	
+	@Test
+	public void invokesVoidMethod() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("clear"));
+		
+		assertNull(invoker.invoke(new CalculatorImpl(), null));
+	}
+	
+	@Test
+	public void invokesStaticMethod() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(CalculatorImpl.class.getMethod("negate", int.class));
+		
+		assertEquals(-1, invoker.invoke(null, new Object[] { 1 }));
+	}
+	
+	@Test
+	public void invokesVarargsMethodWithArrayArgument() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("sum", int[].class));
+		
+		assertEquals(6, invoker.invoke(new CalculatorImpl(), new Object[] { new int[] { 1, 2, 3 } }));
+	}
+	
+	@Test
+	public void invokesMethodOnAnonymousClass() throws Throwable {
+		Calculator anonymous = new CalculatorImpl() {
+			@Override
+			public int zero() {
+				return 42;
+			}
+		};
+		MethodInvoker invoker = MethodInvoker.create(anonymous.getClass().getMethod("zero"));
+		
+		assertEquals(42, invoker.invoke(anonymous, null));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void propagatesExceptionThrownByMethod() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("fail"));
+
+		invoker.invoke(new CalculatorImpl(), null);
+	}
+	
+	@Test(expected = ClassCastException.class)
+	public void propagatesClassCastExceptionThrownByMethod() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("cast", Object.class));
+		
+		invoker.invoke(new CalculatorImpl(), new Object[] { 1 });
+	}
+	
+	@Test
+	public void argumentTypeMismatchIsReportedAsIllegalArgumentException() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("add", int.class, Integer.class));
+		
+		assertThrowsIllegalArgumentException(() -> invoker.invoke(new CalculatorImpl(), new Object[] { "1", 2 }));
+		assertThrowsIllegalArgumentException(() -> invoker.invoke(new CalculatorImpl(), new Object[] { null, 2 }));
+		assertThrowsIllegalArgumentException(() -> invoker.invoke(new CalculatorImpl(), new Object[] { 1 }));
+		assertThrowsIllegalArgumentException(() -> invoker.invokeWrapped(new CalculatorImpl(), new Object[] { "1", 2 }));
+	}
+	
+	@Test
+	public void invokeWrappedWrapsExceptionThrownByMethodInInvocationTargetException() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("fail"));
+		
+		try {
+			invoker.invokeWrapped(new CalculatorImpl(), null);
+			fail("Expected InvocationTargetException");
+		} catch (InvocationTargetException e) {
+			assertSame(IllegalStateException.class, e.getCause().getClass());
+		}
+	}
+	
+	private static void assertThrowsIllegalArgumentException(Invocation invocation) throws Throwable {
+		try {
+			invocation.invoke();
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	private interface Invocation {
+		void invoke() throws Throwable;
+	}
+	
+	interface Calculator {
+		int zero();
+		int add(int a, Integer b);
+		int sum(int... values);
+		void clear();
+		void fail();
+		String cast(Object value);
+	}
+	
+	static class CalculatorImpl implements Calculator {
+		@Override
+		public int zero() {
+			return 0;
+		}
+		@Override
+		public int add(int a, Integer b) {
+			return a + b;
+		}
+		@Override
+		public int sum(int... values) {
+			int result = 0;
+			for (int value : values) {
+				result += value;
+			}
+			return result;
+		}
+		@Override
+		public void clear() {
+		}
+		@Override
+		public void fail() {
+			throw new IllegalStateException();
+		}
+		@Override
+		public String cast(Object value) {
+			return (String) value;
+		}
+		public static int negate(int value) {
+			return -value;
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ProxyClassTest {
+	
+	@Test
+	public void dispatchesInvocationsWithIndexOfInvokedMethod() throws Exception {
+		ProxyClass<Calculator> proxyClass = ProxyClass.generate(Calculator.class);
+		Method[] methods = proxyClass.getMethods();
+		AtomicReference<Method> invokedMethod = new AtomicReference<>();
+		Calculator calculator = proxyClass.newDispatchingInstance((proxy, methodIndex, args) -> {
+			invokedMethod.set(methods[methodIndex]);
+			return 3;
+		});
+		
+		assertEquals(3, calculator.add(1, 2));
+		assertEquals(Calculator.class.getMethod("add", int.class, int.class), invokedMethod.get());
+	}
+	
+	@Test
+	public void boxesArgumentsAndUnboxesReturnValues() throws Exception {
+		AtomicReference<Object[]> arguments = new AtomicReference<>();
+		Primitives primitives = ProxyClass.generate(Primitives.class).newInstance((InvocationHandler) (proxy, method, args) -> {
+			arguments.set(args);
+			switch (method.getName()) {
+			case "longValue": return 1L;
+			case "doubleValue": return 2.5D;
+			case "floatValue": return 3.5F;
+			case "booleanValue": return true;
+			case "charValue": return 'c';
+			case "names": return new String[] { "a" };
+			default: return null;
+			}
+		});
+		
+		primitives.accept(1, 2L, 3D, 4F, (byte) 5, (short) 6, 'c', true, "s");
+		assertArrayEquals(new Object[] { 1, 2L, 3D, 4F, (byte) 5, (short) 6, 'c', true, "s" }, arguments.get());
+		assertEquals(1L, primitives.longValue());
+		assertNull(arguments.get());
+		assertEquals(2.5D, primitives.doubleValue(), 0D);
+		assertEquals(3.5F, primitives.floatValue(), 0F);
+		assertTrue(primitives.booleanValue());
+		assertEquals('c', primitives.charValue());
+		assertArrayEquals(new String[] { "a" }, primitives.names());
+	}
+	
+	@Test
+	public void dispatchesObjectMethods() throws Exception {
+		Calculator calculator = ProxyClass.generate(Calculator.class).newInstance((InvocationHandler) (proxy, method, args) -> {
+			assertEquals(Object.class, method.getDeclaringClass());
+			switch (method.getName()) {
+			case "equals": return proxy == args[0];
+			case "hashCode": return 42;
+			default: return "calculator";
+			}
+		});
+		
+		assertEquals("calculator", calculator.toString());
+		assertEquals(42, calculator.hashCode());
+		assertTrue(calculator.equals(calculator));
+		assertFalse(calculator.equals(new Object()));
+	}
+	
+	@Test
+	public void dispatchesDefaultMethods() throws Exception {
+		Calculator calculator = ProxyClass.generate(Calculator.class).newInstance((InvocationHandler) (proxy, method, args) -> {
+			return method.getName().equals("twice") ? 4 : 0;
+		});
+		
+		assertEquals(4, calculator.twice(2));
+	}
+	
+	@Test(expected = IOException.class)
+	public void propagatesExceptionsThrownByDispatcher() throws Exception {
+		Calculator calculator = ProxyClass.generate(Calculator.class).newDispatchingInstance((proxy, methodIndex, args) -> {
+			throw new IOException();
+		});
+		
+		calculator.read();
+	}
+	
+	@Test
+	public void wrapsUndeclaredCheckedExceptionsThrownByDispatcher() throws Exception {
+		IOException exception = new IOException();
+		Calculator calculator = ProxyClass.generate(Calculator.class).newDispatchingInstance((proxy, methodIndex, args) -> {
+			throw exception;
+		});
+		
+		try {
+			calculator.add(1, 2);
+			fail("Expected UndeclaredThrowableException");
+		} catch (UndeclaredThrowableException e) {
+			assertSame(exception, e.getCause());
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void propagatesRuntimeExceptionsThrownByDispatcher() throws Exception {
+		Calculator calculator = ProxyClass.generate(Calculator.class).newDispatchingInstance((proxy, methodIndex, args) -> {
+			throw new IllegalStateException();
+		});
+		
+		calculator.add(1, 2);
+	}
+	
+	@Test
+	public void implementsAdditionalInterfaces() throws Exception {
+		ProxyClass<Calculator> proxyClass = ProxyClass.generate(Calculator.class, Named.class);
+		Calculator calculator = proxyClass.newInstance((InvocationHandler) (proxy, method, args) -> {
+			return method.getDeclaringClass() == Named.class ? "named" : 3;
+		});
+		
+		assertEquals(3, calculator.add(1, 2));
+		assertEquals("named", ((Named) calculator).name());
+		assertTrue(Arrays.asList(proxyClass.getMethods()).contains(Named.class.getMethod("name")));
+	}
+	
+	@Test
+	public void proxyClassIsGeneratedOncePerCombinationOfInterfaces() throws Exception {
+		assertSame(ProxyClass.forType(Calculator.class).get(), ProxyClass.forType(Calculator.class).get());
+		assertSame(ProxyClass.forType(Calculator.class, Named.class).get(), ProxyClass.forType(Calculator.class, Named.class).get());
+		assertNotSame(ProxyClass.forType(Calculator.class).get(), ProxyClass.forType(Calculator.class, Named.class).get());
+	}
+	
+	@Test
+	public void methodsIncludesObjectMethodsAndAllInterfaceMethods() throws Exception {
+		Method[] methods = ProxyClass.generate(Calculator.class).getMethods();
+		
+		assertTrue(Arrays.asList(methods).contains(Object.class.getMethod("toString")));
+		assertTrue(Arrays.asList(methods).contains(Calculator.class.getMethod("read")));
+		assertTrue(Arrays.asList(methods).contains(Calculator.class.getMethod("twice", int.class)));
+		assertEquals(6, methods.length);
+	}
+	
+	@Test
+	public void noProxyClassIsGeneratedForClasses() throws Exception {
+		assertNull(ProxyClass.generate(Object.class));
+		assertNull(ProxyClass.generate(Calculator.class, Object.class));
+		assertFalse(ProxyClass.forType(Object.class).isPresent());
+	}
+	
+	public interface Calculator {
+		int add(int a, int b);
+		void read() throws IOException;
+		default int twice(int a) {
+			return add(a, a);
+		}
+		String toString();
+	}
+	
+	public interface Named {
+		String name();
+	}
+	
+	interface Primitives {
+		void accept(int i, long l, double d, float f, byte b, short s, char c, boolean z, String str);
+		long longValue();
+		double doubleValue();
+		float floatValue();
+		boolean booleanValue();
+		char charValue();
+		String[] names();
+	}
+
+}
@@ -22,14 +22,26 @@ public class BoundProxyServiceBeanInstance<T> implements BoundServiceBeanInstanc
 
 	private T instance;
 	private GigaSpaceInstance gigaSpaceInstance;
+	private Runnable releaseAction;
 	
-	private BoundProxyServiceBeanInstance(T instance, GigaSpaceInstance gigaSpaceInstance) {
+	private BoundProxyServiceBeanInstance(T instance, GigaSpaceInstance gigaSpaceInstance, Runnable releaseAction) {
 		this.instance = instance;
 		this.gigaSpaceInstance = gigaSpaceInstance;
+		this.releaseAction = releaseAction;
 	}
 	
 	public static <T> BoundProxyServiceBeanInstance<T> create(T instance, GigaSpaceInstance gigaSpaceInstance) {
-		return new BoundProxyServiceBeanInstance<T>(instance, gigaSpaceInstance);
+		return create(instance, gigaSpaceInstance, () -> {});
+	}
+	
+	/**
+	 * @param instance
+	 * @param gigaSpaceInstance
+	 * @param releaseAction - invoked before the gigaSpaceInstance is released, for instance to release resources associated with the proxy 
+	 * @return
+	 */
+	public static <T> BoundProxyServiceBeanInstance<T> create(T instance, GigaSpaceInstance gigaSpaceInstance, Runnable releaseAction) {
+		return new BoundProxyServiceBeanInstance<T>(instance, gigaSpaceInstance, releaseAction);
 	}
 
 	@Override
@@ -39,6 +51,10 @@ public class BoundProxyServiceBeanInstance<T> implements BoundServiceBeanInstanc
 
 	@Override
 	public void release() {
-		this.gigaSpaceInstance.release();
+		try {
+			this.releaseAction.run();
+		} finally {
+			this.gigaSpaceInstance.release();
+		}
 	}
 }
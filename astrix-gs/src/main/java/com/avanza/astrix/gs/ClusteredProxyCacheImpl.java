@@ -158,6 +158,7 @@ public class ClusteredProxyCacheImpl implements AstrixConfigAware, ClusteredProx
 			try {
 				if (spaceTaskDispatcher == null) {
 					this.spaceTaskDispatcher = new SpaceTaskDispatcher(proxy, config, contextPropagation);
+					metricsExporter.exportSpaceTaskDispatcherMetrics(spaceTaskDispatcher);
 				}
 				return spaceTaskDispatcher;
 			} finally {
@@ -182,6 +183,7 @@ public class ClusteredProxyCacheImpl implements AstrixConfigAware, ClusteredProx
 		public void destroy() throws Exception {
 			log.info("Destroying clustered proxy against: {}", spaceUrl);
 			if (this.spaceTaskDispatcher != null) {
+				metricsExporter.unexportSpaceTaskDispatcherMetrics(spaceTaskDispatcher);
 				this.spaceTaskDispatcher.destroy();
 			}
 			this.urlSpaceConfigurer.close();
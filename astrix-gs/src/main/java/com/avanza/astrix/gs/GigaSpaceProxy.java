@@ -18,10 +18,13 @@ package com.avanza.astrix.gs;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.openspaces.core.GigaSpace;
 
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.MethodInvoker;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.gigaspaces.internal.client.cache.SpaceCacheException;
 /**
@@ -34,6 +37,7 @@ import com.gigaspaces.internal.client.cache.SpaceCacheException;
 public class GigaSpaceProxy implements InvocationHandler {
 
 	private final GigaSpace gigaSpace;
+	private final ConcurrentMap<Method, MethodInvoker> invokerByMethod = new ConcurrentHashMap<>();
 
 	public GigaSpaceProxy(GigaSpace gigaSpace) {
 		this.gigaSpace = Objects.requireNonNull(gigaSpace);
@@ -46,7 +50,7 @@ public class GigaSpaceProxy implements InvocationHandler {
 	@Override
 	public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
 		try {
-			return ReflectionUtil.invokeMethod(method, gigaSpace, args);
+			return invokerByMethod.computeIfAbsent(method, MethodInvoker::create).invoke(gigaSpace, args);
 		} catch (SpaceCacheException e) {
 			throw new ServiceUnavailableException("SpaceCacheNotAvailable", e);
 		}
@@ -19,6 +19,15 @@ public interface GigaspaceMetricsExporter {
 
 	void exportGigaspaceMetrics();
 
+	/**
+	 * Exports the metrics of a given SpaceTaskDispatcher, keyed by the name of the space it dispatches tasks to.
+	 */
+	default void exportSpaceTaskDispatcherMetrics(SpaceTaskDispatcher spaceTaskDispatcher) {
+	}
+
+	default void unexportSpaceTaskDispatcherMetrics(SpaceTaskDispatcher spaceTaskDispatcher) {
+	}
+
 	static GigaspaceMetricsExporter noExporter() {
 		return new GigaspaceMetricsExporter() {
 			@Override
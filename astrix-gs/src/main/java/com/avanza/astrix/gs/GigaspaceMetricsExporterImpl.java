@@ -17,6 +17,8 @@ package com.avanza.astrix.gs;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.avanza.astrix.beans.core.AstrixConfigAware;
@@ -25,11 +27,14 @@ import com.avanza.astrix.config.DynamicBooleanProperty;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.context.mbeans.MBeanExporter;
 import com.avanza.astrix.gs.metrics.GigaspaceMetrics;
+import com.avanza.astrix.gs.metrics.SpaceTaskDispatcherMetrics;
 
 final class GigaspaceMetricsExporterImpl implements AstrixConfigAware, GigaspaceMetricsExporter {
 	private static final String MBEAN_FOLDER = "Gigaspaces";
 	private static final String MBEAN_NAME = "Metrics";
+	private static final String DISPATCHER_MBEAN_FOLDER = "SpaceTaskDispatchers";
 	private final AtomicBoolean exported = new AtomicBoolean(false);
+	private final ConcurrentMap<String, SpaceTaskDispatcher> dispatcherBySpaceName = new ConcurrentHashMap<>();
 	private final MBeanExporter mBeanExporter;
 	private DynamicBooleanProperty exportGigaspaceMetrics;
 
@@ -48,14 +53,37 @@ final class GigaspaceMetricsExporterImpl implements AstrixConfigAware, Gigaspace
 		toggleMBean(exportGigaspaceMetrics.get());
 	}
 
+	@Override
+	public void exportSpaceTaskDispatcherMetrics(SpaceTaskDispatcher spaceTaskDispatcher) {
+		String spaceName = spaceTaskDispatcher.getSpaceName();
+		SpaceTaskDispatcher replaced = dispatcherBySpaceName.put(spaceName, spaceTaskDispatcher);
+		if (exported.get()) {
+			if (replaced != null) {
+				mBeanExporter.unregisterMBean(DISPATCHER_MBEAN_FOLDER, spaceName);
+			}
+			mBeanExporter.registerMBean(new SpaceTaskDispatcherMetrics(spaceTaskDispatcher), DISPATCHER_MBEAN_FOLDER, spaceName);
+		}
+	}
+
+	@Override
+	public void unexportSpaceTaskDispatcherMetrics(SpaceTaskDispatcher spaceTaskDispatcher) {
+		String spaceName = spaceTaskDispatcher.getSpaceName();
+		if (dispatcherBySpaceName.remove(spaceName, spaceTaskDispatcher) && exported.get()) {
+			mBeanExporter.unregisterMBean(DISPATCHER_MBEAN_FOLDER, spaceName);
+		}
+	}
+
 	private void toggleMBean(boolean enableMBean) {
 		if (enableMBean) {
 			if (exported.compareAndSet(false, true)) {
 				mBeanExporter.registerMBean(new GigaspaceMetrics(), MBEAN_FOLDER, MBEAN_NAME);
+				dispatcherBySpaceName.forEach((spaceName, dispatcher) -> 
+					mBeanExporter.registerMBean(new SpaceTaskDispatcherMetrics(dispatcher), DISPATCHER_MBEAN_FOLDER, spaceName));
 			}
 		} else {
 			if (exported.compareAndSet(true, false)) {
 				mBeanExporter.unregisterMBean(MBEAN_FOLDER, MBEAN_NAME);
+				dispatcherBySpaceName.keySet().forEach(spaceName -> mBeanExporter.unregisterMBean(DISPATCHER_MBEAN_FOLDER, spaceName));
 			}
 		}
 	}
@@ -16,12 +16,19 @@
 package com.avanza.astrix.gs;
 
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
 import org.openspaces.core.GigaSpace;
@@ -57,13 +64,32 @@ public final class SpaceTaskDispatcher {
 	 * resources are available to process the request. In order to ensure a non-blocking programming model
 	 * we associate each clustered proxy with a dedicated thread pool to submit task executions, which ensures
 	 * that a service invocation will never block, see com.avanza.astrix.gs.remoting.GsRemotingTransport
+	 * 
+	 * In VIRTUAL_THREAD mode each task is submitted on its own virtual thread instead, optionally 
+	 * limited by a semaphore. Virtual threads are created reflectively since they are not available in 
+	 * the java version targeted by Astrix.
+	 * 
+	 * The number of tasks waiting for a thread (or permit) is bounded in both modes. Tasks dispatched when 
+	 * the queue is full fail fast with a ServiceUnavailableException, rather than piling up in memory
+	 * while the space is unavailable.
 	 */
 	
 	private static final Logger log = LoggerFactory.getLogger(SpaceTaskDispatcher.class);
 	private final GigaSpace gigaSpace;
 	private final ContextPropagation contextPropagation;
-	private final ThreadPoolExecutor executorService;
+	private final ExecutorService executorService;
+	private final SpaceTaskDispatcherMode executionMode;
+	private final Semaphore concurrencyLimit;
 	private final DynamicBooleanProperty propagateAsyncContexts;
+	private final DynamicIntProperty maxQueueSize;
+	private final AtomicInteger queueSize = new AtomicInteger();
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final LongAdder rejectedTaskCount = new LongAdder();
+	private final LongAdder dispatchedTaskCount = new LongAdder();
+	private final LongAdder totalQueueWaitNanos = new LongAdder();
+	private final WindowedMax maxQueueWaitNanos = new WindowedMax(1, TimeUnit.MINUTES);
+	private final LongAdder totalSubmitNanos = new LongAdder();
+	private final WindowedMax maxSubmitNanos = new WindowedMax(1, TimeUnit.MINUTES);
 
 	/**
 	 * @deprecated please use {@link #SpaceTaskDispatcher(GigaSpace, DynamicConfig, ContextPropagation)}
@@ -74,6 +100,13 @@ public final class SpaceTaskDispatcher {
 	}
 
 	public SpaceTaskDispatcher(GigaSpace gigaSpace, DynamicConfig config, ContextPropagation contextPropagation) {
+		this(gigaSpace, config, contextPropagation, SpaceTaskDispatcher::newVirtualThreadPerTaskExecutor);
+	}
+	
+	/**
+	 * @param virtualThreadExecutorFactory creates the executor used in VIRTUAL_THREAD mode, or returns null if virtual threads are not supported
+	 */
+	SpaceTaskDispatcher(GigaSpace gigaSpace, DynamicConfig config, ContextPropagation contextPropagation, Supplier<ExecutorService> virtualThreadExecutorFactory) {
 		this.gigaSpace = gigaSpace;
 		this.contextPropagation = Objects.requireNonNull(contextPropagation);
 		/*
@@ -81,26 +114,57 @@ public final class SpaceTaskDispatcher {
 		 * 	(1) Improve configuration mechanism used to configure thread pool. 
 		 */
 		String spaceInstanceName = gigaSpace.getName();
-		DynamicIntProperty poolSize = config.getIntProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.poolsize", 10);
-		this.executorService = new ThreadPoolExecutor(poolSize.get(), 
+		String configPrefix = "astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.";
+		SpaceTaskDispatcherMode requestedMode = SpaceTaskDispatcherMode.valueOf(
+				config.getStringProperty(configPrefix + "executionMode", SpaceTaskDispatcherMode.THREAD_POOL.name()).get());
+		ExecutorService virtualThreadExecutor = requestedMode == SpaceTaskDispatcherMode.VIRTUAL_THREAD ? virtualThreadExecutorFactory.get() : null;
+		if (virtualThreadExecutor != null) {
+			int maxConcurrency = config.getIntProperty(configPrefix + "maxConcurrency", 0).get();
+			this.executionMode = SpaceTaskDispatcherMode.VIRTUAL_THREAD;
+			this.executorService = virtualThreadExecutor;
+			this.concurrencyLimit = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+		} else {
+			if (requestedMode == SpaceTaskDispatcherMode.VIRTUAL_THREAD) {
+				log.warn("Virtual threads not supported by jvm, using {} for SpaceTaskDispatcher. space={}", SpaceTaskDispatcherMode.THREAD_POOL, spaceInstanceName);
+			}
+			this.executionMode = SpaceTaskDispatcherMode.THREAD_POOL;
+			this.executorService = createThreadPool(config.getIntProperty(configPrefix + "poolsize", 10), spaceInstanceName);
+			this.concurrencyLimit = null;
+		}
+		this.maxQueueSize = config.getIntProperty(configPrefix + "maxQueueSize", 10_000);
+		log.info("Using executionMode={} for SpaceTaskDispatcher. space={}", executionMode, spaceInstanceName);
+		this.propagateAsyncContexts = config.getBooleanProperty(
+				"com.avanza.astrix.gs.SpaceTaskDispatcher.propagateAsyncContexts",
+				true
+		);
+	}
+
+
+	private ThreadPoolExecutor createThreadPool(DynamicIntProperty poolSize, String spaceInstanceName) {
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize.get(), 
 											 poolSize.get(), 
 											 0, 
 											 TimeUnit.SECONDS,
-											 new LinkedBlockingQueue<Runnable>(),
+											 new LinkedBlockingQueue<Runnable>(), // Queue size is bounded by dispatch
 											 new NamedThreadFactory(String.format("SpaceTaskDispatcher[%s]", spaceInstanceName)));
 		poolSize.addListener(newValue -> {
 			log.info(String.format("Changing pool-size for SpaceTaskDispatcher. space=%s newSize=%s, oldSize=%s",
 									SpaceTaskDispatcher.this.gigaSpace.getName(), 
-									newValue, executorService.getMaximumPoolSize()));
-			executorService.setCorePoolSize(newValue);
-			executorService.setMaximumPoolSize(newValue);
+									newValue, threadPool.getMaximumPoolSize()));
+			threadPool.setCorePoolSize(newValue);
+			threadPool.setMaximumPoolSize(newValue);
 		});
-		this.propagateAsyncContexts = config.getBooleanProperty(
-				"com.avanza.astrix.gs.SpaceTaskDispatcher.propagateAsyncContexts",
-				true
-		);
+		return threadPool;
+	}
+	
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factoryMethod.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
 	}
-
 
 	public IJSpace getSpace() {
 		return gigaSpace.getSpace();
@@ -125,7 +189,7 @@ public final class SpaceTaskDispatcher {
 		return Observable.unsafeCreate(subscriber -> usingErrorReporter(subscriber, serviceUnavailable()).accept(() -> {
 			Runnable command = contextPropagation.wrap(() -> submitRoutedTaskExecution(subscriber, task, routingKey));
 			// Use ExecutorService to ensure non-blocking programming model when subscribing to remote task invocation
-			executorService.execute(command);
+			dispatch(command);
 		}));
 	}
 
@@ -153,7 +217,7 @@ public final class SpaceTaskDispatcher {
 		return Observable.unsafeCreate(t1 -> {
 			Runnable command = contextPropagation.wrap(() -> submitDistributedTaskExecution(distributedTask, t1));
 			usingErrorReporter(t1, serviceUnavailable()).accept(() -> {
-				executorService.execute(command);
+				dispatch(command);
 			});
 		});
 	}
@@ -171,6 +235,52 @@ public final class SpaceTaskDispatcher {
 		});
 	}
 	
+	private void dispatch(Runnable command) {
+		if (queueSize.incrementAndGet() > maxQueueSize.get()) {
+			queueSize.decrementAndGet();
+			rejectedTaskCount.increment();
+			throw new RejectedExecutionException("SpaceTaskDispatcher queue full. space=" + gigaSpace.getName() + " maxQueueSize=" + maxQueueSize.get());
+		}
+		long submittedNanos = System.nanoTime();
+		try {
+			executorService.execute(() -> {
+				if (concurrencyLimit == null) {
+					submit(command, submittedNanos);
+					return;
+				}
+				concurrencyLimit.acquireUninterruptibly();
+				try {
+					submit(command, submittedNanos);
+				} finally {
+					concurrencyLimit.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queueSize.decrementAndGet();
+			rejectedTaskCount.increment();
+			throw e;
+		}
+	}
+
+	private void submit(Runnable command, long submittedNanos) {
+		long startNanos = System.nanoTime();
+		queueSize.decrementAndGet();
+		activeCount.incrementAndGet();
+		recordTime(startNanos - submittedNanos, totalQueueWaitNanos, maxQueueWaitNanos);
+		dispatchedTaskCount.increment();
+		try {
+			command.run();
+		} finally {
+			activeCount.decrementAndGet();
+			recordTime(System.nanoTime() - startNanos, totalSubmitNanos, maxSubmitNanos);
+		}
+	}
+
+	private static void recordTime(long nanos, LongAdder total, WindowedMax max) {
+		total.add(nanos);
+		max.record(nanos);
+	}
+	
 	private Consumer<Runnable> usingErrorReporter(Subscriber<?> subscriber, UnaryOperator<Exception> exceptionTranslator) {
 		return command -> {
 			try {
@@ -201,4 +311,69 @@ public final class SpaceTaskDispatcher {
 	public String getSpaceName() {
 		return gigaSpace.getName();
 	}
+	
+	public SpaceTaskDispatcherMode getExecutionMode() {
+		return executionMode;
+	}
+	
+	public ContextPropagation getContextPropagation() {
+		return contextPropagation;
+	}
+	
+	/**
+	 * @return the number of tasks that have started to execute, i.e. that are no longer waiting for a thread (or permit)
+	 */
+	public long getDispatchedTaskCount() {
+		return dispatchedTaskCount.sum();
+	}
+	
+	/**
+	 * @return the total time dispatched tasks have waited for a thread (or permit) before being submitted to the space
+	 */
+	public long getTotalQueueWaitNanos() {
+		return totalQueueWaitNanos.sum();
+	}
+	
+	/**
+	 * @return the longest time a task has waited for a thread (or permit) during the last one to two minutes
+	 */
+	public long getMaxQueueWaitNanos() {
+		return maxQueueWaitNanos.get();
+	}
+	
+	/**
+	 * @return the total time spent submitting dispatched tasks to the space, i.e. in GigaSpace.execute
+	 */
+	public long getTotalSubmitNanos() {
+		return totalSubmitNanos.sum();
+	}
+	
+	/**
+	 * @return the longest time spent submitting a task to the space during the last one to two minutes
+	 */
+	public long getMaxSubmitNanos() {
+		return maxSubmitNanos.get();
+	}
+	
+	/**
+	 * @return the number of tasks waiting for a thread (or permit)
+	 */
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+	
+	public int getMaxQueueSize() {
+		return maxQueueSize.get();
+	}
+	
+	/**
+	 * @return the number of tasks currently being submitted to the space
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+	
+	public long getRejectedTaskCount() {
+		return rejectedTaskCount.sum();
+	}
 }
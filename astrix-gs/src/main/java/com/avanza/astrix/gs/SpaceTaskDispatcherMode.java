@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+/**
+ * Defines what thread the {@link SpaceTaskDispatcher} submits tasks to the space on. <p>
+ * 
+ * The mode is configured per space using the setting 
+ * "astrix.beans.gigaspace.[space name].spaceTaskDispatcher.executionMode".
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public enum SpaceTaskDispatcherMode {
+	/**
+	 * Submits tasks on a fixed size thread pool, see "astrix.beans.gigaspace.[space name].spaceTaskDispatcher.poolsize".
+	 */
+	THREAD_POOL,
+	/**
+	 * Submits each task on a new virtual thread. The number of concurrently submitted tasks might be limited 
+	 * using "astrix.beans.gigaspace.[space name].spaceTaskDispatcher.maxConcurrency". Falls back to 
+	 * {@link #THREAD_POOL} when virtual threads are not supported by the jvm.
+	 */
+	VIRTUAL_THREAD;
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+/**
+ * Keeps track of the maximum value recorded during the current and the previous window, 
+ * so that a single slow outlier only affects the reported max for between one and two windows.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class WindowedMax {
+	
+	private final long windowNanos;
+	private final LongSupplier nanoClock;
+	private final AtomicLong currentMax = new AtomicLong();
+	private final AtomicLong previousMax = new AtomicLong();
+	private volatile long windowStartNanos;
+	
+	WindowedMax(long window, TimeUnit unit) {
+		this(window, unit, System::nanoTime);
+	}
+	
+	WindowedMax(long window, TimeUnit unit, LongSupplier nanoClock) {
+		this.windowNanos = unit.toNanos(window);
+		this.nanoClock = nanoClock;
+		this.windowStartNanos = nanoClock.getAsLong();
+	}
+	
+	void record(long value) {
+		rollWindow();
+		currentMax.accumulateAndGet(value, Math::max);
+	}
+	
+	/**
+	 * @return the max value recorded during the current and the previous window
+	 */
+	long get() {
+		rollWindow();
+		return Math.max(currentMax.get(), previousMax.get());
+	}
+	
+	private void rollWindow() {
+		long windowStart = this.windowStartNanos;
+		long now = nanoClock.getAsLong();
+		if (now - windowStart < windowNanos) {
+			return;
+		}
+		synchronized (this) {
+			if (windowStart != this.windowStartNanos) {
+				// Already rolled by another thread
+				return;
+			}
+			long windowMax = currentMax.getAndSet(0);
+			// Values recorded more than one window ago are discarded
+			previousMax.set(now - windowStart < 2 * windowNanos ? windowMax : 0);
+			this.windowStartNanos = now;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import com.avanza.astrix.gs.SpaceTaskDispatcher;
+
+public class SpaceTaskDispatcherMetrics implements SpaceTaskDispatcherMetricsMBean {
+
+	private final SpaceTaskDispatcher spaceTaskDispatcher;
+
+	public SpaceTaskDispatcherMetrics(SpaceTaskDispatcher spaceTaskDispatcher) {
+		this.spaceTaskDispatcher = requireNonNull(spaceTaskDispatcher);
+	}
+
+	@Override
+	public String getExecutionMode() {
+		return spaceTaskDispatcher.getExecutionMode().name();
+	}
+
+	@Override
+	public int getQueueSize() {
+		return spaceTaskDispatcher.getQueueSize();
+	}
+
+	@Override
+	public int getMaxQueueSize() {
+		return spaceTaskDispatcher.getMaxQueueSize();
+	}
+
+	@Override
+	public int getActiveCount() {
+		return spaceTaskDispatcher.getActiveCount();
+	}
+
+	@Override
+	public long getDispatchedTaskCount() {
+		return spaceTaskDispatcher.getDispatchedTaskCount();
+	}
+
+	@Override
+	public long getRejectedTaskCount() {
+		return spaceTaskDispatcher.getRejectedTaskCount();
+	}
+
+	@Override
+	public long getAvgQueueWaitMicros() {
+		return average(spaceTaskDispatcher.getTotalQueueWaitNanos());
+	}
+
+	@Override
+	public long getMaxQueueWaitMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(spaceTaskDispatcher.getMaxQueueWaitNanos());
+	}
+
+	@Override
+	public long getAvgSubmitMicros() {
+		return average(spaceTaskDispatcher.getTotalSubmitNanos());
+	}
+
+	@Override
+	public long getMaxSubmitMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(spaceTaskDispatcher.getMaxSubmitNanos());
+	}
+
+	private long average(long totalNanos) {
+		long count = spaceTaskDispatcher.getDispatchedTaskCount();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / count);
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.spring.AstrixSpringContext;
+import org.openspaces.core.executor.AutowireTask;
+import org.openspaces.core.executor.Task;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Executes a batch of service invocations, all routed to the same partition, in a single task. <p>
+ * 
+ * The i:th response in the returned list corresponds to the i:th request in the batch. <p>
+ * 
+ * The invocations are executed one after another on the thread executing the task, and no response is
+ * returned until the last invocation completes. Hence every invocation in a batch sees the latency of
+ * the slowest invocation in the batch (head-of-line blocking), which is why batching is best suited for 
+ * short, uniform invocations. Note that this also applies to reactive service methods, since 
+ * {@link AstrixServiceActivator#invokeService} waits for the response of each invocation.
+ * 
+ * @author Elias Lindholm (elilin)
+ */
+@AutowireTask
+public class AstrixServiceInvocationBatchTask implements Task<ArrayList<AstrixServiceInvocationResponse>> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Autowired
+    public transient AstrixSpringContext astrixSpringContext;
+    private final ArrayList<AstrixServiceInvocationRequest> invocationRequests;
+
+    public AstrixServiceInvocationBatchTask(List<AstrixServiceInvocationRequest> invocationRequests) {
+        this.invocationRequests = new ArrayList<>(invocationRequests);
+    }
+
+    @Override
+    public ArrayList<AstrixServiceInvocationResponse> execute() throws Exception {
+        AstrixServiceActivator serviceActivator = Objects
+                .requireNonNull(astrixSpringContext, "astrixSpringContext not set!")
+                .getInstance(AstrixServiceActivator.class);
+        Objects.requireNonNull(serviceActivator, "serviceActivator not found!");
+        ArrayList<AstrixServiceInvocationResponse> responses = new ArrayList<>(invocationRequests.size());
+        for (AstrixServiceInvocationRequest invocationRequest : invocationRequests) {
+            responses.add(serviceActivator.invokeService(invocationRequest));
+        }
+        return responses;
+    }
+
+    List<AstrixServiceInvocationRequest> getInvocationRequests() {
+        return invocationRequests;
+    }
+
+}
@@ -51,4 +51,8 @@ public class AstrixServiceInvocationTask implements Task<AstrixServiceInvocation
                 .invokeService(invocationRequest);
     }
 
+    AstrixServiceInvocationRequest getInvocationRequest() {
+        return invocationRequest;
+    }
+
 }
@@ -19,6 +19,8 @@ import java.util.Objects;
 
 import org.openspaces.core.GigaSpace;
 
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.beans.core.AstrixConfigAware;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
@@ -26,6 +28,8 @@ import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.beans.tracing.AstrixTraceProvider;
 import com.avanza.astrix.beans.tracing.DefaultTraceProvider;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.gs.BoundProxyServiceBeanInstance;
 import com.avanza.astrix.gs.ClusteredProxyCache;
@@ -34,6 +38,7 @@ import com.avanza.astrix.gs.GsBinder;
 import com.avanza.astrix.modules.AstrixInject;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
 import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingSettings;
 import com.avanza.astrix.remoting.client.RemotingTransport;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 import com.avanza.astrix.spring.AstrixSpringContext;
@@ -45,7 +50,7 @@ import com.avanza.astrix.versioning.core.ObjectSerializerFactory;
  * @author Elias Lindholm
  *
  */
-public class GsRemotingComponent implements ServiceComponent {
+public class GsRemotingComponent implements ServiceComponent, AstrixConfigAware {
 
 	private final GsBinder gsBinder;
 	private final AstrixSpringContext astrixSpringContext;
@@ -54,9 +59,11 @@ public class GsRemotingComponent implements ServiceComponent {
 	private final ClusteredProxyCache proxyCache;
 	private final ReactiveTypeConverter reactiveTypeConverter;
 	private final AstrixTraceProvider astrixTraceProvider;
+	private final AstrixConfig astrixConfig;
+	private DynamicConfig config = DynamicConfig.create(new MapConfigSource());
 
 	/**
-	 * @deprecated please use {@link #GsRemotingComponent(GsBinder, AstrixSpringContext, AstrixServiceActivator, ObjectSerializerFactory, ClusteredProxyCache, ReactiveTypeConverter, AstrixTraceProvider)}
+	 * @deprecated please use {@link #GsRemotingComponent(GsBinder, AstrixSpringContext, AstrixServiceActivator, ObjectSerializerFactory, ClusteredProxyCache, ReactiveTypeConverter, AstrixTraceProvider, AstrixConfig)}
 	 */
 	@Deprecated
 	public GsRemotingComponent(GsBinder gsBinder, AstrixSpringContext astrixSpringContext,
@@ -69,11 +76,15 @@ public class GsRemotingComponent implements ServiceComponent {
 				objectSerializerFactory,
 				proxyCache,
 				reactiveTypeConverter,
-				new DefaultTraceProvider()
+				new DefaultTraceProvider(),
+				null
 		);
 	}
 
-	@AstrixInject
+	/**
+	 * @deprecated please use {@link #GsRemotingComponent(GsBinder, AstrixSpringContext, AstrixServiceActivator, ObjectSerializerFactory, ClusteredProxyCache, ReactiveTypeConverter, AstrixTraceProvider, AstrixConfig)}
+	 */
+	@Deprecated
 	public GsRemotingComponent(
 			GsBinder gsBinder,
 			AstrixSpringContext astrixSpringContext,
@@ -83,6 +94,30 @@ public class GsRemotingComponent implements ServiceComponent {
 			ReactiveTypeConverter reactiveTypeConverter,
 			AstrixTraceProvider astrixTraceProvider
 	) {
+		this(
+				gsBinder,
+				astrixSpringContext,
+				serviceActivator,
+				objectSerializerFactory,
+				proxyCache,
+				reactiveTypeConverter,
+				astrixTraceProvider,
+				null
+		);
+	}
+
+	@AstrixInject
+	public GsRemotingComponent(
+			GsBinder gsBinder,
+			AstrixSpringContext astrixSpringContext,
+			AstrixServiceActivator serviceActivator,
+			ObjectSerializerFactory objectSerializerFactory,
+			ClusteredProxyCache proxyCache,
+			ReactiveTypeConverter reactiveTypeConverter,
+			AstrixTraceProvider astrixTraceProvider,
+			AstrixConfig astrixConfig
+	) {
+		this.astrixConfig = astrixConfig;
 		this.gsBinder = gsBinder;
 		this.astrixSpringContext = astrixSpringContext;
 		this.serviceActivator = serviceActivator;
@@ -97,7 +132,7 @@ public class GsRemotingComponent implements ServiceComponent {
 		AstrixObjectSerializer objectSerializer = objectSerializerFactory.create(serviceDefinition.getObjectSerializerDefinition());
 		
 		GigaSpaceInstance proxyInstance = proxyCache.getProxy(serviceProperties);
-		GsRemotingTransport gsRemotingTransport = new GsRemotingTransport(proxyInstance.getSpaceTaskDispatcher());
+		GsRemotingTransport gsRemotingTransport = new GsRemotingTransport(proxyInstance.getSpaceTaskDispatcher(), config);
 		RemotingTransport remotingTransport = RemotingTransport.create(gsRemotingTransport);
 		T proxy = RemotingProxy.create(
 				serviceDefinition.getServiceType(),
@@ -106,9 +141,22 @@ public class GsRemotingComponent implements ServiceComponent {
 				objectSerializer,
 				new GsRoutingStrategy(),
 				reactiveTypeConverter,
-				astrixTraceProvider
+				astrixTraceProvider,
+				getRemotingSettings(serviceDefinition)
 		);
-		return BoundProxyServiceBeanInstance.create(proxy, proxyInstance);
+		return BoundProxyServiceBeanInstance.create(proxy, proxyInstance, gsRemotingTransport::destroy);
+	}
+	
+	private RemotingSettings getRemotingSettings(ServiceDefinition<?> serviceDefinition) {
+		if (astrixConfig == null) {
+			return new RemotingSettings();
+		}
+		return RemotingSettings.create(astrixConfig.getBeanConfiguration(serviceDefinition.getBeanKey()));
+	}
+	
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.config = config;
 	}
 	
 	@Override
@@ -15,10 +15,14 @@
  */
 package com.avanza.astrix.gs.remoting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.gs.SpaceTaskDispatcher;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
@@ -33,19 +37,47 @@ import rx.functions.Func1;
 /**
  * RemotingTransport implementation based on GigaSpaces task execution. <p> 
  * 
+ * Routed invocations might be coalesced into one task per partition, see {@link RoutedRequestBatcher}. 
+ * Batching is disabled by default and enabled per space by setting 
+ * astrix.beans.gigaspace.[spaceName].remoting.batchWindowMicros to a positive value. Note that
+ * the servers must be running a version of Astrix that contains {@link AstrixServiceInvocationBatchTask}
+ * before batching is enabled. <p>
+ * 
+ * Batching trades latency for throughput. Besides waiting up to batchWindowMicros for the batch to be
+ * submitted, an invocation is not completed until all invocations in its batch have been executed, since
+ * the server executes them one after another (including reactive service methods). Hence one slow 
+ * invocation delays all invocations in the same batch. Keep astrix.beans.gigaspace.[spaceName].remoting.maxBatchSize
+ * low for services with slow or uneven response times. <p>
+ * 
+ * A broadcasted invocation is sent as a DistributedTask, unless the responses are reduced incrementally. In 
+ * that case one routed task is sent to each partition, which allows each response to be reduced as soon as 
+ * it is received. <p>
+ * 
  * @author Elias Lindholm
  *
  */
 public class GsRemotingTransport implements RemotingTransportSpi {
 
 	private final SpaceTaskDispatcher spaceTaskDispatcher;
+	private final RoutedRequestBatcher batcher;
 	
 	public GsRemotingTransport(SpaceTaskDispatcher spaceTaskDispatcher) {
+		this(spaceTaskDispatcher, DynamicConfig.create(new MapConfigSource()));
+	}
+
+	public GsRemotingTransport(SpaceTaskDispatcher spaceTaskDispatcher, DynamicConfig config) {
 		this.spaceTaskDispatcher = spaceTaskDispatcher;
+		String configPrefix = "astrix.beans.gigaspace." + spaceTaskDispatcher.getSpaceName() + ".remoting.";
+		this.batcher = new RoutedRequestBatcher(spaceTaskDispatcher, 
+												config.getLongProperty(configPrefix + "batchWindowMicros", 0), 
+												config.getIntProperty(configPrefix + "maxBatchSize", 64));
 	}
 	
 	@Override
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
+		if (batcher.isEnabled()) {
+			return batcher.submit(request, routingKey);
+		}
 		return observeRoutedRequest(request, routingKey);
 	}
 
@@ -57,30 +89,69 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return observeRoutedReqeuests(requests);
 	}
 	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequestsIncrementally(Collection<RoutedServiceInvocationRequest> requests) {
+		return observeRoutedRequestsIncrementally(requests);
+	}
+	
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(final AstrixServiceInvocationRequest request) {
 		return observeBroadcastRequest(request);
 	}
 	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		return observeBroadcastRequestIncrementally(request);
+	}
+	
 	private Observable<AstrixServiceInvocationResponse> observeRoutedRequest(AstrixServiceInvocationRequest request,
 																			  RoutingKey routingKey) {
 		return spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request), routingKey);
 	}
 	
 	private Observable<List<AstrixServiceInvocationResponse>> observeRoutedReqeuests(Collection<RoutedServiceInvocationRequest> requests) {
+		return observeRoutedRequestsIncrementally(requests).toList();
+	}
+	
+	private Observable<AstrixServiceInvocationResponse> observeRoutedRequestsIncrementally(Collection<RoutedServiceInvocationRequest> requests) {
+		boolean batched = batcher.isEnabled();
 		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
 		for (RoutedServiceInvocationRequest request : requests) {
-			result = result.mergeWith(spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request.getRequest()), request.getRoutingkey()));
+			result = result.mergeWith(batched ? batcher.submit(request.getRequest(), request.getRoutingkey())
+											  : observeRoutedRequest(request.getRequest(), request.getRoutingkey()));
 		}
-		return result.toList();
+		return result;
 	}
 	
 	private Observable<List<AstrixServiceInvocationResponse>> observeBroadcastRequest(AstrixServiceInvocationRequest request) {
 		Observable<List<AsyncResult<AstrixServiceInvocationResponse>>> responses = spaceTaskDispatcher.observe(new AstrixDistributedServiceInvocationTask(request));
 		Func1<List<AsyncResult<AstrixServiceInvocationResponse>>, Observable<AstrixServiceInvocationResponse>> listToObservable = 
 				GsUtil.asyncResultListToObservable();
-		Observable<AstrixServiceInvocationResponse> responseStream = responses.flatMap(listToObservable);
-		return responseStream.toList();
+		return responses.flatMap(listToObservable).toList();
+	}
+	
+	/**
+	 * A DistributedTask only completes when all partitions have responded, hence the request is sent as one
+	 * routed task to each partition. The routing key of partition i is i, which GigaSpaces routes to partition
+	 * i % partitionCount.
+	 */
+	private Observable<AstrixServiceInvocationResponse> observeBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		int partitionCount = partitionCount();
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(partitionCount);
+		for (int partition = 0; partition < partitionCount; partition++) {
+			responses.add(submitPartitionRequest(request, partition));
+		}
+		return Observable.merge(responses);
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+		return observeRoutedRequest(request, RoutingKey.create(partition));
+	}
+	
+	@Override
+	public boolean supportsPartitionRequests() {
+		return true;
 	}
 	
 	@Override
@@ -88,4 +159,19 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return this.spaceTaskDispatcher.partitionCount();
 	}
 	
+	/**
+	 * Releases the resources used to batch routed invocations. 
+	 */
+	public void destroy() {
+		batcher.destroy();
+	}
+	
+	/**
+	 * GigaSpaces routes a task to partition routingKey.hashCode() % partitionCount, which can't be changed.
+	 */
+	@Override
+	public Partitioner partitioner() {
+		return new Partitioner.Modulo();
+	}
+	
 }
\ No newline at end of file
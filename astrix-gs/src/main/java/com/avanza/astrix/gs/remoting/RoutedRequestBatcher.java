@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import com.avanza.astrix.beans.async.ContextPropagation;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.gs.SpaceTaskDispatcher;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+/**
+ * Coalesces concurrent routed invocations targeting the same partition into a single 
+ * {@link AstrixServiceInvocationBatchTask}. <p>
+ * 
+ * An invocation waits at most batchWindowMicros for other invocations to the same partition before
+ * its batch is submitted. A batch is submitted immediately when it reaches maxBatchSize. A batch
+ * containing a single invocation is submitted as an ordinary {@link AstrixServiceInvocationTask}. <p>
+ * 
+ * GigaSpaces routes a task to partition routingKey.hashCode() % partitionCount, and the hash of a 
+ * {@link RoutingKey} is never negative. Hence a batch is routed using its partition id as routing key. <p>
+ * 
+ * A batch is submitted from the thread that fills it, or from the flush timer. Therefore the context
+ * (see {@link ContextPropagation}) is captured for each invocation when it is submitted, and the response 
+ * is delivered within the context of the invoking thread. An invocation that is unsubscribed before 
+ * its batch is submitted is removed from the batch. Invocations still waiting for their batch to be 
+ * submitted when the batcher is destroyed fail with a {@link ServiceUnavailableException}. <p>
+ * 
+ * Note that the invocations in a batch are executed one after another on the server, see
+ * {@link AstrixServiceInvocationBatchTask}. <p>
+ * 
+ * @author Elias Lindholm
+ *
+ */
+final class RoutedRequestBatcher {
+
+	private final SpaceTaskDispatcher spaceTaskDispatcher;
+	private final DynamicLongProperty batchWindowMicros;
+	private final DynamicIntProperty maxBatchSize;
+	private final ConcurrentMap<Integer, PartitionBatch> batchByPartition = new ConcurrentHashMap<>();
+	private final Scheduler.Worker flushTimer = Schedulers.computation().createWorker();
+	private final IntSupplier spacePartitionCount;
+	private volatile int partitionCount;
+	private volatile boolean destroyed;
+
+	RoutedRequestBatcher(SpaceTaskDispatcher spaceTaskDispatcher, DynamicLongProperty batchWindowMicros, DynamicIntProperty maxBatchSize) {
+		this(spaceTaskDispatcher, batchWindowMicros, maxBatchSize, spaceTaskDispatcher::partitionCount);
+	}
+	
+	RoutedRequestBatcher(SpaceTaskDispatcher spaceTaskDispatcher, DynamicLongProperty batchWindowMicros, DynamicIntProperty maxBatchSize, IntSupplier spacePartitionCount) {
+		this.spaceTaskDispatcher = spaceTaskDispatcher;
+		this.batchWindowMicros = batchWindowMicros;
+		this.maxBatchSize = maxBatchSize;
+		this.spacePartitionCount = spacePartitionCount;
+	}
+
+	boolean isEnabled() {
+		return batchWindowMicros.get() > 0;
+	}
+
+	Observable<AstrixServiceInvocationResponse> submit(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return Observable.unsafeCreate(subscriber -> {
+			int partition;
+			try {
+				partition = routingKey.hashCode() % partitionCount();
+			} catch (RuntimeException e) {
+				subscriber.onError(e);
+				return;
+			}
+			PendingInvocation invocation = new PendingInvocation(request, routingKey, subscriber, spaceTaskDispatcher.getContextPropagation());
+			PartitionBatch batch = batchByPartition.computeIfAbsent(partition, PartitionBatch::new);
+			batch.add(invocation);
+			subscriber.add(Subscriptions.create(() -> batch.remove(invocation)));
+		});
+	}
+	
+	void destroy() {
+		destroyed = true;
+		flushTimer.unsubscribe();
+		for (PartitionBatch batch : batchByPartition.values()) {
+			batch.failPending();
+		}
+	}
+
+	private int partitionCount() {
+		int result = partitionCount;
+		if (result == 0) {
+			// A non-partitioned space reports zero partitions
+			result = Math.max(1, spacePartitionCount.getAsInt());
+			partitionCount = result;
+		}
+		return result;
+	}
+
+	private void submit(int partition, List<PendingInvocation> batch) {
+		if (batch.size() == 1) {
+			PendingInvocation invocation = batch.get(0);
+			invocation.inCallerContext(() -> spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(invocation.request), invocation.routingKey)
+																.unsafeSubscribe(invocation.subscriber));
+			return;
+		}
+		List<AstrixServiceInvocationRequest> requests = new ArrayList<>(batch.size());
+		for (PendingInvocation invocation : batch) {
+			requests.add(invocation.request);
+		}
+		spaceTaskDispatcher.observe(new AstrixServiceInvocationBatchTask(requests), RoutingKey.create(partition)).subscribe(responses -> {
+			if (responses.size() != batch.size()) {
+				IllegalStateException error = new IllegalStateException(
+						String.format("Expected %s responses in batch, got %s. partition=%s", batch.size(), responses.size(), partition));
+				batch.forEach(invocation -> invocation.fail(error));
+				return;
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).complete(responses.get(i));
+			}
+		}, error -> batch.forEach(invocation -> invocation.fail(error)));
+	}
+
+	private static ServiceUnavailableException newDestroyedException() {
+		return new ServiceUnavailableException("RoutedRequestBatcher destroyed before batch was submitted");
+	}
+
+	private final class PartitionBatch {
+
+		private final int partition;
+		private List<PendingInvocation> pending = new ArrayList<>();
+		private long generation;
+
+		PartitionBatch(int partition) {
+			this.partition = partition;
+		}
+
+		void add(PendingInvocation invocation) {
+			List<PendingInvocation> fullBatch = null;
+			long scheduledGeneration = -1;
+			boolean rejected = false;
+			synchronized (this) {
+				// Checked while holding the lock, hence the invocation is either rejected here or failed by destroy
+				if (destroyed) {
+					rejected = true;
+				} else {
+					pending.add(invocation);
+					if (pending.size() >= maxBatchSize.get()) {
+						fullBatch = drain();
+					} else if (pending.size() == 1) {
+						scheduledGeneration = generation;
+					}
+				}
+			}
+			if (rejected) {
+				invocation.fail(newDestroyedException());
+			} else if (fullBatch != null) {
+				submit(partition, fullBatch);
+			} else if (scheduledGeneration >= 0) {
+				long flushGeneration = scheduledGeneration;
+				flushTimer.schedule(() -> flush(flushGeneration), batchWindowMicros.get(), TimeUnit.MICROSECONDS);
+			}
+		}
+
+		synchronized void remove(PendingInvocation invocation) {
+			pending.remove(invocation);
+		}
+
+		private void flush(long flushGeneration) {
+			List<PendingInvocation> batch;
+			synchronized (this) {
+				if (generation != flushGeneration || pending.isEmpty()) {
+					// Batch already submitted since it was full
+					return;
+				}
+				batch = drain();
+			}
+			submit(partition, batch);
+		}
+
+		void failPending() {
+			List<PendingInvocation> batch;
+			synchronized (this) {
+				batch = drain();
+			}
+			ServiceUnavailableException error = newDestroyedException();
+			batch.forEach(invocation -> invocation.fail(error));
+		}
+
+		private List<PendingInvocation> drain() {
+			List<PendingInvocation> result = pending;
+			pending = new ArrayList<>(result.size());
+			generation++;
+			return result;
+		}
+	}
+
+	private static final class PendingInvocation {
+
+		private final AstrixServiceInvocationRequest request;
+		private final RoutingKey routingKey;
+		private final Subscriber<? super AstrixServiceInvocationResponse> subscriber;
+		private final Consumer<Runnable> callerContext;
+
+		PendingInvocation(AstrixServiceInvocationRequest request, RoutingKey routingKey, Subscriber<? super AstrixServiceInvocationResponse> subscriber, ContextPropagation contextPropagation) {
+			this.request = request;
+			this.routingKey = routingKey;
+			this.subscriber = subscriber;
+			// Captures the context of the invoking thread
+			this.callerContext = contextPropagation.wrap((Consumer<Runnable>) Runnable::run);
+		}
+		
+		void inCallerContext(Runnable action) {
+			callerContext.accept(action);
+		}
+
+		void complete(AstrixServiceInvocationResponse response) {
+			inCallerContext(() -> {
+				if (!subscriber.isUnsubscribed()) {
+					subscriber.onNext(response);
+					subscriber.onCompleted();
+				}
+			});
+		}
+
+		void fail(Throwable error) {
+			inCallerContext(() -> {
+				if (!subscriber.isUnsubscribed()) {
+					subscriber.onError(error);
+				}
+			});
+		}
+	}
+
+}
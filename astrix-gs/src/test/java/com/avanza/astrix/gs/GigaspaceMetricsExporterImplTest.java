@@ -22,26 +22,37 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.openspaces.core.GigaSpace;
 
+import com.avanza.astrix.beans.async.ContextPropagation;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.config.MapConfigSource;
 import com.avanza.astrix.context.mbeans.MBeanExporter;
 import com.avanza.astrix.gs.metrics.GigaspaceMetrics;
+import com.avanza.astrix.gs.metrics.SpaceTaskDispatcherMetrics;
 
 @RunWith(MockitoJUnitRunner.class)
 public class GigaspaceMetricsExporterImplTest {
 	private static final String MBEAN_FOLDER = "Gigaspaces";
 	private static final String MBEAN_NAME = "Metrics";
+	private static final String DISPATCHER_MBEAN_FOLDER = "SpaceTaskDispatchers";
 
 	@Mock
 	private MBeanExporter mBeanExporter;
 
+	@Mock
+	private GigaSpace gigaSpace;
+
+	private SpaceTaskDispatcher spaceTaskDispatcher;
+
 	private final MapConfigSource configSource = new MapConfigSource();
 
 	private GigaspaceMetricsExporterImpl target;
@@ -53,6 +64,13 @@ public class GigaspaceMetricsExporterImplTest {
 		target.setConfig(new DynamicConfig(configSource));
 	}
 
+	@After
+	public void tearDown() {
+		if (spaceTaskDispatcher != null) {
+			spaceTaskDispatcher.destroy();
+		}
+	}
+
 	@Test
 	public void shouldExportGigaspaceMetricsMBeanWhenCalled() {
 		target.exportGigaspaceMetrics();
@@ -86,4 +104,42 @@ public class GigaspaceMetricsExporterImplTest {
 		verify(mBeanExporter).unregisterMBean(MBEAN_FOLDER, MBEAN_NAME);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void shouldExportSpaceTaskDispatcherMetricsPerSpace() {
+		spaceTaskDispatcher = createSpaceTaskDispatcher("lunch-space");
+		target.exportGigaspaceMetrics();
+
+		target.exportSpaceTaskDispatcherMetrics(spaceTaskDispatcher);
+
+		verify(mBeanExporter).registerMBean(isA(SpaceTaskDispatcherMetrics.class), eq(DISPATCHER_MBEAN_FOLDER), eq("lunch-space"));
+	}
+
+	@Test
+	public void shouldExportSpaceTaskDispatcherMetricsWhenToggledOn() {
+		spaceTaskDispatcher = createSpaceTaskDispatcher("lunch-space");
+		configSource.set(EXPORTED_GIGASPACE_METRICS_ENABLED, false);
+		target.exportSpaceTaskDispatcherMetrics(spaceTaskDispatcher);
+		verify(mBeanExporter, never()).registerMBean(any(SpaceTaskDispatcherMetrics.class), anyString(), anyString());
+
+		configSource.set(EXPORTED_GIGASPACE_METRICS_ENABLED, true);
+
+		verify(mBeanExporter).registerMBean(isA(SpaceTaskDispatcherMetrics.class), eq(DISPATCHER_MBEAN_FOLDER), eq("lunch-space"));
+	}
+
+	@Test
+	public void shouldUnregisterSpaceTaskDispatcherMetricsWhenUnexported() {
+		spaceTaskDispatcher = createSpaceTaskDispatcher("lunch-space");
+		target.exportGigaspaceMetrics();
+		target.exportSpaceTaskDispatcherMetrics(spaceTaskDispatcher);
+
+		target.unexportSpaceTaskDispatcherMetrics(spaceTaskDispatcher);
+
+		verify(mBeanExporter).unregisterMBean(DISPATCHER_MBEAN_FOLDER, "lunch-space");
+	}
+
+	private SpaceTaskDispatcher createSpaceTaskDispatcher(String spaceName) {
+		when(gigaSpace.getName()).thenReturn(spaceName);
+		return new SpaceTaskDispatcher(gigaSpace, new DynamicConfig(configSource), ContextPropagation.NONE);
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.executor.Task;
+
+import com.avanza.astrix.beans.async.ContextPropagation;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.gigaspaces.async.SettableFuture;
+
+import rx.observers.TestSubscriber;
+
+public class SpaceTaskDispatcherTest {
+	
+	private static final String CONFIG_PREFIX = "astrix.beans.gigaspace.test-space.spaceTaskDispatcher.";
+	
+	private final GigaSpace gigaSpace = mock(GigaSpace.class);
+	private final MapConfigSource configSource = new MapConfigSource();
+	private final CountDownLatch spaceAvailable = new CountDownLatch(1);
+	private final ExecutorService virtualThreadExecutor = Executors.newCachedThreadPool();
+	private SpaceTaskDispatcher spaceTaskDispatcher;
+	
+	@Before
+	@SuppressWarnings({ "unchecked", "deprecation" })
+	public void setup() {
+		when(gigaSpace.getName()).thenReturn("test-space");
+		// Each task execution blocks until the space is available
+		when(gigaSpace.execute(any(Task.class), any(Object.class))).thenAnswer(invocation -> {
+			spaceAvailable.await();
+			SettableFuture<String> result = new SettableFuture<>();
+			result.setResult("result");
+			return result;
+		});
+	}
+	
+	@After
+	public void after() {
+		spaceAvailable.countDown();
+		if (spaceTaskDispatcher != null) {
+			spaceTaskDispatcher.destroy();
+		}
+		virtualThreadExecutor.shutdownNow();
+	}
+	
+	@Test
+	public void usesThreadPoolByDefault() throws Exception {
+		spaceTaskDispatcher = createSpaceTaskDispatcher(() -> virtualThreadExecutor);
+		
+		assertEquals(SpaceTaskDispatcherMode.THREAD_POOL, spaceTaskDispatcher.getExecutionMode());
+	}
+	
+	@Test
+	public void usesVirtualThreadsWhenRequestedAndSupported() throws Exception {
+		configSource.set(CONFIG_PREFIX + "executionMode", SpaceTaskDispatcherMode.VIRTUAL_THREAD.name());
+		spaceTaskDispatcher = createSpaceTaskDispatcher(() -> virtualThreadExecutor);
+		
+		assertEquals(SpaceTaskDispatcherMode.VIRTUAL_THREAD, spaceTaskDispatcher.getExecutionMode());
+	}
+	
+	@Test
+	public void fallsBackToThreadPoolWhenVirtualThreadsAreNotSupported() throws Exception {
+		configSource.set(CONFIG_PREFIX + "executionMode", SpaceTaskDispatcherMode.VIRTUAL_THREAD.name());
+		spaceTaskDispatcher = createSpaceTaskDispatcher(() -> null);
+		
+		assertEquals(SpaceTaskDispatcherMode.THREAD_POOL, spaceTaskDispatcher.getExecutionMode());
+		
+		spaceAvailable.countDown();
+		TestSubscriber<String> subscriber = new TestSubscriber<>();
+		spaceTaskDispatcher.observe(new TestTask(), 1).subscribe(subscriber);
+		awaitCondition(() -> spaceTaskDispatcher.getDispatchedTaskCount() == 1);
+	}
+	
+	@Test
+	public void maxConcurrencyLimitsNumberOfTasksSubmittedConcurrentlyInVirtualThreadMode() throws Exception {
+		configSource.set(CONFIG_PREFIX + "executionMode", SpaceTaskDispatcherMode.VIRTUAL_THREAD.name());
+		configSource.set(CONFIG_PREFIX + "maxConcurrency", "2");
+		spaceTaskDispatcher = createSpaceTaskDispatcher(() -> virtualThreadExecutor);
+		
+		for (int i = 0; i < 5; i++) {
+			spaceTaskDispatcher.observe(new TestTask(), i).subscribe(new TestSubscriber<String>());
+		}
+		
+		awaitCondition(() -> spaceTaskDispatcher.getActiveCount() == 2 && spaceTaskDispatcher.getQueueSize() == 3);
+		Thread.sleep(50);
+		assertEquals("Tasks submitted concurrently", 2, spaceTaskDispatcher.getActiveCount());
+		assertEquals("Tasks waiting for permit", 3, spaceTaskDispatcher.getQueueSize());
+		
+		spaceAvailable.countDown();
+		awaitCondition(() -> spaceTaskDispatcher.getDispatchedTaskCount() == 5 && spaceTaskDispatcher.getActiveCount() == 0);
+		assertEquals(0, spaceTaskDispatcher.getQueueSize());
+	}
+	
+	@Test
+	public void accountsTimeTasksWaitForThread() throws Exception {
+		configSource.set(CONFIG_PREFIX + "poolsize", "1");
+		spaceTaskDispatcher = createSpaceTaskDispatcher(() -> virtualThreadExecutor);
+		
+		spaceTaskDispatcher.observe(new TestTask(), 1).subscribe(new TestSubscriber<String>());
+		spaceTaskDispatcher.observe(new TestTask(), 2).subscribe(new TestSubscriber<String>());
+		awaitCondition(() -> spaceTaskDispatcher.getActiveCount() == 1 && spaceTaskDispatcher.getQueueSize() == 1);
+		assertEquals("Only the first task has started", 1, spaceTaskDispatcher.getDispatchedTaskCount());
+		
+		Thread.sleep(50);
+		spaceAvailable.countDown();
+		awaitCondition(() -> spaceTaskDispatcher.getDispatchedTaskCount() == 2 && spaceTaskDispatcher.getActiveCount() == 0);
+		
+		long minQueueWait = TimeUnit.MILLISECONDS.toNanos(50);
+		assertTrue("maxQueueWaitNanos: " + spaceTaskDispatcher.getMaxQueueWaitNanos(), spaceTaskDispatcher.getMaxQueueWaitNanos() >= minQueueWait);
+		assertTrue("totalQueueWaitNanos: " + spaceTaskDispatcher.getTotalQueueWaitNanos(), spaceTaskDispatcher.getTotalQueueWaitNanos() >= minQueueWait);
+		assertTrue("maxSubmitNanos: " + spaceTaskDispatcher.getMaxSubmitNanos(), spaceTaskDispatcher.getMaxSubmitNanos() >= minQueueWait);
+		assertEquals(0, spaceTaskDispatcher.getQueueSize());
+	}
+	
+	@Test
+	public void tasksDispatchedWhenQueueIsFullFailFastWithServiceUnavailable() throws Exception {
+		configSource.set(CONFIG_PREFIX + "poolsize", "1");
+		configSource.set(CONFIG_PREFIX + "maxQueueSize", "2");
+		spaceTaskDispatcher = createSpaceTaskDispatcher(() -> virtualThreadExecutor);
+		
+		spaceTaskDispatcher.observe(new TestTask(), 1).subscribe(new TestSubscriber<String>());
+		awaitCondition(() -> spaceTaskDispatcher.getActiveCount() == 1);
+		spaceTaskDispatcher.observe(new TestTask(), 2).subscribe(new TestSubscriber<String>());
+		spaceTaskDispatcher.observe(new TestTask(), 3).subscribe(new TestSubscriber<String>());
+		assertEquals(2, spaceTaskDispatcher.getQueueSize());
+		
+		TestSubscriber<String> rejected = new TestSubscriber<>();
+		spaceTaskDispatcher.observe(new TestTask(), 4).subscribe(rejected);
+		
+		rejected.assertError(ServiceUnavailableException.class);
+		assertEquals(1, spaceTaskDispatcher.getRejectedTaskCount());
+		assertEquals(2, spaceTaskDispatcher.getQueueSize());
+		
+		spaceAvailable.countDown();
+		awaitCondition(() -> spaceTaskDispatcher.getDispatchedTaskCount() == 3 && spaceTaskDispatcher.getActiveCount() == 0);
+		assertEquals(0, spaceTaskDispatcher.getQueueSize());
+	}
+	
+	private SpaceTaskDispatcher createSpaceTaskDispatcher(Supplier<ExecutorService> virtualThreadExecutorFactory) {
+		return new SpaceTaskDispatcher(gigaSpace, new DynamicConfig(configSource), ContextPropagation.NONE, virtualThreadExecutorFactory);
+	}
+	
+	private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Condition not satisfied within 5 seconds");
+			}
+			Thread.sleep(5);
+		}
+	}
+	
+	private static class TestTask implements Task<String> {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		public String execute() throws Exception {
+			return "result";
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class WindowedMaxTest {
+	
+	private final AtomicLong clock = new AtomicLong();
+	private final WindowedMax max = new WindowedMax(10, TimeUnit.NANOSECONDS, clock::get);
+	
+	@Test
+	public void reportsMaxOfCurrentWindow() throws Exception {
+		max.record(3);
+		max.record(7);
+		max.record(5);
+		
+		assertEquals(7, max.get());
+	}
+	
+	@Test
+	public void reportsMaxOfPreviousWindowUntilItIsOlderThanOneWindow() throws Exception {
+		max.record(7);
+		clock.set(10);
+		max.record(2);
+		assertEquals(7, max.get());
+		
+		clock.set(20);
+		assertEquals(2, max.get());
+		
+		clock.set(30);
+		assertEquals(0, max.get());
+	}
+	
+	@Test
+	public void discardsValuesRecordedMoreThanOneWindowAgo() throws Exception {
+		max.record(7);
+		clock.set(25);
+		
+		assertEquals(0, max.get());
+	}
+
+}
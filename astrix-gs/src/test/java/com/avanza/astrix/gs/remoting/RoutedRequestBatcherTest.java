@@ -0,0 +1,274 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.executor.Task;
+
+import com.avanza.astrix.beans.async.ContextPropagation;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.gs.SpaceTaskDispatcher;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.gigaspaces.async.SettableFuture;
+
+import rx.observers.TestSubscriber;
+
+public class RoutedRequestBatcherTest {
+	
+	private static final int PARTITION_COUNT = 2;
+	private static final long LONG_WINDOW_MICROS = TimeUnit.SECONDS.toMicros(10);
+	
+	private final BlockingQueue<SubmittedTask> submittedTasks = new LinkedBlockingQueue<>();
+	private final GigaSpace gigaSpace = mock(GigaSpace.class);
+	private final DynamicLongProperty batchWindowMicros = new DynamicLongProperty(LONG_WINDOW_MICROS);
+	private final DynamicIntProperty maxBatchSize = new DynamicIntProperty(3);
+	private SpaceTaskDispatcher spaceTaskDispatcher;
+	private RoutedRequestBatcher batcher;
+	
+	@Before
+	@SuppressWarnings({ "unchecked", "deprecation" })
+	public void setup() {
+		when(gigaSpace.getName()).thenReturn("test-space");
+		// Tasks are completed by each test
+		when(gigaSpace.execute(any(Task.class), any(Object.class))).thenAnswer(invocation -> {
+			SubmittedTask task = new SubmittedTask(invocation.getArgument(0), invocation.getArgument(1));
+			submittedTasks.add(task);
+			return task.result;
+		});
+		spaceTaskDispatcher = new SpaceTaskDispatcher(gigaSpace, new DynamicConfig(new MapConfigSource()), ContextPropagation.NONE);
+		batcher = new RoutedRequestBatcher(spaceTaskDispatcher, batchWindowMicros, maxBatchSize, () -> PARTITION_COUNT);
+	}
+	
+	@After
+	public void after() {
+		batcher.destroy();
+		spaceTaskDispatcher.destroy();
+	}
+	
+	@Test
+	public void batchIsSubmittedWhenBatchWindowExpires() throws Exception {
+		batchWindowMicros.set(TimeUnit.MILLISECONDS.toMicros(50));
+		long start = System.nanoTime();
+		submit("a", 0);
+		submit("b", 2);
+		
+		SubmittedTask task = nextSubmittedTask();
+		
+		assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+		assertEquals(asList("a", "b"), task.requestIds());
+		assertEquals("Batch is routed using partition id", RoutingKey.create(0), task.routingKey);
+	}
+	
+	@Test
+	public void batchIsSubmittedWithoutWaitingForBatchWindowWhenFull() throws Exception {
+		submit("a", 1);
+		submit("b", 3);
+		assertNull("Batch submitted before full", submittedTasks.poll(50, TimeUnit.MILLISECONDS));
+		
+		submit("c", 5);
+		
+		SubmittedTask task = nextSubmittedTask();
+		assertEquals(asList("a", "b", "c"), task.requestIds());
+		assertEquals(RoutingKey.create(1), task.routingKey);
+	}
+	
+	@Test
+	public void invocationsRoutedToDifferentPartitionsAreBatchedSeparately() throws Exception {
+		maxBatchSize.set(2);
+		submit("a", 0);
+		submit("b", 1);
+		submit("c", 2);
+		submit("d", 3);
+		
+		List<List<String>> batches = asList(nextSubmittedTask().requestIds(), nextSubmittedTask().requestIds());
+		
+		assertThat(batches, containsInAnyOrder(asList("a", "c"), asList("b", "d")));
+	}
+	
+	@Test
+	public void singleInvocationIsSubmittedAsOrdinaryTaskUsingItsRoutingKey() throws Exception {
+		batchWindowMicros.set(TimeUnit.MILLISECONDS.toMicros(1));
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 4);
+		
+		SubmittedTask task = nextSubmittedTask();
+		assertThat(task.task, instanceOf(AstrixServiceInvocationTask.class));
+		assertEquals(asList("a"), task.requestIds());
+		assertEquals(RoutingKey.create(4), task.routingKey);
+		
+		task.result.setResult(response("a"));
+		assertResponse("a", a);
+	}
+	
+	@Test
+	public void responsesAreDeliveredToInvocationsInRequestOrder() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> b = submit("b", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> c = submit("c", 0);
+		
+		SubmittedTask task = nextSubmittedTask();
+		task.result.setResult(new ArrayList<>(task.requestIds().stream().map(RoutedRequestBatcherTest::response).collect(toList())));
+		
+		assertResponse("a", a);
+		assertResponse("b", b);
+		assertResponse("c", c);
+	}
+	
+	@Test
+	public void invocationUnsubscribedBeforeBatchIsSubmittedIsRemovedFromBatch() throws Exception {
+		batchWindowMicros.set(TimeUnit.MILLISECONDS.toMicros(50));
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> b = submit("b", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> c = submit("c", 0);
+		b.unsubscribe();
+		// The batch is submitted when the window expires since it never reaches maxBatchSize
+		
+		SubmittedTask task = nextSubmittedTask();
+		assertEquals(asList("a", "c"), task.requestIds());
+		task.result.setResult(new ArrayList<>(asList(response("a"), response("c"))));
+		
+		assertResponse("a", a);
+		assertResponse("c", c);
+		b.assertNoValues();
+		b.assertNoTerminalEvent();
+	}
+	
+	@Test
+	public void allInvocationsInBatchFailWhenNumberOfResponsesDoesNotMatchNumberOfRequests() throws Exception {
+		maxBatchSize.set(2);
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> b = submit("b", 0);
+		
+		nextSubmittedTask().result.setResult(new ArrayList<>(asList(response("a"))));
+		
+		a.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		b.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		a.assertError(IllegalStateException.class);
+		b.assertError(IllegalStateException.class);
+	}
+	
+	@Test
+	public void allInvocationsInBatchFailWhenBatchTaskFails() throws Exception {
+		maxBatchSize.set(2);
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> b = submit("b", 0);
+		
+		nextSubmittedTask().result.setResult(new IllegalArgumentException("task failed"));
+		
+		a.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		b.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		a.assertError(IllegalArgumentException.class);
+		b.assertError(IllegalArgumentException.class);
+	}
+	
+	@Test
+	public void destroyFailsInvocationsWaitingForTheirBatchToBeSubmitted() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 0);
+		TestSubscriber<AstrixServiceInvocationResponse> b = submit("b", 1);
+		
+		batcher.destroy();
+		
+		a.assertError(ServiceUnavailableException.class);
+		b.assertError(ServiceUnavailableException.class);
+		assertNull("No task submitted", submittedTasks.poll(50, TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void invocationsOnDestroyedBatcherFailWithServiceUnavailable() throws Exception {
+		batcher.destroy();
+		
+		TestSubscriber<AstrixServiceInvocationResponse> a = submit("a", 0);
+		
+		a.assertError(ServiceUnavailableException.class);
+	}
+	
+	private TestSubscriber<AstrixServiceInvocationResponse> submit(String id, int routingKey) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader("id", id);
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		batcher.submit(request, RoutingKey.create(routingKey)).subscribe(subscriber);
+		return subscriber;
+	}
+	
+	private SubmittedTask nextSubmittedTask() throws InterruptedException {
+		SubmittedTask result = submittedTasks.poll(5, TimeUnit.SECONDS);
+		assertNotNull("Expected a task to be submitted", result);
+		return result;
+	}
+	
+	private static AstrixServiceInvocationResponse response(String id) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setHeader("id", id);
+		return response;
+	}
+	
+	private static void assertResponse(String expectedId, TestSubscriber<AstrixServiceInvocationResponse> subscriber) {
+		subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		subscriber.assertNoErrors();
+		subscriber.assertValueCount(1);
+		assertEquals(expectedId, subscriber.getOnNextEvents().get(0).getHeader("id"));
+	}
+	
+	private static final class SubmittedTask {
+		
+		private final Task<?> task;
+		private final Object routingKey;
+		private final SettableFuture<Object> result = new SettableFuture<>();
+		
+		SubmittedTask(Task<?> task, Object routingKey) {
+			this.task = task;
+			this.routingKey = routingKey;
+		}
+		
+		List<String> requestIds() {
+			List<AstrixServiceInvocationRequest> requests;
+			if (task instanceof AstrixServiceInvocationBatchTask) {
+				requests = ((AstrixServiceInvocationBatchTask) task).getInvocationRequests();
+			} else {
+				requests = asList(((AstrixServiceInvocationTask) task).getInvocationRequest());
+			}
+			return requests.stream().map(request -> request.getHeader("id")).collect(toList());
+		}
+	}
+
+}
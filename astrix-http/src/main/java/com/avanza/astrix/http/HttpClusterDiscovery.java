@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.registry.ServiceRegistryClient;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicPropertyListener;
+import com.avanza.astrix.config.DynamicStringProperty;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+/**
+ * Sources of cluster membership for a {@link HttpRemotingTransport}. Each source emits the
+ * current members of the cluster, and then the members again each time the membership changes.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class HttpClusterDiscovery {
+	
+	/**
+	 * Service property holding the uri of the {@link HttpRemotingEndpoint} of a cluster member.
+	 */
+	public static final String HTTP_ENDPOINT = "astrix.http.endpoint";
+	/**
+	 * Service property holding the id (partition) of a cluster member.
+	 */
+	public static final String HTTP_CLUSTER_INSTANCE_ID = "astrix.http.clusterInstanceId";
+	
+	private static final Logger log = LoggerFactory.getLogger(HttpClusterDiscovery.class);
+	
+	private HttpClusterDiscovery() {
+	}
+	
+	/**
+	 * Reads the members from a config property on the form "0=http://host1:8080/astrix,1=http://host2:8080/astrix",
+	 * where the number is the cluster instance id of the member.
+	 * 
+	 * @param members
+	 * @return
+	 */
+	public static Observable<List<ClusterMember>> fromConfig(DynamicStringProperty members) {
+		return Observable.unsafeCreate(subscriber -> {
+			Object lock = new Object();
+			DynamicPropertyListener<String> listener = newValue -> {
+				synchronized (lock) {
+					publishMembers(newValue, subscriber);
+				}
+			};
+			members.addListener(listener);
+			subscriber.add(Subscriptions.create(() -> members.removeListener(listener)));
+			synchronized (lock) {
+				publishMembers(members.get(), subscriber);
+			}
+		});
+	}
+	
+	private static void publishMembers(String members, Subscriber<? super List<ClusterMember>> subscriber) {
+		if (subscriber.isUnsubscribed()) {
+			return;
+		}
+		List<ClusterMember> parsed;
+		try {
+			parsed = parseMembers(members);
+		} catch (IllegalArgumentException e) {
+			// Keep the current members until a valid value is set
+			log.warn("Ignoring invalid cluster members: " + members, e);
+			return;
+		}
+		subscriber.onNext(parsed);
+	}
+	
+	/**
+	 * Polls the service registry for all providers of a given service. Each provider is expected
+	 * to register its endpoint and cluster instance id using the {@link #HTTP_ENDPOINT} and 
+	 * {@link #HTTP_CLUSTER_INSTANCE_ID} service properties. Providers with a missing or invalid
+	 * endpoint or cluster instance id are ignored.
+	 * 
+	 * The registry is polled on the io scheduler since listing the providers is a blocking call.
+	 * 
+	 * @param serviceRegistryClient
+	 * @param beanKey
+	 * @param pollIntervalMillis
+	 * @return
+	 */
+	public static Observable<List<ClusterMember>> fromServiceRegistry(ServiceRegistryClient serviceRegistryClient, AstrixBeanKey<?> beanKey, long pollIntervalMillis) {
+		return fromServiceRegistry(serviceRegistryClient, beanKey, pollIntervalMillis, Schedulers.io());
+	}
+	
+	static Observable<List<ClusterMember>> fromServiceRegistry(ServiceRegistryClient serviceRegistryClient, AstrixBeanKey<?> beanKey, long pollIntervalMillis, Scheduler scheduler) {
+		return Observable.interval(0, pollIntervalMillis, TimeUnit.MILLISECONDS, scheduler)
+						 .map(tick -> {
+							 try {
+								 return toMembers(serviceRegistryClient.list(beanKey));
+							 } catch (RuntimeException e) {
+								 log.warn("Failed to list cluster members from service registry. beanKey=" + beanKey, e);
+								 return null;
+							 }
+						 })
+						 .filter(members -> members != null)
+						 .distinctUntilChanged(HttpClusterDiscovery::describe)
+						 .onBackpressureLatest();
+	}
+
+	static List<ClusterMember> toMembers(List<ServiceProperties> providers) {
+		List<ClusterMember> result = new ArrayList<>(providers.size());
+		for (ServiceProperties provider : providers) {
+			String endpoint = provider.getProperty(HTTP_ENDPOINT);
+			String clusterInstanceId = provider.getProperty(HTTP_CLUSTER_INSTANCE_ID);
+			if (endpoint == null || clusterInstanceId == null) {
+				log.warn("Ignoring service provider without http endpoint: {}", provider);
+				continue;
+			}
+			int id;
+			try {
+				id = Integer.parseInt(clusterInstanceId.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Ignoring service provider with invalid cluster instance id: {}", provider);
+				continue;
+			}
+			result.add(new ClusterMember(endpoint, id));
+		}
+		result.sort(Comparator.comparingInt(ClusterMember::getClusterInstanceId));
+		return result;
+	}
+	
+	static List<ClusterMember> parseMembers(String members) {
+		List<ClusterMember> result = new ArrayList<>();
+		if (members == null || members.trim().isEmpty()) {
+			return result;
+		}
+		for (String member : members.split(",")) {
+			String[] idAndEndpoint = member.trim().split("=", 2);
+			if (idAndEndpoint.length != 2) {
+				throw new IllegalArgumentException("Invalid cluster member, expected <clusterInstanceId>=<endpoint>: " + member);
+			}
+			result.add(new ClusterMember(idAndEndpoint[1].trim(), Integer.parseInt(idAndEndpoint[0].trim())));
+		}
+		return result;
+	}
+	
+	private static String describe(List<ClusterMember> members) {
+		StringBuilder result = new StringBuilder();
+		for (ClusterMember member : members) {
+			result.append(member.getClusterInstanceId()).append('=').append(member.getRemoteEndpointUri()).append(',');
+		}
+		return result.toString();
+	}
+
+}
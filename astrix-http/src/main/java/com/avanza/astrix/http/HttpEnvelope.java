@@ -0,0 +1,330 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.SerializedArgument;
+import com.avanza.astrix.remoting.util.BinaryValueFormat;
+import com.avanza.astrix.remoting.util.SizeLimitExceededException;
+/**
+ * Defines the binary envelope used to send invocation requests and responses as http bodies. <p>
+ * 
+ * Arguments and return values are encoded using the {@link BinaryValueFormat}, i.e the same way as in the 
+ * netty remoting wire format. Only values serialized by the AstrixObjectSerializer (byte[], String or 
+ * {@link SerializedArgument}) are supported, java serialized values are neither written nor accepted since
+ * the bodies are received from the network. Since every http request is independent, headers are written 
+ * as literal strings. <p>
+ * 
+ * Bodies larger than a configurable threshold are gzip compressed, which is signaled using 
+ * the Content-Encoding http header. <p>
+ * 
+ * Bodies are decoded from a stream bounded by a maximum body size, which applies to both the compressed 
+ * and the decompressed body. Every count and length read from the body is checked against the remaining 
+ * number of bytes the receiver accepts before anything is allocated, and a {@link SizeLimitExceededException} 
+ * is thrown if it is exceeded.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class HttpEnvelope {
+	
+	static final String CONTENT_TYPE = "application/x-astrix-remoting";
+	static final String GZIP = "gzip";
+	
+	/**
+	 * Default upper bound for the size of a received body, before and after decompression.
+	 */
+	static final int DEFAULT_MAX_BODY_SIZE = 16 * 1024 * 1024;
+	
+	private static final byte ENVELOPE_VERSION = 1;
+	/**
+	 * Smallest encoded size of a header, i.e. two null strings
+	 */
+	private static final int MIN_HEADER_SIZE = 8;
+	
+	private HttpEnvelope() {
+	}
+	
+	static Body encodeRequest(AstrixServiceInvocationRequest request) throws IOException {
+		Body body = new Body();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(ENVELOPE_VERSION);
+		writeHeaders(request.getHeaders(), out);
+		Object[] arguments = request.getArguments();
+		if (arguments == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(arguments.length);
+			for (Object argument : arguments) {
+				writeValue(argument, out);
+			}
+		}
+		out.flush();
+		return body;
+	}
+	
+	/**
+	 * @param in
+	 * @param maxBodySize - the maximum number of bytes read from the given stream
+	 * @return
+	 * @throws SizeLimitExceededException if the body, or any count or length in it, exceeds maxBodySize
+	 * @throws IOException if the body is malformed
+	 */
+	static AstrixServiceInvocationRequest decodeRequest(InputStream in, int maxBodySize) throws IOException {
+		BoundedInputStream body = new BoundedInputStream(in, maxBodySize);
+		DataInputStream input = new DataInputStream(body);
+		readEnvelopeVersion(input);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		int headerCount = readCount(input, body, MIN_HEADER_SIZE);
+		for (int i = 0; i < headerCount; i++) {
+			request.setHeader(readNullableString(input, body), readNullableString(input, body));
+		}
+		int argumentCount = input.readInt();
+		if (argumentCount >= 0) {
+			// Each argument occupies at least the byte holding its type
+			checkCount(argumentCount, body, 1);
+			Object[] arguments = new Object[argumentCount];
+			for (int i = 0; i < argumentCount; i++) {
+				arguments[i] = readValue(input, body);
+			}
+			request.setArguments(arguments);
+		} else if (argumentCount != -1) {
+			throw new StreamCorruptedException("Invalid argument count: " + argumentCount);
+		}
+		return request;
+	}
+	
+	static Body encodeResponse(AstrixServiceInvocationResponse response) throws IOException {
+		Body body = new Body();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(ENVELOPE_VERSION);
+		writeHeaders(response.getHeaders(), out);
+		writeNullableString(response.getThrownExceptionType(), out);
+		writeNullableString(response.getExceptionMsg(), out);
+		writeNullableString(response.getCorrelationId(), out);
+		writeValue(response.getResponseBody(), out);
+		writeValue(response.getException(), out);
+		out.flush();
+		return body;
+	}
+	
+	/**
+	 * @param in
+	 * @param maxBodySize - the maximum number of bytes read from the given stream
+	 * @return
+	 * @throws SizeLimitExceededException if the body, or any count or length in it, exceeds maxBodySize
+	 * @throws IOException if the body is malformed
+	 */
+	static AstrixServiceInvocationResponse decodeResponse(InputStream in, int maxBodySize) throws IOException {
+		BoundedInputStream body = new BoundedInputStream(in, maxBodySize);
+		DataInputStream input = new DataInputStream(body);
+		readEnvelopeVersion(input);
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		int headerCount = readCount(input, body, MIN_HEADER_SIZE);
+		for (int i = 0; i < headerCount; i++) {
+			response.setHeader(readNullableString(input, body), readNullableString(input, body));
+		}
+		response.setThrownExceptionType(readNullableString(input, body));
+		response.setExceptionMsg(readNullableString(input, body));
+		response.setCorrelationId(readNullableString(input, body));
+		response.setResponseBody(readValue(input, body));
+		response.setException(readValue(input, body));
+		return response;
+	}
+	
+	/**
+	 * Wraps the given body in a GZIPInputStream if it is gzip encoded. Both the received and the
+	 * decompressed body are bounded by maxBodySize, reading beyond it throws a {@link SizeLimitExceededException}.
+	 */
+	static InputStream decompress(InputStream in, String contentEncoding, int maxBodySize) throws IOException {
+		InputStream body = new BoundedInputStream(in, maxBodySize);
+		if (GZIP.equalsIgnoreCase(contentEncoding)) {
+			return new BoundedInputStream(new GZIPInputStream(body), maxBodySize);
+		}
+		return body;
+	}
+	
+	private static int readCount(DataInputStream input, BoundedInputStream body, int minElementSize) throws IOException {
+		int count = input.readInt();
+		if (count < 0) {
+			throw new StreamCorruptedException("Negative count: " + count);
+		}
+		checkCount(count, body, minElementSize);
+		return count;
+	}
+	
+	private static void checkCount(int count, BoundedInputStream body, int minElementSize) throws SizeLimitExceededException {
+		if ((long) count * minElementSize > body.remaining()) {
+			throw new SizeLimitExceededException("Count: " + count + " exceeds the remaining size limit of the body: " + body.remaining());
+		}
+	}
+
+	private static void readEnvelopeVersion(DataInputStream input) throws IOException {
+		byte version = input.readByte();
+		if (version != ENVELOPE_VERSION) {
+			throw new StreamCorruptedException("Unsupported envelope version: " + version);
+		}
+	}
+	
+	private static void writeHeaders(Map<String, String> headers, DataOutputStream out) throws IOException {
+		out.writeInt(headers.size());
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			writeNullableString(header.getKey(), out);
+			writeNullableString(header.getValue(), out);
+		}
+	}
+	
+	private static void writeNullableString(String value, DataOutputStream out) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readNullableString(DataInputStream in, BoundedInputStream body) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > body.remaining()) {
+			throw new SizeLimitExceededException("String length: " + length + " exceeds the remaining size limit of the body: " + body.remaining());
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeValue(Object value, DataOutputStream out) throws IOException {
+		BinaryValueFormat.writeValue(out, value, false);
+	}
+	
+	private static Object readValue(DataInputStream in, BoundedInputStream body) throws IOException {
+		return BinaryValueFormat.readValue(in, false, body.remaining());
+	}
+	
+	/**
+	 * An encoded http body. The body is written directly into the internal buffer, which
+	 * is handed to the http client/servlet without being copied.
+	 */
+	static final class Body extends ByteArrayOutputStream {
+		
+		Body() {
+			super(256);
+		}
+		
+		byte[] array() {
+			return buf;
+		}
+		
+		/**
+		 * @return a gzip compressed copy of this body
+		 */
+		Body gzip() throws IOException {
+			Body compressed = new Body();
+			try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+				writeTo(gzip);
+			}
+			return compressed;
+		}
+	}
+	
+	/**
+	 * Reads at most a given number of bytes from the underlying stream, and throws a SizeLimitExceededException
+	 * if the underlying stream holds more bytes than that.
+	 */
+	static final class BoundedInputStream extends FilterInputStream {
+		
+		private final long maxBytes;
+		private long remaining;
+		
+		BoundedInputStream(InputStream in, long maxBytes) {
+			super(in);
+			this.maxBytes = maxBytes;
+			this.remaining = maxBytes;
+		}
+		
+		/**
+		 * @return the number of bytes that might be read before the limit is reached
+		 */
+		long remaining() {
+			return remaining;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if (remaining == 0) {
+				return endOfStream();
+			}
+			int result = super.read();
+			if (result >= 0) {
+				remaining--;
+			}
+			return result;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (remaining == 0) {
+				return endOfStream();
+			}
+			int read = super.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+		
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+		
+		private int endOfStream() throws IOException {
+			if (in.read() >= 0) {
+				throw new SizeLimitExceededException("Body exceeds the size limit of " + maxBytes + " bytes");
+			}
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.http.HttpEnvelope.Body;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import rx.Observable;
+import rx.subscriptions.Subscriptions;
+/**
+ * Client side of the http remoting transport for a single cluster member. <p>
+ * 
+ * Invocations are sent using the JDK HttpClient, preferring HTTP/2 which multiplexes
+ * concurrent invocations on a single connection. Each client maintains a pool of 
+ * HttpClient's (i.e. connections) to its member and sends the invocations round robin 
+ * over the pool. All clients share a bounded executor for the work done by the HttpClient's. <p>
+ * 
+ * A destroyed client fails its pending, and all subsequent, invocations with a ServiceUnavailableException.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class HttpRemotingClient {
+	
+	public static final IntSetting HTTP_CLIENT_POOL_SIZE = IntSetting.create("astrix.http.client.poolsize", 2);
+	/**
+	 * Request bodies larger than this number of bytes are gzip compressed.
+	 */
+	public static final IntSetting HTTP_CLIENT_GZIP_THRESHOLD = IntSetting.create("astrix.http.client.gzipThresholdBytes", 8 * 1024);
+	public static final LongSetting HTTP_CLIENT_CONNECT_TIMEOUT = LongSetting.create("astrix.http.client.connectTimeoutMillis", 1_000);
+	/**
+	 * Response bodies larger than this number of bytes, before or after decompression, are rejected.
+	 */
+	public static final IntSetting HTTP_CLIENT_MAX_RESPONSE_BODY_SIZE = IntSetting.create("astrix.http.client.maxResponseBodyBytes", HttpEnvelope.DEFAULT_MAX_BODY_SIZE);
+	
+	private static final ExecutorService SHARED_EXECUTOR = createSharedExecutor();
+	
+	private final URI endpoint;
+	private final HttpClient[] pool;
+	private final Set<CompletableFuture<HttpResponse<byte[]>>> pendingInvocations = ConcurrentHashMap.newKeySet();
+	private volatile boolean destroyed = false;
+	private final int gzipThreshold;
+	private final int maxResponseBodySize;
+	private final AtomicInteger nextClient = new AtomicInteger();
+	
+	public HttpRemotingClient(AstrixConfig config, URI endpoint) {
+		this.endpoint = endpoint;
+		this.gzipThreshold = config.get(HTTP_CLIENT_GZIP_THRESHOLD).get();
+		this.maxResponseBodySize = config.get(HTTP_CLIENT_MAX_RESPONSE_BODY_SIZE).get();
+		Duration connectTimeout = Duration.ofMillis(config.get(HTTP_CLIENT_CONNECT_TIMEOUT).get());
+		this.pool = new HttpClient[Math.max(1, config.get(HTTP_CLIENT_POOL_SIZE).get())];
+		for (int i = 0; i < pool.length; i++) {
+			pool[i] = HttpClient.newBuilder()
+								.version(HttpClient.Version.HTTP_2)
+								.connectTimeout(connectTimeout)
+								.executor(SHARED_EXECUTOR)
+								.build();
+		}
+	}
+	
+	/*
+	 * The executor only runs the asynchronous tasks of the HttpClient's, i.e. reading responses and
+	 * completing the invocations, hence the number of threads is bounded by the number of cores.
+	 */
+	private static ExecutorService createSharedExecutor() {
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "HttpRemotingClient-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	/**
+	 * Invokes a service on the remote endpoint of this client.
+	 * 
+	 * @param request
+	 * @param timeoutMillis - the time to wait for a response before failing with a ServiceUnavailableException, or 0 to wait indefinitely
+	 * @return
+	 */
+	public Observable<AstrixServiceInvocationResponse> invokeService(AstrixServiceInvocationRequest request, int timeoutMillis) {
+		return Observable.unsafeCreate(subscriber -> {
+			HttpRequest httpRequest;
+			try {
+				httpRequest = createHttpRequest(request, timeoutMillis);
+			} catch (IOException e) {
+				subscriber.onError(new ServiceUnavailableException("Failed to encode request to: " + endpoint, e));
+				return;
+			}
+			if (destroyed) {
+				subscriber.onError(clientDestroyed());
+				return;
+			}
+			CompletableFuture<HttpResponse<byte[]>> sent = nextClient().sendAsync(httpRequest, BodyHandlers.ofByteArray());
+			// Completed by the HttpClient, or failed when this client is destroyed
+			CompletableFuture<HttpResponse<byte[]>> response = new CompletableFuture<>();
+			pendingInvocations.add(response);
+			if (destroyed) {
+				response.completeExceptionally(clientDestroyed());
+			}
+			sent.whenComplete((httpResponse, error) -> {
+				if (error != null) {
+					response.completeExceptionally(error);
+				} else {
+					response.complete(httpResponse);
+				}
+			});
+			subscriber.add(Subscriptions.create(() -> {
+				sent.cancel(true);
+				response.cancel(true);
+			}));
+			response.whenComplete((httpResponse, error) -> {
+				pendingInvocations.remove(response);
+				if (error != null) {
+					subscriber.onError(toServiceUnavailable(error, timeoutMillis));
+					return;
+				}
+				AstrixServiceInvocationResponse invocationResponse;
+				try {
+					invocationResponse = decodeResponse(httpResponse);
+				} catch (Exception e) {
+					subscriber.onError(e);
+					return;
+				}
+				subscriber.onNext(invocationResponse);
+				subscriber.onCompleted();
+			});
+		});
+	}
+
+	private HttpRequest createHttpRequest(AstrixServiceInvocationRequest request, int timeoutMillis) throws IOException {
+		Body body = HttpEnvelope.encodeRequest(request);
+		HttpRequest.Builder httpRequest = HttpRequest.newBuilder(endpoint)
+													 .header("Content-Type", HttpEnvelope.CONTENT_TYPE)
+													 .header("Accept-Encoding", HttpEnvelope.GZIP);
+		if (body.size() > gzipThreshold) {
+			body = body.gzip();
+			httpRequest.header("Content-Encoding", HttpEnvelope.GZIP);
+		}
+		if (timeoutMillis > 0) {
+			httpRequest.timeout(Duration.ofMillis(timeoutMillis));
+		}
+		return httpRequest.POST(BodyPublishers.ofByteArray(body.array(), 0, body.size())).build();
+	}
+	
+	private AstrixServiceInvocationResponse decodeResponse(HttpResponse<byte[]> httpResponse) throws IOException {
+		// Rejected invocations are answered with 503 and a service unavailable response
+		if (httpResponse.statusCode() != 200 && httpResponse.statusCode() != 503) {
+			throw new ServiceUnavailableException(String.format("Unexpected http status %d from: %s", httpResponse.statusCode(), endpoint));
+		}
+		String contentEncoding = httpResponse.headers().firstValue("Content-Encoding").orElse(null);
+		try (InputStream body = HttpEnvelope.decompress(new ByteArrayInputStream(httpResponse.body()), contentEncoding, maxResponseBodySize)) {
+			return HttpEnvelope.decodeResponse(body, maxResponseBodySize);
+		}
+	}
+	
+	private ServiceUnavailableException toServiceUnavailable(Throwable error, int timeoutMillis) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		if (cause instanceof ServiceUnavailableException) {
+			return (ServiceUnavailableException) cause;
+		}
+		if (cause instanceof HttpTimeoutException) {
+			return new ServiceUnavailableException(String.format("No response received within %d ms from: %s", timeoutMillis, endpoint), cause);
+		}
+		return new ServiceUnavailableException("Failed to send request to: " + endpoint, cause);
+	}
+
+	private HttpClient nextClient() {
+		return pool[Math.floorMod(nextClient.getAndIncrement(), pool.length)];
+	}
+	
+	public URI getEndpoint() {
+		return endpoint;
+	}
+	
+	/**
+	 * Fails all pending invocations with a ServiceUnavailableException. The JDK HttpClient releases 
+	 * its connections when it is no longer referenced, and the shared executor is never shut down.
+	 */
+	public void destroy() {
+		destroyed = true;
+		for (CompletableFuture<HttpResponse<byte[]>> pending : pendingInvocations) {
+			pending.completeExceptionally(clientDestroyed());
+		}
+	}
+	
+	private ServiceUnavailableException clientDestroyed() {
+		return new ServiceUnavailableException("Http remoting client destroyed, endpoint: " + endpoint);
+	}
+	
+	boolean isDestroyed() {
+		return destroyed;
+	}
+	
+	int pendingInvocationCount() {
+		return pendingInvocations.size();
+	}
+
+}
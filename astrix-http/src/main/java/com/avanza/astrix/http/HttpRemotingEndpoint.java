@@ -1,9 +1,3 @@
-package com.avanza.astrix.http;
-
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-
 /*
  * Copyright 2014 Avanza Bank AB
  *
@@ -19,41 +13,194 @@ import java.io.ObjectOutputStream;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.http.HttpEnvelope.Body;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.remoting.util.SizeLimitExceededException;
+
+import rx.Observable;
 /**
+ * Server side of the http remoting transport. <p>
+ * 
+ * Invocations are processed asynchronously, i.e. the container thread is released as soon as the 
+ * request is read and the service is invoked on a separate executor. The servlet must therefore be
+ * registered with async support enabled. HTTP/2 is supported as long as it is enabled in the servlet container. <p>
+ * 
+ * Request bodies larger than the maximum request body size, before or after decompression, are 
+ * answered with 413, and bodies that can't be decoded with 400.
  * 
  * @author Elias Lindholm
  *
  */
 public class HttpRemotingEndpoint extends HttpServlet {
 	
-	/*
-	 * This is only a draft for remoting over http
-	 */
+	private static final long serialVersionUID = 1L;
+	private static final int DEFAULT_GZIP_THRESHOLD = 8 * 1024;
+	private static final int DEFAULT_MAX_THREADS = 64;
+	private static final int DEFAULT_MAX_QUEUED_INVOCATIONS = 1024;
+	private static final AtomicInteger endpointCount = new AtomicInteger();
+	private static final Logger log = LoggerFactory.getLogger(HttpRemotingEndpoint.class);
 	
-	private final AstrixServiceActivator serviceActivator;
+	private final transient AstrixServiceActivator serviceActivator;
+	private final transient ExecutorService executor;
+	private final int gzipThreshold;
+	private final int maxRequestBodySize;
 	
 	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator) {
+		this(serviceActivator, createDefaultExecutor(), DEFAULT_GZIP_THRESHOLD);
+	}
+	
+	/**
+	 * @param serviceActivator
+	 * @param executor - the executor used to invoke the services, shut down when the servlet is destroyed
+	 * @param gzipThreshold - responses larger than this number of bytes are gzip compressed if accepted by the client
+	 */
+	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator, ExecutorService executor, int gzipThreshold) {
+		this(serviceActivator, executor, gzipThreshold, HttpEnvelope.DEFAULT_MAX_BODY_SIZE);
+	}
+	
+	/**
+	 * @param serviceActivator
+	 * @param executor - the executor used to invoke the services, shut down when the servlet is destroyed
+	 * @param gzipThreshold - responses larger than this number of bytes are gzip compressed if accepted by the client
+	 * @param maxRequestBodySize - the maximum number of bytes of a request body, both as received and after decompression
+	 */
+	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator, ExecutorService executor, int gzipThreshold, int maxRequestBodySize) {
 		this.serviceActivator = serviceActivator;
+		this.executor = executor;
+		this.gzipThreshold = gzipThreshold;
+		this.maxRequestBodySize = maxRequestBodySize;
+	}
+
+	/*
+	 * Bounded in both threads and queued invocations. Invocations rejected by the executor
+	 * are answered with 503, which the client reports as ServiceUnavailable.
+	 */
+	private static ExecutorService createDefaultExecutor() {
+		int endpointId = endpointCount.incrementAndGet();
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<>(DEFAULT_MAX_QUEUED_INVOCATIONS), runnable -> {
+			Thread thread = new Thread(runnable, "HttpRemotingEndpoint-" + endpointId + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
 	}
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		if (req.getContentLengthLong() > maxRequestBodySize) {
+			resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body exceeds " + maxRequestBodySize + " bytes");
+			return;
+		}
+		AstrixServiceInvocationRequest invocationRequest;
+		try (InputStream body = HttpEnvelope.decompress(req.getInputStream(), req.getHeader("Content-Encoding"), maxRequestBodySize)) {
+			invocationRequest = HttpEnvelope.decodeRequest(body, maxRequestBodySize);
+		} catch (SizeLimitExceededException e) {
+			log.warn("Rejected invocation request exceeding the size limit: " + e.getMessage());
+			resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+			return;
+		} catch (IOException e) {
+			log.warn("Failed to decode invocation request", e);
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+		boolean acceptsGzip = acceptsGzip(req);
+		AsyncContext asyncContext = req.startAsync();
+		// Invocations are timed out by the client
+		asyncContext.setTimeout(0);
+		try {
+			// Service methods returning a reactive type completes asynchronously, without blocking the executor
+			executor.execute(() -> Observable.defer(() -> serviceActivator.invokeServiceAsync(invocationRequest)).subscribe(
+					invocationResponse -> respond(invocationResponse, acceptsGzip, asyncContext), 
+					e -> {
+						log.warn("Service invocation failed", e);
+						respond(AstrixServiceActivator.createErrorResponse(e), acceptsGzip, asyncContext);
+					}));
+		} catch (RejectedExecutionException e) {
+			String serviceApi = invocationRequest.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API);
+			AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+			response.setServiceUnavailable(true);
+			response.setExceptionMsg("Service invocation rejected by server, serviceApi=" + serviceApi + ": " + e.getMessage());
+			try {
+				writeResponse(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response, acceptsGzip, asyncContext);
+			} finally {
+				asyncContext.complete();
+			}
+		}
+	}
+	
+	private void respond(AstrixServiceInvocationResponse invocationResponse, boolean acceptsGzip, AsyncContext asyncContext) {
+		try {
+			writeResponse(HttpServletResponse.SC_OK, invocationResponse, acceptsGzip, asyncContext);
+		} catch (Exception e) {
+			log.warn("Failed to write response", e);
+			sendInternalServerError(asyncContext);
+		} finally {
+			asyncContext.complete();
+		}
+	}
+	
+	private void writeResponse(int status, AstrixServiceInvocationResponse invocationResponse, boolean acceptsGzip, AsyncContext asyncContext) throws IOException {
+		HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+		Body body = HttpEnvelope.encodeResponse(invocationResponse);
+		if (acceptsGzip && body.size() > gzipThreshold) {
+			body = body.gzip();
+			resp.setHeader("Content-Encoding", HttpEnvelope.GZIP);
+		}
+		resp.setStatus(status);
+		resp.setContentType(HttpEnvelope.CONTENT_TYPE);
+		resp.setContentLength(body.size());
+		resp.getOutputStream().write(body.array(), 0, body.size());
+	}
+
+	private static void sendInternalServerError(AsyncContext asyncContext) {
+		HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+		if (resp.isCommitted()) {
+			// Part of the response is already sent, the client fails to decode the truncated body
+			return;
+		}
 		try {
-			ObjectInputStream input = new ObjectInputStream(req.getInputStream());
-			AstrixServiceInvocationRequest invocationRequest = (AstrixServiceInvocationRequest) input.readObject();
-			AstrixServiceInvocationResponse invocationResponse = serviceActivator.invokeService(invocationRequest);
-			new ObjectOutputStream(resp.getOutputStream()).writeObject(invocationResponse);
+			resp.reset();
+			resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		} catch (Exception e) {
-			throw new ServletException(e);
+			log.warn("Failed to send error response", e);
 		}
 	}
 
+	private static boolean acceptsGzip(HttpServletRequest req) {
+		String acceptEncoding = req.getHeader("Accept-Encoding");
+		return acceptEncoding != null && acceptEncoding.toLowerCase().contains(HttpEnvelope.GZIP);
+	}
+	
+	@Override
+	public void destroy() {
+		executor.shutdown();
+		super.destroy();
+	}
+
 }
@@ -15,144 +15,277 @@
  */
 package com.avanza.astrix.http;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.entity.SerializableEntity;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
-
-import rx.Observable;
-import rx.Observable.OnSubscribe;
-import rx.Subscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.subscriptions.Subscriptions;
 /**
+ * RemotingTransportSpi that sends invocations over http to a {@link HttpRemotingEndpoint} 
+ * on each cluster member. Each member is served by its own {@link HttpRemotingClient}. <p>
+ * 
+ * The members of the cluster are discovered dynamically, see {@link HttpClusterDiscovery}. Each
+ * time the membership changes the partition table is replaced (copy on write), which means that 
+ * invocations never lock when the target member is known. Invocations targeting a partition without 
+ * a known member (for instance while the member is restarted) are queued for a short while waiting 
+ * for the member to be discovered, rather than failing immediately. <p>
+ * 
+ * Several members might share the same clusterInstanceId, in which case the first one listed is the 
+ * primary member of the partition, which receives all ordinary invocations, and the others are replicas. 
+ * Replicas only receive {@link #submitReplicaRequest(AstrixServiceInvocationRequest, int) replica requests}, 
+ * for instance hedged broadcast invocations.
  * 
  * @author Elias Lindholm
  *
  */
 public final class HttpRemotingTransport implements RemotingTransportSpi {
+	
+	/**
+	 * Max number of invocations waiting for an unknown cluster member.
+	 */
+	public static final IntSetting HTTP_CLIENT_PENDING_QUEUE_SIZE = IntSetting.create("astrix.http.client.pendingQueueSize", 256);
+	/**
+	 * Max time an invocation waits for an unknown cluster member before failing with a ServiceUnavailableException.
+	 */
+	public static final LongSetting HTTP_CLIENT_PENDING_MAX_WAIT = LongSetting.create("astrix.http.client.pendingMaxWaitMillis", 1_000);
+	
+	private static final Logger log = LoggerFactory.getLogger(HttpRemotingTransport.class);
 
-	private final CloseableHttpAsyncClient httpclient = HttpAsyncClients.createDefault();
-	private final Map<Integer, ClusterMember> clusterMembers = new ConcurrentHashMap<>();
-	private final int clusterSize; // may be larger than clusterMembers.size in case not all members are discovered yet.
+	private final AstrixConfig config;
+	private final int clusterSize; // may be larger than the number of known members in case not all members are discovered yet.
+	private final DynamicIntProperty timeout;
+	private final BlockingQueue<PendingInvocation> pendingInvocations;
+	private final long pendingMaxWaitMillis;
+	private final Subscription membershipSubscription;
+	private final Partitioner partitioner;
+	private volatile HttpRemotingClient[] clusterMembers;
+	private volatile HttpRemotingClient[][] replicas;
 	
-	public HttpRemotingTransport(Collection<ClusterMember> clusterMembers, int clusterSize) {
+	public HttpRemotingTransport(Collection<ClusterMember> clusterMembers, int clusterSize, AstrixConfig config, DynamicIntProperty timeout) {
+		this(Observable.just(clusterMembers), clusterSize, config, timeout);
+	}
+	
+	public HttpRemotingTransport(Observable<? extends Collection<ClusterMember>> clusterMembers, int clusterSize, AstrixConfig config, DynamicIntProperty timeout) {
+		this(clusterMembers, clusterSize, config, timeout, new Partitioner.Modulo());
+	}
+	
+	/**
+	 * @param clusterMembers - emits the current members of the cluster each time the membership changes
+	 * @param clusterSize
+	 * @param config
+	 * @param timeout
+	 * @param partitioner - routes each invocation to the cluster member with the given clusterInstanceId
+	 */
+	public HttpRemotingTransport(Observable<? extends Collection<ClusterMember>> clusterMembers, int clusterSize, AstrixConfig config, DynamicIntProperty timeout, Partitioner partitioner) {
+		this.partitioner = partitioner;
+		this.config = config;
 		this.clusterSize = clusterSize;
-		for (ClusterMember clusterMember : clusterMembers) {
-			this.clusterMembers.put(clusterMember.getClusterInstanceId(), clusterMember);
-		}
+		this.timeout = timeout;
+		this.clusterMembers = new HttpRemotingClient[clusterSize];
+		this.replicas = new HttpRemotingClient[clusterSize][0];
+		this.pendingInvocations = new ArrayBlockingQueue<>(Math.max(1, config.get(HTTP_CLIENT_PENDING_QUEUE_SIZE).get()));
+		this.pendingMaxWaitMillis = config.get(HTTP_CLIENT_PENDING_MAX_WAIT).get();
+		this.membershipSubscription = clusterMembers.subscribe(this::updateClusterMembers, 
+															   e -> log.warn("Cluster membership discovery failed", e));
 	}
 	
-	@Override
-	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(
-			final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
-		ClusterMember clusterMember = getTargetMember(routingKey);
-		final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-		postRequest.setEntity(new SerializableEntity(request));
-		return Observable.unsafeCreate(new OnSubscribe<AstrixServiceInvocationResponse>() {
-			@Override
-			public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
-				try {
-					httpclient.execute(postRequest, serviceResponseCallback(t1));
-				} catch (Exception e) {
-					t1.onError(e);
+	/**
+	 * Replaces the members of the cluster. Clients to members whose endpoint is unchanged are reused, and 
+	 * clients to members no longer part of the cluster are destroyed. The first member listed for a given
+	 * clusterInstanceId is the primary member of the partition, the remaining are replicas. Invocations waiting for a discovered
+	 * member are resolved after the lock is released.
+	 * 
+	 * @param members
+	 */
+	void updateClusterMembers(Collection<ClusterMember> members) {
+		Collection<HttpRemotingClient> removed;
+		synchronized (this) {
+			Map<URI, HttpRemotingClient> currentByEndpoint = new HashMap<>();
+			for (HttpRemotingClient client : this.clusterMembers) {
+				if (client != null) {
+					currentByEndpoint.put(client.getEndpoint(), client);
 				}
 			}
-
-		});
+			for (HttpRemotingClient[] partitionReplicas : this.replicas) {
+				for (HttpRemotingClient client : partitionReplicas) {
+					currentByEndpoint.put(client.getEndpoint(), client);
+				}
+			}
+			HttpRemotingClient[] updated = new HttpRemotingClient[clusterSize];
+			List<List<HttpRemotingClient>> updatedReplicas = new ArrayList<>(clusterSize);
+			for (int partition = 0; partition < clusterSize; partition++) {
+				updatedReplicas.add(new ArrayList<>());
+			}
+			Map<URI, HttpRemotingClient> updatedByEndpoint = new HashMap<>();
+			for (ClusterMember member : members) {
+				int clusterInstanceId = member.getClusterInstanceId();
+				if (clusterInstanceId < 0 || clusterInstanceId >= clusterSize) {
+					log.warn("Ignoring cluster member outside of cluster. clusterInstanceId={} clusterSize={}", clusterInstanceId, clusterSize);
+					continue;
+				}
+				URI endpoint = URI.create(member.getRemoteEndpointUri());
+				if (updatedByEndpoint.containsKey(endpoint)) {
+					log.warn("Ignoring duplicate cluster member. endpoint={}", endpoint);
+					continue;
+				}
+				HttpRemotingClient client = currentByEndpoint.remove(endpoint);
+				if (client == null) {
+					client = new HttpRemotingClient(config, endpoint);
+				}
+				updatedByEndpoint.put(endpoint, client);
+				if (updated[clusterInstanceId] == null) {
+					updated[clusterInstanceId] = client;
+				} else {
+					updatedReplicas.get(clusterInstanceId).add(client);
+				}
+			}
+			HttpRemotingClient[][] replicas = new HttpRemotingClient[clusterSize][];
+			for (int partition = 0; partition < clusterSize; partition++) {
+				replicas[partition] = updatedReplicas.get(partition).toArray(new HttpRemotingClient[0]);
+			}
+			this.clusterMembers = updated;
+			this.replicas = replicas;
+			removed = currentByEndpoint.values();
+		}
+		removed.forEach(HttpRemotingClient::destroy);
+		for (PendingInvocation pending : pendingInvocations) {
+			// Read the current members, a concurrent update might already have replaced the ones set above 
+			HttpRemotingClient member = this.clusterMembers[pending.partition];
+			if (member != null && pendingInvocations.remove(pending)) {
+				pending.resolve(member);
+			}
+		}
+	}
+	
+	HttpRemotingClient getClusterMember(int partition) {
+		return this.clusterMembers[partition];
+	}
+	
+	HttpRemotingClient[] getReplicas(int partition) {
+		return this.replicas[partition];
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return Observable.defer(() -> invokeService(request, partitioner.partition(routingKey, partitionCount())));
 	}
 	
 	@Override
-	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(
-			Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		return submitRoutedRequestsIncrementally(requests).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequestsIncrementally(Collection<RoutedServiceInvocationRequest> requests) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(requests.size());
 		for (RoutedServiceInvocationRequest request : requests) {
-			result = result.mergeWith(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
+			responses.add(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
 		}
-		return result.toList();
+		return Observable.merge(responses);
 	}
 
 	@Override
-	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(
-			AstrixServiceInvocationRequest request) {
-		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
-		for (ClusterMember clusterMember : getAllClusterMembers()) {
-			final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-			postRequest.setEntity(new SerializableEntity(request));
-			result = result.mergeWith(Observable.unsafeCreate(new OnSubscribe<AstrixServiceInvocationResponse>() {
-				@Override
-				public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
-					try {
-						httpclient.execute(postRequest, serviceResponseCallback(t1));
-					} catch (Exception e) {
-						t1.onError(e);
-					}
-				}
-
-			}));
-		}
-		return result.toList();
+	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return submitBroadcastRequestIncrementally(request).toList();
 	}
 	
-	private Collection<ClusterMember> getAllClusterMembers() {
-		return this.clusterMembers.values();
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(clusterSize);
+		for (int partition = 0; partition < clusterSize; partition++) {
+			int targetPartition = partition;
+			responses.add(Observable.defer(() -> invokeService(request, targetPartition)));
+		}
+		return Observable.merge(responses);
 	}
 	
-	private ClusterMember getTargetMember(RoutingKey routingKey) {
-		int targetPartition = routingKey.hashCode() % partitionCount();
-		ClusterMember target = this.clusterMembers.get(targetPartition);
-		if (target == null) {
-			throw new ServiceUnavailableException("Failed to find cluster member with id: " + targetPartition);
+	private Observable<AstrixServiceInvocationResponse> invokeService(AstrixServiceInvocationRequest request, int partition) {
+		HttpRemotingClient target = this.clusterMembers[partition];
+		if (target != null) {
+			return target.invokeService(request, timeout.get());
 		}
-		return target;
+		return awaitClusterMember(partition).flatMap(member -> member.invokeService(request, timeout.get()));
 	}
-
-	private FutureCallback<HttpResponse> serviceResponseCallback(
-			final Subscriber<? super AstrixServiceInvocationResponse> t1) {
-		return new FutureCallback<HttpResponse>() {
-			public void completed(final HttpResponse response) {
-				try {
-					t1.onNext(getResponse(response));
-					t1.onCompleted();
-				} catch (Exception e) {
-					t1.onError(e);
-				}
+	
+	Observable<HttpRemotingClient> awaitClusterMember(int partition) {
+		Observable<HttpRemotingClient> member = Observable.unsafeCreate(subscriber -> {
+			PendingInvocation pending = new PendingInvocation(partition, subscriber);
+			if (!pendingInvocations.offer(pending)) {
+				subscriber.onError(new ServiceUnavailableException("Failed to find cluster member with id: " + partition + ", too many pending invocations"));
+				return;
 			}
-			public void failed(final Exception ex) {
-				t1.onError(ex);
+			subscriber.add(Subscriptions.create(() -> pendingInvocations.remove(pending)));
+			// The member might have been discovered before the invocation was queued
+			HttpRemotingClient discovered = this.clusterMembers[partition];
+			if (discovered != null && pendingInvocations.remove(pending)) {
+				pending.resolve(discovered);
 			}
-			public void cancelled() {
-				t1.onError(new RuntimeException("Request cancelled"));
+		});
+		return member.timeout(pendingMaxWaitMillis, TimeUnit.MILLISECONDS, 
+				Observable.error(new ServiceUnavailableException("Failed to find cluster member with id: " + partition)));
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+		return Observable.defer(() -> invokeService(request, partition));
+	}
+	
+	@Override
+	public boolean supportsPartitionRequests() {
+		return true;
+	}
+	
+	/**
+	 * Sends the invocation to a randomly chosen replica of the given partition. Fails with a 
+	 * {@link ServiceUnavailableException} if the partition has no known replica.
+	 */
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitReplicaRequest(AstrixServiceInvocationRequest request, int partition) {
+		return Observable.defer(() -> {
+			HttpRemotingClient[] partitionReplicas = this.replicas[partition];
+			if (partitionReplicas.length == 0) {
+				return Observable.error(new ServiceUnavailableException("No replica of cluster member with id: " + partition));
 			}
-		};
+			HttpRemotingClient replica = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+			return replica.invokeService(request, timeout.get());
+		});
 	}
 	
-	private AstrixServiceInvocationResponse getResponse(final HttpResponse response){
-		try {
-			HttpEntity entity = response.getEntity();
-			ObjectInputStream inputStream = new ObjectInputStream(entity.getContent());
-			return (AstrixServiceInvocationResponse) inputStream.readObject();
-		} catch (ClassNotFoundException | IOException e) {
-			throw new RuntimeException(e);
-		}
+	@Override
+	public boolean supportsReplicaRequests() {
+		return true;
+	}
+	
+	@Override
+	public boolean supportsSerializedArguments() {
+		return true;
 	}
 
 	@Override
@@ -160,19 +293,56 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 		return this.clusterSize;
 	}
 	
-	@PostConstruct
-	public void init() {
-	    httpclient.start();
+	@Override
+	public Partitioner partitioner() {
+		return this.partitioner;
 	}
 	
 	@PreDestroy
-	public void destroy() throws IOException {
-		httpclient.close();
+	public void destroy() {
+		membershipSubscription.unsubscribe();
+		HttpRemotingClient[] destroyed;
+		HttpRemotingClient[][] destroyedReplicas;
+		synchronized (this) {
+			destroyed = this.clusterMembers;
+			destroyedReplicas = this.replicas;
+			this.clusterMembers = new HttpRemotingClient[clusterSize];
+			this.replicas = new HttpRemotingClient[clusterSize][0];
+		}
+		for (HttpRemotingClient client : destroyed) {
+			if (client != null) {
+				client.destroy();
+			}
+		}
+		for (HttpRemotingClient[] partitionReplicas : destroyedReplicas) {
+			for (HttpRemotingClient client : partitionReplicas) {
+				client.destroy();
+			}
+		}
+	}
+	
+	private static final class PendingInvocation {
+		
+		private final int partition;
+		private final Subscriber<? super HttpRemotingClient> subscriber;
+		
+		PendingInvocation(int partition, Subscriber<? super HttpRemotingClient> subscriber) {
+			this.partition = partition;
+			this.subscriber = subscriber;
+		}
+		
+		void resolve(HttpRemotingClient member) {
+			subscriber.onNext(member);
+			subscriber.onCompleted();
+		}
+		
 	}
 	
-	private static class ClusterMember {
-		private String remoteEndpoint;
-		private int clusterInstanceId;
+	public static final class ClusterMember {
+		
+		private final String remoteEndpoint;
+		private final int clusterInstanceId;
+		
 		public ClusterMember(String remoteEndpoint, int clusterInstanceId) {
 			this.remoteEndpoint = remoteEndpoint;
 			this.clusterInstanceId = clusterInstanceId;
@@ -186,7 +356,6 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 			return clusterInstanceId;
 		}
 		
-		
 	}
 
 }
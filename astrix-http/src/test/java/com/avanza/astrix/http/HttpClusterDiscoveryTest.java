@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.registry.AstrixServiceRegistry;
+import com.avanza.astrix.beans.registry.AstrixServiceRegistryEntry;
+import com.avanza.astrix.beans.registry.ServiceRegistryClient;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.config.DynamicStringProperty;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+public class HttpClusterDiscoveryTest {
+	
+	@Test
+	public void parsesClusterMembers() throws Exception {
+		List<ClusterMember> members = HttpClusterDiscovery.parseMembers("0=http://host1:8080/astrix, 1=http://host2:8080/astrix");
+		
+		assertEquals(2, members.size());
+		assertEquals(0, members.get(0).getClusterInstanceId());
+		assertEquals("http://host1:8080/astrix", members.get(0).getRemoteEndpointUri());
+		assertEquals(1, members.get(1).getClusterInstanceId());
+		assertEquals("http://host2:8080/astrix", members.get(1).getRemoteEndpointUri());
+	}
+	
+	@Test
+	public void noClusterMembers() throws Exception {
+		assertTrue(HttpClusterDiscovery.parseMembers("").isEmpty());
+		assertTrue(HttpClusterDiscovery.parseMembers(null).isEmpty());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void memberWithoutClusterInstanceIdIsRejected() throws Exception {
+		HttpClusterDiscovery.parseMembers("http://host1:8080/astrix");
+	}
+	
+	@Test
+	public void invalidInitialMembersAreIgnoredUntilValidMembersAreSet() throws Exception {
+		DynamicStringProperty members = new DynamicStringProperty("http://host1:8080/astrix");
+		TestSubscriber<List<ClusterMember>> subscriber = new TestSubscriber<>();
+		HttpClusterDiscovery.fromConfig(members).subscribe(subscriber);
+		
+		subscriber.assertNoValues();
+		subscriber.assertNoTerminalEvent();
+		
+		members.set("0=http://host1:8080/astrix");
+		subscriber.assertValueCount(1);
+		assertEquals("http://host1:8080/astrix", subscriber.getOnNextEvents().get(0).get(0).getRemoteEndpointUri());
+	}
+	
+	@Test
+	public void stopsListeningOnMembersWhenUnsubscribed() throws Exception {
+		DynamicStringProperty members = new DynamicStringProperty("0=http://host1:8080/astrix");
+		TestSubscriber<List<ClusterMember>> subscriber = new TestSubscriber<>();
+		Subscription subscription = HttpClusterDiscovery.fromConfig(members).subscribe(subscriber);
+		subscriber.assertValueCount(1);
+		
+		subscription.unsubscribe();
+		members.set("0=http://host2:8080/astrix");
+		
+		subscriber.assertValueCount(1);
+	}
+	
+	@Test
+	public void providersWithInvalidClusterInstanceIdAreIgnored() throws Exception {
+		FakeServiceRegistry registry = new FakeServiceRegistry();
+		registry.addProvider("http://host2:8080/astrix", "1");
+		registry.addProvider("http://host3:8080/astrix", "not-a-number");
+		registry.addProvider("http://host1:8080/astrix", "0");
+		
+		TestScheduler scheduler = new TestScheduler();
+		TestSubscriber<List<ClusterMember>> subscriber = new TestSubscriber<>();
+		HttpClusterDiscovery.fromServiceRegistry(registry.client(), AstrixBeanKey.create(Runnable.class), 100, scheduler).subscribe(subscriber);
+		scheduler.triggerActions();
+		
+		subscriber.assertValueCount(1);
+		List<ClusterMember> members = subscriber.getOnNextEvents().get(0);
+		assertEquals(2, members.size());
+		assertEquals("http://host1:8080/astrix", members.get(0).getRemoteEndpointUri());
+		assertEquals("http://host2:8080/astrix", members.get(1).getRemoteEndpointUri());
+	}
+	
+	@Test
+	public void pollsServiceRegistryOnIoScheduler() throws Exception {
+		FakeServiceRegistry registry = new FakeServiceRegistry();
+		registry.addProvider("http://host1:8080/astrix", "0");
+		
+		TestSubscriber<List<ClusterMember>> subscriber = new TestSubscriber<>();
+		HttpClusterDiscovery.fromServiceRegistry(registry.client(), AstrixBeanKey.create(Runnable.class), 60_000).subscribe(subscriber);
+		subscriber.awaitValueCount(1, 5, TimeUnit.SECONDS);
+		subscriber.unsubscribe();
+		
+		assertNotEquals(Thread.currentThread(), subscriber.getLastSeenThread());
+		assertTrue(subscriber.getLastSeenThread().getName(), subscriber.getLastSeenThread().getName().startsWith("RxIoScheduler"));
+	}
+	
+	private static class FakeServiceRegistry implements AstrixServiceRegistry {
+		
+		private final List<AstrixServiceRegistryEntry> entries = new ArrayList<>();
+		
+		void addProvider(String endpoint, String clusterInstanceId) {
+			Map<String, String> properties = new HashMap<>();
+			properties.put(HttpClusterDiscovery.HTTP_ENDPOINT, endpoint);
+			properties.put(HttpClusterDiscovery.HTTP_CLUSTER_INSTANCE_ID, clusterInstanceId);
+			AstrixServiceRegistryEntry entry = new AstrixServiceRegistryEntry();
+			entry.setServiceProperties(properties);
+			entries.add(entry);
+		}
+		
+		ServiceRegistryClient client() {
+			return new ServiceRegistryClient(this, new ServiceConsumerProperties());
+		}
+
+		@Override
+		public <T> AstrixServiceRegistryEntry lookup(String type, String qualifier, ServiceConsumerProperties serviceConsumerProperties) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T> void register(AstrixServiceRegistryEntry properties, long lease) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T> void deregister(AstrixServiceRegistryEntry properties) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<AstrixServiceRegistryEntry> listServices() {
+			return entries;
+		}
+
+		@Override
+		public List<AstrixServiceRegistryEntry> listServices(String type, String qualifier) {
+			return entries;
+		}
+	}
+
+}
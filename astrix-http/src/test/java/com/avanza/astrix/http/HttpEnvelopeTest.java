@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.avanza.astrix.http.HttpEnvelope.Body;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.SerializedArgument;
+import com.avanza.astrix.remoting.util.BinaryValueFormat;
+import com.avanza.astrix.remoting.util.SizeLimitExceededException;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+public class HttpEnvelopeTest {
+	
+	@Test
+	public void requestRoundTrip() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, "com.avanza.FooService");
+		request.setHeader(AstrixServiceInvocationRequestHeaders.API_VERSION, "1");
+		request.setArguments(new Object[] { new SerializedArgument("foo", new Utf8Serializer(), 1), "bar", null });
+		
+		AstrixServiceInvocationRequest decoded = HttpEnvelope.decodeRequest(toInputStream(HttpEnvelope.encodeRequest(request)), HttpEnvelope.DEFAULT_MAX_BODY_SIZE);
+		
+		assertEquals(request.getHeaders(), decoded.getHeaders());
+		assertArrayEquals("\"foo\"".getBytes(StandardCharsets.UTF_8), (byte[]) decoded.getArguments()[0]);
+		assertEquals("bar", decoded.getArguments()[1]);
+		assertNull(decoded.getArguments()[2]);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void javaSerializedValuesAreNotWritten() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, "com.avanza.FooService");
+		request.setArguments(new Object[] { Arrays.asList(1, 2) });
+		
+		HttpEnvelope.encodeRequest(request);
+	}
+	
+	@Test(expected = StreamCorruptedException.class)
+	public void javaSerializedValuesAreRejectedOnDecode() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody("foo");
+		Body body = HttpEnvelope.encodeResponse(response);
+		byte[] bytes = Arrays.copyOf(body.array(), body.size());
+		int bodyTypeIndex = indexOf(bytes, BinaryValueFormat.VALUE_STRING);
+		bytes[bodyTypeIndex] = BinaryValueFormat.VALUE_SERIALIZED;
+		
+		HttpEnvelope.decodeResponse(new ByteArrayInputStream(bytes), HttpEnvelope.DEFAULT_MAX_BODY_SIZE);
+	}
+	
+	@Test
+	public void gzippedResponseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("fail");
+		response.setCorrelationId("correlation-1");
+		char[] largeBody = new char[64 * 1024];
+		Arrays.fill(largeBody, 'a');
+		response.setResponseBody(new String(largeBody));
+		
+		Body body = HttpEnvelope.encodeResponse(response);
+		Body gzipped = body.gzip();
+		AstrixServiceInvocationResponse decoded = HttpEnvelope.decodeResponse(HttpEnvelope.decompress(toInputStream(gzipped), "gzip", HttpEnvelope.DEFAULT_MAX_BODY_SIZE), 
+																		   HttpEnvelope.DEFAULT_MAX_BODY_SIZE);
+		
+		assertTrue(gzipped.size() < body.size());
+		assertTrue(decoded.isServiceUnavailable());
+		assertEquals("fail", decoded.getExceptionMsg());
+		assertEquals("correlation-1", decoded.getCorrelationId());
+		assertEquals(new String(largeBody), decoded.getResponseBody());
+		assertNull(decoded.getException());
+	}
+	
+	@Test(expected = SizeLimitExceededException.class)
+	public void requestClaimingMoreArgumentsThanFitInSizeLimitIsRejected() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(1); // Envelope version
+		out.writeInt(0); // Headers
+		out.writeInt(Integer.MAX_VALUE); // Arguments
+		
+		HttpEnvelope.decodeRequest(new ByteArrayInputStream(body.toByteArray()), 1024);
+	}
+	
+	@Test(expected = SizeLimitExceededException.class)
+	public void requestClaimingMoreHeadersThanFitInSizeLimitIsRejected() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(1);
+		out.writeInt(Integer.MAX_VALUE);
+		
+		HttpEnvelope.decodeRequest(new ByteArrayInputStream(body.toByteArray()), 1024);
+	}
+	
+	@Test(expected = SizeLimitExceededException.class)
+	public void stringLengthExceedingSizeLimitIsRejected() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(1);
+		out.writeInt(1);
+		out.writeInt(Integer.MAX_VALUE); // Header name length
+		
+		HttpEnvelope.decodeRequest(new ByteArrayInputStream(body.toByteArray()), 1024);
+	}
+	
+	@Test(expected = SizeLimitExceededException.class)
+	public void valueLengthExceedingSizeLimitIsRejected() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(1);
+		out.writeInt(0);
+		out.writeInt(1);
+		out.writeByte(BinaryValueFormat.VALUE_BYTES);
+		BinaryValueFormat.writeVarInt(out, Integer.MAX_VALUE);
+		
+		HttpEnvelope.decodeRequest(new ByteArrayInputStream(body.toByteArray()), 1024);
+	}
+	
+	@Test(expected = EOFException.class)
+	public void valueLengthExceedingBodyWithinSizeLimitIsRejected() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeByte(1);
+		out.writeInt(0);
+		out.writeInt(1);
+		out.writeByte(BinaryValueFormat.VALUE_BYTES);
+		BinaryValueFormat.writeVarInt(out, 512);
+		out.write(new byte[10]);
+		
+		HttpEnvelope.decodeRequest(new ByteArrayInputStream(body.toByteArray()), 1024);
+	}
+	
+	@Test(expected = SizeLimitExceededException.class)
+	public void bodyLargerThanSizeLimitIsRejected() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setArguments(new Object[] { new byte[2048] });
+		
+		HttpEnvelope.decodeRequest(toInputStream(HttpEnvelope.encodeRequest(request)), 1024);
+	}
+	
+	@Test(expected = SizeLimitExceededException.class)
+	public void decompressedBodyLargerThanSizeLimitIsRejected() throws Exception {
+		Body body = new Body();
+		body.write(new byte[1024 * 1024]);
+		Body gzipped = body.gzip();
+		assertTrue(gzipped.size() < 64 * 1024);
+		
+		try (InputStream decompressed = HttpEnvelope.decompress(toInputStream(gzipped), "gzip", 64 * 1024)) {
+			decompressed.readAllBytes();
+		}
+	}
+	
+	private static int indexOf(byte[] bytes, byte value) {
+		for (int i = bytes.length - 1; i >= 0; i--) {
+			if (bytes[i] == value) {
+				return i;
+			}
+		}
+		throw new AssertionError("Value not found: " + value);
+	}
+	
+	private static InputStream toInputStream(Body body) {
+		return new ByteArrayInputStream(body.array(), 0, body.size());
+	}
+	
+	private static class Utf8Serializer implements AstrixObjectSerializer {
+		
+		@Override
+		public <T> T deserialize(Object element, Type type, int version) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public Object serialize(Object element, int version) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public boolean supportsBinaryFormat(int version) {
+			return true;
+		}
+		
+		@Override
+		public void serializeTo(Object element, int version, OutputStream out) throws IOException {
+			out.write(("\"" + element + "\"").getBytes(StandardCharsets.UTF_8));
+		}
+		
+		@Override
+		public int version() {
+			return 1;
+		}
+	}
+
+}
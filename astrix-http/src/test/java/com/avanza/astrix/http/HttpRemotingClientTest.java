@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import rx.observers.TestSubscriber;
+
+public class HttpRemotingClientTest {
+	
+	private final List<Socket> acceptedConnections = new CopyOnWriteArrayList<>();
+	private AstrixApplicationContext context;
+	private ServerSocket unresponsiveServer;
+	private HttpRemotingClient client;
+	
+	@Before
+	public void setup() throws Exception {
+		// Accepts connections but never responds
+		unresponsiveServer = new ServerSocket(0);
+		Thread acceptor = new Thread(() -> {
+			try {
+				while (true) {
+					acceptedConnections.add(unresponsiveServer.accept());
+				}
+			} catch (Exception e) {
+				// Server closed
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		context = (AstrixApplicationContext) new TestAstrixConfigurer().configure();
+		client = new HttpRemotingClient(context.getInstance(AstrixConfig.class), URI.create("http://localhost:" + unresponsiveServer.getLocalPort() + "/astrix"));
+	}
+	
+	@After
+	public void cleanup() throws Exception {
+		client.destroy();
+		unresponsiveServer.close();
+		for (Socket connection : acceptedConnections) {
+			connection.close();
+		}
+		context.destroy();
+	}
+	
+	@Test
+	public void destroyFailsPendingInvocationsWithServiceUnavailable() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> response = new TestSubscriber<>();
+		client.invokeService(new AstrixServiceInvocationRequest(), 0).subscribe(response);
+		awaitPendingInvocations(1);
+		
+		client.destroy();
+		
+		response.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		response.assertError(ServiceUnavailableException.class);
+		assertEquals(0, client.pendingInvocationCount());
+	}
+	
+	@Test
+	public void invocationsOnDestroyedClientFailWithServiceUnavailable() throws Exception {
+		client.destroy();
+		
+		TestSubscriber<AstrixServiceInvocationResponse> response = new TestSubscriber<>();
+		client.invokeService(new AstrixServiceInvocationRequest(), 0).subscribe(response);
+		
+		response.assertError(ServiceUnavailableException.class);
+	}
+	
+	private void awaitPendingInvocations(int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 1000;
+		while (client.pendingInvocationCount() != expected) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Expected pending invocations: " + expected + ", but was: " + client.pendingInvocationCount());
+			}
+			Thread.sleep(1);
+		}
+	}
+
+}
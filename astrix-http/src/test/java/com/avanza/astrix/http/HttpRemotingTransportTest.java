@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class HttpRemotingTransportTest {
+	
+	private final PublishSubject<Collection<ClusterMember>> clusterMembers = PublishSubject.create();
+	private AstrixApplicationContext context;
+	private HttpRemotingTransport transport;
+	
+	@After
+	public void cleanup() {
+		if (transport != null) {
+			transport.destroy();
+		}
+		if (context != null) {
+			context.destroy();
+		}
+	}
+	
+	@Test
+	public void clientsToUnchangedMembersAreReusedAndRemovedMembersAreDestroyed() throws Exception {
+		transport = createTransport(2, 16, 1_000L);
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0), new ClusterMember("http://host2:8080/astrix", 1)));
+		HttpRemotingClient member0 = transport.getClusterMember(0);
+		HttpRemotingClient member1 = transport.getClusterMember(1);
+		
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0), new ClusterMember("http://host3:8080/astrix", 1)));
+		
+		assertSame(member0, transport.getClusterMember(0));
+		assertFalse(member0.isDestroyed());
+		assertNotSame(member1, transport.getClusterMember(1));
+		assertEquals("http://host3:8080/astrix", transport.getClusterMember(1).getEndpoint().toString());
+		assertTrue(member1.isDestroyed());
+	}
+	
+	@Test
+	public void membershipChangesReplaceThePartitionTable() throws Exception {
+		transport = createTransport(2, 16, 1_000L);
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0)));
+		HttpRemotingClient member0 = transport.getClusterMember(0);
+		
+		clusterMembers.onNext(Collections.emptyList());
+		
+		assertNull(transport.getClusterMember(0));
+		assertTrue(member0.isDestroyed());
+	}
+	
+	@Test
+	public void membersSharingClusterInstanceIdAreReplicasOfTheFirstListedMember() throws Exception {
+		transport = createTransport(2, 16, 1_000L);
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0), 
+											new ClusterMember("http://host2:8080/astrix", 1),
+											new ClusterMember("http://host3:8080/astrix", 0)));
+		
+		assertEquals("http://host1:8080/astrix", transport.getClusterMember(0).getEndpoint().toString());
+		assertEquals(1, transport.getReplicas(0).length);
+		assertEquals("http://host3:8080/astrix", transport.getReplicas(0)[0].getEndpoint().toString());
+		assertEquals(0, transport.getReplicas(1).length);
+		assertTrue(transport.supportsReplicaRequests());
+	}
+	
+	@Test
+	public void replicaClientsAreReusedAndDestroyedWhenRemoved() throws Exception {
+		transport = createTransport(1, 16, 1_000L);
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0), new ClusterMember("http://host2:8080/astrix", 0)));
+		HttpRemotingClient replica = transport.getReplicas(0)[0];
+		
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0), new ClusterMember("http://host2:8080/astrix", 0)));
+		assertSame(replica, transport.getReplicas(0)[0]);
+		
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0)));
+		assertEquals(0, transport.getReplicas(0).length);
+		assertTrue(replica.isDestroyed());
+	}
+	
+	@Test
+	public void replicaRequestFailsWhenPartitionHasNoReplica() throws Exception {
+		transport = createTransport(1, 16, 1_000L);
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0)));
+		
+		TestSubscriber<AstrixServiceInvocationResponse> response = new TestSubscriber<>();
+		transport.submitReplicaRequest(new AstrixServiceInvocationRequest(), 0).subscribe(response);
+		
+		response.assertError(ServiceUnavailableException.class);
+	}
+	
+	@Test
+	public void pendingInvocationIsResolvedWhenMemberIsDiscovered() throws Exception {
+		transport = createTransport(1, 16, 10_000L);
+		TestSubscriber<HttpRemotingClient> pending = new TestSubscriber<>();
+		transport.awaitClusterMember(0).subscribe(pending);
+		pending.assertNoValues();
+		
+		clusterMembers.onNext(Arrays.asList(new ClusterMember("http://host1:8080/astrix", 0)));
+		
+		pending.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		pending.assertValue(transport.getClusterMember(0));
+	}
+	
+	@Test
+	public void pendingInvocationTimesOutWhenMemberIsNotDiscovered() throws Exception {
+		transport = createTransport(1, 16, 50L);
+		TestSubscriber<HttpRemotingClient> pending = new TestSubscriber<>();
+		transport.awaitClusterMember(0).subscribe(pending);
+		
+		pending.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		pending.assertError(ServiceUnavailableException.class);
+	}
+	
+	@Test
+	public void invocationsAreRejectedWhenPendingQueueIsFull() throws Exception {
+		transport = createTransport(1, 1, 10_000L);
+		TestSubscriber<HttpRemotingClient> first = new TestSubscriber<>();
+		TestSubscriber<HttpRemotingClient> second = new TestSubscriber<>();
+		transport.awaitClusterMember(0).subscribe(first);
+		transport.awaitClusterMember(0).subscribe(second);
+		
+		first.assertNoTerminalEvent();
+		second.assertError(ServiceUnavailableException.class);
+		
+		// Unsubscribing releases the slot in the queue
+		first.unsubscribe();
+		TestSubscriber<HttpRemotingClient> third = new TestSubscriber<>();
+		transport.awaitClusterMember(0).subscribe(third);
+		third.assertNoTerminalEvent();
+	}
+	
+	private HttpRemotingTransport createTransport(int clusterSize, int pendingQueueSize, long pendingMaxWaitMillis) {
+		context = (AstrixApplicationContext) new TestAstrixConfigurer()
+				.set(HttpRemotingTransport.HTTP_CLIENT_PENDING_QUEUE_SIZE, pendingQueueSize)
+				.set(HttpRemotingTransport.HTTP_CLIENT_PENDING_MAX_WAIT, pendingMaxWaitMillis)
+				.configure();
+		return new HttpRemotingTransport(clusterMembers, clusterSize, context.getInstance(AstrixConfig.class), new DynamicIntProperty(1_000));
+	}
+
+}
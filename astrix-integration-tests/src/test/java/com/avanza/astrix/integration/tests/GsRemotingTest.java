@@ -16,11 +16,19 @@
 package com.avanza.astrix.integration.tests;
 
 import static com.avanza.astrix.test.util.AstrixTestUtil.assertThrows;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -32,12 +40,18 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.MapPropertySource;
 import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.registry.AstrixServiceRegistryEntry;
 import com.avanza.astrix.beans.registry.InMemoryServiceRegistry;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.context.AstrixApplicationContext;
 import com.avanza.astrix.context.AstrixContext;
 import com.avanza.astrix.context.TestAstrixConfigurer;
 import com.avanza.astrix.core.AstrixBroadcast;
 import com.avanza.astrix.core.AstrixRouting;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.gs.ClusteredProxyCache;
+import com.avanza.astrix.gs.ClusteredProxyCacheImpl.GigaSpaceInstance;
+import com.avanza.astrix.gs.SpaceTaskDispatcher;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
 import com.avanza.astrix.provider.core.AstrixApiProvider;
 import com.avanza.astrix.provider.core.AstrixApplication;
@@ -101,6 +115,86 @@ public class GsRemotingTest {
 		assertThrows(() -> ping.broadcastPing("foo"), ServiceUnavailableException.class);
 	}
 	
+	@Test
+	public void concurrentRoutedServiceInvocationsAreBatched() throws Exception {
+		AnnotationConfigApplicationContext pingServer = autoClosables.add(new AnnotationConfigApplicationContext());
+		pingServer.register(PingAppConfig.class);
+		pingServer.getEnvironment().getPropertySources().addFirst(new MapPropertySource("props", new HashMap<>() {{
+			put("serviceRegistryUri", serviceRegistry.getServiceUri());
+		}}));
+		pingServer.refresh();
+		String spaceName = pingServer.getBean(GigaSpace.class).getName();
+		
+		AstrixContext context = autoClosables.add(
+				new TestAstrixConfigurer().registerApiProvider(PingApi.class)
+										  .set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri())
+										  .set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 200)
+										  .set("astrix.beans.gigaspace." + spaceName + ".remoting.batchWindowMicros", "2000")
+										  .set("astrix.beans.gigaspace." + spaceName + ".remoting.maxBatchSize", "8")
+										  .configure());
+		Ping ping = context.waitForBean(Ping.class, 10000);
+		assertEquals("foo", ping.ping("foo"));
+		SpaceTaskDispatcher spaceTaskDispatcher = getSpaceTaskDispatcher(context, Ping.class);
+		long dispatchedTasksBefore = spaceTaskDispatcher.getDispatchedTaskCount();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<String>> replies = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				String msg = "msg-" + i;
+				replies.add(executor.submit(() -> ping.ping(msg)));
+			}
+			for (int i = 0; i < replies.size(); i++) {
+				assertEquals("msg-" + i, replies.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		long dispatchedTasks = spaceTaskDispatcher.getDispatchedTaskCount() - dispatchedTasksBefore;
+		assertThat("Dispatched tasks", dispatchedTasks, greaterThanOrEqualTo(100L / 8));
+		assertThat("Dispatched tasks", dispatchedTasks, lessThan(100L));
+	}
+	
+	@Test
+	public void routedServiceInvocationIsSubmittedWhenBatchWindowExpires() throws Exception {
+		AnnotationConfigApplicationContext pingServer = autoClosables.add(new AnnotationConfigApplicationContext());
+		pingServer.register(PingAppConfig.class);
+		pingServer.getEnvironment().getPropertySources().addFirst(new MapPropertySource("props", new HashMap<>() {{
+			put("serviceRegistryUri", serviceRegistry.getServiceUri());
+		}}));
+		pingServer.refresh();
+		String spaceName = pingServer.getBean(GigaSpace.class).getName();
+		
+		AstrixContext context = autoClosables.add(
+				new TestAstrixConfigurer().registerApiProvider(PingApi.class)
+										  .set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri())
+										  .set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 200)
+										  .set("astrix.beans.gigaspace." + spaceName + ".remoting.batchWindowMicros", "50000")
+										  .set("astrix.beans.gigaspace." + spaceName + ".remoting.maxBatchSize", "8")
+										  .configure());
+		Ping ping = context.waitForBean(Ping.class, 10000);
+		
+		long start = System.nanoTime();
+		assertEquals("foo", ping.ping("foo"));
+		
+		assertThat("Invocation waits for batch window", System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+	}
+	
+	private SpaceTaskDispatcher getSpaceTaskDispatcher(AstrixContext context, Class<?> api) {
+		ClusteredProxyCache proxyCache = ((AstrixApplicationContext) context).getInstance(ClusteredProxyCache.class);
+		for (AstrixServiceRegistryEntry entry : serviceRegistry.listServices()) {
+			if (api.getName().equals(entry.getServiceProperties().get(ServiceProperties.API))) {
+				GigaSpaceInstance proxy = proxyCache.getProxy(new ServiceProperties(entry.getServiceProperties()));
+				try {
+					return proxy.getSpaceTaskDispatcher();
+				} finally {
+					proxy.release();
+				}
+			}
+		}
+		throw new AssertionError("No provider registered for: " + api.getName());
+	}
+	
 	public interface Ping {
 		String ping(@AstrixRouting String msg);
 		@AstrixBroadcast
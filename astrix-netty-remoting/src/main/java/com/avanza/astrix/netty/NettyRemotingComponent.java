@@ -17,16 +17,23 @@ package com.avanza.astrix.netty;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.beans.config.BeanConfiguration;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
-import com.avanza.astrix.beans.service.SimpleBoundServiceBeanInstance;
-import com.avanza.astrix.core.remoting.RoutingStrategy;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.netty.client.NettyRemotingClient;
 import com.avanza.astrix.netty.server.NettyRemotingServer;
 import com.avanza.astrix.remoting.client.RemotingProxyFactory;
@@ -34,6 +41,9 @@ import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 import com.avanza.astrix.versioning.core.ObjectSerializerFactory;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+
 /**
  * This component is in a (very) experimental state.
  * 
@@ -46,38 +56,77 @@ public class NettyRemotingComponent implements ServiceComponent {
 
 	private static final String NETTY_PORT = "astrix.netty.port";
 	private static final String NETTY_HOST = "astrix.netty.host";
+	/**
+	 * Comma separated list of host:port for each partition of a partitioned service, ordered by partition.
+	 */
+	private static final String NETTY_MEMBERS = "astrix.netty.members";
 	public static final String NAME = "netty-remoting";
 	
 	private final RemotingProxyFactory remotingProxyFactory;
 	private final AstrixServiceActivator serviceActivator;
 	private final ObjectSerializerFactory objectSerializerFactory;
 	private final NettyRemotingServer remotingServer;
+	private final AstrixConfig config;
+	private final HashedWheelTimer clientTimeoutTimer = NettyRemotingClient.createTimeoutTimer();
+	private final EventLoopGroup clientGroup;
 	
 
 	public NettyRemotingComponent(RemotingProxyFactory remotingProxyFactory, AstrixServiceActivator serviceActivator,
-			ObjectSerializerFactory objectSerializerFactory, NettyRemotingServer remotingServer) {
+			ObjectSerializerFactory objectSerializerFactory, NettyRemotingServer remotingServer, AstrixConfig config) {
 		this.remotingProxyFactory = remotingProxyFactory;
 		this.serviceActivator = serviceActivator;
 		this.objectSerializerFactory = objectSerializerFactory;
 		this.remotingServer = remotingServer;
+		this.config = config;
+		this.clientGroup = NettyRemotingClient.createEventLoopGroup(config);
 	}
 
 	@Override
 	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
-		String host = serviceProperties.getProperty(NETTY_HOST);
-		int port = Integer.valueOf(serviceProperties.getProperty(NETTY_PORT));
-		log.info("Connecting to: {}:{}", host, port);
-		NettyRemotingClient remotingClient = new NettyRemotingClient();
-		remotingClient.connect(host, port);
-		NettyRemotingTransport nettyRemotingTransport = new NettyRemotingTransport(remotingClient);
-		T serviceProxy = remotingProxyFactory.create(serviceDefinition, serviceProperties, nettyRemotingTransport, new RoutingStrategy.RoundRobin());
-		return new SimpleBoundServiceBeanInstance<T>(serviceProxy); // TODO: proper lifecycle-management of remotingClient instance
+		List<NettyRemotingClient> partitions = new ArrayList<>();
+		try {
+			for (String member : getMembers(serviceProperties)) {
+				String[] hostAndPort = member.trim().split(":");
+				log.info("Connecting to: {}:{}", hostAndPort[0], hostAndPort[1]);
+				NettyRemotingClient remotingClient = new NettyRemotingClient(config, clientGroup, clientTimeoutTimer);
+				partitions.add(remotingClient);
+				remotingClient.connect(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+			}
+		} catch (RuntimeException e) {
+			partitions.forEach(NettyRemotingClient::destroy);
+			throw e;
+		}
+		// Invocations are timed out by the transport as well to avoid leaking pending calls when fault tolerance is disabled
+		BeanConfiguration beanConfiguration = config.getBeanConfiguration(serviceDefinition.getBeanKey());
+		DynamicIntProperty timeout = beanConfiguration.get(AstrixBeanSettings.TIMEOUT);
+		Partitioner partitioner = Partitioner.create(beanConfiguration.get(AstrixBeanSettings.PARTITIONER).get());
+		NettyRemotingTransport nettyRemotingTransport = new NettyRemotingTransport(partitions, timeout, partitioner);
+		T serviceProxy = remotingProxyFactory.create(serviceDefinition, serviceProperties, nettyRemotingTransport, new NettyRoutingStrategy());
+		return new NettyBoundServiceBeanInstance<T>(serviceProxy, partitions);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		clientGroup.shutdownGracefully();
+		clientTimeoutTimer.stop();
+	}
+
+	private static String[] getMembers(ServiceProperties serviceProperties) {
+		String members = serviceProperties.getProperty(NETTY_MEMBERS);
+		if (members != null) {
+			return members.split(",");
+		}
+		return new String[] { serviceProperties.getProperty(NETTY_HOST) + ":" + serviceProperties.getProperty(NETTY_PORT) };
 	}
 
 	@Override
 	public ServiceProperties parseServiceProviderUri(String serviceProviderUri) {
-		String[] hostAndPort = serviceProviderUri.split(":");
 		ServiceProperties result = new ServiceProperties();
+		if (serviceProviderUri.contains(",")) {
+			result.getProperties().put(NETTY_MEMBERS, serviceProviderUri);
+			return result;
+		}
+		String[] hostAndPort = serviceProviderUri.split(":");
 		result.getProperties().put(NETTY_HOST, hostAndPort[0]);
 		result.getProperties().put(NETTY_PORT, hostAndPort[1]);
 		return result;
@@ -88,6 +137,10 @@ public class NettyRemotingComponent implements ServiceComponent {
 		ServiceProperties properties = new ServiceProperties();
 		properties.getProperties().put(NETTY_HOST, getHostName()); // TODO
 		properties.getProperties().put(NETTY_PORT, Integer.toString(remotingServer.getPort()));
+		String clusterMembers = config.get(NettyRemotingServer.CLUSTER_MEMBERS).get();
+		if (clusterMembers != null) {
+			properties.getProperties().put(NETTY_MEMBERS, clusterMembers);
+		}
 		return properties;
 	}
 
@@ -123,4 +176,26 @@ public class NettyRemotingComponent implements ServiceComponent {
 		return true;
 	}
 
+	private static class NettyBoundServiceBeanInstance<T> implements BoundServiceBeanInstance<T> {
+		
+		private final T instance;
+		private final List<NettyRemotingClient> remotingClients;
+		
+		public NettyBoundServiceBeanInstance(T instance, List<NettyRemotingClient> remotingClients) {
+			this.instance = instance;
+			this.remotingClients = remotingClients;
+		}
+
+		@Override
+		public T get() {
+			return instance;
+		}
+
+		@Override
+		public void release() {
+			remotingClients.forEach(NettyRemotingClient::destroy);
+		}
+		
+	}
+
 }
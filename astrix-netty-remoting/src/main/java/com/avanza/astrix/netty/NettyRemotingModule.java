@@ -18,6 +18,7 @@ package com.avanza.astrix.netty;
 import com.avanza.astrix.beans.config.AstrixConfig;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.context.AstrixContextPlugin;
+import com.avanza.astrix.context.mbeans.MBeanExporter;
 import com.avanza.astrix.modules.ModuleContext;
 import com.avanza.astrix.remoting.client.RemotingProxyFactory;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
@@ -33,6 +34,7 @@ public class NettyRemotingModule implements AstrixContextPlugin {
 		moduleContext.importType(ObjectSerializerFactory.class);
 		moduleContext.importType(RemotingProxyFactory.class);
 		moduleContext.importType(AstrixConfig.class);
+		moduleContext.importType(MBeanExporter.class);
 		
 		moduleContext.export(ServiceComponent.class);
 	}
@@ -15,9 +15,12 @@
  */
 package com.avanza.astrix.netty;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.netty.client.NettyRemotingClient;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
@@ -27,34 +30,101 @@ import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 
 import rx.Observable;
 
+/**
+ * RemotingTransportSpi for a (possibly partitioned) cluster of netty remoting servers. <p>
+ * 
+ * Each partition is served by one {@link NettyRemotingClient}, and routed requests are sent
+ * to the partition given by the {@link Partitioner}, routingKey.hashCode() % partitionCount by default. 
+ * Partitioned and broadcasted requests are sent to all target partitions in parallel.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class NettyRemotingTransport implements RemotingTransportSpi {
 	
-	private NettyRemotingClient remotingClient;
+	private final List<NettyRemotingClient> partitions;
+	private final DynamicIntProperty timeout;
+	private final Partitioner partitioner;
 
-	public NettyRemotingTransport(NettyRemotingClient remotingClient) {
-		this.remotingClient = remotingClient;
+	public NettyRemotingTransport(List<NettyRemotingClient> partitions, DynamicIntProperty timeout) {
+		this(partitions, timeout, new Partitioner.Modulo());
+	}
+	
+	public NettyRemotingTransport(List<NettyRemotingClient> partitions, DynamicIntProperty timeout, Partitioner partitioner) {
+		if (partitions.isEmpty()) {
+			throw new IllegalArgumentException("At least one partition required");
+		}
+		this.partitions = new ArrayList<>(partitions);
+		this.timeout = timeout;
+		this.partitioner = partitioner;
 	}
 
 	@Override
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
-		return remotingClient.invokeService(request); // TODO: Add support for routing
+		return getPartition(routingKey).invokeService(request, timeout.get());
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitStreamingRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return getPartition(routingKey).invokeStreamingService(request, timeout.get());
+	}
+
+	private NettyRemotingClient getPartition(RoutingKey routingKey) {
+		return partitions.get(partitioner.partition(routingKey, partitions.size()));
 	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = submitRoutedRequest(requests.iterator().next().getRequest(), null);
-		return result.toList();
+		return submitRoutedRequestsIncrementally(requests).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequestsIncrementally(Collection<RoutedServiceInvocationRequest> requests) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(requests.size());
+		for (RoutedServiceInvocationRequest request : requests) {
+			responses.add(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
+		}
+		return Observable.merge(responses);
 	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
-		Observable<AstrixServiceInvocationResponse> result = submitRoutedRequest(request, null);
-		return result.toList();
+		return submitBroadcastRequestIncrementally(request).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		int timeoutMillis = timeout.get();
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(partitions.size());
+		for (NettyRemotingClient partition : partitions) {
+			responses.add(partition.invokeService(request, timeoutMillis));
+		}
+		return Observable.merge(responses);
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+		return partitions.get(partition).invokeService(request, timeout.get());
+	}
+	
+	@Override
+	public boolean supportsPartitionRequests() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSerializedArguments() {
+		return true;
 	}
 
 	@Override
 	public int partitionCount() {
-		return 1;
+		return partitions.size();
+	}
+	
+	@Override
+	public Partitioner partitioner() {
+		return partitioner;
 	}
 
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty;
+
+import java.lang.reflect.Method;
+
+import com.avanza.astrix.core.remoting.Router;
+import com.avanza.astrix.core.remoting.RoutingStrategy;
+import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
+
+/**
+ * Routes on @AstrixRouting annotated arguments when present, and round robin
+ * between the partitions otherwise.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class NettyRoutingStrategy implements RoutingStrategy {
+	
+	private final RoutingStrategy annotatedArgumentRouting = new DefaultAstrixRoutingStrategy();
+	private final RoutingStrategy roundRobin = new RoutingStrategy.RoundRobin();
+
+	@Override
+	public Router create(Method serviceMethod) {
+		Router result = annotatedArgumentRouting.create(serviceMethod);
+		if (result != null) {
+			return result;
+		}
+		return roundRobin.create(serviceMethod);
+	}
+
+}
@@ -15,65 +15,236 @@
  */
 package com.avanza.astrix.netty.client;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.transport.NettyTransport;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import rx.Observable;
 
+/**
+ * Client side of the netty remoting transport. <p>
+ * 
+ * Each client maintains a pool of channels to a single remoting server. Every invocation
+ * is sent on the active channel with the least number of outstanding requests, which
+ * allows concurrent invocations to use several event loops rather than queueing up on 
+ * a single channel.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public final class NettyRemotingClient {
+	
+	public static final IntSetting NETTY_CLIENT_POOL_SIZE = IntSetting.create("astrix.netty.client.poolsize", 4);
+	/**
+	 * Max number of elements of a streaming invocation that the server might send before they are received by the client.
+	 */
+	public static final IntSetting NETTY_CLIENT_STREAM_WINDOW = IntSetting.create("astrix.netty.client.streamWindow", 32);
+	public static final LongSetting NETTY_CLIENT_MIN_RECONNECT_BACKOFF = LongSetting.create("astrix.netty.client.minReconnectBackoffMillis", 100);
+	public static final LongSetting NETTY_CLIENT_MAX_RECONNECT_BACKOFF = LongSetting.create("astrix.netty.client.maxReconnectBackoffMillis", 5_000);
+	public static final LongSetting NETTY_CLIENT_DRAIN_TIMEOUT = LongSetting.create("astrix.netty.client.drainTimeoutMillis", 2_000);
+	/**
+	 * Number of event loop threads shared by all clients created by the netty remoting component, where
+	 * 0 means the netty default. A client that is not created by the component uses its own event loop 
+	 * group, where 0 means one thread for each pooled channel.
+	 */
+	public static final IntSetting NETTY_CLIENT_EVENT_LOOP_THREADS = IntSetting.create("astrix.netty.client.eventLoopThreads", 0);
 
-	private final EventLoopGroup group = new NioEventLoopGroup();
-	private final NettyRemotingClientHandler nettyRemotingClientHandler = new NettyRemotingClientHandler();
+	private final NettyTransport transport;
+	private final EventLoopGroup group;
+	private final Timer timeoutTimer;
+	private final boolean ownsEventLoopGroupAndTimer;
+	private final int poolSize;
+	private final int streamWindow;
+	private final long minReconnectBackoffMillis;
+	private final long maxReconnectBackoffMillis;
+	private final long drainTimeoutMillis;
+	private volatile PooledConnection[] connections = new PooledConnection[0];
+	
+	public NettyRemotingClient(AstrixConfig config) {
+		this(config, NettyTransport.create(config), null, createTimeoutTimer(), true);
+	}
+	
+	/**
+	 * Creates a client that uses an event loop group and a timer shared with other clients. The 
+	 * shared resources are not released when the client is destroyed.
+	 * 
+	 * @param config
+	 * @param group - an event loop group created using {@link #createEventLoopGroup(AstrixConfig)}
+	 * @param timeoutTimer - a timer created using {@link #createTimeoutTimer()}
+	 */
+	public NettyRemotingClient(AstrixConfig config, EventLoopGroup group, Timer timeoutTimer) {
+		this(config, NettyTransport.create(config), group, timeoutTimer, false);
+	}
+	
+	private NettyRemotingClient(AstrixConfig config, NettyTransport transport, EventLoopGroup group, Timer timeoutTimer, boolean ownsEventLoopGroupAndTimer) {
+		this.transport = transport;
+		this.timeoutTimer = timeoutTimer;
+		this.ownsEventLoopGroupAndTimer = ownsEventLoopGroupAndTimer;
+		this.poolSize = Math.max(1, config.get(NETTY_CLIENT_POOL_SIZE).get());
+		this.streamWindow = Math.max(1, config.get(NETTY_CLIENT_STREAM_WINDOW).get());
+		this.minReconnectBackoffMillis = config.get(NETTY_CLIENT_MIN_RECONNECT_BACKOFF).get();
+		this.maxReconnectBackoffMillis = config.get(NETTY_CLIENT_MAX_RECONNECT_BACKOFF).get();
+		this.drainTimeoutMillis = config.get(NETTY_CLIENT_DRAIN_TIMEOUT).get();
+		if (group != null) {
+			this.group = group;
+		} else {
+			int eventLoopThreads = config.get(NETTY_CLIENT_EVENT_LOOP_THREADS).get();
+			this.group = transport.createEventLoopGroup(eventLoopThreads > 0 ? eventLoopThreads : poolSize, "NettyRemotingClient");
+		}
+	}
+	
+	/**
+	 * @param config
+	 * @return a new event loop group to be shared by all clients created using the given configuration
+	 */
+	public static EventLoopGroup createEventLoopGroup(AstrixConfig config) {
+		return NettyTransport.create(config).createEventLoopGroup(config.get(NETTY_CLIENT_EVENT_LOOP_THREADS).get(), "NettyRemotingClient");
+	}
+	
+	/**
+	 * Each timer uses a dedicated thread, hence a timer should be shared by all clients in the same process.
+	 * 
+	 * @return a new timer suitable to expire invocations
+	 */
+	public static HashedWheelTimer createTimeoutTimer() {
+		return new HashedWheelTimer(new DefaultThreadFactory("NettyRemotingClient-timeout", true), 10, TimeUnit.MILLISECONDS);
+	}
 
     public void connect(String host, int port) {
-        Bootstrap b = new Bootstrap();
-        b.group(group)
-         .channel(NioSocketChannel.class)
-         .handler(new ChannelInitializer<SocketChannel>() {
-            @Override
-            public void initChannel(SocketChannel ch) throws Exception {
-                ChannelPipeline p = ch.pipeline();
-				p.addLast(
-                        new ObjectEncoder(),
-                        new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                        nettyRemotingClientHandler);
-            }
-         });
-
-        // Start the connection attempt.
-        ChannelFuture channel = b.connect(host, port);
+        Bootstrap b = transport.createBootstrap(group);
+        
+        PooledConnection[] pool = new PooledConnection[poolSize];
+        Promise<Void> anyConnected = group.next().newPromise();
+        AtomicInteger remainingConnectAttempts = new AtomicInteger(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+        	pool[i] = new PooledConnection(b, timeoutTimer, transport.getFlushPolicy(), host, port, minReconnectBackoffMillis, maxReconnectBackoffMillis);
+        	pool[i].connect().addListener(connectFuture -> {
+        		if (connectFuture.isSuccess()) {
+        			anyConnected.trySuccess(null);
+        		} else if (remainingConnectAttempts.decrementAndGet() == 0) {
+        			anyConnected.tryFailure(connectFuture.cause());
+        		}
+        	});
+        }
+        this.connections = pool;
+        
+        // Failed connections are retried in the background as long as at least one channel is connected
         try {
-			if (channel.await(1, TimeUnit.SECONDS)) {
-				if (channel.isSuccess()) {
-					return;
-				}
-			}
+        	if (anyConnected.await(1, TimeUnit.SECONDS) && anyConnected.isSuccess()) {
+        		return;
+        	}
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
         destroy();
         throw new IllegalArgumentException(String.format("Failed to connect to remoting server: %s:%d", host, port));
     }
     
-    public Observable<AstrixServiceInvocationResponse> invokeService(AstrixServiceInvocationRequest request) {
-    	return nettyRemotingClientHandler.sendInvocationRequest(request);
+    /**
+     * Invokes a service on the remoting server. 
+     * 
+     * @param request
+     * @param timeoutMillis - the time to wait for a response before failing with a ServiceUnavailableException, or 0 to wait indefinitely
+     * @return
+     */
+    public Observable<AstrixServiceInvocationResponse> invokeService(AstrixServiceInvocationRequest request, int timeoutMillis) {
+    	return Observable.defer(() -> {
+    		PooledConnection connection = selectConnection();
+    		if (connection == null) {
+    			return Observable.error(new ServiceUnavailableException("No active connection to remoting server"));
+    		}
+    		return connection.invokeService(request, timeoutMillis);
+    	});
+    }
+    
+    /**
+     * Invokes a service method returning an Observable on the remoting server. Each element emitted
+     * by the service is emitted as a separate response.
+     * 
+     * @param request
+     * @param timeoutMillis - the max time to wait for the next element before failing with a ServiceUnavailableException, or 0 to wait indefinitely
+     * @return
+     */
+    public Observable<AstrixServiceInvocationResponse> invokeStreamingService(AstrixServiceInvocationRequest request, int timeoutMillis) {
+    	return Observable.defer(() -> {
+    		PooledConnection connection = selectConnection();
+    		if (connection == null) {
+    			return Observable.error(new ServiceUnavailableException("No active connection to remoting server"));
+    		}
+    		return connection.invokeStreamingService(request, timeoutMillis, streamWindow);
+    	});
+    }
+    
+    private PooledConnection selectConnection() {
+    	PooledConnection[] pool = this.connections;
+    	if (pool.length == 0) {
+    		return null;
+    	}
+    	// Start at a random position to spread requests evenly between equally loaded channels
+    	int start = ThreadLocalRandom.current().nextInt(pool.length);
+    	PooledConnection result = null;
+    	int leastOutstandingRequests = Integer.MAX_VALUE;
+    	for (int i = 0; i < pool.length; i++) {
+    		PooledConnection candidate = pool[(start + i) % pool.length];
+    		if (!candidate.isActive()) {
+    			continue;
+    		}
+    		int outstandingRequests = candidate.outstandingRequests();
+    		if (outstandingRequests < leastOutstandingRequests) {
+    			result = candidate;
+    			leastOutstandingRequests = outstandingRequests;
+    		}
+    	}
+    	return result;
     }
     
+    /**
+     * Stops accepting new invocations and waits for outstanding invocations to complete, at 
+     * most the configured drain timeout, before closing all channels.
+     */
     public void destroy() {
-    	group.shutdownGracefully();
+    	PooledConnection[] pool = this.connections;
+    	List<Future<?>> closeFutures = new ArrayList<>(pool.length);
+    	for (PooledConnection connection : pool) {
+    		closeFutures.add(connection.drain());
+    	}
+    	long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+    	try {
+    		for (Future<?> closeFuture : closeFutures) {
+    			long remainingNanos = drainDeadline - System.nanoTime();
+    			if (remainingNanos <= 0 || !closeFuture.await(remainingNanos, TimeUnit.NANOSECONDS)) {
+    				break;
+    			}
+    		}
+    		// Channels that still have outstanding requests when the drain timeout elapses are closed forcibly
+    		for (PooledConnection connection : pool) {
+    			connection.close().sync();
+    		}
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	}
+    	if (ownsEventLoopGroupAndTimer) {
+    		group.shutdownGracefully();
+    		timeoutTimer.stop();
+    	}
     }
+
     		
-    		
-}
\ No newline at end of file
+}
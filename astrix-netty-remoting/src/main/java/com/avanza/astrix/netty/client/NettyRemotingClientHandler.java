@@ -15,73 +15,229 @@
  */
 package com.avanza.astrix.netty.client;
 
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.client.PendingCallTable.PendingCall;
+import com.avanza.astrix.netty.codec.InvocationRequestFrame;
+import com.avanza.astrix.netty.codec.InvocationResponseFrame;
+import com.avanza.astrix.netty.codec.StreamControlFrame;
+import com.avanza.astrix.netty.transport.FlushPolicy;
+import com.avanza.astrix.netty.transport.WriteBatcher;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 import rx.Observable;
-import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
 
+/**
+ * Handles the invocations sent on a single channel. Each channel in the 
+ * connection pool of a NettyRemotingClient uses its own handler instance.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class NettyRemotingClientHandler extends ChannelInboundHandlerAdapter {
 
 	private static final Logger log = LoggerFactory.getLogger(NettyRemotingClientHandler.class);
 
-	public static final String NETTY_RESPONSE_SUBSCRIBER_ID = "netty.responseSubscriberId";
 	private volatile ChannelHandlerContext ctx;
+	private volatile WriteBatcher writeBatcher;
+	private final AtomicLong nextRequestId = new AtomicLong();
+	private final PendingCallTable pendingCalls = new PendingCallTable();
+	private final Timer timeoutTimer;
+	private final FlushPolicy flushPolicy;
+	private volatile boolean draining = false;
 	
-	private ConcurrentMap<String, Subscriber<? super AstrixServiceInvocationResponse>> subscriberBySubscriberId = new ConcurrentHashMap<>(); 
+	public NettyRemotingClientHandler(Timer timeoutTimer, FlushPolicy flushPolicy) {
+		this.timeoutTimer = timeoutTimer;
+		this.flushPolicy = flushPolicy;
+	}
 
-    @Override
-    public void channelActive(ChannelHandlerContext ctx) {
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		this.writeBatcher = flushPolicy.newWriteBatcher(ctx);
 		this.ctx = ctx;
-//         Send the first message if this handler is a client-side handler.
-//        ctx.writeAndFlush();
-    }
+	}
+	
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		ServiceUnavailableException cause = new ServiceUnavailableException("Connection closed: " + ctx.channel().remoteAddress());
+		for (PendingCall call : pendingCalls.removeAll()) {
+			call.fail(cause);
+		}
+		super.channelInactive(ctx);
+	}
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-    	AstrixServiceInvocationResponse response = (AstrixServiceInvocationResponse) msg;
-    	String invocationId = response.getHeader(NETTY_RESPONSE_SUBSCRIBER_ID);
-    	Subscriber<? super AstrixServiceInvocationResponse> subscriber = getSubscriber(invocationId);
-    	if (subscriber == null) {
+    	if (msg instanceof StreamControlFrame) {
+    		// Only COMPLETE frames are sent by the server
+    		PendingCall call = removePendingCall(((StreamControlFrame) msg).getRequestId());
+    		if (call != null) {
+    			call.completeStream();
+    		}
+    		return;
+    	}
+    	InvocationResponseFrame responseFrame = (InvocationResponseFrame) msg;
+    	if (responseFrame.isStreamElement()) {
+    		receiveStreamElement(responseFrame);
+    		return;
+    	}
+    	PendingCall call = removePendingCall(responseFrame.getRequestId());
+    	if (call == null) {
     		return;
     	}
-    	subscriber.onNext(response);
-    	subscriber.onCompleted();
-        // Echo back the received object to the server.
-//        ctx.write(msg);
+    	call.complete(responseFrame.getResponse());
     }
 
-    private Subscriber<? super AstrixServiceInvocationResponse> getSubscriber(String invocationId) {
-    	Subscriber<? super AstrixServiceInvocationResponse> subscriber = this.subscriberBySubscriberId.remove(invocationId);
-		return subscriber;
+	private void receiveStreamElement(InvocationResponseFrame responseFrame) {
+		PendingCall call = pendingCalls.get(responseFrame.getRequestId());
+		if (call == null) {
+			return;
+		}
+		if (call.getTimeoutMillis() > 0) {
+			// The timeout of a streaming call applies to the time between two elements
+			call.setTimeout(scheduleTimeout(call.getRequestId(), call.getTimeoutMillis()));
+		}
+		call.next(responseFrame.getResponse());
+		call.getStreamCredit().elementReceived();
 	}
 
-	@Override
-    public void channelReadComplete(ChannelHandlerContext ctx) {
-        ctx.flush();
-    }
-
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         log.trace("Exception caught", cause);
         ctx.close();
     }
+    
+    boolean isActive() {
+    	ChannelHandlerContext currentCtx = this.ctx;
+    	return currentCtx != null && currentCtx.channel().isActive();
+    }
+    
+    int outstandingRequests() {
+    	return pendingCalls.size();
+    }
+    
+    /**
+     * Closes the channel as soon as all outstanding requests are completed. No new
+     * requests should be sent on this channel after invoking this method.
+     * 
+     * @return the close future of the channel
+     */
+    ChannelFuture closeWhenDrained() {
+    	this.draining = true;
+    	closeIfDrained();
+    	return ctx.channel().closeFuture();
+    }
+    
+    ChannelFuture close() {
+    	return ctx.close();
+    }
+    
+    private PendingCall removePendingCall(long requestId) {
+    	PendingCall call = pendingCalls.remove(requestId);
+    	if (call != null) {
+    		closeIfDrained();
+    	}
+    	return call;
+    }
+    
+    private void closeIfDrained() {
+    	if (draining && pendingCalls.size() == 0) {
+    		ctx.close();
+    	}
+    }
 
-	public Observable<AstrixServiceInvocationResponse> sendInvocationRequest(AstrixServiceInvocationRequest request) {
+	/**
+	 * Sends the given request on this channel. If no response is received within the
+	 * given timeout, then the returned Observable fails with a {@link ServiceUnavailableException}.
+	 * The timeout is also sent to the server, allowing it to discard the request if it can't
+	 * be handled in time.
+	 * 
+	 * @param request
+	 * @param timeoutMillis - the timeout in milliseconds, or 0 for no timeout
+	 * @return
+	 */
+	public Observable<AstrixServiceInvocationResponse> sendInvocationRequest(AstrixServiceInvocationRequest request, int timeoutMillis) {
 		return Observable.unsafeCreate((subscriber) -> {
-			String invocationId = UUID.randomUUID().toString();
-			this.subscriberBySubscriberId.put(invocationId, subscriber);
-			request.setHeader(NETTY_RESPONSE_SUBSCRIBER_ID, invocationId);
-			ctx.writeAndFlush(request);
+			long requestId = nextRequestId.incrementAndGet();
+			PendingCall pendingCall = new PendingCall(requestId, subscriber);
+			pendingCalls.put(pendingCall);
+			if (timeoutMillis > 0) {
+				pendingCall.setTimeout(scheduleTimeout(requestId, timeoutMillis));
+			}
+			writeBatcher.write(new InvocationRequestFrame(requestId, timeoutMillis, request)).addListener(future -> {
+				if (!future.isSuccess()) {
+					failSend(requestId, future.cause());
+				}
+			});
 		});
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Sends the given request to a service method returning an Observable. The returned Observable
+	 * emits one response for each element received from the server, and the server is never allowed to
+	 * send more elements than requested by the subscriber. <p>
+	 * 
+	 * The timeout applies to the time until the first element is received, and to the time between two elements.
+	 * 
+	 * @param request
+	 * @param timeoutMillis - the timeout in milliseconds, or 0 for no timeout
+	 * @param window - max number of elements in flight from the server
+	 * @return
+	 */
+	public Observable<AstrixServiceInvocationResponse> sendStreamingRequest(AstrixServiceInvocationRequest request, int timeoutMillis, int window) {
+		return Observable.unsafeCreate((subscriber) -> {
+			long requestId = nextRequestId.incrementAndGet();
+			StreamCredit credit = new StreamCredit(requestId, window, writeBatcher);
+			PendingCall pendingCall = new PendingCall(requestId, subscriber, credit, timeoutMillis);
+			pendingCalls.put(pendingCall);
+			if (timeoutMillis > 0) {
+				pendingCall.setTimeout(scheduleTimeout(requestId, timeoutMillis));
+			}
+			subscriber.add(Subscriptions.create(() -> {
+				PendingCall cancelledCall = removePendingCall(requestId);
+				if (cancelledCall != null) {
+					cancelledCall.cancelTimeout();
+					writeBatcher.write(StreamControlFrame.cancel(requestId));
+				}
+			}));
+			subscriber.setProducer(credit::request);
+			credit.start(timeoutMillis, request).addListener(future -> {
+				if (!future.isSuccess()) {
+					failSend(requestId, future.cause());
+				}
+			});
+		});
+	}
+
+	private Timeout scheduleTimeout(long requestId, int timeoutMillis) {
+		return timeoutTimer.newTimeout(timeout -> {
+			PendingCall expiredCall = removePendingCall(requestId);
+			if (expiredCall != null) {
+				if (expiredCall.getStreamCredit() != null) {
+					writeBatcher.write(StreamControlFrame.cancel(requestId));
+				}
+				expiredCall.fail(new ServiceUnavailableException(String.format(
+						"No response received within %d ms from: %s", timeoutMillis, ctx.channel().remoteAddress())));
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	private void failSend(long requestId, Throwable cause) {
+		PendingCall call = removePendingCall(requestId);
+		if (call != null) {
+			call.fail(new ServiceUnavailableException("Failed to send request to: " + ctx.channel().remoteAddress(), cause));
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.util.Timeout;
+import rx.Subscriber;
+
+/**
+ * Keeps track of the invocations waiting for a response on a single channel. <p>
+ * 
+ * Request id's are allocated sequentially on each channel, so the pending calls are 
+ * kept in a ring indexed by the lower bits of the request id. A call is only stored in 
+ * the overflow map if its slot in the ring is still occupied by an older call, which 
+ * requires more outstanding calls than slots in the ring.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class PendingCallTable {
+	
+	static final int DEFAULT_CAPACITY = 1024;
+	
+	private final AtomicReferenceArray<PendingCall> ring;
+	private final int mask;
+	private final ConcurrentMap<Long, PendingCall> overflow = new ConcurrentHashMap<>();
+	private final AtomicInteger size = new AtomicInteger();
+	
+	PendingCallTable() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	PendingCallTable(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+		}
+		this.ring = new AtomicReferenceArray<>(capacity);
+		this.mask = capacity - 1;
+	}
+	
+	void put(PendingCall call) {
+		size.incrementAndGet();
+		if (!ring.compareAndSet(slot(call.getRequestId()), null, call)) {
+			overflow.put(call.getRequestId(), call);
+		}
+	}
+	
+	/**
+	 * @param requestId
+	 * @return the pending call with the given id, or null if there is no such call
+	 */
+	PendingCall get(long requestId) {
+		PendingCall call = ring.get(slot(requestId));
+		if (call != null && call.getRequestId() == requestId) {
+			return call;
+		}
+		if (overflow.isEmpty()) {
+			return null;
+		}
+		return overflow.get(requestId);
+	}
+	
+	/**
+	 * Removes the pending call with the given request id.
+	 * 
+	 * @param requestId
+	 * @return the removed call, or null if there is no pending call with the given id
+	 */
+	PendingCall remove(long requestId) {
+		int slot = slot(requestId);
+		PendingCall call = ring.get(slot);
+		if (call != null && call.getRequestId() == requestId && ring.compareAndSet(slot, call, null)) {
+			size.decrementAndGet();
+			return call;
+		}
+		if (overflow.isEmpty()) {
+			return null;
+		}
+		call = overflow.remove(requestId);
+		if (call != null) {
+			size.decrementAndGet();
+		}
+		return call;
+	}
+	
+	/**
+	 * Removes all pending calls.
+	 * 
+	 * @return the removed calls
+	 */
+	List<PendingCall> removeAll() {
+		List<PendingCall> result = new ArrayList<>();
+		for (int slot = 0; slot < ring.length(); slot++) {
+			PendingCall call = ring.getAndSet(slot, null);
+			if (call != null) {
+				size.decrementAndGet();
+				result.add(call);
+			}
+		}
+		for (Long requestId : overflow.keySet()) {
+			PendingCall call = overflow.remove(requestId);
+			if (call != null) {
+				size.decrementAndGet();
+				result.add(call);
+			}
+		}
+		return result;
+	}
+	
+	int size() {
+		return size.get();
+	}
+	
+	private int slot(long requestId) {
+		return (int) requestId & mask;
+	}
+	
+	static final class PendingCall {
+		
+		private final long requestId;
+		private final Subscriber<? super AstrixServiceInvocationResponse> subscriber;
+		private final StreamCredit streamCredit;
+		private final int timeoutMillis;
+		private volatile Timeout timeout;
+		
+		PendingCall(long requestId, Subscriber<? super AstrixServiceInvocationResponse> subscriber) {
+			this(requestId, subscriber, null, 0);
+		}
+		
+		PendingCall(long requestId, Subscriber<? super AstrixServiceInvocationResponse> subscriber, StreamCredit streamCredit, int timeoutMillis) {
+			this.requestId = requestId;
+			this.subscriber = subscriber;
+			this.streamCredit = streamCredit;
+			this.timeoutMillis = timeoutMillis;
+		}
+		
+		int getTimeoutMillis() {
+			return timeoutMillis;
+		}
+		
+		/**
+		 * @return the credit of a streaming call, or null if this is not a streaming call
+		 */
+		StreamCredit getStreamCredit() {
+			return streamCredit;
+		}
+		
+		long getRequestId() {
+			return requestId;
+		}
+		
+		/**
+		 * Replaces the current timeout of this call, cancelling the previous timeout.
+		 */
+		void setTimeout(Timeout timeout) {
+			cancelTimeout();
+			this.timeout = timeout;
+		}
+		
+		void complete(AstrixServiceInvocationResponse response) {
+			cancelTimeout();
+			subscriber.onNext(response);
+			subscriber.onCompleted();
+		}
+		
+		/**
+		 * Emits one element of a streaming call.
+		 */
+		void next(AstrixServiceInvocationResponse response) {
+			subscriber.onNext(response);
+		}
+		
+		void completeStream() {
+			cancelTimeout();
+			subscriber.onCompleted();
+		}
+		
+		void fail(Throwable cause) {
+			cancelTimeout();
+			subscriber.onError(cause);
+		}
+
+		void cancelTimeout() {
+			Timeout currentTimeout = this.timeout;
+			if (currentTimeout != null) {
+				currentTimeout.cancel();
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.codec.NettyRemotingDecoder;
+import com.avanza.astrix.netty.codec.NettyRemotingEncoder;
+import com.avanza.astrix.netty.transport.FlushPolicy;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.Future;
+import rx.Observable;
+
+/**
+ * A single channel in the connection pool of a {@link NettyRemotingClient}. <p>
+ * 
+ * The connection automatically reconnects with an exponential backoff when 
+ * the underlying channel is closed, until the connection itself is closed.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class PooledConnection {
+	
+	private static final Logger log = LoggerFactory.getLogger(PooledConnection.class);
+	
+	private final Bootstrap bootstrap;
+	private final Timer timeoutTimer;
+	private final FlushPolicy flushPolicy;
+	private final String host;
+	private final int port;
+	private final long minReconnectBackoffMillis;
+	private final long maxReconnectBackoffMillis;
+	private final AtomicReference<NettyRemotingClientHandler> handler = new AtomicReference<>();
+	private volatile boolean closed = false;
+	private long reconnectBackoffMillis;
+	
+	PooledConnection(Bootstrap bootstrap, Timer timeoutTimer, FlushPolicy flushPolicy, String host, int port, long minReconnectBackoffMillis, long maxReconnectBackoffMillis) {
+		this.bootstrap = bootstrap;
+		this.timeoutTimer = timeoutTimer;
+		this.flushPolicy = flushPolicy;
+		this.host = host;
+		this.port = port;
+		this.minReconnectBackoffMillis = minReconnectBackoffMillis;
+		this.maxReconnectBackoffMillis = maxReconnectBackoffMillis;
+		this.reconnectBackoffMillis = minReconnectBackoffMillis;
+	}
+	
+	ChannelFuture connect() {
+		NettyRemotingClientHandler channelHandler = new NettyRemotingClientHandler(timeoutTimer, flushPolicy);
+		ChannelFuture connectFuture = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			public void initChannel(SocketChannel ch) throws Exception {
+				ch.pipeline().addLast(
+						new NettyRemotingEncoder(), 
+						new NettyRemotingDecoder(), 
+						channelHandler);
+			}
+		}).connect(host, port);
+		// The handler reports itself as active as soon as the channel is connected
+		this.handler.set(channelHandler);
+		connectFuture.addListener(future -> {
+			if (!future.isSuccess()) {
+				log.debug(String.format("Failed to connect to %s:%d", host, port), future.cause());
+				this.handler.compareAndSet(channelHandler, null);
+				reconnectLater();
+				return;
+			}
+			Channel channel = connectFuture.channel();
+			if (closed) {
+				channel.close();
+				return;
+			}
+			this.reconnectBackoffMillis = minReconnectBackoffMillis;
+			channel.closeFuture().addListener(closeFuture -> {
+				// Don't clear a handler that has already been replaced by a concurrent reconnect
+				this.handler.compareAndSet(channelHandler, null);
+				reconnectLater();
+			});
+		});
+		return connectFuture;
+	}
+
+	private void reconnectLater() {
+		if (closed) {
+			return;
+		}
+		long backoff = reconnectBackoffMillis;
+		this.reconnectBackoffMillis = Math.min(maxReconnectBackoffMillis, 2 * backoff);
+		log.info("Reconnecting to {}:{} in {} ms", host, port, backoff);
+		bootstrap.config().group().schedule(() -> {
+			if (!closed) {
+				connect();
+			}
+		}, backoff, TimeUnit.MILLISECONDS);
+	}
+
+	boolean isActive() {
+		NettyRemotingClientHandler currentHandler = this.handler.get();
+		return !closed && currentHandler != null && currentHandler.isActive();
+	}
+	
+	int outstandingRequests() {
+		NettyRemotingClientHandler currentHandler = this.handler.get();
+		return currentHandler != null ? currentHandler.outstandingRequests() : 0;
+	}
+	
+	Observable<AstrixServiceInvocationResponse> invokeService(AstrixServiceInvocationRequest request, int timeoutMillis) {
+		NettyRemotingClientHandler currentHandler = this.handler.get();
+		if (currentHandler == null) {
+			return Observable.error(new ServiceUnavailableException(String.format("Not connected to %s:%d", host, port)));
+		}
+		return currentHandler.sendInvocationRequest(request, timeoutMillis);
+	}
+	
+	Observable<AstrixServiceInvocationResponse> invokeStreamingService(AstrixServiceInvocationRequest request, int timeoutMillis, int window) {
+		NettyRemotingClientHandler currentHandler = this.handler.get();
+		if (currentHandler == null) {
+			return Observable.error(new ServiceUnavailableException(String.format("Not connected to %s:%d", host, port)));
+		}
+		return currentHandler.sendStreamingRequest(request, timeoutMillis, window);
+	}
+	
+	/**
+	 * Stops accepting new requests on this connection. Already sent requests
+	 * are still allowed to complete, and the channel is closed when the last of
+	 * them completes, or when {@link #close()} is invoked.
+	 * 
+	 * @return a future that completes when the channel is closed
+	 */
+	Future<?> drain() {
+		this.closed = true;
+		NettyRemotingClientHandler currentHandler = this.handler.get();
+		if (currentHandler == null || !currentHandler.isActive()) {
+			return bootstrap.config().group().next().newSucceededFuture(null);
+		}
+		return currentHandler.closeWhenDrained();
+	}
+	
+	/**
+	 * @return a future that completes when the channel is closed
+	 */
+	Future<?> close() {
+		this.closed = true;
+		NettyRemotingClientHandler currentHandler = this.handler.get();
+		if (currentHandler == null || !currentHandler.isActive()) {
+			return bootstrap.config().group().next().newSucceededFuture(null);
+		}
+		return currentHandler.close();
+	}
+
+}
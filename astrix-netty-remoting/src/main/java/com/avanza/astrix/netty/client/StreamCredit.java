@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import com.avanza.astrix.netty.codec.InvocationRequestFrame;
+import com.avanza.astrix.netty.codec.StreamControlFrame;
+import com.avanza.astrix.netty.transport.WriteBatcher;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+
+import io.netty.channel.ChannelFuture;
+/**
+ * Keeps track of the credit granted to the server for a single streaming invocation. <p>
+ * 
+ * The server is never granted more credit than requested by the subscriber, and never more than
+ * window elements might be in flight at the same time. Credit is granted in batches, when at least
+ * half of the window is available, to avoid sending one credit frame for each received element.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class StreamCredit {
+	
+	private final long requestId;
+	private final int window;
+	private final WriteBatcher writeBatcher;
+	private long unsentDemand;
+	private int granted;
+	private boolean started;
+	
+	StreamCredit(long requestId, int window, WriteBatcher writeBatcher) {
+		this.requestId = requestId;
+		this.window = window;
+		this.writeBatcher = writeBatcher;
+	}
+	
+	/**
+	 * Sends the request with the credit requested so far. Credit requested before this 
+	 * method is invoked is not sent until the request is sent.
+	 */
+	synchronized ChannelFuture start(int timeoutMillis, AstrixServiceInvocationRequest request) {
+		started = true;
+		return writeBatcher.write(new InvocationRequestFrame(requestId, timeoutMillis, nextGrant(), request));
+	}
+	
+	synchronized void request(long n) {
+		long demand = unsentDemand + n;
+		unsentDemand = demand < 0 ? Long.MAX_VALUE : demand;
+		if (started) {
+			sendCredit();
+		}
+	}
+	
+	synchronized void elementReceived() {
+		granted--;
+		sendCredit();
+	}
+	
+	private void sendCredit() {
+		int grant = nextGrant();
+		if (grant > 0) {
+			writeBatcher.write(StreamControlFrame.credit(requestId, grant));
+		}
+	}
+	
+	private int nextGrant() {
+		int available = window - granted;
+		if (granted > 0 && available < window / 2) {
+			return 0;
+		}
+		int grant = (int) Math.min(available, unsentDemand);
+		granted += grant;
+		if (unsentDemand != Long.MAX_VALUE) {
+			unsentDemand -= grant;
+		}
+		return grant;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+
+import java.util.concurrent.TimeUnit;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+/**
+ * An {@link AstrixServiceInvocationRequest} together with the id of the invocation 
+ * on the channel it is sent on. <p>
+ * 
+ * The timeout is relative to the point in time when the frame was created, i.e when
+ * the request was sent on the client side and when the request was received on
+ * the server side. A timeout of 0 means that the request never expires. The timeout
+ * written to the wire is the {@link #getRemainingTimeoutMillis() remaining} budget, 
+ * which excludes the time the frame spent queued on the client before it was encoded. <p>
+ * 
+ * Streaming requests carry the number of elements the server might send before it
+ * is granted more credit by the client.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class InvocationRequestFrame {
+	
+	static final int NOT_STREAMING = -1;
+	
+	private final long requestId;
+	private final int timeoutMillis;
+	private final int initialCredit;
+	private final AstrixServiceInvocationRequest request;
+	private final long createdNanos = System.nanoTime();
+	
+	public InvocationRequestFrame(long requestId, AstrixServiceInvocationRequest request) {
+		this(requestId, 0, request);
+	}
+	
+	public InvocationRequestFrame(long requestId, int timeoutMillis, AstrixServiceInvocationRequest request) {
+		this(requestId, timeoutMillis, NOT_STREAMING, request);
+	}
+	
+	public InvocationRequestFrame(long requestId, int timeoutMillis, int initialCredit, AstrixServiceInvocationRequest request) {
+		this.requestId = requestId;
+		this.timeoutMillis = timeoutMillis;
+		this.initialCredit = initialCredit;
+		this.request = request;
+	}
+	
+	public long getRequestId() {
+		return requestId;
+	}
+	
+	public int getTimeoutMillis() {
+		return timeoutMillis;
+	}
+	
+	public boolean isStreaming() {
+		return initialCredit != NOT_STREAMING;
+	}
+	
+	public int getInitialCredit() {
+		return initialCredit;
+	}
+	
+	public AstrixServiceInvocationRequest getRequest() {
+		return request;
+	}
+	
+	/**
+	 * Returns the part of the timeout that has not yet elapsed since this frame was created.
+	 * 
+	 * @return the remaining timeout in milliseconds, at least 1 for an expired frame, or 0 if the frame never expires
+	 */
+	public int getRemainingTimeoutMillis() {
+		if (timeoutMillis <= 0) {
+			return 0;
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos);
+		return (int) Math.max(1, timeoutMillis - elapsedMillis);
+	}
+	
+	public boolean isExpired() {
+		return timeoutMillis > 0 && System.nanoTime() - createdNanos > TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+	
+	@Override
+	public String toString() {
+		return "InvocationRequestFrame [requestId=" + requestId + ", timeoutMillis=" + timeoutMillis + ", initialCredit=" + initialCredit + ", request=" + request + "]";
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * An {@link AstrixServiceInvocationResponse} together with the id of the invocation 
+ * on the channel it is sent on. A response frame is either the single response to an invocation or
+ * one element of a streaming invocation.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class InvocationResponseFrame {
+	
+	private final long requestId;
+	private final AstrixServiceInvocationResponse response;
+	private final boolean streamElement;
+	
+	public InvocationResponseFrame(long requestId, AstrixServiceInvocationResponse response) {
+		this(requestId, response, false);
+	}
+	
+	private InvocationResponseFrame(long requestId, AstrixServiceInvocationResponse response, boolean streamElement) {
+		this.requestId = requestId;
+		this.response = response;
+		this.streamElement = streamElement;
+	}
+	
+	public static InvocationResponseFrame streamElement(long requestId, AstrixServiceInvocationResponse response) {
+		return new InvocationResponseFrame(requestId, response, true);
+	}
+	
+	public long getRequestId() {
+		return requestId;
+	}
+	
+	public AstrixServiceInvocationResponse getResponse() {
+		return response;
+	}
+	
+	public boolean isStreamElement() {
+		return streamElement;
+	}
+	
+	@Override
+	public String toString() {
+		return "InvocationResponseFrame [requestId=" + requestId + ", streamElement=" + streamElement + ", response=" + response + "]";
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+/**
+ * Decodes frames written by {@link NettyRemotingEncoder}. <p>
+ * 
+ * The decoder keeps track of the string tokens defined on its channel and must therefore
+ * not be shared between channels.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class NettyRemotingDecoder extends LengthFieldBasedFrameDecoder {
+	
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+	
+	private final List<String> stringByToken = new ArrayList<>(WireFormat.PREDEFINED_STRINGS);
+	
+	public NettyRemotingDecoder() {
+		this(DEFAULT_MAX_FRAME_LENGTH);
+	}
+	
+	public NettyRemotingDecoder(int maxFrameLength) {
+		super(maxFrameLength, 0, WireFormat.LENGTH_FIELD_LENGTH, 0, WireFormat.LENGTH_FIELD_LENGTH);
+	}
+	
+	@Override
+	protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+		ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+		if (frame == null) {
+			return null;
+		}
+		try {
+			byte frameType = frame.readByte();
+			switch (frameType) {
+			case WireFormat.FRAME_REQUEST:
+				long requestId = frame.readLong();
+				int timeoutMillis = WireFormat.readVarInt(frame);
+				int initialCredit = WireFormat.readVarInt(frame) - 1;
+				return new InvocationRequestFrame(requestId, timeoutMillis, initialCredit, decodeRequest(frame));
+			case WireFormat.FRAME_RESPONSE:
+				return new InvocationResponseFrame(frame.readLong(), decodeResponse(frame));
+			case WireFormat.FRAME_STREAM_ELEMENT:
+				return InvocationResponseFrame.streamElement(frame.readLong(), decodeResponse(frame));
+			case WireFormat.FRAME_STREAM_COMPLETE:
+				return StreamControlFrame.complete(frame.readLong());
+			case WireFormat.FRAME_STREAM_CREDIT:
+				return StreamControlFrame.credit(frame.readLong(), WireFormat.readVarInt(frame));
+			case WireFormat.FRAME_STREAM_CANCEL:
+				return StreamControlFrame.cancel(frame.readLong());
+			default:
+				throw new CorruptedFrameException("Unknown frame type: " + frameType);
+			}
+		} finally {
+			frame.release();
+		}
+	}
+	
+	private AstrixServiceInvocationRequest decodeRequest(ByteBuf frame) throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		int headerCount = WireFormat.readVarInt(frame);
+		for (int i = 0; i < headerCount; i++) {
+			String name = readToken(frame);
+			request.setHeader(name, readHeaderValue(name, frame));
+		}
+		int argumentCount = WireFormat.readVarInt(frame) - 1;
+		if (argumentCount >= 0) {
+			Object[] arguments = new Object[argumentCount];
+			for (int i = 0; i < argumentCount; i++) {
+				arguments[i] = WireFormat.readValue(frame);
+			}
+			request.setArguments(arguments);
+		}
+		return request;
+	}
+	
+	private AstrixServiceInvocationResponse decodeResponse(ByteBuf frame) throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		int headerCount = WireFormat.readVarInt(frame);
+		for (int i = 0; i < headerCount; i++) {
+			String name = readToken(frame);
+			response.setHeader(name, readHeaderValue(name, frame));
+		}
+		response.setThrownExceptionType(WireFormat.readNullableString(frame));
+		response.setExceptionMsg(WireFormat.readNullableString(frame));
+		response.setCorrelationId(WireFormat.readNullableString(frame));
+		response.setResponseBody(WireFormat.readValue(frame));
+		response.setException(WireFormat.readValue(frame));
+		return response;
+	}
+
+	private String readHeaderValue(String headerName, ByteBuf frame) {
+		if (WireFormat.TOKENIZED_HEADER_VALUES.contains(headerName)) {
+			return readToken(frame);
+		}
+		return WireFormat.readNullableString(frame);
+	}
+
+	private String readToken(ByteBuf frame) {
+		byte type = frame.readByte();
+		switch (type) {
+		case WireFormat.STRING_NULL:
+			return null;
+		case WireFormat.STRING_LITERAL:
+			return WireFormat.readUtf8(frame);
+		case WireFormat.STRING_REF:
+			int token = WireFormat.readVarInt(frame);
+			if (token >= stringByToken.size()) {
+				throw new CorruptedFrameException("Undefined string token: " + token);
+			}
+			return stringByToken.get(token);
+		case WireFormat.STRING_DEF:
+			int definedToken = WireFormat.readVarInt(frame);
+			String value = WireFormat.readUtf8(frame);
+			if (definedToken != stringByToken.size()) {
+				throw new CorruptedFrameException("Unexpected string token definition: " + definedToken);
+			}
+			stringByToken.add(value);
+			return value;
+		default:
+			throw new CorruptedFrameException("Unknown string type: " + type);
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+/**
+ * Encodes {@link InvocationRequestFrame}'s, {@link InvocationResponseFrame}'s and 
+ * {@link StreamControlFrame}'s into the frame format defined by {@link WireFormat}. <p>
+ * 
+ * The encoder keeps track of the string tokens defined on its channel and must therefore
+ * not be shared between channels.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class NettyRemotingEncoder extends MessageToByteEncoder<Object> {
+	
+	private final Map<String, Integer> tokenByString = new HashMap<>();
+	private final List<String> pendingDefinitions = new ArrayList<>();
+	
+	public NettyRemotingEncoder() {
+		for (String predefined : WireFormat.PREDEFINED_STRINGS) {
+			tokenByString.put(predefined, tokenByString.size());
+		}
+	}
+	
+	@Override
+	public boolean acceptOutboundMessage(Object msg) throws Exception {
+		return msg instanceof InvocationRequestFrame || msg instanceof InvocationResponseFrame || msg instanceof StreamControlFrame;
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+		int frameStart = out.writerIndex();
+		out.writeInt(0);
+		try {
+			if (msg instanceof InvocationRequestFrame) {
+				InvocationRequestFrame requestFrame = (InvocationRequestFrame) msg;
+				out.writeByte(WireFormat.FRAME_REQUEST);
+				out.writeLong(requestFrame.getRequestId());
+				// Time spent waiting for a flush is deducted from the budget of the server
+				WireFormat.writeVarInt(out, requestFrame.getRemainingTimeoutMillis());
+				WireFormat.writeVarInt(out, requestFrame.getInitialCredit() + 1);
+				encodeRequest(requestFrame.getRequest(), out);
+			} else if (msg instanceof InvocationResponseFrame) {
+				InvocationResponseFrame responseFrame = (InvocationResponseFrame) msg;
+				out.writeByte(responseFrame.isStreamElement() ? WireFormat.FRAME_STREAM_ELEMENT : WireFormat.FRAME_RESPONSE);
+				out.writeLong(responseFrame.getRequestId());
+				encodeResponse(responseFrame.getResponse(), out);
+			} else {
+				encodeStreamControl((StreamControlFrame) msg, out);
+			}
+		} catch (Exception e) {
+			// Tokens defined in a frame that is never sent are unknown to the remote side
+			for (String definition : pendingDefinitions) {
+				tokenByString.remove(definition);
+			}
+			throw e;
+		} finally {
+			pendingDefinitions.clear();
+		}
+		out.setInt(frameStart, out.writerIndex() - frameStart - WireFormat.LENGTH_FIELD_LENGTH);
+	}
+
+	private void encodeStreamControl(StreamControlFrame controlFrame, ByteBuf out) {
+		switch (controlFrame.getType()) {
+		case COMPLETE:
+			out.writeByte(WireFormat.FRAME_STREAM_COMPLETE);
+			out.writeLong(controlFrame.getRequestId());
+			break;
+		case CREDIT:
+			out.writeByte(WireFormat.FRAME_STREAM_CREDIT);
+			out.writeLong(controlFrame.getRequestId());
+			WireFormat.writeVarInt(out, controlFrame.getCredit());
+			break;
+		case CANCEL:
+			out.writeByte(WireFormat.FRAME_STREAM_CANCEL);
+			out.writeLong(controlFrame.getRequestId());
+			break;
+		}
+	}
+
+	private void encodeRequest(AstrixServiceInvocationRequest request, ByteBuf out) throws Exception {
+		writeHeaders(request.getHeaders(), out);
+		Object[] arguments = request.getArguments();
+		if (arguments == null) {
+			WireFormat.writeVarInt(out, 0);
+			return;
+		}
+		WireFormat.writeVarInt(out, arguments.length + 1);
+		for (Object argument : arguments) {
+			WireFormat.writeValue(out, argument);
+		}
+	}
+	
+	private void encodeResponse(AstrixServiceInvocationResponse response, ByteBuf out) throws Exception {
+		writeHeaders(response.getHeaders(), out);
+		WireFormat.writeNullableString(out, response.getThrownExceptionType());
+		WireFormat.writeNullableString(out, response.getExceptionMsg());
+		WireFormat.writeNullableString(out, response.getCorrelationId());
+		WireFormat.writeValue(out, response.getResponseBody());
+		WireFormat.writeValue(out, response.getException());
+	}
+
+	private void writeHeaders(Map<String, String> headers, ByteBuf out) {
+		WireFormat.writeVarInt(out, headers.size());
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			writeToken(header.getKey(), out);
+			if (WireFormat.TOKENIZED_HEADER_VALUES.contains(header.getKey())) {
+				writeToken(header.getValue(), out);
+			} else {
+				WireFormat.writeNullableString(out, header.getValue());
+			}
+		}
+	}
+
+	private void writeToken(String value, ByteBuf out) {
+		if (value == null) {
+			out.writeByte(WireFormat.STRING_NULL);
+			return;
+		}
+		Integer token = tokenByString.get(value);
+		if (token != null) {
+			out.writeByte(WireFormat.STRING_REF);
+			WireFormat.writeVarInt(out, token);
+			return;
+		}
+		if (tokenByString.size() >= WireFormat.MAX_STRING_TABLE_SIZE) {
+			out.writeByte(WireFormat.STRING_LITERAL);
+			WireFormat.writeUtf8(out, value);
+			return;
+		}
+		token = tokenByString.size();
+		tokenByString.put(value, token);
+		pendingDefinitions.add(value);
+		out.writeByte(WireFormat.STRING_DEF);
+		WireFormat.writeVarInt(out, token);
+		WireFormat.writeUtf8(out, value);
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+/**
+ * Controls the flow of the elements of a streaming invocation on the channel it is sent on.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class StreamControlFrame {
+	
+	public enum Type {
+		/**
+		 * Sent by the server when all elements have been sent.
+		 */
+		COMPLETE,
+		/**
+		 * Sent by the client to allow the server to send more elements.
+		 */
+		CREDIT,
+		/**
+		 * Sent by the client when it is no longer interested in more elements.
+		 */
+		CANCEL
+	}
+	
+	private final Type type;
+	private final long requestId;
+	private final int credit;
+	
+	private StreamControlFrame(Type type, long requestId, int credit) {
+		this.type = type;
+		this.requestId = requestId;
+		this.credit = credit;
+	}
+	
+	public static StreamControlFrame complete(long requestId) {
+		return new StreamControlFrame(Type.COMPLETE, requestId, 0);
+	}
+	
+	public static StreamControlFrame credit(long requestId, int credit) {
+		return new StreamControlFrame(Type.CREDIT, requestId, credit);
+	}
+	
+	public static StreamControlFrame cancel(long requestId) {
+		return new StreamControlFrame(Type.CANCEL, requestId, 0);
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public long getRequestId() {
+		return requestId;
+	}
+	
+	public int getCredit() {
+		return credit;
+	}
+	
+	@Override
+	public String toString() {
+		return "StreamControlFrame [type=" + type + ", requestId=" + requestId + ", credit=" + credit + "]";
+	}
+
+}
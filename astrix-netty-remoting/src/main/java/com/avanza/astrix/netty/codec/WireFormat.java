@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponseHeaders;
+import com.avanza.astrix.remoting.client.SerializedArgument;
+import com.avanza.astrix.remoting.util.BinaryValueFormat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+/**
+ * Defines the binary frame layout used by the netty remoting transport. <p>
+ * 
+ * Each frame is prefixed with a four byte length field followed by a single byte
+ * frame type and the eight byte id of the invocation. Request frames also carry the
+ * timeout of the invocation and, for streaming invocations, the initial number of elements the
+ * server might send (credit). Header names, and the values of headers that repeat on every invocation
+ * (api, version, method signature), are written as numeric tokens into a per channel
+ * string table. Argument payloads that are already serialized by the AstrixObjectSerializer
+ * (byte[] or String) are written as raw bytes directly into the frame buffer, and only other objects fall 
+ * back to java serialization. {@link SerializedArgument}'s are already serialized when the request is created, 
+ * hence the bytes are only copied into the frame, and are received as byte[]. Values are tagged using the 
+ * same types as the {@link BinaryValueFormat}. <p>
+ * 
+ * A streaming invocation is answered by one STREAM_ELEMENT frame for each element followed by a
+ * STREAM_COMPLETE frame, or a RESPONSE frame if it fails. The client grants more credit with STREAM_CREDIT
+ * frames and aborts the invocation with a STREAM_CANCEL frame. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class WireFormat {
+	
+	static final int LENGTH_FIELD_LENGTH = 4;
+	
+	static final byte FRAME_REQUEST = 1;
+	static final byte FRAME_RESPONSE = 2;
+	static final byte FRAME_STREAM_ELEMENT = 3;
+	static final byte FRAME_STREAM_COMPLETE = 4;
+	static final byte FRAME_STREAM_CREDIT = 5;
+	static final byte FRAME_STREAM_CANCEL = 6;
+	
+	static final byte STRING_NULL = 0;
+	static final byte STRING_REF = 1;
+	static final byte STRING_DEF = 2;
+	static final byte STRING_LITERAL = 3;
+	
+	/**
+	 * Upper bound for number of entries in the string table of a single channel. Strings
+	 * that does not fit in the table are written as literals.
+	 */
+	static final int MAX_STRING_TABLE_SIZE = 1024;
+	
+	/**
+	 * Strings known by both sides of a channel up front, i.e. they never have to be defined on the wire. The
+	 * position in the list defines the token.
+	 */
+	static final List<String> PREDEFINED_STRINGS = Collections.unmodifiableList(Arrays.asList(
+			AstrixServiceInvocationRequestHeaders.API_VERSION,
+			AstrixServiceInvocationRequestHeaders.SERVICE_API,
+			AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE,
+			AstrixServiceInvocationResponseHeaders.OPTIONAL_RETURN_VALUE_IS_NULL,
+			AstrixServiceInvocationResponseHeaders.SERVICE_UNAVAILABLE,
+			"true",
+			"false"));
+	
+	/**
+	 * Headers whose values are written as tokens. Values of all other headers are 
+	 * written as literals since they are likely to be unique for each invocation (correlation id's etc).
+	 */
+	static final Set<String> TOKENIZED_HEADER_VALUES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			AstrixServiceInvocationRequestHeaders.API_VERSION,
+			AstrixServiceInvocationRequestHeaders.SERVICE_API,
+			AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE,
+			AstrixServiceInvocationResponseHeaders.OPTIONAL_RETURN_VALUE_IS_NULL,
+			AstrixServiceInvocationResponseHeaders.SERVICE_UNAVAILABLE)));
+	
+	private WireFormat() {
+	}
+	
+	static void writeVarInt(ByteBuf out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	static int readVarInt(ByteBuf in) {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new CorruptedFrameException("Malformed varint");
+	}
+	
+	static void writeUtf8(ByteBuf out, CharSequence value) {
+		writeVarInt(out, ByteBufUtil.utf8Bytes(value));
+		ByteBufUtil.writeUtf8(out, value);
+	}
+	
+	/**
+	 * Reads a varint length and verifies that it does not exceed the remaining bytes of the frame.
+	 */
+	static int readLength(ByteBuf in) {
+		int length = readVarInt(in);
+		if (length < 0 || length > in.readableBytes()) {
+			throw new CorruptedFrameException("Invalid length: " + length + ", remaining bytes: " + in.readableBytes());
+		}
+		return length;
+	}
+	
+	static String readUtf8(ByteBuf in) {
+		int length = readLength(in);
+		String result = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+		in.skipBytes(length);
+		return result;
+	}
+	
+	static void writeNullableString(ByteBuf out, String value) {
+		if (value == null) {
+			out.writeByte(STRING_NULL);
+			return;
+		}
+		out.writeByte(STRING_LITERAL);
+		writeUtf8(out, value);
+	}
+	
+	static String readNullableString(ByteBuf in) {
+		byte type = in.readByte();
+		switch (type) {
+		case STRING_NULL:
+			return null;
+		case STRING_LITERAL:
+			return readUtf8(in);
+		default:
+			throw new CorruptedFrameException("Expected literal string, got type: " + type);
+		}
+	}
+	
+	static void writeValue(ByteBuf out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(BinaryValueFormat.VALUE_NULL);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			out.writeByte(BinaryValueFormat.VALUE_BYTES);
+			writeVarInt(out, bytes.length);
+			out.writeBytes(bytes);
+		} else if (value instanceof SerializedArgument) {
+			// Already serialized by the thread that created the request, only copied on the event loop
+			SerializedArgument argument = (SerializedArgument) value;
+			out.writeByte(BinaryValueFormat.VALUE_BYTES);
+			writeVarInt(out, argument.getLength());
+			out.writeBytes(argument.getBuffer(), 0, argument.getLength());
+		} else if (value instanceof String) {
+			out.writeByte(BinaryValueFormat.VALUE_STRING);
+			writeUtf8(out, (String) value);
+		} else {
+			out.writeByte(BinaryValueFormat.VALUE_SERIALIZED);
+			int lengthIndex = out.writerIndex();
+			out.writeInt(0);
+			try (ObjectOutputStream objectOutput = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+				objectOutput.writeObject(value);
+			}
+			out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+		}
+	}
+	
+	static Object readValue(ByteBuf in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case BinaryValueFormat.VALUE_NULL:
+			return null;
+		case BinaryValueFormat.VALUE_BYTES:
+			byte[] bytes = new byte[readLength(in)];
+			in.readBytes(bytes);
+			return bytes;
+		case BinaryValueFormat.VALUE_STRING:
+			return readUtf8(in);
+		case BinaryValueFormat.VALUE_SERIALIZED:
+			int length = in.readInt();
+			try (ObjectInputStream objectInput = new ObjectInputStream(new ByteBufInputStream(in.readSlice(length)))) {
+				return objectInput.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new CorruptedFrameException("Failed to deserialize value", e);
+			}
+		default:
+			throw new CorruptedFrameException("Unknown value type: " + type);
+		}
+	}
+
+}
@@ -26,6 +26,11 @@ import org.slf4j.LoggerFactory;
 
 import com.avanza.astrix.beans.config.AstrixConfig;
 import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.StringSetting;
+import com.avanza.astrix.context.mbeans.MBeanExporter;
+import com.avanza.astrix.netty.codec.NettyRemotingDecoder;
+import com.avanza.astrix.netty.codec.NettyRemotingEncoder;
+import com.avanza.astrix.netty.transport.NettyTransport;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 
 import io.netty.bootstrap.ServerBootstrap;
@@ -36,18 +41,32 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
 public final class NettyRemotingServer {
 	
 	public static final IntSetting NETTY_SERVER_BIND_PORT = IntSetting.create("astrix.netty.server.bindport", 12003);
+	/**
+	 * Comma separated list of host:port for all servers in a partitioned cluster, ordered by partition. Each server
+	 * in the cluster must use the same list. Not set for non-partitioned servers.
+	 */
+	public static final StringSetting CLUSTER_MEMBERS = StringSetting.create("astrix.netty.server.clusterMembers", null);
+	/**
+	 * Default {@link ServiceExecutionMode} for all exported api's.
+	 */
+	public static final StringSetting EXECUTION_MODE = StringSetting.create("astrix.netty.server.executionMode", ServiceExecutionMode.WORKER_POOL.name());
+	public static final IntSetting WORKER_POOL_SIZE = IntSetting.create("astrix.netty.server.workerPool.size", 10);
+	/**
+	 * Max number of invocations waiting for a thread for each exported api. Invocations exceeding this limit
+	 * are rejected with a service unavailable response.
+	 */
+	public static final IntSetting MAX_QUEUE_SIZE = IntSetting.create("astrix.netty.server.maxQueueSize", 1000);
+	/**
+	 * Number of event loop threads serving accepted connections. 0 means that the netty default is used.
+	 */
+	public static final IntSetting EVENT_LOOP_THREADS = IntSetting.create("astrix.netty.server.eventLoopThreads", 0);
 	private static final Logger log = LoggerFactory.getLogger(NettyRemotingServer.class);
 
 	private int port;
@@ -55,10 +74,16 @@ public final class NettyRemotingServer {
 	private EventLoopGroup workerGroup;
 	private AtomicBoolean started = new AtomicBoolean(false);
 	private AstrixServiceActivator serviceActivator;
+	private ServiceExecutors serviceExecutors;
+	private final NettyTransport transport;
+	private final int eventLoopThreads;
 	
-	public NettyRemotingServer(AstrixServiceActivator serviceActivator, AstrixConfig config) {
+	public NettyRemotingServer(AstrixServiceActivator serviceActivator, AstrixConfig config, MBeanExporter mbeanExporter) {
 		this.serviceActivator = serviceActivator;
 		this.port = config.get(NETTY_SERVER_BIND_PORT).get();
+		this.serviceExecutors = new ServiceExecutors(config, mbeanExporter);
+		this.transport = NettyTransport.create(config);
+		this.eventLoopThreads = config.get(EVENT_LOOP_THREADS).get();
 	}
 
 	public void verifyStarted() {
@@ -68,21 +93,19 @@ public final class NettyRemotingServer {
 	}
 	
     public void start() {
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
-        ServerBootstrap b = new ServerBootstrap();
-        b.group(bossGroup, workerGroup)
-         .channel(NioServerSocketChannel.class)
-         .option(ChannelOption.SO_REUSEADDR, false)
+        bossGroup = transport.createEventLoopGroup(1, "NettyRemotingServerBoss");
+        workerGroup = transport.createEventLoopGroup(eventLoopThreads, "NettyRemotingServerWorker");
+        ServerBootstrap b = transport.createServerBootstrap(bossGroup, workerGroup);
+        b.option(ChannelOption.SO_REUSEADDR, false)
          .handler(new LoggingHandler(LogLevel.INFO))
          .childHandler(new ChannelInitializer<SocketChannel>() {
 			@Override
             public void initChannel(SocketChannel ch) throws Exception {
                 ChannelPipeline p = ch.pipeline();
                 p.addLast(
-                        new ObjectEncoder(),
-                        new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                        new NettyRemotingServerHandler(serviceActivator));
+                        new NettyRemotingEncoder(),
+                        new NettyRemotingDecoder(),
+                        new NettyRemotingServerHandler(serviceActivator, serviceExecutors, transport.getFlushPolicy()));
             }
          });
 
@@ -93,7 +116,7 @@ public final class NettyRemotingServer {
 			if (channel.await(2, TimeUnit.SECONDS)) {
 				if (channel.isSuccess()) {
 					port = InetSocketAddress.class.cast(channel.channel().localAddress()).getPort();
-					log.info("NettyRemotingServer started listening on port={}", port);
+					log.info("NettyRemotingServer started listening on port={} transport={}", port, transport.getName());
 					return;
 				}
 			}
@@ -108,6 +131,7 @@ public final class NettyRemotingServer {
     		bossGroup.shutdownGracefully();
     		workerGroup.shutdownGracefully();
     	}
+    	serviceExecutors.shutdown();
 	}
 
 	public int getPort() {
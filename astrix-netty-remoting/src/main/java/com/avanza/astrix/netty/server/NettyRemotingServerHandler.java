@@ -15,39 +15,183 @@
  */
 package com.avanza.astrix.netty.server;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.avanza.astrix.netty.client.NettyRemotingClientHandler;
-import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.netty.codec.InvocationRequestFrame;
+import com.avanza.astrix.netty.codec.InvocationResponseFrame;
+import com.avanza.astrix.netty.codec.StreamControlFrame;
+import com.avanza.astrix.netty.transport.FlushPolicy;
+import com.avanza.astrix.netty.transport.WriteBatcher;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import rx.Observable;
+import rx.Subscriber;
 
 public class NettyRemotingServerHandler extends ChannelInboundHandlerAdapter {
 
-	private static final Logger log = LoggerFactory.getLogger(NettyRemotingClientHandler.class);
+	private static final Logger log = LoggerFactory.getLogger(NettyRemotingServerHandler.class);
 
 	private AstrixServiceActivator serviceActivator;
+	private ServiceExecutors serviceExecutors;
+	private FlushPolicy flushPolicy;
+	private WriteBatcher writeBatcher;
+	private final ConcurrentMap<Long, ServerStream> streams = new ConcurrentHashMap<>();
 	
-    public NettyRemotingServerHandler(AstrixServiceActivator serviceActivator) {
+    public NettyRemotingServerHandler(AstrixServiceActivator serviceActivator, ServiceExecutors serviceExecutors, FlushPolicy flushPolicy) {
 		this.serviceActivator = serviceActivator;
+		this.serviceExecutors = serviceExecutors;
+		this.flushPolicy = flushPolicy;
 	}
     
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+    	this.writeBatcher = flushPolicy.newWriteBatcher(ctx);
+    }
+    
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    	for (ServerStream stream : streams.values()) {
+    		stream.unsubscribe();
+    	}
+    	streams.clear();
+    	super.channelInactive(ctx);
+    }
+    
 	@Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-    	AstrixServiceInvocationRequest request = (AstrixServiceInvocationRequest) msg;
-		AstrixServiceInvocationResponse response = serviceActivator.invokeService(request);
-    	response.setHeader(NettyRemotingClientHandler.NETTY_RESPONSE_SUBSCRIBER_ID, request.getHeader(NettyRemotingClientHandler.NETTY_RESPONSE_SUBSCRIBER_ID));
-        ctx.write(response);
+		if (msg instanceof StreamControlFrame) {
+			handleStreamControl((StreamControlFrame) msg);
+			return;
+		}
+    	InvocationRequestFrame requestFrame = (InvocationRequestFrame) msg;
+    	String serviceApi = requestFrame.getRequest().getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API);
+    	try {
+    		if (requestFrame.isStreaming()) {
+    			// Registered before the invocation is executed to make sure that no credit is lost
+    			ServerStream stream = new ServerStream(requestFrame.getRequestId(), requestFrame.getInitialCredit(), serviceApi);
+    			streams.put(requestFrame.getRequestId(), stream);
+    			serviceExecutors.getExecutor(serviceApi).execute(() -> invokeStreamingService(requestFrame, stream));
+    		} else {
+    			serviceExecutors.getExecutor(serviceApi).execute(() -> invokeService(ctx, requestFrame));
+    		}
+    	} catch (RejectedExecutionException e) {
+    		streams.remove(requestFrame.getRequestId());
+    		writeBatcher.write(new InvocationResponseFrame(requestFrame.getRequestId(), createRejectedResponse(serviceApi, e)));
+    	}
     }
 
-    @Override
-    public void channelReadComplete(ChannelHandlerContext ctx) {
-        ctx.flush();
-    }
+	private void handleStreamControl(StreamControlFrame controlFrame) {
+		ServerStream stream = streams.get(controlFrame.getRequestId());
+		if (stream == null) {
+			return;
+		}
+		switch (controlFrame.getType()) {
+		case CREDIT:
+			stream.grant(controlFrame.getCredit());
+			break;
+		case CANCEL:
+			streams.remove(controlFrame.getRequestId());
+			stream.unsubscribe();
+			break;
+		default:
+			log.debug("Unexpected stream control frame: {}", controlFrame);
+		}
+	}
+
+	private static AstrixServiceInvocationResponse createRejectedResponse(String serviceApi, RejectedExecutionException e) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("Service invocation rejected by server, serviceApi=" + serviceApi + ": " + e.getMessage());
+		return response;
+	}
+
+	private void invokeService(ChannelHandlerContext ctx, InvocationRequestFrame requestFrame) {
+		if (requestFrame.isExpired()) {
+    		// The client has already given up on the request
+    		log.debug("Discarding expired request: {}", requestFrame);
+    		return;
+    	}
+		// Service methods returning a reactive type completes asynchronously, without blocking the service executor 
+		Observable.defer(() -> serviceActivator.invokeServiceAsync(requestFrame.getRequest())).subscribe(
+				response -> writeBatcher.write(new InvocationResponseFrame(requestFrame.getRequestId(), response)),
+				e -> {
+					log.warn("Service invocation failed: " + requestFrame, e);
+					writeBatcher.write(new InvocationResponseFrame(requestFrame.getRequestId(), AstrixServiceActivator.createErrorResponse(e)));
+				});
+	}
+	
+	private void invokeStreamingService(InvocationRequestFrame requestFrame, ServerStream stream) {
+		if (requestFrame.isExpired()) {
+			log.debug("Discarding expired request: {}", requestFrame);
+			streams.remove(requestFrame.getRequestId());
+			return;
+		}
+		Observable.defer(() -> serviceActivator.invokeStreamingService(requestFrame.getRequest())).subscribe(stream);
+	}
+	
+	/**
+	 * Sends the elements emitted by a service to the client. Elements are only requested from the
+	 * service when the client has granted credit for them, and more elements are requested on the
+	 * executor of the service (never on the event loop unless the service executes on the event loop).
+	 */
+	private final class ServerStream extends Subscriber<AstrixServiceInvocationResponse> {
+		
+		private final long requestId;
+		private final int initialCredit;
+		private final String serviceApi;
+		
+		ServerStream(long requestId, int initialCredit, String serviceApi) {
+			this.requestId = requestId;
+			this.initialCredit = initialCredit;
+			this.serviceApi = serviceApi;
+		}
+		
+		@Override
+		public void onStart() {
+			request(initialCredit);
+		}
+		
+		void grant(int credit) {
+			try {
+				serviceExecutors.getExecutor(serviceApi).execute(() -> request(credit));
+			} catch (RejectedExecutionException e) {
+				if (streams.remove(requestId) != null) {
+					unsubscribe();
+					writeBatcher.write(new InvocationResponseFrame(requestId, createRejectedResponse(serviceApi, e)));
+				}
+			}
+		}
+
+		@Override
+		public void onNext(AstrixServiceInvocationResponse response) {
+			writeBatcher.write(InvocationResponseFrame.streamElement(requestId, response));
+		}
+
+		@Override
+		public void onCompleted() {
+			if (streams.remove(requestId) != null) {
+				writeBatcher.write(StreamControlFrame.complete(requestId));
+			}
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			log.info(String.format("Streaming service invocation failed. serviceApi=%s", serviceApi), e);
+			if (streams.remove(requestId) != null) {
+				writeBatcher.write(new InvocationResponseFrame(requestId, AstrixServiceActivator.createErrorResponse(e)));
+			}
+		}
+		
+	}
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+/**
+ * Defines what thread a service invocation received by the {@link NettyRemotingServer} 
+ * is executed on.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public enum ServiceExecutionMode {
+	/**
+	 * Invokes the service directly on the netty event loop that received the request. Only
+	 * suitable for services that never block and complete in a few microseconds.
+	 */
+	EVENT_LOOP,
+	/**
+	 * Invokes the service on a bounded thread pool dedicated to the exported api.
+	 */
+	WORKER_POOL,
+	/**
+	 * Invokes the service on a new virtual thread. Falls back to {@link #WORKER_POOL} when 
+	 * virtual threads are not supported by the jvm.
+	 */
+	VIRTUAL_THREAD;
+	
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the invocations of a single exported api according to its {@link ServiceExecutionMode}. <p>
+ * 
+ * The number of invocations waiting for a thread is bounded by the configured queue size. Invocations 
+ * submitted when the queue is full are rejected with a {@link RejectedExecutionException}.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class ServiceExecutor implements ServiceExecutorMBean {
+	
+	private final ServiceExecutionMode executionMode;
+	private final ExecutorService executorService;
+	private final int maxQueueSize;
+	private final AtomicInteger queueSize = new AtomicInteger();
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong completedCount = new AtomicLong();
+	
+	private ServiceExecutor(ServiceExecutionMode executionMode, ExecutorService executorService, int maxQueueSize) {
+		this.executionMode = executionMode;
+		this.executorService = executorService;
+		this.maxQueueSize = maxQueueSize;
+	}
+	
+	static ServiceExecutor eventLoop() {
+		return new ServiceExecutor(ServiceExecutionMode.EVENT_LOOP, null, Integer.MAX_VALUE);
+	}
+	
+	static ServiceExecutor create(ServiceExecutionMode executionMode, ExecutorService executorService, int maxQueueSize) {
+		return new ServiceExecutor(executionMode, executorService, maxQueueSize);
+	}
+	
+	void execute(Runnable invocation) {
+		if (executorService == null) {
+			run(invocation);
+			return;
+		}
+		if (queueSize.incrementAndGet() > maxQueueSize) {
+			queueSize.decrementAndGet();
+			rejectedCount.incrementAndGet();
+			throw new RejectedExecutionException("Queue full. maxQueueSize=" + maxQueueSize);
+		}
+		try {
+			executorService.execute(() -> {
+				queueSize.decrementAndGet();
+				run(invocation);
+			});
+		} catch (RejectedExecutionException e) {
+			queueSize.decrementAndGet();
+			rejectedCount.incrementAndGet();
+			throw e;
+		}
+	}
+
+	private void run(Runnable invocation) {
+		activeCount.incrementAndGet();
+		try {
+			invocation.run();
+		} finally {
+			activeCount.decrementAndGet();
+			completedCount.incrementAndGet();
+		}
+	}
+	
+	void shutdown() {
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+	}
+
+	@Override
+	public String getExecutionMode() {
+		return executionMode.name();
+	}
+
+	@Override
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+
+	@Override
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	@Override
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+}
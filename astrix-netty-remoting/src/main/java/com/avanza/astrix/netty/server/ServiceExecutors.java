@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.context.mbeans.MBeanExporter;
+import com.avanza.astrix.core.util.NamedThreadFactory;
+
+/**
+ * Creates and keeps track of the {@link ServiceExecutor} used for each exported api. <p>
+ * 
+ * The execution mode defaults to {@link NettyRemotingServer#EXECUTION_MODE} and might be overridden for an individual
+ * api using the setting "astrix.netty.server.executionMode.[fully qualified api name]".
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class ServiceExecutors {
+	
+	private static final Logger log = LoggerFactory.getLogger(ServiceExecutors.class);
+	
+	private final ConcurrentMap<String, ServiceExecutor> executorByApi = new ConcurrentHashMap<>();
+	private final AstrixConfig config;
+	private final MBeanExporter mbeanExporter;
+	
+	ServiceExecutors(AstrixConfig config, MBeanExporter mbeanExporter) {
+		this.config = config;
+		this.mbeanExporter = mbeanExporter;
+	}
+	
+	/**
+	 * @param serviceApi - the fully qualified name of the invoked api
+	 * @return the executor for the given api
+	 * @throws RejectedExecutionException if the serviceApi is null, i.e the request lacks a service api header
+	 */
+	ServiceExecutor getExecutor(String serviceApi) {
+		if (serviceApi == null) {
+			throw new RejectedExecutionException("Missing service api header");
+		}
+		ServiceExecutor result = executorByApi.get(serviceApi);
+		if (result != null) {
+			return result;
+		}
+		ServiceExecutor executor = createExecutor(serviceApi);
+		result = executorByApi.putIfAbsent(serviceApi, executor);
+		if (result != null) {
+			// Concurrently created by another thread
+			executor.shutdown();
+			return result;
+		}
+		log.info("Invocations of {} are executed using executionMode={}", serviceApi, executor.getExecutionMode());
+		mbeanExporter.registerMBean(executor, "NettyRemotingServerExecutors", serviceApi);
+		return executor;
+	}
+
+	private ServiceExecutor createExecutor(String serviceApi) {
+		ServiceExecutionMode defaultExecutionMode = parseExecutionMode(NettyRemotingServer.EXECUTION_MODE.name(), 
+				config.get(NettyRemotingServer.EXECUTION_MODE).get(), ServiceExecutionMode.WORKER_POOL);
+		String apiExecutionModeSetting = NettyRemotingServer.EXECUTION_MODE.name() + "." + serviceApi;
+		ServiceExecutionMode executionMode = parseExecutionMode(apiExecutionModeSetting, 
+				config.getStringProperty(apiExecutionModeSetting, defaultExecutionMode.name()).get(), defaultExecutionMode);
+		return createExecutor(serviceApi, executionMode);
+	}
+	
+	private static ServiceExecutionMode parseExecutionMode(String settingName, String value, ServiceExecutionMode fallback) {
+		try {
+			return ServiceExecutionMode.valueOf(value);
+		} catch (IllegalArgumentException | NullPointerException e) {
+			log.warn("Invalid execution mode {}={}, using {}", settingName, value, fallback);
+			return fallback;
+		}
+	}
+
+	private ServiceExecutor createExecutor(String serviceApi, ServiceExecutionMode executionMode) {
+		int maxQueueSize = config.get(NettyRemotingServer.MAX_QUEUE_SIZE).get();
+		switch (executionMode) {
+		case EVENT_LOOP:
+			return ServiceExecutor.eventLoop();
+		case VIRTUAL_THREAD:
+			ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+			if (virtualThreadExecutor != null) {
+				return ServiceExecutor.create(executionMode, virtualThreadExecutor, maxQueueSize);
+			}
+			log.warn("Virtual threads not supported by jvm, using {} for {}", ServiceExecutionMode.WORKER_POOL, serviceApi);
+			return createExecutor(serviceApi, ServiceExecutionMode.WORKER_POOL);
+		case WORKER_POOL:
+			int poolSize = config.get(NettyRemotingServer.WORKER_POOL_SIZE).get();
+			// Queue size is bounded by the ServiceExecutor
+			ThreadPoolExecutor workerPool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), 
+																   new NamedThreadFactory("NettyRemotingServer-" + serviceApi, true));
+			workerPool.allowCoreThreadTimeOut(true);
+			return ServiceExecutor.create(executionMode, workerPool, maxQueueSize);
+		default:
+			throw new IllegalArgumentException("Unknown execution mode: " + executionMode);
+		}
+	}
+	
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factoryMethod.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+	
+	void shutdown() {
+		for (ServiceExecutor executor : executorByApi.values()) {
+			executor.shutdown();
+		}
+	}
+
+}
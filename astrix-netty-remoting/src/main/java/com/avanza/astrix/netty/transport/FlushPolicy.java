@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.transport;
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Bounds for how writes on a channel are consolidated into flushes, see {@link WriteBatcher}.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class FlushPolicy {
+	
+	private final int maxBatchSize;
+	private final long maxDelayMicros;
+	
+	private FlushPolicy(int maxBatchSize, long maxDelayMicros) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+		}
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayMicros = Math.max(0, maxDelayMicros);
+	}
+	
+	/**
+	 * @param maxBatchSize - max number of messages written before a flush is issued
+	 * @param maxDelayMicros - max time a message might wait for other messages to batch with, 
+	 *                         or 0 to only batch messages that are already queued when the event loop drains the channel
+	 * @return
+	 */
+	public static FlushPolicy create(int maxBatchSize, long maxDelayMicros) {
+		return new FlushPolicy(maxBatchSize, maxDelayMicros);
+	}
+	
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+	
+	public long getMaxDelayMicros() {
+		return maxDelayMicros;
+	}
+	
+	public WriteBatcher newWriteBatcher(ChannelHandlerContext ctx) {
+		return new WriteBatcher(ctx, maxBatchSize, maxDelayMicros);
+	}
+	
+	@Override
+	public String toString() {
+		return "FlushPolicy [maxBatchSize=" + maxBatchSize + ", maxDelayMicros=" + maxDelayMicros + "]";
+	}
+
+}
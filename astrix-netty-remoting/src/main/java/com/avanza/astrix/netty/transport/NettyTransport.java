@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.BooleanSetting;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Selects the netty transport used by the netty remoting client and server, and applies
+ * the configured socket options. <p>
+ * 
+ * The native epoll transport is used when available (linux), with nio as fallback.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class NettyTransport {
+	
+	public static final BooleanSetting NATIVE_TRANSPORT_ENABLED = BooleanSetting.create("astrix.netty.nativeTransport.enabled", true);
+	public static final BooleanSetting TCP_NODELAY = BooleanSetting.create("astrix.netty.tcpNoDelay", true);
+	/**
+	 * Socket send buffer size in bytes. 0 means that the operating system default is used.
+	 */
+	public static final IntSetting SEND_BUFFER_SIZE = IntSetting.create("astrix.netty.sendBufferSize", 0);
+	/**
+	 * Socket receive buffer size in bytes. 0 means that the operating system default is used.
+	 */
+	public static final IntSetting RECEIVE_BUFFER_SIZE = IntSetting.create("astrix.netty.receiveBufferSize", 0);
+	public static final IntSetting WRITE_BUFFER_LOW_WATER_MARK = IntSetting.create("astrix.netty.writeBufferLowWaterMark", 32 * 1024);
+	public static final IntSetting WRITE_BUFFER_HIGH_WATER_MARK = IntSetting.create("astrix.netty.writeBufferHighWaterMark", 64 * 1024);
+	public static final BooleanSetting POOLED_ALLOCATOR = BooleanSetting.create("astrix.netty.pooledAllocator", true);
+	/**
+	 * Max number of messages written to a channel before they are flushed.
+	 */
+	public static final IntSetting FLUSH_MAX_BATCH_SIZE = IntSetting.create("astrix.netty.flush.maxBatchSize", 64);
+	/**
+	 * Max time in microseconds that a written message waits for other messages to be flushed with. 0 means that
+	 * only messages already queued when the event loop gets to the channel are batched.
+	 */
+	public static final LongSetting FLUSH_MAX_DELAY_MICROS = LongSetting.create("astrix.netty.flush.maxDelayMicros", 0);
+	
+	private static final Logger log = LoggerFactory.getLogger(NettyTransport.class);
+	
+	private final boolean epoll;
+	private final boolean tcpNoDelay;
+	private final int sendBufferSize;
+	private final int receiveBufferSize;
+	private final WriteBufferWaterMark writeBufferWaterMark;
+	private final ByteBufAllocator allocator;
+	private final FlushPolicy flushPolicy;
+	
+	private NettyTransport(AstrixConfig config) {
+		this.epoll = config.get(NATIVE_TRANSPORT_ENABLED).get() && Epoll.isAvailable();
+		this.tcpNoDelay = config.get(TCP_NODELAY).get();
+		this.sendBufferSize = config.get(SEND_BUFFER_SIZE).get();
+		this.receiveBufferSize = config.get(RECEIVE_BUFFER_SIZE).get();
+		this.writeBufferWaterMark = new WriteBufferWaterMark(config.get(WRITE_BUFFER_LOW_WATER_MARK).get(), 
+															 config.get(WRITE_BUFFER_HIGH_WATER_MARK).get());
+		this.allocator = config.get(POOLED_ALLOCATOR).get() ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+		this.flushPolicy = FlushPolicy.create(Math.max(1, config.get(FLUSH_MAX_BATCH_SIZE).get()), config.get(FLUSH_MAX_DELAY_MICROS).get());
+	}
+	
+	public static NettyTransport create(AstrixConfig config) {
+		NettyTransport result = new NettyTransport(config);
+		if (!result.epoll && config.get(NATIVE_TRANSPORT_ENABLED).get()) {
+			log.debug("Native epoll transport not available, using nio", Epoll.unavailabilityCause());
+		}
+		return result;
+	}
+	
+	public String getName() {
+		return epoll ? "epoll" : "nio";
+	}
+	
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+	
+	/**
+	 * @param threads - number of event loop threads, or 0 to use the netty default
+	 * @param threadNamePrefix
+	 * @return
+	 */
+	public EventLoopGroup createEventLoopGroup(int threads, String threadNamePrefix) {
+		DefaultThreadFactory threadFactory = new DefaultThreadFactory(threadNamePrefix);
+		if (epoll) {
+			return new EpollEventLoopGroup(threads, threadFactory);
+		}
+		return new NioEventLoopGroup(threads, threadFactory);
+	}
+	
+	public Bootstrap createBootstrap(EventLoopGroup group) {
+		Bootstrap result = new Bootstrap();
+		result.group(group)
+			  .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+			  .option(ChannelOption.TCP_NODELAY, tcpNoDelay)
+			  .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+			  .option(ChannelOption.ALLOCATOR, allocator);
+		if (sendBufferSize > 0) {
+			result.option(ChannelOption.SO_SNDBUF, sendBufferSize);
+		}
+		if (receiveBufferSize > 0) {
+			result.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+		}
+		return result;
+	}
+	
+	public ServerBootstrap createServerBootstrap(EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+		ServerBootstrap result = new ServerBootstrap();
+		result.group(bossGroup, workerGroup)
+			  .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+			  .option(ChannelOption.ALLOCATOR, allocator)
+			  .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
+			  .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+			  .childOption(ChannelOption.ALLOCATOR, allocator);
+		if (sendBufferSize > 0) {
+			result.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+		}
+		if (receiveBufferSize > 0) {
+			// Set on the listening socket to apply to the tcp window negotiated during connect
+			result.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.transport;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Queues messages written to a channel and writes them from the event loop, issuing a single
+ * flush for each batch of messages rather than one flush (syscall) per message. <p>
+ * 
+ * Messages are drained by a task on the channels event loop, either as soon as the event loop
+ * gets to it or after the configured max delay. A batch is flushed when it reaches the max batch
+ * size, and a drain is triggered immediately when that many messages are queued.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class WriteBatcher {
+	
+	private final ChannelHandlerContext ctx;
+	private final int maxBatchSize;
+	private final long maxDelayMicros;
+	private final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queueSize = new AtomicInteger();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+	private final Runnable drainTask = this::drain;
+	
+	WriteBatcher(ChannelHandlerContext ctx, int maxBatchSize, long maxDelayMicros) {
+		this.ctx = ctx;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayMicros = maxDelayMicros;
+	}
+	
+	public ChannelFuture write(Object msg) {
+		ChannelPromise promise = ctx.newPromise();
+		queue.add(new PendingWrite(msg, promise));
+		int pendingWrites = queueSize.incrementAndGet();
+		try {
+			if (drainScheduled.compareAndSet(false, true)) {
+				if (maxDelayMicros > 0) {
+					ctx.executor().schedule(drainTask, maxDelayMicros, TimeUnit.MICROSECONDS);
+				} else {
+					ctx.executor().execute(drainTask);
+				}
+			} else if (maxDelayMicros > 0 && pendingWrites == maxBatchSize) {
+				// Don't wait for the delayed drain when a full batch is available
+				ctx.executor().execute(drainTask);
+			}
+		} catch (RejectedExecutionException e) {
+			// Event loop is shut down
+			failQueuedWrites(e);
+		}
+		return promise;
+	}
+	
+	private void drain() {
+		drainScheduled.set(false);
+		int batchSize = 0;
+		PendingWrite pendingWrite;
+		while ((pendingWrite = queue.poll()) != null) {
+			queueSize.decrementAndGet();
+			ctx.write(pendingWrite.msg, pendingWrite.promise);
+			batchSize++;
+			if (batchSize == maxBatchSize) {
+				ctx.flush();
+				batchSize = 0;
+			}
+		}
+		if (batchSize > 0) {
+			ctx.flush();
+		}
+	}
+	
+	private void failQueuedWrites(Throwable cause) {
+		PendingWrite pendingWrite;
+		while ((pendingWrite = queue.poll()) != null) {
+			queueSize.decrementAndGet();
+			pendingWrite.promise.tryFailure(cause);
+		}
+	}
+	
+	private static final class PendingWrite {
+		private final Object msg;
+		private final ChannelPromise promise;
+		
+		PendingWrite(Object msg, ChannelPromise promise) {
+			this.msg = msg;
+			this.promise = promise;
+		}
+	}
+
+}
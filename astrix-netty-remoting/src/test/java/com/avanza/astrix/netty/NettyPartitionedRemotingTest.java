@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.registry.InMemoryServiceRegistry;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.AstrixContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixPartitionedRouting;
+import com.avanza.astrix.core.AstrixRouting;
+import com.avanza.astrix.core.util.GenericAstrixSetReducer;
+import com.avanza.astrix.netty.server.NettyRemotingServer;
+import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
+import com.avanza.astrix.provider.core.AstrixApiProvider;
+import com.avanza.astrix.provider.core.AstrixApplication;
+import com.avanza.astrix.provider.core.AstrixServiceExport;
+import com.avanza.astrix.provider.core.Service;
+import com.avanza.astrix.serviceunit.ServiceExporter;
+
+public class NettyPartitionedRemotingTest {
+	
+	private final InMemoryServiceRegistry registry = new InMemoryServiceRegistry();
+	private final List<AstrixApplicationContext> serverContexts = new ArrayList<>();
+	private AstrixContext clientContext;
+	
+	@After
+	public void cleanup() {
+		serverContexts.forEach(AstrixContext::destroy);
+		if (clientContext != null) {
+			clientContext.destroy();
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void routesInvocationsToPartitionOfRoutingKey() throws Exception {
+		startPartitions(2);
+		PartitionService service = clientContext.waitForBean(PartitionService.class, 2000L);
+		
+		assertEquals(0, service.partitionFor(4));
+		assertEquals(1, service.partitionFor(5));
+	}
+	
+	@Test(timeout = 10000)
+	public void broadcastsInvocationsToAllPartitions() throws Exception {
+		startPartitions(2);
+		PartitionService service = clientContext.waitForBean(PartitionService.class, 2000L);
+		
+		assertEquals(new HashSet<>(Arrays.asList(0, 1)), service.partitions());
+	}
+	
+	@Test(timeout = 10000)
+	public void partitionsInvocationsOnPartitionedArgument() throws Exception {
+		startPartitions(3);
+		PartitionService service = clientContext.waitForBean(PartitionService.class, 2000L);
+		
+		List<String> result = service.echoWithPartition(Arrays.asList(1, 2, 3, 4));
+		Collections.sort(result);
+		
+		assertEquals(Arrays.asList("1@1", "2@2", "3@0", "4@1"), result);
+	}
+	
+	private void startPartitions(int partitionCount) throws IOException {
+		int[] ports = new int[partitionCount];
+		List<String> members = new ArrayList<>();
+		for (int i = 0; i < partitionCount; i++) {
+			ports[i] = freePort();
+			members.add("localhost:" + ports[i]);
+		}
+		for (int partition = 0; partition < partitionCount; partition++) {
+			AstrixApplicationContext serverContext = (AstrixApplicationContext) new TestAstrixConfigurer().setApplicationDescriptor(PartitionApp.class)
+					.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+					.set(AstrixSettings.SERVICE_ADMINISTRATOR_COMPONENT, AstrixServiceComponentNames.DIRECT)
+					.set(NettyRemotingServer.NETTY_SERVER_BIND_PORT, ports[partition])
+					.set(NettyRemotingServer.CLUSTER_MEMBERS, String.join(",", members))
+					.configure();
+			serverContexts.add(serverContext);
+			serverContext.getInstance(ServiceExporter.class).addServiceProvider(new PartitionServiceImpl(partition));
+			serverContext.startServicePublisher();
+		}
+		clientContext = new TestAstrixConfigurer().registerApiProvider(PartitionApi.class)
+												  .set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+												  .set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 10L)
+												  .configure();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+	
+	public interface PartitionService {
+		int partitionFor(@AstrixRouting int routingKey);
+		
+		@AstrixBroadcast(reducer = GenericAstrixSetReducer.class)
+		Set<Integer> partitions();
+		
+		List<String> echoWithPartition(@AstrixPartitionedRouting List<Integer> values);
+	}
+	
+	@AstrixServiceExport(PartitionService.class)
+	public static class PartitionServiceImpl implements PartitionService {
+		
+		private final int partition;
+		
+		public PartitionServiceImpl(int partition) {
+			this.partition = partition;
+		}
+
+		@Override
+		public int partitionFor(int routingKey) {
+			return partition;
+		}
+
+		@Override
+		public Set<Integer> partitions() {
+			return Collections.singleton(partition);
+		}
+
+		@Override
+		public List<String> echoWithPartition(List<Integer> values) {
+			List<String> result = new ArrayList<>();
+			for (Integer value : values) {
+				result.add(value + "@" + partition);
+			}
+			return result;
+		}
+	}
+
+	@AstrixApiProvider
+	public interface PartitionApi {
+		@Service
+		PartitionService partitionService();
+	}
+	
+	@AstrixApplication(defaultServiceComponent = NettyRemotingComponent.NAME, exportsRemoteServicesFor = PartitionApi.class)
+	public static class PartitionApp {
+	}
+
+}
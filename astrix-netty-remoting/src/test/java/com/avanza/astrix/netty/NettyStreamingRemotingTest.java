@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.registry.InMemoryServiceRegistry;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.AstrixContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.RemoteServiceInvocationException;
+import com.avanza.astrix.netty.client.NettyRemotingClient;
+import com.avanza.astrix.netty.server.NettyRemotingServer;
+import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
+import com.avanza.astrix.provider.core.AstrixApiProvider;
+import com.avanza.astrix.provider.core.AstrixApplication;
+import com.avanza.astrix.provider.core.AstrixServiceExport;
+import com.avanza.astrix.provider.core.Service;
+import com.avanza.astrix.serviceunit.ServiceExporter;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+public class NettyStreamingRemotingTest {
+	
+	private static final int STREAM_WINDOW = 8;
+	private final InMemoryServiceRegistry registry = new InMemoryServiceRegistry();
+	private final StreamingServiceImpl serviceImpl = new StreamingServiceImpl();
+	private AstrixApplicationContext serverContext;
+	private AstrixContext clientContext;
+	private StreamingService service;
+	
+	@Before
+	public void setup() throws Exception {
+		serverContext = (AstrixApplicationContext) new TestAstrixConfigurer().setApplicationDescriptor(StreamingApp.class)
+				.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+				.set(AstrixSettings.SERVICE_ADMINISTRATOR_COMPONENT, AstrixServiceComponentNames.DIRECT)
+				.set(NettyRemotingServer.NETTY_SERVER_BIND_PORT, freePort())
+				.configure();
+		serverContext.getInstance(ServiceExporter.class).addServiceProvider(serviceImpl);
+		serverContext.startServicePublisher();
+		clientContext = new TestAstrixConfigurer().registerApiProvider(StreamingApi.class)
+												  .set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+												  .set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 10L)
+												  .set(NettyRemotingClient.NETTY_CLIENT_STREAM_WINDOW, STREAM_WINDOW)
+												  .configure();
+		service = clientContext.waitForBean(StreamingService.class, 2000L);
+	}
+	
+	@After
+	public void cleanup() {
+		serverContext.destroy();
+		clientContext.destroy();
+	}
+	
+	@Test(timeout = 10000)
+	public void streamsAllElementsEmittedByService() throws Exception {
+		List<Integer> result = service.range(100).toList().toBlocking().single();
+		
+		assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), result);
+	}
+	
+	@Test(timeout = 10000)
+	public void serviceEmitsElementsAsRequestedByClient() throws Exception {
+		TestSubscriber<Integer> subscriber = new TestSubscriber<>(5L);
+		service.range(10_000).subscribe(subscriber);
+		subscriber.awaitValueCount(5, 2, TimeUnit.SECONDS);
+		Thread.sleep(50);
+		// Elements might be prefetched by the client, but the service is never drained ahead of the subscriber
+		assertTrue(serviceImpl.emittedElements.get() < 1_000);
+		
+		subscriber.requestMore(10_000);
+		subscriber.awaitTerminalEvent();
+		
+		subscriber.assertNoErrors();
+		subscriber.assertValueCount(10_000);
+		assertEquals(10_000, serviceImpl.emittedElements.get());
+	}
+	
+	@Test(timeout = 10000)
+	public void cancelsServiceObservableWhenClientUnsubscribes() throws Exception {
+		List<Integer> result = service.range(1_000_000).take(3).toList().toBlocking().single();
+		
+		assertEquals(3, result.size());
+		assertTrue(serviceImpl.unsubscribed.await(2, TimeUnit.SECONDS));
+		assertTrue(serviceImpl.emittedElements.get() < 1_000_000);
+	}
+	
+	@Test(timeout = 10000)
+	public void propagatesErrorEmittedByService() throws Exception {
+		TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+		service.failAfter(2).subscribe(subscriber);
+		subscriber.awaitTerminalEvent();
+		
+		subscriber.assertValues(0, 1);
+		subscriber.assertError(RemoteServiceInvocationException.class);
+	}
+	
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+	
+	public interface StreamingService {
+		Observable<Integer> range(int count);
+		Observable<Integer> failAfter(int count);
+	}
+	
+	@AstrixServiceExport(StreamingService.class)
+	public static class StreamingServiceImpl implements StreamingService {
+		
+		private final AtomicInteger emittedElements = new AtomicInteger();
+		private final CountDownLatch unsubscribed = new CountDownLatch(1);
+		
+		@Override
+		public Observable<Integer> range(int count) {
+			return Observable.range(0, count)
+							 .doOnNext(element -> emittedElements.incrementAndGet())
+							 .doOnUnsubscribe(unsubscribed::countDown);
+		}
+		
+		@Override
+		public Observable<Integer> failAfter(int count) {
+			return Observable.range(0, count).concatWith(Observable.error(new IllegalStateException("Failed after " + count)));
+		}
+	}
+
+	@AstrixApiProvider
+	public static interface StreamingApi {
+		@Service
+		StreamingService streamingService();
+	}
+	
+	@AstrixApplication(defaultServiceComponent = NettyRemotingComponent.NAME, exportsRemoteServicesFor = StreamingApi.class)
+	public static class StreamingApp {
+	}
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.codec.InvocationRequestFrame;
+import com.avanza.astrix.netty.codec.InvocationResponseFrame;
+import com.avanza.astrix.netty.codec.NettyRemotingDecoder;
+import com.avanza.astrix.netty.codec.NettyRemotingEncoder;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import rx.Observable;
+
+public class NettyRemotingClientTest {
+	
+	private final EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+	private final Set<Channel> serverChannels = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger receivedRequests = new AtomicInteger();
+	private volatile CountDownLatch respond = new CountDownLatch(0);
+	private AstrixApplicationContext context;
+	private NettyRemotingClient client;
+	private int port;
+	
+	@Before
+	public void setup() throws Exception {
+		Channel serverChannel = new ServerBootstrap().group(serverGroup)
+				.channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel ch) throws Exception {
+						ch.pipeline().addLast(new NettyRemotingEncoder(), new NettyRemotingDecoder(), new EchoHandler());
+					}
+				}).bind(0).sync().channel();
+		port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+	}
+	
+	@After
+	public void cleanup() {
+		if (client != null) {
+			client.destroy();
+		}
+		if (context != null) {
+			context.destroy();
+		}
+		serverGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+	}
+	
+	@Test(timeout = 5000)
+	public void concurrentInvocationsAreSpreadOnAllPooledChannels() throws Exception {
+		client = createClient(3);
+		client.connect("localhost", port);
+		respond = new CountDownLatch(1);
+		
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			responses.add(client.invokeService(request("msg-" + i), 0).cache());
+			responses.get(i).subscribe();
+		}
+		waitForReceivedRequests(3);
+		respond.countDown();
+		
+		for (int i = 0; i < 3; i++) {
+			assertEquals("msg-" + i, responses.get(i).toBlocking().single().getResponseBody());
+		}
+		assertEquals(3, serverChannels.size());
+	}
+	
+	@Test(timeout = 5000)
+	public void pendingInvocationsFailWhenChannelIsClosed() throws Exception {
+		client = createClient(1);
+		client.connect("localhost", port);
+		respond = new CountDownLatch(1);
+		
+		Observable<AstrixServiceInvocationResponse> response = client.invokeService(request("foo"), 0).cache();
+		response.subscribe(r -> { }, e -> { });
+		waitForReceivedRequests(1);
+		waitForServerChannels(1);
+		for (Channel serverChannel : serverChannels) {
+			serverChannel.close();
+		}
+		
+		try {
+			response.toBlocking().single();
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		}
+	}
+	
+	@Test(timeout = 5000)
+	public void invocationsFailWhenNoResponseIsReceivedWithinTimeout() throws Exception {
+		client = createClient(1);
+		client.connect("localhost", port);
+		respond = new CountDownLatch(1);
+		
+		try {
+			client.invokeService(request("foo"), 50).toBlocking().single();
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		} finally {
+			respond.countDown();
+		}
+	}
+	
+	@Test(timeout = 5000)
+	public void reconnectsWhenChannelIsClosed() throws Exception {
+		client = createClient(1);
+		client.connect("localhost", port);
+		waitForServerChannels(1);
+		serverChannels.iterator().next().close().sync();
+		
+		while (!client.invokeService(request("foo"), 0).map(r -> true).onErrorReturn(e -> false).toBlocking().single()) {
+			Thread.sleep(10);
+		}
+		
+		assertEquals(2, serverChannels.size());
+	}
+	
+	@Test(timeout = 5000)
+	public void destroyWaitsForOutstandingInvocations() throws Exception {
+		client = createClient(1);
+		client.connect("localhost", port);
+		respond = new CountDownLatch(1);
+		Observable<AstrixServiceInvocationResponse> response = client.invokeService(request("foo"), 0).cache();
+		response.subscribe();
+		waitForReceivedRequests(1);
+		
+		new Thread(() -> {
+			sleep(100);
+			respond.countDown();
+		}).start();
+		client.destroy();
+		
+		assertEquals("foo", response.toBlocking().single().getResponseBody());
+	}
+	
+	@Test(timeout = 5000)
+	public void destroyClosesChannelsWithOutstandingInvocationsWhenDrainTimeoutElapses() throws Exception {
+		client = createClient(1, 50L);
+		client.connect("localhost", port);
+		respond = new CountDownLatch(1);
+		Observable<AstrixServiceInvocationResponse> response = client.invokeService(request("foo"), 0).cache();
+		response.subscribe(r -> { }, e -> { });
+		waitForReceivedRequests(1);
+		
+		try {
+			client.destroy();
+			response.toBlocking().single();
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			// Expected
+		} finally {
+			respond.countDown();
+		}
+	}
+	
+	private void waitForReceivedRequests(int count) throws InterruptedException {
+		while (receivedRequests.get() < count) {
+			Thread.sleep(1);
+		}
+	}
+	
+	private void waitForServerChannels(int count) throws InterruptedException {
+		while (serverChannels.size() < count) {
+			Thread.sleep(1);
+		}
+	}
+	
+	private NettyRemotingClient createClient(int poolSize) {
+		return createClient(poolSize, 2_000L);
+	}
+	
+	private NettyRemotingClient createClient(int poolSize, long drainTimeoutMillis) {
+		context = (AstrixApplicationContext) new TestAstrixConfigurer()
+				.set(NettyRemotingClient.NETTY_CLIENT_POOL_SIZE, poolSize)
+				.set(NettyRemotingClient.NETTY_CLIENT_MIN_RECONNECT_BACKOFF, 10L)
+				.set(NettyRemotingClient.NETTY_CLIENT_DRAIN_TIMEOUT, drainTimeoutMillis)
+				.configure();
+		return new NettyRemotingClient(context.getInstance(AstrixConfig.class));
+	}
+
+	private static AstrixServiceInvocationRequest request(String msg) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setArguments(new Object[] { msg });
+		return request;
+	}
+	
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	@Sharable
+	private class EchoHandler extends ChannelInboundHandlerAdapter {
+		
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception {
+			serverChannels.add(ctx.channel());
+			super.channelActive(ctx);
+		}
+		
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			InvocationRequestFrame requestFrame = (InvocationRequestFrame) msg;
+			AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+			response.setResponseBody(requestFrame.getRequest().getArguments()[0]);
+			receivedRequests.incrementAndGet();
+			// Responses are written from a separate thread to allow holding them back without blocking the event loop
+			new Thread(() -> {
+				try {
+					respond.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				ctx.writeAndFlush(new InvocationResponseFrame(requestFrame.getRequestId(), response));
+			}).start();
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.avanza.astrix.netty.client.PendingCallTable.PendingCall;
+
+import rx.observers.TestSubscriber;
+
+public class PendingCallTableTest {
+	
+	private final PendingCallTable pendingCalls = new PendingCallTable(4);
+	
+	@Test
+	public void removesPendingCallByRequestId() throws Exception {
+		PendingCall first = pendingCall(1);
+		PendingCall second = pendingCall(2);
+		pendingCalls.put(first);
+		pendingCalls.put(second);
+		
+		assertEquals(2, pendingCalls.size());
+		assertSame(second, pendingCalls.remove(2));
+		assertNull(pendingCalls.remove(2));
+		assertSame(first, pendingCalls.remove(1));
+		assertEquals(0, pendingCalls.size());
+	}
+	
+	@Test
+	public void callsCollidingWithOlderCallsAreKeptUntilRemoved() throws Exception {
+		PendingCall first = pendingCall(1);
+		PendingCall colliding = pendingCall(5);
+		pendingCalls.put(first);
+		pendingCalls.put(colliding);
+		
+		assertSame(colliding, pendingCalls.remove(5));
+		assertSame(first, pendingCalls.remove(1));
+		assertEquals(0, pendingCalls.size());
+	}
+	
+	@Test
+	public void removeAllReturnsAllPendingCalls() throws Exception {
+		for (long requestId = 1; requestId <= 6; requestId++) {
+			pendingCalls.put(pendingCall(requestId));
+		}
+		
+		assertEquals(6, pendingCalls.removeAll().size());
+		assertEquals(0, pendingCalls.size());
+		assertNull(pendingCalls.remove(1));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void capacityMustBePowerOfTwo() throws Exception {
+		new PendingCallTable(3);
+	}
+
+	private static PendingCall pendingCall(long requestId) {
+		return new PendingCall(requestId, new TestSubscriber<>());
+	}
+
+}
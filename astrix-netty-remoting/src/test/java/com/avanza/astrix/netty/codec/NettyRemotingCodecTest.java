@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.codec;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.SerializedArgument;
+import com.avanza.astrix.remoting.util.BinaryValueFormat;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+
+public class NettyRemotingCodecTest {
+	
+	@Test
+	public void requestRoundTrip() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		AstrixServiceInvocationRequest request = createRequest();
+		request.setArguments(new Object[] { "foo".getBytes(), "bar", null, Arrays.asList(1, 2) });
+		
+		InvocationRequestFrame decodedFrame = roundTrip(channel, new InvocationRequestFrame(1L, 500, request));
+		AstrixServiceInvocationRequest decoded = decodedFrame.getRequest();
+		
+		assertEquals(1L, decodedFrame.getRequestId());
+		assertTrue(decodedFrame.getTimeoutMillis() > 0 && decodedFrame.getTimeoutMillis() <= 500);
+		assertEquals(request.getHeaders(), decoded.getHeaders());
+		assertArrayEquals("foo".getBytes(), (byte[]) decoded.getArguments()[0]);
+		assertEquals("bar", decoded.getArguments()[1]);
+		assertNull(decoded.getArguments()[2]);
+		assertEquals(Arrays.asList(1, 2), decoded.getArguments()[3]);
+	}
+	
+	@Test
+	public void timeSpentQueuedBeforeEncodingIsDeductedFromTimeout() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		InvocationRequestFrame requestFrame = new InvocationRequestFrame(1L, 500, createRequest());
+		Thread.sleep(100);
+		
+		InvocationRequestFrame decodedFrame = roundTrip(channel, requestFrame);
+		
+		assertThat(decodedFrame.getTimeoutMillis(), lessThan(401));
+	}
+	
+	@Test
+	public void serializedArgumentsAreWrittenIntoFrameAndReceivedAsBytes() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		AstrixServiceInvocationRequest request = createRequest();
+		request.setArguments(new Object[] { new SerializedArgument("foo", new Utf8Serializer(), 1), "bar" });
+		
+		AstrixServiceInvocationRequest decoded = roundTrip(channel, new InvocationRequestFrame(1L, request)).getRequest();
+		
+		assertArrayEquals("\"foo\"".getBytes(StandardCharsets.UTF_8), (byte[]) decoded.getArguments()[0]);
+		assertEquals("bar", decoded.getArguments()[1]);
+	}
+	
+	@Test
+	public void serializedArgumentsAreSerializedOnCreatingThreadAndOnlyCopiedByEncoder() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		Utf8Serializer serializer = new Utf8Serializer();
+		AstrixServiceInvocationRequest request = createRequest();
+		request.setArguments(new Object[] { new SerializedArgument("foo", serializer, 1) });
+		assertEquals(1, serializer.serializedCount.get());
+		
+		AstrixServiceInvocationRequest decoded = roundTrip(channel, new InvocationRequestFrame(1L, request)).getRequest();
+		
+		assertArrayEquals("\"foo\"".getBytes(StandardCharsets.UTF_8), (byte[]) decoded.getArguments()[0]);
+		assertEquals(1, serializer.serializedCount.get());
+	}
+	
+	@Test(expected = CorruptedFrameException.class)
+	public void valueLengthExceedingFrameIsRejectedBeforeAllocation() throws Exception {
+		ByteBuf value = Unpooled.buffer();
+		value.writeByte(BinaryValueFormat.VALUE_BYTES);
+		WireFormat.writeVarInt(value, Integer.MAX_VALUE);
+		value.writeBytes(new byte[] { 1, 2, 3 });
+		
+		WireFormat.readValue(value);
+	}
+	
+	@Test
+	public void requestWithoutArguments() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		
+		AstrixServiceInvocationRequest decoded = roundTrip(channel, new InvocationRequestFrame(1L, createRequest())).getRequest();
+		
+		assertNull(decoded.getArguments());
+	}
+	
+	@Test
+	public void responseRoundTrip() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setThrownExceptionType("java.lang.IllegalStateException");
+		response.setExceptionMsg("fail");
+		response.setCorrelationId("correlation-1");
+		response.setResponseBody("body".getBytes());
+		
+		InvocationResponseFrame decodedFrame = roundTrip(channel, new InvocationResponseFrame(Long.MAX_VALUE, response));
+		AstrixServiceInvocationResponse decoded = decodedFrame.getResponse();
+		
+		assertEquals(Long.MAX_VALUE, decodedFrame.getRequestId());
+		
+		assertTrue(decoded.isServiceUnavailable());
+		assertEquals("java.lang.IllegalStateException", decoded.getThrownExceptionType());
+		assertEquals("fail", decoded.getExceptionMsg());
+		assertEquals("correlation-1", decoded.getCorrelationId());
+		assertArrayEquals("body".getBytes(), (byte[]) decoded.getResponseBody());
+		assertNull(decoded.getException());
+	}
+	
+	@Test
+	public void repeatedHeaderValuesAreSentAsTokens() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingEncoder(), new NettyRemotingDecoder());
+		
+		AstrixServiceInvocationRequest request = createRequest();
+		
+		ByteBuf first = encode(channel, new InvocationRequestFrame(1L, request));
+		ByteBuf second = encode(channel, new InvocationRequestFrame(2L, request));
+		
+		assertThat(second.readableBytes(), lessThan(first.readableBytes()));
+		channel.writeInbound(first, second);
+		InvocationRequestFrame firstDecoded = channel.readInbound();
+		InvocationRequestFrame secondDecoded = channel.readInbound();
+		assertEquals(1L, firstDecoded.getRequestId());
+		assertEquals(request.getHeaders(), firstDecoded.getRequest().getHeaders());
+		assertEquals(2L, secondDecoded.getRequestId());
+		assertEquals(request.getHeaders(), secondDecoded.getRequest().getHeaders());
+	}
+	
+	@Test
+	public void encodedRequestIsSmallerThanJavaSerializedRequest() throws Exception {
+		AstrixServiceInvocationRequest request = createRequest();
+		request.setArguments(new Object[] { "{\"id\":21}" });
+		
+		int binarySize = encodedSize(new EmbeddedChannel(new NettyRemotingEncoder()), new InvocationRequestFrame(1L, request));
+		int javaSerializedSize = encodedSize(new EmbeddedChannel(new ObjectEncoder()), request);
+		
+		assertThat(binarySize, lessThan(javaSerializedSize));
+	}
+	
+	private static AstrixServiceInvocationRequest createRequest() {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, "com.avanza.astrix.netty.PingService");
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE, "ping(java.lang.String)");
+		request.setHeader(AstrixServiceInvocationRequestHeaders.API_VERSION, "1");
+		return request;
+	}
+	
+	private static ByteBuf encode(EmbeddedChannel channel, Object msg) {
+		channel.writeOutbound(msg);
+		return channel.readOutbound();
+	}
+	
+	private static int encodedSize(EmbeddedChannel channel, Object msg) {
+		ByteBuf encoded = encode(channel, msg);
+		try {
+			return encoded.readableBytes();
+		} finally {
+			encoded.release();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T roundTrip(EmbeddedChannel channel, T msg) {
+		channel.writeInbound(encode(channel, msg));
+		return (T) channel.readInbound();
+	}
+
+	private static class Utf8Serializer implements AstrixObjectSerializer {
+		
+		private final AtomicInteger serializedCount = new AtomicInteger();
+		
+		@Override
+		public <T> T deserialize(Object element, Type type, int version) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public Object serialize(Object element, int version) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public boolean supportsBinaryFormat(int version) {
+			return true;
+		}
+		
+		@Override
+		public void serializeTo(Object element, int version, OutputStream out) throws IOException {
+			serializedCount.incrementAndGet();
+			out.write(("\"" + element + "\"").getBytes(StandardCharsets.UTF_8));
+		}
+		
+		@Override
+		public int version() {
+			return 1;
+		}
+	}
+
+}
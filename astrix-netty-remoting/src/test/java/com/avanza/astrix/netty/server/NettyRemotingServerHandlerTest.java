@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.context.mbeans.MBeanExporter;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.codec.InvocationRequestFrame;
+import com.avanza.astrix.netty.codec.InvocationResponseFrame;
+import com.avanza.astrix.netty.transport.FlushPolicy;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import rx.Observable;
+
+public class NettyRemotingServerHandlerTest {
+	
+	private final AtomicInteger invocationCount = new AtomicInteger();
+	private final TestAstrixConfigurer configurer = new TestAstrixConfigurer();
+	private AstrixApplicationContext context;
+	private ServiceExecutors serviceExecutors;
+	private EmbeddedChannel channel;
+	
+	@After
+	public void cleanup() {
+		serviceExecutors.shutdown();
+		context.destroy();
+	}
+	
+	@Test
+	public void respondsWithRequestIdOfInvocation() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 1000, request("com.avanza.FooService")));
+		
+		InvocationResponseFrame response = channel.readOutbound();
+		assertEquals(21L, response.getRequestId());
+		assertEquals(1, invocationCount.get());
+	}
+	
+	@Test
+	public void discardsExpiredRequests() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		InvocationRequestFrame request = new InvocationRequestFrame(21L, 1, request("com.avanza.FooService"));
+		Thread.sleep(5);
+		
+		channel.writeInbound(request);
+		
+		assertNull(channel.readOutbound());
+		assertEquals(0, invocationCount.get());
+	}
+	
+	@Test(timeout = 5000)
+	public void invokesServiceOnWorkerPool() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.WORKER_POOL.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, request("com.avanza.FooService")));
+		
+		assertEquals(21L, awaitResponse().getRequestId());
+		assertEquals(ServiceExecutionMode.WORKER_POOL.name(), serviceExecutors.getExecutor("com.avanza.FooService").getExecutionMode());
+		assertEquals(1, serviceExecutors.getExecutor("com.avanza.FooService").getCompletedCount());
+	}
+	
+	@Test(timeout = 5000)
+	public void executionModeCanBeOverriddenPerApi() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.WORKER_POOL.name());
+		configurer.set(NettyRemotingServer.EXECUTION_MODE.name() + ".com.avanza.BarService", ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		
+		assertEquals(ServiceExecutionMode.WORKER_POOL.name(), serviceExecutors.getExecutor("com.avanza.FooService").getExecutionMode());
+		assertEquals(ServiceExecutionMode.EVENT_LOOP.name(), serviceExecutors.getExecutor("com.avanza.BarService").getExecutionMode());
+	}
+	
+	@Test(timeout = 5000)
+	public void virtualThreadModeInvokesService() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.VIRTUAL_THREAD.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, request("com.avanza.FooService")));
+		
+		assertEquals(21L, awaitResponse().getRequestId());
+	}
+	
+	@Test(timeout = 5000)
+	public void rejectedInvocationsRespondsWithServiceUnavailable() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.WORKER_POOL.name());
+		configurer.set(NettyRemotingServer.MAX_QUEUE_SIZE, 0);
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, request("com.avanza.FooService")));
+		
+		InvocationResponseFrame response = awaitResponse();
+		assertEquals(21L, response.getRequestId());
+		assertTrue(response.getResponse().isServiceUnavailable());
+		assertEquals(0, invocationCount.get());
+		assertEquals(1, serviceExecutors.getExecutor("com.avanza.FooService").getRejectedCount());
+	}
+	
+	@Test
+	public void invalidExecutionModeFallsBackToDefaultExecutionMode() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		configurer.set(NettyRemotingServer.EXECUTION_MODE.name() + ".com.avanza.FooService", "NO_SUCH_MODE");
+		createChannel();
+		
+		assertEquals(ServiceExecutionMode.EVENT_LOOP.name(), serviceExecutors.getExecutor("com.avanza.FooService").getExecutionMode());
+	}
+	
+	@Test
+	public void requestsWithoutServiceApiHeaderRespondsWithServiceUnavailable() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, new AstrixServiceInvocationRequest()));
+		
+		InvocationResponseFrame response = awaitResponse();
+		assertEquals(21L, response.getRequestId());
+		assertTrue(response.getResponse().isServiceUnavailable());
+		assertEquals(0, invocationCount.get());
+	}
+	
+	@Test
+	public void failedInvocationRespondsWithException() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, request("com.avanza.FailingService")));
+		
+		InvocationResponseFrame response = awaitResponse();
+		assertEquals(21L, response.getRequestId());
+		assertEquals(IllegalStateException.class.getName(), response.getResponse().getThrownExceptionType());
+		assertEquals("Service failed", response.getResponse().getExceptionMsg());
+	}
+	
+	@Test
+	public void failedStreamingInvocationRespondsWithException() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, 8, request("com.avanza.FailingService")));
+		
+		InvocationResponseFrame response = awaitResponse();
+		assertEquals(21L, response.getRequestId());
+		assertFalse(response.getResponse().isServiceUnavailable());
+		assertEquals(IllegalStateException.class.getName(), response.getResponse().getThrownExceptionType());
+		assertEquals("Service failed", response.getResponse().getExceptionMsg());
+	}
+	
+	@Test
+	public void unavailableStreamingInvocationRespondsWithServiceUnavailable() throws Exception {
+		configurer.set(NettyRemotingServer.EXECUTION_MODE, ServiceExecutionMode.EVENT_LOOP.name());
+		createChannel();
+		
+		channel.writeInbound(new InvocationRequestFrame(21L, 0, 8, request("com.avanza.UnavailableService")));
+		
+		InvocationResponseFrame response = awaitResponse();
+		assertEquals(21L, response.getRequestId());
+		assertTrue(response.getResponse().isServiceUnavailable());
+		assertNull(response.getResponse().getThrownExceptionType());
+		assertEquals("Service unavailable", response.getResponse().getExceptionMsg());
+	}
+	
+	private void createChannel() {
+		context = (AstrixApplicationContext) configurer.configure();
+		serviceExecutors = new ServiceExecutors(context.getInstance(AstrixConfig.class), new MBeanExporter.NoExporter());
+		channel = new EmbeddedChannel(new NettyRemotingServerHandler(new CountingServiceActivator(), serviceExecutors, FlushPolicy.create(64, 0)));
+	}
+	
+	private InvocationResponseFrame awaitResponse() throws InterruptedException {
+		InvocationResponseFrame response;
+		// The embedded event loop considers all threads to be the event loop thread, hence responses are not flushed
+		while ((response = channel.flushOutbound().readOutbound()) == null) {
+			Thread.sleep(1);
+		}
+		return response;
+	}
+	
+	private static AstrixServiceInvocationRequest request(String serviceApi) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, serviceApi);
+		return request;
+	}
+	
+	private class CountingServiceActivator implements AstrixServiceActivator {
+		
+		@Override
+		public AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest invocationRequest) {
+			invocationCount.incrementAndGet();
+			if ("com.avanza.FailingService".equals(invocationRequest.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API))) {
+				throw new IllegalStateException("Service failed");
+			}
+			return new AstrixServiceInvocationResponse();
+		}
+		
+		@Override
+		public Observable<AstrixServiceInvocationResponse> invokeStreamingService(AstrixServiceInvocationRequest invocationRequest) {
+			invocationCount.incrementAndGet();
+			switch (invocationRequest.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API)) {
+			case "com.avanza.FailingService":
+				return Observable.error(new IllegalStateException("Service failed"));
+			case "com.avanza.UnavailableService":
+				return Observable.error(new ServiceUnavailableException("Service unavailable"));
+			default:
+				return Observable.just(new AstrixServiceInvocationResponse());
+			}
+		}
+
+		@Override
+		public void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi) {
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.context.AstrixApplicationContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class NettyTransportTest {
+	
+	@Test
+	public void usesNioWhenNativeTransportIsDisabled() throws Exception {
+		NettyTransport transport = NettyTransport.create(config(new TestAstrixConfigurer().set(NettyTransport.NATIVE_TRANSPORT_ENABLED, false)));
+		assertEquals("nio", transport.getName());
+		EventLoopGroup group = transport.createEventLoopGroup(1, "test");
+		try {
+			assertTrue(group instanceof NioEventLoopGroup);
+		} finally {
+			group.shutdownGracefully().sync();
+		}
+	}
+	
+	@Test
+	public void usesEpollWhenAvailable() throws Exception {
+		NettyTransport transport = NettyTransport.create(config(new TestAstrixConfigurer()));
+		assertEquals(Epoll.isAvailable() ? "epoll" : "nio", transport.getName());
+	}
+	
+	@Test
+	public void appliesConfiguredSocketOptions() throws Exception {
+		NettyTransport transport = NettyTransport.create(config(new TestAstrixConfigurer().set(NettyTransport.TCP_NODELAY, false)
+																						   .set(NettyTransport.SEND_BUFFER_SIZE, 128 * 1024)
+																						   .set(NettyTransport.WRITE_BUFFER_LOW_WATER_MARK, 1024)
+																						   .set(NettyTransport.WRITE_BUFFER_HIGH_WATER_MARK, 2048)
+																						   .set(NettyTransport.POOLED_ALLOCATOR, false)));
+		EventLoopGroup group = transport.createEventLoopGroup(1, "test");
+		try {
+			assertSocketOptions(transport.createBootstrap(group), transport.createServerBootstrap(group, group));
+		} finally {
+			group.shutdownGracefully().sync();
+		}
+	}
+	
+	private void assertSocketOptions(Bootstrap bootstrap, ServerBootstrap serverBootstrap) {
+		assertEquals(false, bootstrap.config().options().get(ChannelOption.TCP_NODELAY));
+		assertEquals(128 * 1024, bootstrap.config().options().get(ChannelOption.SO_SNDBUF));
+		assertNull(bootstrap.config().options().get(ChannelOption.SO_RCVBUF));
+		WriteBufferWaterMark waterMark = (WriteBufferWaterMark) bootstrap.config().options().get(ChannelOption.WRITE_BUFFER_WATER_MARK);
+		assertEquals(1024, waterMark.low());
+		assertEquals(2048, waterMark.high());
+		assertTrue(bootstrap.config().options().get(ChannelOption.ALLOCATOR) instanceof UnpooledByteBufAllocator);
+		
+		assertEquals(false, serverBootstrap.config().childOptions().get(ChannelOption.TCP_NODELAY));
+		assertEquals(128 * 1024, serverBootstrap.config().childOptions().get(ChannelOption.SO_SNDBUF));
+		assertFalse(serverBootstrap.config().options().containsKey(ChannelOption.SO_RCVBUF));
+	}
+	
+	private static AstrixConfig config(TestAstrixConfigurer configurer) {
+		return ((AstrixApplicationContext) configurer.configure()).getInstance(AstrixConfig.class);
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class WriteBatcherTest {
+	
+	private final AtomicInteger flushCount = new AtomicInteger();
+	private EmbeddedChannel channel;
+	
+	@After
+	public void after() {
+		if (channel != null) {
+			channel.finishAndReleaseAll();
+		}
+	}
+	
+	@Test
+	public void writesQueuedBeforeDrainAreFlushedTogether() throws Exception {
+		WriteBatcher batcher = createBatcher(FlushPolicy.create(64, 0));
+		for (int i = 0; i < 10; i++) {
+			batcher.write("msg-" + i);
+		}
+		assertEquals(0, channel.outboundMessages().size());
+		
+		channel.runPendingTasks();
+		
+		assertEquals(10, channel.outboundMessages().size());
+		assertEquals(1, flushCount.get());
+		assertEquals("msg-0", channel.readOutbound());
+	}
+	
+	@Test
+	public void flushesEachTimeMaxBatchSizeIsReached() throws Exception {
+		WriteBatcher batcher = createBatcher(FlushPolicy.create(4, 0));
+		for (int i = 0; i < 10; i++) {
+			batcher.write("msg-" + i);
+		}
+		
+		channel.runPendingTasks();
+		
+		assertEquals(10, channel.outboundMessages().size());
+		assertEquals(3, flushCount.get());
+	}
+	
+	@Test
+	public void delaysDrainUpToMaxDelay() throws Exception {
+		WriteBatcher batcher = createBatcher(FlushPolicy.create(64, TimeUnit.MILLISECONDS.toMicros(20)));
+		batcher.write("msg-1");
+		batcher.write("msg-2");
+		channel.runPendingTasks();
+		assertEquals(0, channel.outboundMessages().size());
+		
+		Thread.sleep(30);
+		channel.runScheduledPendingTasks();
+		
+		assertEquals(2, channel.outboundMessages().size());
+		assertEquals(1, flushCount.get());
+	}
+	
+	@Test
+	public void fullBatchIsDrainedWithoutWaitingForMaxDelay() throws Exception {
+		WriteBatcher batcher = createBatcher(FlushPolicy.create(4, TimeUnit.SECONDS.toMicros(10)));
+		for (int i = 0; i < 4; i++) {
+			batcher.write("msg-" + i);
+		}
+		
+		channel.runPendingTasks();
+		
+		assertEquals(4, channel.outboundMessages().size());
+		assertEquals(1, flushCount.get());
+	}
+	
+	private WriteBatcher createBatcher(FlushPolicy flushPolicy) {
+		channel = new EmbeddedChannel(new FlushCounter(), new ChannelInboundHandlerAdapter());
+		return flushPolicy.newWriteBatcher(channel.pipeline().lastContext());
+	}
+	
+	private class FlushCounter extends ChannelOutboundHandlerAdapter {
+		@Override
+		public void flush(ChannelHandlerContext ctx) throws Exception {
+			flushCount.incrementAndGet();
+			super.flush(ctx);
+		}
+	}
+
+}
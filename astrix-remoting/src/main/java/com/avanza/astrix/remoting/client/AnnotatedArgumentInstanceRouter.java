@@ -19,19 +19,20 @@ import java.lang.reflect.Method;
 
 import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.core.util.MethodInvoker;
 
 public class AnnotatedArgumentInstanceRouter implements Router {
 	
 	private int argumentIndex;
-	private Method routingKeyMethod;
+	private MethodInvoker routingKeyMethod;
 	
 	public AnnotatedArgumentInstanceRouter(int argumentIndex, Method routingKeyMethod) {
 		this.argumentIndex = argumentIndex;
-		this.routingKeyMethod = routingKeyMethod;
+		this.routingKeyMethod = MethodInvoker.create(routingKeyMethod);
 	}
 
 	@Override
 	public RoutingKey getRoutingKey(Object[] args) throws Exception {
-		return RoutingKey.create(routingKeyMethod.invoke(args[argumentIndex]));
+		return RoutingKey.create(routingKeyMethod.invokeWrapped(args[argumentIndex], null));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import com.avanza.astrix.core.remoting.Partitioner;
+import com.avanza.astrix.core.remoting.RoutingKey;
+
+/**
+ * Splits the argument of a service method using {@link com.avanza.astrix.core.AstrixPartitionedRouting} into 
+ * one array or collection for each target partition. <p>
+ * 
+ * The argument is split in two passes. The first pass computes the target partition of each element and
+ * counts the number of elements for each partition. The second pass copies the elements to a target array 
+ * or collection of the exact size for each partition. Primitive arrays (int[] and long[]) are routed without 
+ * boxing the elements, and a List implementing RandomAccess is read by index. <p>
+ * 
+ * The buffers used by the first pass are pooled in a ThreadLocal, for arguments with at most 
+ * {@link #MAX_POOLED_ELEMENTS} elements routed to at most {@link #MAX_POOLED_PARTITIONS} partitions. Hence 
+ * each thread invoking a partitioned service method retains at most about 64 KB. Larger arguments use
+ * buffers that are discarded after the invocation.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class ArgumentPartitioner {
+	
+	static final int MAX_POOLED_ELEMENTS = 1 << 12;
+	static final int MAX_POOLED_PARTITIONS = 1 << 10;
+	private static final ThreadLocal<Buffers> pooledBuffers = ThreadLocal.withInitial(Buffers::new);
+	
+	private final ContainerType containerType;
+	private final PartitionedRouter router;
+	
+	private ArgumentPartitioner(ContainerType containerType, PartitionedRouter router) {
+		this.containerType = containerType;
+		this.router = router;
+	}
+	
+	static ArgumentPartitioner array(Class<?> elementType, PartitionedRouter router) {
+		if (elementType == int.class) {
+			return new ArgumentPartitioner(new IntArrayType(), router);
+		}
+		if (elementType == long.class) {
+			return new ArgumentPartitioner(new LongArrayType(), router);
+		}
+		if (elementType.isPrimitive()) {
+			return new ArgumentPartitioner(new PrimitiveArrayType(elementType), router);
+		}
+		return new ArgumentPartitioner(new ObjectArrayType(elementType), router);
+	}
+	
+	static ArgumentPartitioner collection(Class<?> collectionFactory, PartitionedRouter router) {
+		return new ArgumentPartitioner(new CollectionType(collectionFactory), router);
+	}
+	
+	/**
+	 * @param argument - the array or collection to partition
+	 * @param partitioner
+	 * @param partitionCount
+	 * @return one PartitionedArgument for each partition that is targeted by at least one element
+	 */
+	List<PartitionedArgument> partition(Object argument, Partitioner partitioner, int partitionCount) {
+		int size = containerType.size(argument);
+		Buffers buffers = pooledBuffers.get();
+		if (buffers.inUse || size > MAX_POOLED_ELEMENTS || partitionCount > MAX_POOLED_PARTITIONS) {
+			// Reentrant invocation from a routing method, or too large to retain
+			buffers = new Buffers();
+		}
+		buffers.acquire(size, partitionCount);
+		try {
+			Assignment assignment = new Assignment(buffers, router, partitioner, partitionCount);
+			containerType.assignPartitions(argument, size, assignment);
+			Object[] targetByPartition = new Object[partitionCount];
+			int targetCount = 0;
+			for (int partition = 0; partition < partitionCount; partition++) {
+				int elementCount = buffers.elementCountByPartition[partition];
+				if (elementCount > 0) {
+					targetByPartition[partition] = containerType.newTarget(elementCount);
+					targetCount++;
+				}
+			}
+			containerType.fillTargets(argument, size, buffers, targetByPartition);
+			List<PartitionedArgument> result = new ArrayList<>(targetCount);
+			for (int partition = 0; partition < partitionCount; partition++) {
+				if (targetByPartition[partition] != null) {
+					RoutingKey routingKey = containerType.routingKey(argument, buffers.firstElementByPartition[partition], assignment);
+					result.add(new PartitionedArgument(routingKey, targetByPartition[partition]));
+				}
+			}
+			return result;
+		} finally {
+			buffers.release(size, partitionCount);
+		}
+	}
+	
+	static final class PartitionedArgument {
+		
+		private final RoutingKey routingKey;
+		private final Object elements;
+		
+		PartitionedArgument(RoutingKey routingKey, Object elements) {
+			this.routingKey = routingKey;
+			this.elements = elements;
+		}
+		
+		/**
+		 * @return the RoutingKey of one of the elements, hence routed to the target partition by the Partitioner
+		 */
+		RoutingKey getRoutingKey() {
+			return routingKey;
+		}
+		
+		/**
+		 * @return the array or collection holding all elements routed to the target partition
+		 */
+		Object getElements() {
+			return elements;
+		}
+	}
+	
+	private static final class Buffers {
+		
+		private int[] partitionByElement = new int[0];
+		private int[] elementCountByPartition = new int[0];
+		private int[] nextIndexByPartition = new int[0];
+		private int[] firstElementByPartition = new int[0];
+		private Object[] elements = new Object[0];
+		private boolean inUse;
+		
+		void acquire(int size, int partitionCount) {
+			this.inUse = true;
+			if (partitionByElement.length < size) {
+				partitionByElement = new int[size];
+			}
+			if (elementCountByPartition.length < partitionCount) {
+				elementCountByPartition = new int[partitionCount];
+				nextIndexByPartition = new int[partitionCount];
+				firstElementByPartition = new int[partitionCount];
+			}
+		}
+		
+		Object[] elements(int size) {
+			if (elements.length < size) {
+				elements = new Object[size];
+			}
+			return elements;
+		}
+		
+		void release(int size, int partitionCount) {
+			Arrays.fill(elementCountByPartition, 0, partitionCount, 0);
+			Arrays.fill(nextIndexByPartition, 0, partitionCount, 0);
+			// Don't retain any references to the arguments
+			Arrays.fill(elements, 0, Math.min(size, elements.length), null);
+			this.inUse = false;
+		}
+		
+		int nextIndex(int partition) {
+			return nextIndexByPartition[partition]++;
+		}
+	}
+	
+	private static final class Assignment {
+		
+		private final Buffers buffers;
+		private final PartitionedRouter router;
+		private final Partitioner partitioner;
+		private final int partitionCount;
+		
+		Assignment(Buffers buffers, PartitionedRouter router, Partitioner partitioner, int partitionCount) {
+			this.buffers = buffers;
+			this.router = router;
+			this.partitioner = partitioner;
+			this.partitionCount = partitionCount;
+		}
+		
+		void assign(int elementIndex, Object element) {
+			assign(elementIndex, routingKey(element));
+		}
+		
+		/**
+		 * The routingKey is not retained, which allows the jit to avoid allocating it.
+		 */
+		void assign(int elementIndex, RoutingKey routingKey) {
+			int partition = partitioner.partition(routingKey, partitionCount);
+			buffers.partitionByElement[elementIndex] = partition;
+			if (buffers.elementCountByPartition[partition]++ == 0) {
+				buffers.firstElementByPartition[partition] = elementIndex;
+			}
+		}
+		
+		RoutingKey routingKey(Object element) {
+			return router.getRoutingKey(element);
+		}
+	}
+	
+	private static abstract class ContainerType {
+		
+		abstract int size(Object container);
+		
+		abstract void assignPartitions(Object container, int size, Assignment assignment);
+		
+		abstract RoutingKey routingKey(Object container, int elementIndex, Assignment assignment);
+		
+		abstract Object newTarget(int size);
+		
+		abstract void fillTargets(Object container, int size, Buffers buffers, Object[] targetByPartition);
+	}
+	
+	private static final class ObjectArrayType extends ContainerType {
+		
+		private final Class<?> elementType;
+		
+		ObjectArrayType(Class<?> elementType) {
+			this.elementType = elementType;
+		}
+
+		@Override
+		int size(Object container) {
+			return ((Object[]) container).length;
+		}
+
+		@Override
+		void assignPartitions(Object container, int size, Assignment assignment) {
+			Object[] array = (Object[]) container;
+			for (int i = 0; i < size; i++) {
+				assignment.assign(i, array[i]);
+			}
+		}
+
+		@Override
+		RoutingKey routingKey(Object container, int elementIndex, Assignment assignment) {
+			return assignment.routingKey(((Object[]) container)[elementIndex]);
+		}
+		
+		@Override
+		Object newTarget(int size) {
+			return Array.newInstance(elementType, size);
+		}
+
+		@Override
+		void fillTargets(Object container, int size, Buffers buffers, Object[] targetByPartition) {
+			Object[] array = (Object[]) container;
+			for (int i = 0; i < size; i++) {
+				int partition = buffers.partitionByElement[i];
+				((Object[]) targetByPartition[partition])[buffers.nextIndex(partition)] = array[i];
+			}
+		}
+	}
+	
+	private static final class IntArrayType extends ContainerType {
+		
+		@Override
+		int size(Object container) {
+			return ((int[]) container).length;
+		}
+		
+		@Override
+		void assignPartitions(Object container, int size, Assignment assignment) {
+			int[] array = (int[]) container;
+			for (int i = 0; i < size; i++) {
+				// Same hash as the boxed element
+				assignment.assign(i, RoutingKey.create(Integer.hashCode(array[i])));
+			}
+		}
+		
+		@Override
+		RoutingKey routingKey(Object container, int elementIndex, Assignment assignment) {
+			return RoutingKey.create(Integer.hashCode(((int[]) container)[elementIndex]));
+		}
+		
+		@Override
+		Object newTarget(int size) {
+			return new int[size];
+		}
+		
+		@Override
+		void fillTargets(Object container, int size, Buffers buffers, Object[] targetByPartition) {
+			int[] array = (int[]) container;
+			for (int i = 0; i < size; i++) {
+				int partition = buffers.partitionByElement[i];
+				((int[]) targetByPartition[partition])[buffers.nextIndex(partition)] = array[i];
+			}
+		}
+	}
+	
+	private static final class LongArrayType extends ContainerType {
+		
+		@Override
+		int size(Object container) {
+			return ((long[]) container).length;
+		}
+		
+		@Override
+		void assignPartitions(Object container, int size, Assignment assignment) {
+			long[] array = (long[]) container;
+			for (int i = 0; i < size; i++) {
+				// Same hash as the boxed element
+				assignment.assign(i, RoutingKey.create(Long.hashCode(array[i])));
+			}
+		}
+		
+		@Override
+		RoutingKey routingKey(Object container, int elementIndex, Assignment assignment) {
+			return RoutingKey.create(Long.hashCode(((long[]) container)[elementIndex]));
+		}
+		
+		@Override
+		Object newTarget(int size) {
+			return new long[size];
+		}
+		
+		@Override
+		void fillTargets(Object container, int size, Buffers buffers, Object[] targetByPartition) {
+			long[] array = (long[]) container;
+			for (int i = 0; i < size; i++) {
+				int partition = buffers.partitionByElement[i];
+				((long[]) targetByPartition[partition])[buffers.nextIndex(partition)] = array[i];
+			}
+		}
+	}
+	
+	/**
+	 * Arrays of other primitive types, the elements are boxed when routed.
+	 */
+	private static final class PrimitiveArrayType extends ContainerType {
+		
+		private final Class<?> elementType;
+		
+		PrimitiveArrayType(Class<?> elementType) {
+			this.elementType = elementType;
+		}
+		
+		@Override
+		int size(Object container) {
+			return Array.getLength(container);
+		}
+		
+		@Override
+		void assignPartitions(Object container, int size, Assignment assignment) {
+			for (int i = 0; i < size; i++) {
+				assignment.assign(i, Array.get(container, i));
+			}
+		}
+		
+		@Override
+		RoutingKey routingKey(Object container, int elementIndex, Assignment assignment) {
+			return assignment.routingKey(Array.get(container, elementIndex));
+		}
+		
+		@Override
+		Object newTarget(int size) {
+			return Array.newInstance(elementType, size);
+		}
+		
+		@Override
+		void fillTargets(Object container, int size, Buffers buffers, Object[] targetByPartition) {
+			for (int i = 0; i < size; i++) {
+				int partition = buffers.partitionByElement[i];
+				Array.set(targetByPartition[partition], buffers.nextIndex(partition), Array.get(container, i));
+			}
+		}
+	}
+	
+	private static final class CollectionType extends ContainerType {
+		
+		private final IntFunction<Collection<Object>> collectionFactory;
+		
+		CollectionType(Class<?> collectionType) {
+			this.collectionFactory = createCollectionFactory(collectionType);
+		}
+		
+		private static IntFunction<Collection<Object>> createCollectionFactory(Class<?> collectionType) {
+			if (collectionType == ArrayList.class) {
+				return ArrayList::new;
+			}
+			if (collectionType == HashSet.class) {
+				return size -> new HashSet<>(hashCapacity(size));
+			}
+			if (collectionType == LinkedHashSet.class) {
+				return size -> new LinkedHashSet<>(hashCapacity(size));
+			}
+			try {
+				@SuppressWarnings("unchecked")
+				Constructor<? extends Collection<Object>> constructor = (Constructor<? extends Collection<Object>>) collectionType.getDeclaredConstructor();
+				return size -> {
+					try {
+						return constructor.newInstance();
+					} catch (ReflectiveOperationException e) {
+						throw new RuntimeException("Failed to instantiate class: " + collectionType.getName(), e);
+					}
+				};
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException("Collection class supplied by @AstrixPartitionedRouting must have a no-argument constructor: " + collectionType.getName(), e);
+			}
+		}
+		
+		private static int hashCapacity(int size) {
+			return (int) (size / 0.75f) + 1;
+		}
+		
+		@Override
+		int size(Object container) {
+			return ((Collection<?>) container).size();
+		}
+		
+		@Override
+		void assignPartitions(Object container, int size, Assignment assignment) {
+			if (container instanceof RandomAccess && container instanceof List) {
+				List<?> list = (List<?>) container;
+				for (int i = 0; i < size; i++) {
+					assignment.assign(i, list.get(i));
+				}
+				return;
+			}
+			// Elements are copied to a buffer to avoid iterating the collection twice
+			Object[] elements = assignment.buffers.elements(size);
+			Iterator<?> iterator = ((Collection<?>) container).iterator();
+			for (int i = 0; i < size; i++) {
+				elements[i] = iterator.next();
+				assignment.assign(i, elements[i]);
+			}
+		}
+		
+		@Override
+		RoutingKey routingKey(Object container, int elementIndex, Assignment assignment) {
+			if (container instanceof RandomAccess && container instanceof List) {
+				return assignment.routingKey(((List<?>) container).get(elementIndex));
+			}
+			return assignment.routingKey(assignment.buffers.elements[elementIndex]);
+		}
+		
+		@Override
+		Object newTarget(int size) {
+			return collectionFactory.apply(size);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		void fillTargets(Object container, int size, Buffers buffers, Object[] targetByPartition) {
+			List<?> list = container instanceof RandomAccess && container instanceof List ? (List<?>) container : null;
+			for (int i = 0; i < size; i++) {
+				Object element = list != null ? list.get(i) : buffers.elements[i];
+				((Collection<Object>) targetByPartition[buffers.partitionByElement[i]]).add(element);
+			}
+		}
+	}
+
+}
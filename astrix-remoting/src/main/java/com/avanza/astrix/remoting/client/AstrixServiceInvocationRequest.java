@@ -28,9 +28,20 @@ public class AstrixServiceInvocationRequest implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
-	private final Map<String, String> headers = new HashMap<>();
+	private final Map<String, String> headers;
 	private Object[] arguments;
 	
+	public AstrixServiceInvocationRequest() {
+		this.headers = new HashMap<>();
+	}
+	
+	/**
+	 * Creates a request with a copy of the given headers.
+	 */
+	public AstrixServiceInvocationRequest(Map<String, String> headers) {
+		this.headers = new HashMap<>(headers);
+	}
+	
 	public void setArguments(Object[] requestBody) {
 		this.arguments = requestBody;
 	}
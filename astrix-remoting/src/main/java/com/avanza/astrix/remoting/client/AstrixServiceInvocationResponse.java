@@ -83,6 +83,10 @@ public class AstrixServiceInvocationResponse implements Serializable {
 		return this.headers.get(name);
 	}
 	
+	public Map<String, String> getHeaders() {
+		return this.headers;
+	}
+	
 	public void setCorrelationId(String correlationId) {
 		this.correlationId = correlationId;
 	}
@@ -96,11 +100,11 @@ public class AstrixServiceInvocationResponse implements Serializable {
 	}
 
 	public boolean isServiceUnavailable() {
-		String serviceUnavailable = getHeader("service-unavailable");
+		String serviceUnavailable = getHeader(AstrixServiceInvocationResponseHeaders.SERVICE_UNAVAILABLE);
 		return serviceUnavailable != null && serviceUnavailable.equalsIgnoreCase("true");
 	}
 	
 	public void setServiceUnavailable(boolean unavailable) {
-		setHeader("service-unavailable", Boolean.toString(unavailable));
+		setHeader(AstrixServiceInvocationResponseHeaders.SERVICE_UNAVAILABLE, Boolean.toString(unavailable));
 	}
 }
@@ -18,5 +18,11 @@ package com.avanza.astrix.remoting.client;
 public class AstrixServiceInvocationResponseHeaders {
 	
 	public static final String OPTIONAL_RETURN_VALUE_IS_NULL = "OptionalReturnValue.isNull";
+	public static final String SERVICE_UNAVAILABLE = "service-unavailable";
+	/*
+	 * Set when all elements emitted by a service method returning an Observable are
+	 * returned as a List in a single response
+	 */
+	public static final String OBSERVABLE_RETURN_VALUE_IS_LIST = "ObservableReturnValue.isList";
 	
 }
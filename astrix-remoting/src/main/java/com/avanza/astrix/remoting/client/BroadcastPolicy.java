@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.CorrelationId;
+
+import rx.Observable;
+
+/**
+ * Defines how the responses from a broadcasted service invocation are gathered, i.e. whether
+ * the invocation completes with partial results after a deadline or after a given number of 
+ * responses, and whether slow members are hedged by re-issuing the request to a replica. <p>
+ * 
+ * Each policy is defined by the {@link AstrixBroadcast} annotation, and can be overridden for all 
+ * methods on a service bean using the corresponding bean setting in {@link RemotingSettings}, where
+ * a negative value means that the value on the annotation is used. <p>
+ * 
+ * When a policy applies, a member that fails with an error, for instance when it's unavailable, 
+ * is passed to the reducer as a {@link AstrixRemoteResult#isMissing() missing} result rather than
+ * failing the whole invocation. A failed member does not count towards the minimum number of responses. <p>
+ * 
+ * Hedging sends the same request twice to a member and must only be used on idempotent, read-only, 
+ * service methods. It only applies to transports that can reach a distinct replica of each member, 
+ * see {@link RemotingTransportSpi#supportsReplicaRequests()}, on other transports the hedge delay
+ * is ignored and a warning is logged. <p>
+ * 
+ * Policies only apply to broadcasted methods, see {@link PartitionedRemoteServiceMethod}.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class BroadcastPolicy {
+	
+	private static final int UNKNOWN_MEMBER = -1;
+	private static final Logger log = LoggerFactory.getLogger(BroadcastPolicy.class);
+	
+	private final int partialResultDeadlineMillis;
+	private final int minResponses;
+	private final int hedgeDelayMillis;
+	private final RemotingSettings settings;
+	private final AtomicBoolean unsupportedHedgingLogged = new AtomicBoolean();
+	
+	private BroadcastPolicy(int partialResultDeadlineMillis, int minResponses, int hedgeDelayMillis, RemotingSettings settings) {
+		this.partialResultDeadlineMillis = partialResultDeadlineMillis;
+		this.minResponses = minResponses;
+		this.hedgeDelayMillis = hedgeDelayMillis;
+		this.settings = settings;
+	}
+	
+	static BroadcastPolicy awaitAllResponses() {
+		return new BroadcastPolicy(0, 0, 0, new RemotingSettings());
+	}
+	
+	static BroadcastPolicy create(AstrixBroadcast broadcast, RemotingSettings settings) {
+		return new BroadcastPolicy(broadcast.partialResultDeadlineMillis(), broadcast.minResponses(), broadcast.hedgeDelayMillis(), settings);
+	}
+	
+	/**
+	 * @return true if the invocation waits for a response from each member without hedging, i.e 
+	 * no policy applies. 
+	 */
+	boolean awaitsAllResponses() {
+		return partialResultDeadlineMillis() <= 0 && minResponses() <= 0 && hedgeDelayMillis() <= 0;
+	}
+	
+	/**
+	 * Sends the request to each member in the cluster and emits each response as it is received, together
+	 * with the index of the member when the transport supports partition requests. Members that haven't 
+	 * responded within the hedge delay receive the request a second time, on a replica, and the first 
+	 * of the two responses is used. <p>
+	 * 
+	 * A member that fails is emitted as a failed MemberResponse. When the transport does not support 
+	 * partition requests the failing member can't be identified, and no more responses are emitted after 
+	 * the failure, i.e. the remaining members are reported as missing.
+	 */
+	Observable<MemberResponse> submit(AstrixServiceInvocationRequest request, RemotingEngine remotingEngine) {
+		boolean hedgingSupported = remotingEngine.supportsPartitionRequests() && remotingEngine.supportsReplicaRequests();
+		if (!hedgingSupported && hedgeDelayMillis() > 0 && unsupportedHedgingLogged.compareAndSet(false, true)) {
+			log.warn("Hedging is not supported by the remoting transport, ignoring hedgeDelayMillis={}", hedgeDelayMillis());
+		}
+		if (!remotingEngine.supportsPartitionRequests()) {
+			return remotingEngine.submitBroadcastRequestIncrementally(request)
+								 .map(response -> new MemberResponse(UNKNOWN_MEMBER, response))
+								 .onErrorResumeNext(e -> {
+									 log.warn("Broadcasted invocation failed, reporting remaining members as missing", e);
+									 return Observable.empty();
+								 });
+		}
+		int hedgeDelay = hedgingSupported ? hedgeDelayMillis() : 0;
+		int partitionCount = remotingEngine.partitionCount();
+		List<Observable<MemberResponse>> responses = new ArrayList<>(partitionCount);
+		for (int partition = 0; partition < partitionCount; partition++) {
+			int member = partition;
+			Observable<AstrixServiceInvocationResponse> response = remotingEngine.submitPartitionRequest(request, member);
+			if (hedgeDelay > 0) {
+				// A failed hedged request must not win over a slow, but successful, response from the member
+				Observable<AstrixServiceInvocationResponse> hedgedRequest = Observable.timer(hedgeDelay, TimeUnit.MILLISECONDS)
+																					  .flatMap(t -> remotingEngine.submitReplicaRequest(request, member))
+																					  .onErrorResumeNext(Observable.never());
+				response = Observable.amb(response, hedgedRequest);
+			}
+			responses.add(response.map(r -> new MemberResponse(member, r))
+								  .onErrorReturn(e -> MemberResponse.failed(member, e)));
+		}
+		return Observable.merge(responses);
+	}
+	
+	/**
+	 * Converts each response to an {@link AstrixRemoteResult} until all members have responded, the deadline
+	 * is reached, or the minimum number of successful responses are received. Each member that failed is 
+	 * emitted as a {@link AstrixRemoteResult#missing(String, CorrelationId) missing} result as it is received, 
+	 * and each member that did not respond is emitted as a missing result after the received responses, 
+	 * identifying the index of the member when known. 
+	 */
+	<T> Observable<AstrixRemoteResult<T>> gather(Observable<MemberResponse> responses,
+												 Function<AstrixServiceInvocationResponse, AstrixRemoteResult<T>> toRemoteResult,
+												 int partitionCount) {
+		int minResponses = minResponses();
+		int deadline = partialResultDeadlineMillis();
+		return Observable.defer(() -> {
+			BitSet respondingMembers = new BitSet(partitionCount);
+			AtomicInteger receivedCount = new AtomicInteger();
+			AtomicInteger successfulCount = new AtomicInteger();
+			Observable<MemberResponse> receivedResponses = responses.doOnNext(response -> {
+				receivedCount.incrementAndGet();
+				if (response.member != UNKNOWN_MEMBER) {
+					respondingMembers.set(response.member);
+				}
+				if (response.error == null) {
+					successfulCount.incrementAndGet();
+				}
+			});
+			if (minResponses > 0) {
+				receivedResponses = receivedResponses.takeUntil(response -> successfulCount.get() >= minResponses);
+			}
+			if (deadline > 0) {
+				receivedResponses = receivedResponses.takeUntil(Observable.timer(deadline, TimeUnit.MILLISECONDS));
+			}
+			Observable<AstrixRemoteResult<T>> missing = Observable.defer(() -> Observable.from(BroadcastPolicy.<T>missingResults(respondingMembers, receivedCount.get(), partitionCount)));
+			return receivedResponses.map(response -> {
+				if (response.error != null) {
+					return AstrixRemoteResult.<T>missing("Member " + response.member + " of " + partitionCount + " members failed: " + response.error, CorrelationId.undefined());
+				}
+				return toRemoteResult.apply(response.response);
+			}).concatWith(missing);
+		});
+	}
+	
+	private static <T> List<AstrixRemoteResult<T>> missingResults(BitSet respondingMembers, int receivedCount, int partitionCount) {
+		List<AstrixRemoteResult<T>> result = new ArrayList<>();
+		if (respondingMembers.cardinality() == receivedCount) {
+			for (int member = respondingMembers.nextClearBit(0); member < partitionCount; member = respondingMembers.nextClearBit(member + 1)) {
+				result.add(AstrixRemoteResult.missing("No response received from member " + member + " of " + partitionCount + " members", CorrelationId.undefined()));
+			}
+			return result;
+		}
+		// The transport does not identify the responding members
+		int missingCount = Math.max(0, partitionCount - receivedCount);
+		for (int i = 0; i < missingCount; i++) {
+			result.add(AstrixRemoteResult.missing("No response received from " + missingCount + " of " + partitionCount + " members, member index unknown", CorrelationId.undefined()));
+		}
+		return result;
+	}
+	
+	private int partialResultDeadlineMillis() {
+		return override(settings.broadcastPartialResultDeadlineMillis(), partialResultDeadlineMillis);
+	}
+	
+	private int minResponses() {
+		return override(settings.broadcastMinResponses(), minResponses);
+	}
+	
+	private int hedgeDelayMillis() {
+		return override(settings.broadcastHedgeDelayMillis(), hedgeDelayMillis);
+	}
+	
+	private static int override(DynamicIntProperty beanSetting, int annotatedValue) {
+		int value = beanSetting.get();
+		return value >= 0 ? value : annotatedValue;
+	}
+	
+	/**
+	 * A response, or error, from the member with the given index, or {@link BroadcastPolicy#UNKNOWN_MEMBER}.
+	 */
+	static final class MemberResponse {
+		
+		private final int member;
+		private final AstrixServiceInvocationResponse response;
+		private final Throwable error;
+		
+		MemberResponse(int member, AstrixServiceInvocationResponse response) {
+			this(member, response, null);
+		}
+		
+		private MemberResponse(int member, AstrixServiceInvocationResponse response, Throwable error) {
+			this.member = member;
+			this.response = response;
+			this.error = error;
+		}
+		
+		static MemberResponse failed(int member, Throwable error) {
+			return new MemberResponse(member, null, error);
+		}
+		
+	}
+
+}
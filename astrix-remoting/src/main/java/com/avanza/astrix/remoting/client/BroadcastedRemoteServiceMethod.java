@@ -21,6 +21,7 @@ import java.util.List;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.StreamingRemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
 import rx.Observable;
@@ -37,15 +38,25 @@ public class BroadcastedRemoteServiceMethod implements RemoteServiceMethod {
 	private final Class<? extends RemoteResultReducer> reducer;
 	private final RemotingEngine remotingEngine;
 	private final Type returnType;
+	private final BroadcastPolicy policy;
 	
 	public BroadcastedRemoteServiceMethod(String signature,
 			Class<? extends RemoteResultReducer> reducer,
 			RemotingEngine remotingEngine, 
 			Type returnType) {
+		this(signature, reducer, remotingEngine, returnType, BroadcastPolicy.awaitAllResponses());
+	}
+	
+	BroadcastedRemoteServiceMethod(String signature,
+			Class<? extends RemoteResultReducer> reducer,
+			RemotingEngine remotingEngine, 
+			Type returnType,
+			BroadcastPolicy policy) {
 		this.signature = signature;
 		this.reducer = reducer;
 		this.remotingEngine = remotingEngine;
 		this.returnType = returnType;
+		this.policy = policy;
 	}
 
 	public String getSignature() {
@@ -65,15 +76,21 @@ public class BroadcastedRemoteServiceMethod implements RemoteServiceMethod {
 			AstrixServiceInvocationRequest request, Object[] args) throws InstantiationException,
 			IllegalAccessException {
 		request.setArguments(remotingEngine.marshall(args));
-		@SuppressWarnings("unchecked")
-		final RemoteResultReducer<T> reducer = (RemoteResultReducer<T>) newReducer();
-		Observable<List<AstrixServiceInvocationResponse>> responesObservable = remotingEngine.submitBroadcastRequest(request);
+		if (!policy.awaitsAllResponses()) {
+			return submitWithPolicy(request);
+		}
 		if (returnType.equals(Void.TYPE) || returnType.equals(Void.class)) {
-			return responesObservable.map(responses -> {
+			return remotingEngine.submitBroadcastRequest(request).map(responses -> {
 				readResponses(responses);
 				return null;
 			});
 		}
+		if (StreamingRemoteResultReducer.class.isAssignableFrom(this.reducer)) {
+			return reduceIncrementally(remotingEngine.submitBroadcastRequestIncrementally(request).map(this::<T>toRemoteResult));
+		}
+		@SuppressWarnings("unchecked")
+		final RemoteResultReducer<T> reducer = (RemoteResultReducer<T>) newReducer();
+		Observable<List<AstrixServiceInvocationResponse>> responesObservable = remotingEngine.submitBroadcastRequest(request);
 		return responesObservable.map(responses -> {
 			List<AstrixRemoteResult<T>> unmarshalledResponses = new ArrayList<>();
 			for (AstrixServiceInvocationResponse response : responses) {
@@ -83,6 +100,42 @@ public class BroadcastedRemoteServiceMethod implements RemoteServiceMethod {
 			return reducer.reduce(unmarshalledResponses);
 		});
 	}
+	
+	/**
+	 * Gathers the responses according to the BroadcastPolicy. Members that did not respond 
+	 * are passed to the reducer as missing results, and are ignored by void methods.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Observable<T> submitWithPolicy(AstrixServiceInvocationRequest request) {
+		Observable<AstrixRemoteResult<T>> results = policy.gather(policy.submit(request, remotingEngine), this::<T>toRemoteResult, remotingEngine.partitionCount());
+		if (returnType.equals(Void.TYPE) || returnType.equals(Void.class)) {
+			return results.reduce((T) null, (ignored, result) -> {
+				if (!result.isMissing()) {
+					result.getResult();
+				}
+				return null;
+			});
+		}
+		if (StreamingRemoteResultReducer.class.isAssignableFrom(this.reducer)) {
+			return reduceIncrementally(results);
+		}
+		return results.toList().map(resultList -> ((RemoteResultReducer<T>) newReducer()).reduce(resultList));
+	}
+	
+	/**
+	 * Folds each result into the reducer as it is received, a new reducer is created for 
+	 * each subscription.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Observable<T> reduceIncrementally(Observable<AstrixRemoteResult<T>> results) {
+		return results.collect(() -> (StreamingRemoteResultReducer<T>) newReducer(), 
+							   (reducer, result) -> reducer.accumulate(result))
+					  .map(StreamingRemoteResultReducer::finish);
+	}
+	
+	private <T> AstrixRemoteResult<T> toRemoteResult(AstrixServiceInvocationResponse response) {
+		return remotingEngine.toRemoteResult(response, returnType);
+	}
 
 	private void readResponses(List<AstrixServiceInvocationResponse> responses) {
 		responses.forEach(res -> remotingEngine.toRemoteResult(res, returnType).getResult());
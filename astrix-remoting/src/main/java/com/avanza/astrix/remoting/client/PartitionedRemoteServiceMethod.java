@@ -16,26 +16,29 @@
 package com.avanza.astrix.remoting.client;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
-import java.util.function.Consumer;
 
 import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.RemoteResultReducer;
-import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.core.StreamingRemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.remoting.client.ArgumentPartitioner.PartitionedArgument;
 
 import rx.Observable;
 /**
+ * Invokes a service method using {@link AstrixPartitionedRouting}, i.e. splits the partitioned argument 
+ * and invokes each targeted partition with its part of the argument. <p>
+ * 
+ * Note that the broadcast policies, see {@link com.avanza.astrix.core.AstrixBroadcast} and the corresponding 
+ * bean settings, do not apply to partitioned invocations. Each part of the argument is only sent to one 
+ * partition, so the invocation always waits for all targeted partitions and fails if any of them fails. 
  * 
  * @author Elias Lindholm (elilin)
  *
@@ -47,8 +50,7 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 	private final RemotingEngine remotingEngine;
 	private final Type targetReturnType;
 	private final Class<? extends RemoteResultReducer<?>> reducerType;
-	private final ContainerType partitionedArgumentContainerType;
-	private final PartitionedRouter router;
+	private final ArgumentPartitioner argumentPartitioner;
 	private final Method proxiedMethod;
 
 	public PartitionedRemoteServiceMethod(int partitionedArgumentIndex,
@@ -64,12 +66,10 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		this.targetReturnType = targetReturnType;
 		AstrixPartitionedRouting partitionedRouting = getPartitionedRoutingAnnotation(proxiedMethod, partitionedArgumentIndex);
 		this.reducerType = getReducer(partitionedRouting, targetServiceMethod);
-		this.partitionedArgumentContainerType = getPartitionedArgumentContainerType(proxiedMethod, partitionedRouting);
-		this.router = createRouter(partitionedRouting);
+		this.argumentPartitioner = createArgumentPartitioner(proxiedMethod, partitionedRouting);
 	}
 
-	private PartitionedRouter createRouter(AstrixPartitionedRouting partitionedRouting) {
-		Class<?> elementType = this.partitionedArgumentContainerType.getElementType();
+	private PartitionedRouter createRouter(AstrixPartitionedRouting partitionedRouting, Class<?> elementType) {
 		if (!partitionedRouting.routingMethod().isEmpty()) {
 			Method routingMethod;
 			try {
@@ -84,10 +84,11 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		return PartitionedRouter.identity();
 	}
 
-	private ContainerType getPartitionedArgumentContainerType(Method proxiedMethod, AstrixPartitionedRouting partitionBy) {
+	private ArgumentPartitioner createArgumentPartitioner(Method proxiedMethod, AstrixPartitionedRouting partitionBy) {
 		Class<?> partitionedArgumentType = proxiedMethod.getParameterTypes()[partitionedArgumentIndex];
 		if (partitionedArgumentType.isArray()) {
-			return new ArrayContainerType(partitionedArgumentType.getComponentType());
+			Class<?> elementType = partitionedArgumentType.getComponentType();
+			return ArgumentPartitioner.array(elementType, createRouter(partitionBy, elementType));
 		}
 		@SuppressWarnings("unchecked")
 		Class<? extends Collection<?>> collectionFactory = (Class<? extends Collection<?>>) partitionBy.collectionFactory();
@@ -102,7 +103,8 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 			throw new IllegalArgumentException("Illegal service method: " + ReflectionUtil.fullMethodName(proxiedMethod) + ".\nWhen defining a routingMethod for @AstrixPartitionedRouting the target Collection type must not be a raw type. \nwas: " + rawType);
 		}
 		ParameterizedType partitionedArgumentTypeParameters = (ParameterizedType) rawType;
-		return new CollectionContainerType(collectionFactory, getElementType(partitionedArgumentTypeParameters));
+		Class<?> elementType = getElementType(partitionedArgumentTypeParameters);
+		return ArgumentPartitioner.collection(collectionFactory, createRouter(partitionBy, elementType));
 	}
 
 	private Class<? extends RemoteResultReducer<?>> getReducer(AstrixPartitionedRouting partitionBy, Method targetServiceMethod) {
@@ -133,11 +135,58 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		 * 2. Marshall arguments
 		 * 3. Execute requests
 		 */
-		ServiceInvocationPartitioner serviceInvocationPartitioner = new ServiceInvocationPartitioner();
-		List<RoutedServiceInvocationRequest> partitionInvocationRequest = serviceInvocationPartitioner.partitionInvocationRequest(invocationRequest, args);
-		Observable<List<AstrixServiceInvocationResponse>> serviceInvocationResponses = remotingEngine.submitRoutedRequests(partitionInvocationRequest);
+		List<PartitionedArgument> partitionedArguments = argumentPartitioner.partition(args[partitionedArgumentIndex], remotingEngine.partitioner(), remotingEngine.partitionCount());
+		boolean incremental = isIncrementallyReduced();
+		if (remotingEngine.marshallInParallel(partitionedArguments.size())) {
+			Observable<AstrixServiceInvocationResponse> responses = submitMarshalledInParallel(invocationRequest, args, partitionedArguments);
+			return incremental ? reduceIncrementally(responses) : reduce(responses.toList());
+		}
+		List<RoutedServiceInvocationRequest> partitionInvocationRequests = new ArrayList<>(partitionedArguments.size());
+		for (PartitionedArgument partitionedArgument : partitionedArguments) {
+			partitionInvocationRequests.add(createInvocationRequest(invocationRequest, args, partitionedArgument));
+		}
+		if (incremental) {
+			return reduceIncrementally(remotingEngine.submitRoutedRequestsIncrementally(partitionInvocationRequests));
+		}
+		Observable<List<AstrixServiceInvocationResponse>> serviceInvocationResponses = remotingEngine.submitRoutedRequests(partitionInvocationRequests);
 		return reduce(serviceInvocationResponses);
 	}
+	
+	private boolean isIncrementallyReduced() {
+		return !(targetReturnType.equals(Void.TYPE) || targetReturnType.equals(Void.class)) 
+				&& StreamingRemoteResultReducer.class.isAssignableFrom(this.reducerType);
+	}
+	
+	/**
+	 * Marshalls the arguments to each partition on the marshalling threads, and submits the request to
+	 * each partition as soon as its arguments are marshalled. Hence the first partitions start executing 
+	 * while the arguments to the remaining partitions are marshalled. 
+	 */
+	private Observable<AstrixServiceInvocationResponse> submitMarshalledInParallel(AstrixServiceInvocationRequest invocationRequest,
+																						   Object[] args,
+																						   List<PartitionedArgument> partitionedArguments) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(partitionedArguments.size());
+		for (PartitionedArgument partitionedArgument : partitionedArguments) {
+			responses.add(Observable.fromCallable(() -> createInvocationRequest(invocationRequest, args, partitionedArgument))
+									.subscribeOn(remotingEngine.marshallingScheduler())
+									.flatMap(request -> remotingEngine.submitRoutedRequest(request.getRequest(), request.getRoutingkey())));
+		}
+		return Observable.merge(responses);
+	}
+	
+	/**
+	 * The request is sent with the RoutingKey of one of the elements routed to the target partition, the 
+	 * transport applies its Partitioner to the key which routes the request to the same partition.
+	 */
+	private RoutedServiceInvocationRequest createInvocationRequest(AstrixServiceInvocationRequest invocationRequest,
+																   Object[] unpartitionedArguments,
+																   PartitionedArgument partitionedArgument) {
+		AstrixServiceInvocationRequest partitionedRequest = new AstrixServiceInvocationRequest(invocationRequest.getHeaders());
+		Object[] requestForPartition = Arrays.copyOf(unpartitionedArguments, unpartitionedArguments.length);
+		requestForPartition[partitionedArgumentIndex] = partitionedArgument.getElements();
+		partitionedRequest.setArguments(remotingEngine.marshall(requestForPartition));
+		return new RoutedServiceInvocationRequest(partitionedRequest, partitionedArgument.getRoutingKey());
+	}
 
 	private <T> Observable<T> reduce(Observable<List<AstrixServiceInvocationResponse>> responses) {
 		if (targetReturnType.equals(Void.TYPE) || targetReturnType.equals(Void.class)) {
@@ -158,6 +207,16 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		
 	}
 
+	/**
+	 * Unmarshalls each response as it is received and folds it into the result, a new reducer 
+	 * is created for each subscription.
+	 */
+	private <T> Observable<T> reduceIncrementally(Observable<AstrixServiceInvocationResponse> responses) {
+		return responses.collect(() -> (StreamingRemoteResultReducer<T>) this.<T>newRemoteResultReducer(), 
+								 (reducer, response) -> reducer.accumulate(remotingEngine.toRemoteResult(response, targetReturnType)))
+						.map(StreamingRemoteResultReducer::finish);
+	}
+
 	private void readResults(List<AstrixServiceInvocationResponse> responseList) {
 		responseList.forEach(res -> remotingEngine.toRemoteResult(res, targetReturnType).getResult());
 	}
@@ -167,10 +226,6 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		return (RemoteResultReducer<T>) ReflectionUtil.newInstance(this.reducerType);
 	}
 
-	private ContainerBuilder newCollectionInstance() {
-		return partitionedArgumentContainerType.newInstance();
-	}
-
 	private Class<?> getElementType(ParameterizedType parameterizedContainerType) {
 		Type typeArgument = parameterizedContainerType.getActualTypeArguments()[0];
 		if (typeArgument instanceof ParameterizedType) {
@@ -181,181 +236,4 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		}
 	}
 
-	private class RoutedServiceInvocationRequestBuilder {
-		private final ContainerBuilder routingKeys;
-		private final RoutingKey targetPartitionRoutingKey;
-
-		public RoutedServiceInvocationRequestBuilder(ContainerBuilder keys, int targetPartition) {
-			this.routingKeys = keys;
-			this.targetPartitionRoutingKey = RoutingKey.create(targetPartition);
-		}
-
-		public void addKey(Object requestedKey) {
-			this.routingKeys.add(requestedKey);
-		}
-		
-		private RoutedServiceInvocationRequest createInvocationRequest(
-				AstrixServiceInvocationRequest invocationRequest,
-				Object[] unpartitionedArguments) {
-			AstrixServiceInvocationRequest partitionedRequest = new AstrixServiceInvocationRequest();
-			partitionedRequest.setAllHeaders(invocationRequest.getHeaders());
-			Object[] requestForPartition = Arrays.copyOf(unpartitionedArguments, unpartitionedArguments.length);
-			requestForPartition[partitionedArgumentIndex] = this.routingKeys.buildTarget();
-			partitionedRequest.setArguments(remotingEngine.marshall(requestForPartition));
-			return new RoutedServiceInvocationRequest(partitionedRequest, targetPartitionRoutingKey);
-		}
-	}
-	
-	private class ServiceInvocationPartitioner {
-		private final RoutedServiceInvocationRequestBuilder[] requests;
-		
-		public ServiceInvocationPartitioner() {
-			this.requests = new RoutedServiceInvocationRequestBuilder[remotingEngine.partitionCount()];
-		}
-
-		public List<RoutedServiceInvocationRequest> partitionInvocationRequest(AstrixServiceInvocationRequest invocationRequest, Object[] args) {
-			partitionedArgumentContainerType.iterateContainer(getContainerInstance(args), new Consumer<Object>() {
-				@Override
-				public void accept(Object element) {
-					addElement(element);
-				}
-			});
-			List<RoutedServiceInvocationRequest> result = new LinkedList<>();
-			for (RoutedServiceInvocationRequestBuilder routedInvocationReqeustBuilder : requests) {
-				if (routedInvocationReqeustBuilder != null) {
-					result.add(routedInvocationReqeustBuilder.createInvocationRequest(invocationRequest, args));
-				}
-			}
-			return result;
-		}
-		
-		private Object getContainerInstance(Object[] args) {
-			return args[partitionedArgumentIndex];
-		}
-
-		public void addElement(Object element) {
-			RoutingKey routingKey = router.getRoutingKey(element);
-			int targetPartition = routingKey.hashCode() % requests.length;
-			RoutedServiceInvocationRequestBuilder invocationRequestBuilderForPartition = this.requests[targetPartition];
-			if (invocationRequestBuilderForPartition == null) {
-				invocationRequestBuilderForPartition = new RoutedServiceInvocationRequestBuilder(newCollectionInstance(), targetPartition);
-				this.requests[targetPartition] = invocationRequestBuilderForPartition;
-				
-			}
-			invocationRequestBuilderForPartition.addKey(element);
-		}
-
-	}
-	
-	private interface ContainerType {
-		ContainerBuilder newInstance();
-		void iterateContainer(Object container, Consumer<Object> consumer);
-		Class<?> getElementType();
-	}
-	
-	private static class CollectionContainerType implements ContainerType {
-		private final Class<?> elementType;
-		private final Class<? extends Collection<?>> collectionFactory;
-		
-		public CollectionContainerType(Class<? extends Collection<?>> collectionFactory, Class<?> elementType) {
-			this.collectionFactory = Objects.requireNonNull(collectionFactory);
-			this.elementType = Objects.requireNonNull(elementType);
-		}
-
-		@SuppressWarnings("unchecked")
-		@Override
-		public ContainerBuilder newInstance() {
-			return new CollectionContainerBuilder((Collection<? super Object>) ReflectionUtil.newInstance(this.collectionFactory));
-		}
-
-		@Override
-		public void iterateContainer(Object container, Consumer<Object> consumer) {
-			for (Object element : (Collection<? extends Object>) container) {
-				consumer.accept(element);
-			}
-		}
-		
-		@Override
-		public Class<?> getElementType() {
-			return elementType;
-		}
-	}
-	
-	private static class ArrayContainerType implements ContainerType {
-		
-		private final Class<?> elementType;
-		
-		public ArrayContainerType(Class<?> elementType) {
-			this.elementType = elementType;
-		}
-
-		@Override
-		public ContainerBuilder newInstance() {
-			return new ArrayContainerBuilder(elementType);
-		}
-
-		@Override
-		public void iterateContainer(Object container, Consumer<Object> consumer) {
-			for (int i = 0; i < Array.getLength(container); i++) {
-				consumer.accept(Array.get(container, i));
-			}
-		}
-		
-		@Override
-		public Class<?> getElementType() {
-			return this.elementType;
-		}
-	}
-	
-	private static class ArrayContainerBuilder extends ContainerBuilder {
-		
-		private final Class<?> elementType;
-		private final List<Object> elements = new ArrayList<>();
-		
-		public ArrayContainerBuilder(Class<?> elementType) {
-			this.elementType = elementType;
-		}
-		
-		@Override
-		void add(Object element) {
-			elements.add(element);
-		}
-		
-		@Override
-		Object buildTarget() {
-			Object array = Array.newInstance(elementType, elements.size());
-			int nextIndex = 0;
-			for (Object element : elements) {
-				Array.set(array, nextIndex, element);
-				nextIndex++;
-			}
-			return array;
-		}
-	}
-	
-	private static abstract class ContainerBuilder {
-		
-		abstract void add(Object element);
-		
-		abstract Object buildTarget();
-	}
-	
-	private static class CollectionContainerBuilder extends ContainerBuilder {
-		private Collection<? super Object> collection;
-
-		public CollectionContainerBuilder(Collection<? super Object> collection) {
-			this.collection = collection;
-		}
-		
-		@Override
-		void add(Object element) {
-			this.collection.add(element);
-		}
-		
-		@Override
-		Object buildTarget() {
-			return collection;
-		}
-	}
-	
 }
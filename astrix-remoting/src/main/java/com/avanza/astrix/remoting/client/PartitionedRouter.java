@@ -19,7 +19,7 @@ import java.lang.reflect.Method;
 import java.util.Objects;
 
 import com.avanza.astrix.core.remoting.RoutingKey;
-import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.core.util.MethodInvoker;
 
 /**
  * 
@@ -53,14 +53,14 @@ abstract class PartitionedRouter {
 		}
 	}
 	private static class RoutingMethod extends PartitionedRouter {
-		private final Method method;
+		private final MethodInvoker method;
 		public RoutingMethod(Method method) {
-			this.method = Objects.requireNonNull(method);
+			this.method = MethodInvoker.create(Objects.requireNonNull(method));
 		}
 		@Override
 		RoutingKey getRoutingKey(Object element) {
 			try {
-				Object result = ReflectionUtil.invokeMethod(method, element, null);
+				Object result = method.invoke(element, null);
 				return RoutingKey.create(result);
 			} catch (Throwable e) {
 				throw new RuntimeException("Failed to invoke routing Method on: " + element, e);
@@ -15,30 +15,30 @@
  */
 package com.avanza.astrix.remoting.client;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.core.util.MethodInvoker;
 
 public class PropertyOnAnnotatedArgumentRoutingStrategy implements Router {
 	
 	private final int argumentIndex;
-	private final Method propertyMethod;
+	private final MethodInvoker propertyMethod;
 
 
 	public PropertyOnAnnotatedArgumentRoutingStrategy(int argumentIndex, Method propertyMethod) {
 		this.argumentIndex = argumentIndex;
-		this.propertyMethod = propertyMethod;
+		this.propertyMethod = MethodInvoker.create(propertyMethod);
 	}
 
 	@Override
 	public RoutingKey getRoutingKey(Object[] args) {
 		Object routingKey;
 		try {
-			routingKey = propertyMethod.invoke(args[argumentIndex]);
-		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-			throw new IllegalArgumentException("Failed to route using method:" + propertyMethod, e);
+			routingKey = propertyMethod.invoke(args[argumentIndex], null);
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Failed to route using method:" + propertyMethod.getMethod(), e);
 		}
 		return RoutingKey.create(routingKey);
 	}
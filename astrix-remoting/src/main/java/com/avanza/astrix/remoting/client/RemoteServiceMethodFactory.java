@@ -20,8 +20,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 
 import com.avanza.astrix.core.*;
+import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.core.util.ReflectionUtil;
+
+import rx.Observable;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -45,18 +48,33 @@ public class RemoteServiceMethodFactory {
 			Method targetServiceMethod = ReflectionUtil.getMethod(targetServiceType, proxiedMethod.getName(),proxiedMethod.getParameterTypes());
 			return new BroadcastedRemoteServiceMethod(methodSignature,
 					getRemoteResultReducerClass(targetServiceMethod),
-					remotingEngine, targetReturnType);
+					remotingEngine, targetReturnType, 
+					BroadcastPolicy.create(targetServiceMethod.getAnnotation(AstrixBroadcast.class), remotingEngine.settings()));
 		}
 		int partitionedByArgumentIndex = getPartitionedByAnnotation(proxiedMethod);
 		if (partitionedByArgumentIndex >= 0) {
 			Method targetServiceMethod = ReflectionUtil.getMethod(targetServiceType, proxiedMethod.getName(),proxiedMethod.getParameterTypes());
 			return new PartitionedRemoteServiceMethod(partitionedByArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType, targetServiceMethod);
 		}
+		Router router;
 		if (proxiedMethod.isAnnotationPresent(AstrixRoutingStrategy.class)) {
 			RoutingStrategy routingStrategy = createRoutingStrategy(proxiedMethod);
-			return new RoutedRemoteServiceMethod(methodSignature, routingStrategy.create(proxiedMethod), remotingEngine, targetReturnType);
+			router = routingStrategy.create(proxiedMethod);
+		} else {
+			router = defaultRoutingStrategy.create(proxiedMethod);
+		}
+		if (isStreaming(targetServiceType, proxiedMethod)) {
+			return new StreamingRemoteServiceMethod(methodSignature, router, remotingEngine, targetReturnType);
+		}
+		return new RoutedRemoteServiceMethod(methodSignature, router, remotingEngine, targetReturnType);
+	}
+	
+	private static boolean isStreaming(Class<?> targetServiceType, Method proxiedMethod) {
+		if (!Observable.class.equals(proxiedMethod.getReturnType())) {
+			return false;
 		}
-		return new RoutedRemoteServiceMethod(methodSignature, defaultRoutingStrategy.create(proxiedMethod), remotingEngine, targetReturnType);
+		Method targetServiceMethod = ReflectionUtil.getMethod(targetServiceType, proxiedMethod.getName(), proxiedMethod.getParameterTypes());
+		return Observable.class.equals(targetServiceMethod.getReturnType());
 	}
 
 	private RoutingStrategy createRoutingStrategy(Method proxiedMethod) {
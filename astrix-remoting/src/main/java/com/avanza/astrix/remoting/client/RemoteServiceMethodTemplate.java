@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders.API_VERSION;
+import static com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders.SERVICE_API;
+import static com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import com.avanza.astrix.beans.core.ReactiveTypeConverter;
+import com.avanza.astrix.beans.tracing.InvocationExecutionWatcher;
+import com.avanza.astrix.core.AstrixCallStackTrace;
+
+import rx.Observable;
+import rx.functions.Action1;
+import rx.subjects.ReplaySubject;
+
+/**
+ * Everything required to invoke a given proxied method that doesn't depend on the arguments
+ * of a given invocation, resolved once when the {@link RemotingProxy} is created: the request 
+ * headers, the invocation watchers and how the result is adapted to the return type of the method. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class RemoteServiceMethodTemplate {
+	
+	enum ReturnMode {
+		OBSERVABLE,
+		REACTIVE,
+		FUTURE,
+		BLOCKING
+	}
+	
+	private final RemoteServiceMethod remoteServiceMethod;
+	private final Map<String, String> headers;
+	private final List<InvocationExecutionWatcher> invocationWatchers;
+	private final Function<Observable<Object>, Object> resultAdapter;
+	
+	RemoteServiceMethodTemplate(Method proxiedMethod,
+								RemoteServiceMethod remoteServiceMethod,
+								String serviceApi,
+								int apiVersion,
+								List<InvocationExecutionWatcher> invocationWatchers,
+								ReactiveTypeConverter reactiveTypeConverter) {
+		this.remoteServiceMethod = remoteServiceMethod;
+		this.invocationWatchers = invocationWatchers;
+		Map<String, String> headers = new HashMap<>();
+		headers.put(API_VERSION, Integer.toString(apiVersion));
+		headers.put(SERVICE_METHOD_SIGNATURE, remoteServiceMethod.getSignature());
+		headers.put(SERVICE_API, serviceApi);
+		this.headers = Collections.unmodifiableMap(headers);
+		Class<?> returnType = proxiedMethod.getReturnType();
+		this.resultAdapter = createResultAdapter(getReturnMode(returnType, reactiveTypeConverter), returnType, reactiveTypeConverter);
+	}
+	
+	static ReturnMode getReturnMode(Class<?> returnType, ReactiveTypeConverter reactiveTypeConverter) {
+		if (Observable.class.isAssignableFrom(returnType)) {
+			return ReturnMode.OBSERVABLE;
+		}
+		if (reactiveTypeConverter.isReactiveType(returnType)) {
+			return ReturnMode.REACTIVE;
+		}
+		if (Future.class.equals(returnType)) {
+			return ReturnMode.FUTURE;
+		}
+		return ReturnMode.BLOCKING;
+	}
+	
+	private static Function<Observable<Object>, Object> createResultAdapter(ReturnMode returnMode, Class<?> returnType, ReactiveTypeConverter reactiveTypeConverter) {
+		switch (returnMode) {
+		case OBSERVABLE:
+			return result -> result;
+		case REACTIVE:
+			return result -> reactiveTypeConverter.toCustomReactiveType(returnType, eagerlySubscribe(result));
+		case FUTURE:
+			return result -> new FutureAdapter<>(eagerlySubscribe(result));
+		default:
+			return RemoteServiceMethodTemplate::awaitResult;
+		}
+	}
+	
+	private static Observable<Object> eagerlySubscribe(Observable<Object> result) {
+		ReplaySubject<Object> subject = ReplaySubject.create();
+		// eagerly kick off subscription
+		result.subscribe(subject);
+		// return the subject that can be subscribed to later while the execution has already started
+		return subject;
+	}
+	
+	private static Object awaitResult(Observable<Object> result) {
+		try {
+			return result.toBlocking().first();
+		} catch (RuntimeException e) {
+			// Append invocation call stack
+			appendStackTrace(e, new AstrixCallStackTrace());
+			throw e;
+		}
+	}
+
+	private static void appendStackTrace(Throwable exception, AstrixCallStackTrace trace) {
+		Throwable lastThowableInChain = exception;
+		while (lastThowableInChain.getCause() != null) {
+			lastThowableInChain = lastThowableInChain.getCause();
+		}
+		lastThowableInChain.initCause(trace);
+	}
+
+	Object invoke(Object[] args) throws Throwable {
+		AstrixServiceInvocationRequest invocationRequest = new AstrixServiceInvocationRequest(this.headers);
+		if (invocationWatchers.isEmpty()) {
+			return resultAdapter.apply(invoke(invocationRequest, args));
+		}
+		Runnable afterInvocationWatchers = InvocationExecutionWatcher.apply(invocationWatchers, invocationRequest.getHeaders());
+		Observable<Object> result = invoke(invocationRequest, args)
+				.doOnError(e -> afterInvocationWatchers.run())
+				.doOnCompleted(afterInvocationWatchers::run);
+		return resultAdapter.apply(result);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Observable<Object> invoke(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
+		return (Observable<Object>) remoteServiceMethod.invoke(invocationRequest, args);
+	}
+	
+	private static class FutureAdapter<T> implements Future<T> {
+		
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile T result;
+		private volatile Throwable exception;
+		
+		public FutureAdapter(Observable<T> obs) {
+			obs.subscribe(new Action1<T>() {
+				@Override
+				public void call(T t1) {
+					result = t1;
+					done.countDown();
+				}
+			}, new Action1<Throwable>() {
+
+				@Override
+				public void call(Throwable t1) {
+					exception = t1;
+					done.countDown();
+				}
+				
+			});
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+		
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+
+		@Override
+		public T get() throws InterruptedException, ExecutionException {
+			done.await();
+			return getResult();
+		}
+
+		@Override
+		public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if (!done.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return getResult();
+		}
+
+		private T getResult() throws ExecutionException {
+			if (exception != null) {
+				throw new ExecutionException(exception);
+			}
+			return result;		
+		}
+		
+	}
+
+}
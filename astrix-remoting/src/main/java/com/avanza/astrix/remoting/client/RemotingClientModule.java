@@ -16,6 +16,7 @@
 package com.avanza.astrix.remoting.client;
 
 
+import com.avanza.astrix.beans.config.AstrixConfig;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.tracing.AstrixTraceProvider;
 import com.avanza.astrix.context.AstrixContextPlugin;
@@ -31,6 +32,7 @@ public class RemotingClientModule implements AstrixContextPlugin {
 		moduleContext.importType(ObjectSerializerFactory.class);
 		moduleContext.importType(ReactiveTypeConverter.class);
 		moduleContext.importType(AstrixTraceProvider.class);
+		moduleContext.importType(AstrixConfig.class);
 
 		moduleContext.export(RemotingProxyFactory.class);
 	}
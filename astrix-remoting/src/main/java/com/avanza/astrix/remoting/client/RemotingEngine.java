@@ -17,30 +17,60 @@ package com.avanza.astrix.remoting.client;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import com.avanza.astrix.beans.async.ContextPropagation;
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.CorrelationId;
 import com.avanza.astrix.core.RemoteServiceInvocationException;
 import com.avanza.astrix.core.ServiceInvocationException;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.core.util.NamedThreadFactory;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 
 public final class RemotingEngine {
 	
 	// TODO: find suitable name for this abstraction
 	
+	private static final int MARSHALLING_QUEUE_SIZE = 1024;
+	
+	/**
+	 * Shared by all remoting clients, see {@link #marshallingScheduler()}.
+	 */
+	private static final ThreadPoolExecutor MARSHALLING_EXECUTOR = createMarshallingExecutor();
+	
 	private final RemotingTransport serviceTransport;
 	private final AstrixObjectSerializer objectSerializer;
 	private final int apiVersion;
+	private final boolean serializedArguments;
+	private final Partitioner partitioner;
+	private final RemotingSettings settings;
+	private final Scheduler marshallingScheduler;
 	
 	public RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion) {
+		this(serviceTransport, objectSerializer, apiVersion, new RemotingSettings(), ContextPropagation.NONE);
+	}
+	
+	public RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion, RemotingSettings settings, ContextPropagation contextPropagation) {
+		this.settings = settings;
+		Executor contextPropagatingExecutor = task -> MARSHALLING_EXECUTOR.execute(contextPropagation.wrap(task));
+		this.marshallingScheduler = Schedulers.from(contextPropagatingExecutor);
 		this.serviceTransport = serviceTransport;
 		this.objectSerializer = objectSerializer;
 		this.apiVersion = apiVersion;
+		this.serializedArguments = serviceTransport.supportsSerializedArguments() && objectSerializer.supportsBinaryFormat(apiVersion);
+		this.partitioner = serviceTransport.partitioner();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -62,6 +92,20 @@ public final class RemotingEngine {
 		return AstrixRemoteResult.successful(result);
 	}
 	
+	/**
+	 * Converts a response from a service method returning an Observable to the elements it contains.
+	 */
+	final List<Object> toStreamElements(AstrixServiceInvocationResponse response, Type elementType) {
+		if (!isListOfObservableElements(response)) {
+			return Collections.singletonList(toRemoteResult(response, elementType).getResult());
+		}
+		return this.<List<Object>>toRemoteResult(response, new ListType(elementType)).getResult();
+	}
+	
+	private boolean isListOfObservableElements(AstrixServiceInvocationResponse response) {
+		return "true".equals(response.getHeader(AstrixServiceInvocationResponseHeaders.OBSERVABLE_RETURN_VALUE_IS_LIST));
+	}
+	
 	private <T> T restoreOptional(AstrixServiceInvocationResponse response, Type returnType) {
 		if (isNullOptionalReturnValue(response)) {
 			return null;
@@ -95,7 +139,12 @@ public final class RemotingEngine {
 		}
 		Object[] result = new Object[elements.length];
 		for (int i = 0; i < result.length; i++) {
-			result[i] = this.objectSerializer.serialize(elements[i], apiVersion);
+			if (serializedArguments) {
+				// Serialized by the transport directly into the buffer of the request
+				result[i] = new SerializedArgument(elements[i], objectSerializer, apiVersion);
+			} else {
+				result[i] = this.objectSerializer.serialize(elements[i], apiVersion);
+			}
 		}
 		return result;
 	}
@@ -118,6 +167,10 @@ public final class RemotingEngine {
 		return this.serviceTransport.submitRoutedRequest(request, routingKey);
 	}
 	
+	final Observable<AstrixServiceInvocationResponse> submitStreamingRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return this.serviceTransport.submitStreamingRequest(request, routingKey);
+	}
+	
 	final Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
 		return this.serviceTransport.submitRoutedRequests(requests);
 	}
@@ -125,9 +178,100 @@ public final class RemotingEngine {
 	final Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
 		return this.serviceTransport.submitBroadcastRequest(request);
 	}
+	
+	final Observable<AstrixServiceInvocationResponse> submitRoutedRequestsIncrementally(List<RoutedServiceInvocationRequest> requests) {
+		return this.serviceTransport.submitRoutedRequestsIncrementally(requests);
+	}
+	
+	final Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		return this.serviceTransport.submitBroadcastRequestIncrementally(request);
+	}
+
+	final Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+		return this.serviceTransport.submitPartitionRequest(request, partition);
+	}
+	
+	final boolean supportsPartitionRequests() {
+		return this.serviceTransport.supportsPartitionRequests();
+	}
+	
+	final Observable<AstrixServiceInvocationResponse> submitReplicaRequest(AstrixServiceInvocationRequest request, int partition) {
+		return this.serviceTransport.submitReplicaRequest(request, partition);
+	}
+	
+	final boolean supportsReplicaRequests() {
+		return this.serviceTransport.supportsReplicaRequests();
+	}
+	
+	final RemotingSettings settings() {
+		return this.settings;
+	}
 
 	public int partitionCount() {
 		return this.serviceTransport.partitionCount();
 	}
+	
+	final Partitioner partitioner() {
+		return this.partitioner;
+	}
+	
+	/**
+	 * Whether the arguments to each target partition of a partitioned invocation should be marshalled in parallel.
+	 */
+	final boolean marshallInParallel(int targetPartitionCount) {
+		int minPartitions = this.settings.parallelMarshallingMinPartitions().get();
+		return minPartitions > 0 && targetPartitionCount >= minPartitions;
+	}
+	
+	/**
+	 * The scheduler used to marshall arguments in parallel. The context of the invoking thread, for instance 
+	 * the trace context, is propagated to the marshalling thread, which also submits the request to the transport. <p>
+	 * 
+	 * The marshalling threads are shared by all remoting clients and bounded to the number of available processors. 
+	 * When more than {@link #MARSHALLING_QUEUE_SIZE} tasks are waiting the arguments are marshalled by the invoking
+	 * thread instead.
+	 */
+	final Scheduler marshallingScheduler() {
+		return this.marshallingScheduler;
+	}
+	
+	private static ThreadPoolExecutor createMarshallingExecutor() {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+															 new ArrayBlockingQueue<>(MARSHALLING_QUEUE_SIZE),
+															 new NamedThreadFactory("AstrixRemotingMarshalling"),
+															 new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	private static final class ListType implements ParameterizedType {
+		
+		private final Type elementType;
+		
+		ListType(Type elementType) {
+			this.elementType = elementType;
+		}
+
+		@Override
+		public Type[] getActualTypeArguments() {
+			return new Type[] { elementType };
+		}
+
+		@Override
+		public Type getRawType() {
+			return List.class;
+		}
+
+		@Override
+		public Type getOwnerType() {
+			return null;
+		}
+		
+		@Override
+		public String toString() {
+			return List.class.getName() + "<" + elementType.getTypeName() + ">";
+		}
+	}
 
 }
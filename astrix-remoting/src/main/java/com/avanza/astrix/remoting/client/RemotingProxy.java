@@ -15,40 +15,33 @@
  */
 package com.avanza.astrix.remoting.client;
 
-import static com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders.API_VERSION;
-import static com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders.SERVICE_API;
-import static com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE;
-
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.async.ContextPropagation;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.tracing.AstrixTraceProvider;
 import com.avanza.astrix.beans.tracing.DefaultTraceProvider;
 import com.avanza.astrix.beans.tracing.InvocationExecutionWatcher;
-import com.avanza.astrix.core.AstrixCallStackTrace;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
+import com.avanza.astrix.core.util.ProxyClass;
+import com.avanza.astrix.core.util.ProxyDispatcher;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
 import rx.Completable;
 import rx.Observable;
-import rx.functions.Action1;
-import rx.subjects.ReplaySubject;
 
 /**
  * 
@@ -61,8 +54,7 @@ public class RemotingProxy implements InvocationHandler {
 
 	private final int apiVersion;
 	private final String serviceApi;
-	private final ConcurrentMap<Method, RemoteServiceMethod> remoteServiceMethodByMethod = new ConcurrentHashMap<>();
-	private final ConcurrentMap<Method, List<InvocationExecutionWatcher>> invocationWatchersByMethod = new ConcurrentHashMap<>();
+	private final Map<Method, RemoteServiceMethodTemplate> templateByMethod = new HashMap<>();
 	private final RemoteServiceMethodFactory remoteServiceMethodFactory;
 	private final ReactiveTypeConverter reactiveTypeConverter;
 
@@ -83,7 +75,29 @@ public class RemotingProxy implements InvocationHandler {
 			ReactiveTypeConverter reactiveTypeConverter,
 			AstrixTraceProvider astrixTraceProvider
 	) {
-		RemotingProxy handler = new RemotingProxy(proxyApi, targetApi, objectSerializer, transport, defaultRoutingStrategy, reactiveTypeConverter, astrixTraceProvider);
+		return create(proxyApi, targetApi, transport, objectSerializer, defaultRoutingStrategy, reactiveTypeConverter, astrixTraceProvider, new RemotingSettings());
+	}
+
+	/**
+	 * @param settings - the bean settings that applies to the remoting client, see {@link RemotingSettings}
+	 */
+	public static <T> T create(
+			Class<T> proxyApi,
+			Class<?> targetApi,
+			RemotingTransport transport,
+			AstrixObjectSerializer objectSerializer,
+			RoutingStrategy defaultRoutingStrategy,
+			ReactiveTypeConverter reactiveTypeConverter,
+			AstrixTraceProvider astrixTraceProvider,
+			RemotingSettings settings
+	) {
+		RemotingProxy handler = new RemotingProxy(proxyApi, targetApi, objectSerializer, transport, defaultRoutingStrategy, reactiveTypeConverter, astrixTraceProvider, settings);
+		if (settings.generatedProxies().get()) {
+			Optional<ProxyClass<T>> proxyClass = ProxyClass.forType(proxyApi);
+			if (proxyClass.isPresent()) {
+				return proxyClass.get().newDispatchingInstance(handler.createDispatcher(proxyClass.get().getMethods()));
+			}
+		}
 		@SuppressWarnings("unchecked")
 		T serviceProxy = (T) Proxy.newProxyInstance(RemotingProxy.class.getClassLoader(), new Class[]{proxyApi}, handler);
 		return serviceProxy;
@@ -95,11 +109,12 @@ public class RemotingProxy implements InvocationHandler {
 							    RemotingTransport AstrixServiceTransport,
 							    RoutingStrategy defaultRoutingStrategy,
 							    ReactiveTypeConverter reactiveTypeConverter,
-							    AstrixTraceProvider astrixTraceProvider) {
+							    AstrixTraceProvider astrixTraceProvider,
+							    RemotingSettings settings) {
 		this.reactiveTypeConverter = reactiveTypeConverter;
 		this.serviceApi = targetServiceApi.getName();
 		this.apiVersion = objectSerializer.version();
-		RemotingEngine remotingEngine = new RemotingEngine(AstrixServiceTransport, objectSerializer, apiVersion);
+		RemotingEngine remotingEngine = new RemotingEngine(AstrixServiceTransport, objectSerializer, apiVersion, settings, ContextPropagation.create(astrixTraceProvider.getContextPropagators()));
 		this.remoteServiceMethodFactory = new RemoteServiceMethodFactory(remotingEngine, defaultRoutingStrategy);
 		/*
 		 * For each of the following services the "targetServiceType" resolves to MyService:
@@ -111,8 +126,8 @@ public class RemotingProxy implements InvocationHandler {
 		for (Method proxiedMethod : proxiedServiceApi.getMethods()) {
 			Type returnType = getReturnType(proxiedMethod);
 			RemoteServiceMethod remoteServiceMethod = this.remoteServiceMethodFactory.createRemoteServiceMethod(targetServiceType, proxiedMethod, returnType);
-			remoteServiceMethodByMethod.put(proxiedMethod, remoteServiceMethod);
-			invocationWatchersByMethod.put(proxiedMethod, astrixTraceProvider.getClientCallExecutionWatchers(serviceApi, proxiedMethod.getName()));
+			List<InvocationExecutionWatcher> invocationWatchers = astrixTraceProvider.getClientCallExecutionWatchers(serviceApi, proxiedMethod.getName());
+			templateByMethod.put(proxiedMethod, new RemoteServiceMethodTemplate(proxiedMethod, remoteServiceMethod, serviceApi, apiVersion, invocationWatchers, reactiveTypeConverter));
 		}
 		LOG.info("Initialized Astrix remoting client, consuming api=[{}] using proxiedApi=[{}]", targetServiceApi.getName(), proxiedServiceApi.getName());
 	}
@@ -122,56 +137,31 @@ public class RemotingProxy implements InvocationHandler {
 		return "RemotingProxy[" + this.serviceApi + "]";
 	}
 	
+	/**
+	 * Creates a dispatcher for a generated proxy class, the template for each method is resolved 
+	 * once for each method index rather than on each invocation.
+	 */
+	private ProxyDispatcher createDispatcher(Method[] methods) {
+		RemoteServiceMethodTemplate[] templates = new RemoteServiceMethodTemplate[methods.length];
+		for (int methodIndex = 0; methodIndex < methods.length; methodIndex++) {
+			templates[methodIndex] = this.templateByMethod.get(methods[methodIndex]);
+		}
+		return (proxy, methodIndex, args) -> {
+			RemoteServiceMethodTemplate template = templates[methodIndex];
+			if (template == null) {
+				// equals, hashCode and toString
+				return ReflectionUtil.invokeMethod(methods[methodIndex], this, args);
+			}
+			return template.invoke(args);
+		};
+	}
+	
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 		if (method.getDeclaringClass().equals(Object.class)) {
 			return ReflectionUtil.invokeMethod(method, this, args);
 		}
-		RemoteServiceMethod remoteServiceMethod = this.remoteServiceMethodByMethod.get(method);
-		
-		AstrixServiceInvocationRequest invocationRequest = new AstrixServiceInvocationRequest();
-		
-		invocationRequest.setHeader(API_VERSION, Integer.toString(this.apiVersion));
-		invocationRequest.setHeader(SERVICE_METHOD_SIGNATURE, remoteServiceMethod.getSignature());
-		invocationRequest.setHeader(SERVICE_API, this.serviceApi);
-
-		Runnable afterInvocationWatchers = InvocationExecutionWatcher.apply(invocationWatchersByMethod.get(method), invocationRequest.getHeaders());
-
-		Observable<?> result = remoteServiceMethod.invoke(invocationRequest, args)
-				.doOnError(e -> afterInvocationWatchers.run())
-				.doOnCompleted(afterInvocationWatchers::run);
-		if (isObservableType(method.getReturnType())) {
-			return result;
-		}
-		if (isReactiveType(method.getReturnType())) {
-			ReplaySubject<Object> subject = ReplaySubject.create();
-	        // eagerly kick off subscription
-	        result.subscribe(subject);
-	        // return the subject that can be subscribed to later while the execution has already started
-			return reactiveTypeConverter.toCustomReactiveType(method.getReturnType(), subject);
-		}
-		if (Future.class.equals(method.getReturnType())) {
-			ReplaySubject<Object> subject = ReplaySubject.create();
-	        // eagerly kick off subscription
-	        result.subscribe(subject);
-	        // return the subject that can be subscribed to later while the execution has already started
-			return new FutureAdapter<>(subject);
-		}
-		try {
-			return result.toBlocking().first();
-		} catch (Exception e) {
-			// Append invocation call stack
-			appendStackTrace(e, new AstrixCallStackTrace());
-			throw e;
-		}
-	}
-
-	private static void appendStackTrace(Throwable exception, AstrixCallStackTrace trace) {
-		Throwable lastThowableInChain = exception;
-		while (lastThowableInChain.getCause() != null) {
-			lastThowableInChain = lastThowableInChain.getCause();
-		}
-		lastThowableInChain.initCause(trace);
+		return this.templateByMethod.get(method).invoke(args);
 	}
 
 	private Type getReturnType(Method method) {
@@ -198,67 +188,5 @@ public class RemotingProxy implements InvocationHandler {
 	private boolean isReactiveType(Class<?> asyncType) {
 		return this.reactiveTypeConverter.isReactiveType(asyncType);
 	}
-	
-	private static class FutureAdapter<T> implements Future<T> {
-		
-		private final CountDownLatch done = new CountDownLatch(1);
-		private volatile T result;
-		private volatile Throwable exception;
-		
-		public FutureAdapter(Observable<T> obs) {
-			obs.subscribe(new Action1<T>() {
-				@Override
-				public void call(T t1) {
-					result = t1;
-					done.countDown();
-				}
-			}, new Action1<Throwable>() {
-
-				@Override
-				public void call(Throwable t1) {
-					exception = t1;
-					done.countDown();
-				}
-				
-			});
-		}
-
-		@Override
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			return false;
-		}
-		
-		@Override
-		public boolean isCancelled() {
-			return false;
-		}
 
-		@Override
-		public boolean isDone() {
-			return done.getCount() == 0;
-		}
-
-		@Override
-		public T get() throws InterruptedException, ExecutionException {
-			done.await();
-			return getResult();
-		}
-
-		@Override
-		public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-			if (!done.await(timeout, unit)) {
-				throw new TimeoutException();
-			}
-			return getResult();
-		}
-
-		private T getResult() throws ExecutionException {
-			if (exception != null) {
-				throw new ExecutionException(exception);
-			}
-			return result;		
-		}
-		
-	}
-	
 }
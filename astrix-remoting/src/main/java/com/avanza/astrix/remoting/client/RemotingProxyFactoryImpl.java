@@ -17,6 +17,7 @@ package com.avanza.astrix.remoting.client;
 
 import java.util.Objects;
 
+import com.avanza.astrix.beans.config.AstrixConfig;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
@@ -33,24 +34,39 @@ public class RemotingProxyFactoryImpl implements RemotingProxyFactory {
 	private final ObjectSerializerFactory objectSerializerFactory;
 	private final ReactiveTypeConverter reactiveTypeConverter;
 	private final AstrixTraceProvider astrixTraceProvider;
+	private final AstrixConfig config;
 
 	/**
-	 * @deprecated please use {@link #RemotingProxyFactoryImpl(ObjectSerializerFactory, ReactiveTypeConverter, AstrixTraceProvider)}
+	 * @deprecated please use {@link #RemotingProxyFactoryImpl(ObjectSerializerFactory, ReactiveTypeConverter, AstrixTraceProvider, AstrixConfig)}
 	 */
 	@Deprecated
 	public RemotingProxyFactoryImpl(ObjectSerializerFactory objectSerializerFactory, ReactiveTypeConverter reactiveTypeConverter) {
-		this(objectSerializerFactory, reactiveTypeConverter, new DefaultTraceProvider());
+		this(objectSerializerFactory, reactiveTypeConverter, new DefaultTraceProvider(), null);
 	}
 
-	@AstrixInject
+	/**
+	 * @deprecated please use {@link #RemotingProxyFactoryImpl(ObjectSerializerFactory, ReactiveTypeConverter, AstrixTraceProvider, AstrixConfig)}
+	 */
+	@Deprecated
 	public RemotingProxyFactoryImpl(
 			ObjectSerializerFactory objectSerializerFactory,
 			ReactiveTypeConverter reactiveTypeConverter,
 			AstrixTraceProvider astrixTraceProvider
+	) {
+		this(objectSerializerFactory, reactiveTypeConverter, astrixTraceProvider, null);
+	}
+
+	@AstrixInject
+	public RemotingProxyFactoryImpl(
+			ObjectSerializerFactory objectSerializerFactory,
+			ReactiveTypeConverter reactiveTypeConverter,
+			AstrixTraceProvider astrixTraceProvider,
+			AstrixConfig config
 	) {
 		this.objectSerializerFactory = objectSerializerFactory;
 		this.reactiveTypeConverter = reactiveTypeConverter;
 		this.astrixTraceProvider = Objects.requireNonNull(astrixTraceProvider);
+		this.config = config;
 	}
 
 	@Override
@@ -65,8 +81,16 @@ public class RemotingProxyFactoryImpl implements RemotingProxyFactory {
 				objectSerializer,
 				routingStrategy,
 				reactiveTypeConverter,
-				astrixTraceProvider
+				astrixTraceProvider,
+				getRemotingSettings(serviceDefinition)
 		);
 	}
 
+	private RemotingSettings getRemotingSettings(ServiceDefinition<?> serviceDefinition) {
+		if (config == null) {
+			return new RemotingSettings();
+		}
+		return RemotingSettings.create(config.getBeanConfiguration(serviceDefinition.getBeanKey()));
+	}
+
 }
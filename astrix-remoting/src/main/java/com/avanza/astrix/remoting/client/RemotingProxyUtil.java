@@ -20,6 +20,7 @@ import java.lang.reflect.TypeVariable;
 import java.util.List;
 
 import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.StreamingRemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
 final class RemotingProxyUtil {
@@ -32,7 +33,8 @@ final class RemotingProxyUtil {
 	private static void validateRemoteResultReducerReturnType(
 			Method targetServiceMethod,
 			Class<? extends RemoteResultReducer<?>> reducerType) {
-		Method reduceMethod = ReflectionUtil.getMethod(reducerType, "reduce", List.class);
+		Method reduceMethod = StreamingRemoteResultReducer.class.isAssignableFrom(reducerType) ? ReflectionUtil.getMethod(reducerType, "finish")
+																								  : ReflectionUtil.getMethod(reducerType, "reduce", List.class);
 		Class<?> returnType = targetServiceMethod.getReturnType();
 		if (returnType.equals(Void.TYPE)) {
 			return;
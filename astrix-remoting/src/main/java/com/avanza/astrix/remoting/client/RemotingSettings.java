@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import com.avanza.astrix.beans.config.BeanConfiguration;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
+
+/**
+ * The bean settings of a remote service that applies to the remoting client. Each setting
+ * is read on every invocation, hence changes to the underlying properties take effect immediately, 
+ * except {@link #generatedProxies()} which is read when the proxy is created. 
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class RemotingSettings {
+	
+	private final DynamicIntProperty parallelMarshallingMinPartitions;
+	private final DynamicIntProperty broadcastPartialResultDeadlineMillis;
+	private final DynamicIntProperty broadcastMinResponses;
+	private final DynamicIntProperty broadcastHedgeDelayMillis;
+	private final DynamicBooleanProperty generatedProxies;
+	
+	/**
+	 * Creates RemotingSettings with the default value for each setting. 
+	 */
+	public RemotingSettings() {
+		this(new DynamicIntProperty(AstrixBeanSettings.PARALLEL_MARSHALLING_MIN_PARTITIONS.defaultValue()),
+			 new DynamicIntProperty(AstrixBeanSettings.BROADCAST_PARTIAL_RESULT_DEADLINE.defaultValue()),
+			 new DynamicIntProperty(AstrixBeanSettings.BROADCAST_MIN_RESPONSES.defaultValue()),
+			 new DynamicIntProperty(AstrixBeanSettings.BROADCAST_HEDGE_DELAY.defaultValue()),
+			 new DynamicBooleanProperty(AstrixBeanSettings.GENERATED_PROXIES.defaultValue()));
+	}
+	
+	public RemotingSettings(DynamicIntProperty parallelMarshallingMinPartitions,
+							DynamicIntProperty broadcastPartialResultDeadlineMillis,
+							DynamicIntProperty broadcastMinResponses,
+							DynamicIntProperty broadcastHedgeDelayMillis) {
+		this(parallelMarshallingMinPartitions, 
+			 broadcastPartialResultDeadlineMillis, 
+			 broadcastMinResponses, 
+			 broadcastHedgeDelayMillis, 
+			 new DynamicBooleanProperty(AstrixBeanSettings.GENERATED_PROXIES.defaultValue()));
+	}
+	
+	public RemotingSettings(DynamicIntProperty parallelMarshallingMinPartitions,
+							DynamicIntProperty broadcastPartialResultDeadlineMillis,
+							DynamicIntProperty broadcastMinResponses,
+							DynamicIntProperty broadcastHedgeDelayMillis,
+							DynamicBooleanProperty generatedProxies) {
+		this.parallelMarshallingMinPartitions = parallelMarshallingMinPartitions;
+		this.broadcastPartialResultDeadlineMillis = broadcastPartialResultDeadlineMillis;
+		this.broadcastMinResponses = broadcastMinResponses;
+		this.broadcastHedgeDelayMillis = broadcastHedgeDelayMillis;
+		this.generatedProxies = generatedProxies;
+	}
+	
+	public static RemotingSettings create(BeanConfiguration beanConfiguration) {
+		return new RemotingSettings(beanConfiguration.get(AstrixBeanSettings.PARALLEL_MARSHALLING_MIN_PARTITIONS),
+									beanConfiguration.get(AstrixBeanSettings.BROADCAST_PARTIAL_RESULT_DEADLINE),
+									beanConfiguration.get(AstrixBeanSettings.BROADCAST_MIN_RESPONSES),
+									beanConfiguration.get(AstrixBeanSettings.BROADCAST_HEDGE_DELAY),
+									beanConfiguration.get(AstrixBeanSettings.GENERATED_PROXIES));
+	}
+	
+	/**
+	 * @see AstrixBeanSettings#PARALLEL_MARSHALLING_MIN_PARTITIONS
+	 */
+	public DynamicIntProperty parallelMarshallingMinPartitions() {
+		return parallelMarshallingMinPartitions;
+	}
+	
+	/**
+	 * @see AstrixBeanSettings#BROADCAST_PARTIAL_RESULT_DEADLINE
+	 */
+	public DynamicIntProperty broadcastPartialResultDeadlineMillis() {
+		return broadcastPartialResultDeadlineMillis;
+	}
+	
+	/**
+	 * @see AstrixBeanSettings#BROADCAST_MIN_RESPONSES
+	 */
+	public DynamicIntProperty broadcastMinResponses() {
+		return broadcastMinResponses;
+	}
+	
+	/**
+	 * @see AstrixBeanSettings#BROADCAST_HEDGE_DELAY
+	 */
+	public DynamicIntProperty broadcastHedgeDelayMillis() {
+		return broadcastHedgeDelayMillis;
+	}
+	
+	/**
+	 * @see AstrixBeanSettings#GENERATED_PROXIES
+	 */
+	public DynamicBooleanProperty generatedProxies() {
+		return generatedProxies;
+	}
+
+}
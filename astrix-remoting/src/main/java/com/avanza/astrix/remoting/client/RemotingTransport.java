@@ -17,6 +17,7 @@ package com.avanza.astrix.remoting.client;
 
 import java.util.List;
 
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 
 import rx.Observable;
@@ -41,6 +42,10 @@ public class RemotingTransport {
 		return impl.submitRoutedRequest(request, routingKey);
 	}
 	
+	public Observable<AstrixServiceInvocationResponse> submitStreamingRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return impl.submitStreamingRequest(request, routingKey);
+	}
+	
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
 		return impl.submitRoutedRequests(requests);
 	}
@@ -48,10 +53,41 @@ public class RemotingTransport {
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
 		return impl.submitBroadcastRequest(request);
 	}
+	
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequestsIncrementally(List<RoutedServiceInvocationRequest> requests) {
+		return impl.submitRoutedRequestsIncrementally(requests);
+	}
+	
+	public Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		return impl.submitBroadcastRequestIncrementally(request);
+	}
+
+	public Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+		return impl.submitPartitionRequest(request, partition);
+	}
+	
+	public boolean supportsPartitionRequests() {
+		return impl.supportsPartitionRequests();
+	}
+	
+	public Observable<AstrixServiceInvocationResponse> submitReplicaRequest(AstrixServiceInvocationRequest request, int partition) {
+		return impl.submitReplicaRequest(request, partition);
+	}
+	
+	public boolean supportsReplicaRequests() {
+		return impl.supportsReplicaRequests();
+	}
+
+	public boolean supportsSerializedArguments() {
+		return impl.supportsSerializedArguments();
+	}
 
 	public int partitionCount() {
 		return this.impl.partitionCount();
 	}
 	
+	public Partitioner partitioner() {
+		return this.impl.partitioner();
+	}
 
 }
@@ -18,6 +18,7 @@ package com.avanza.astrix.remoting.client;
 import java.util.Collection;
 import java.util.List;
 
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 
 import rx.Observable;
@@ -47,6 +48,11 @@ public interface RemotingTransportSpi {
 	 * second event to be emitted. Therefore, in order to ensure that service invocation are protected
 	 * with a timeout, the RemotingTransportSpi has been designed to only emit one event with all responses,
 	 * or non at all.
+	 * 
+	 * The RemotingTransportSpi#submitRoutedRequestsIncrementally and RemotingTransportSpi#submitBroadcastRequestIncrementally
+	 * emit one event for each response, which allows the responses to be unmarshalled and reduced as they are 
+	 * received. They are only used to fold the responses into a single result, which is emitted as one event
+	 * when all responses are received. Hence, the timeout mechanism still applies to the service invocation.
 	 */
 	
 	/**
@@ -76,8 +82,121 @@ public interface RemotingTransportSpi {
 	Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request);
 	
 	/**
+	 * Sends each service invocation to the associated target cluster member, and emits the response from
+	 * each invocation as soon as it is received. <p>
+	 * 
+	 * The default implementation emits all responses when the last response is received.
+	 * 
+	 * @param requests
+	 * @return an Observable that will emit one item for the response from each invocation
+	 */
+	default Observable<AstrixServiceInvocationResponse> submitRoutedRequestsIncrementally(Collection<RoutedServiceInvocationRequest> requests) {
+		return submitRoutedRequests(requests).flatMapIterable(responses -> responses);
+	}
+	
+	/**
+	 * Sends a service invocation request to each member in the cluster, and emits the response from
+	 * each member as soon as it is received. <p>
+	 * 
+	 * The default implementation emits all responses when the last response is received.
+	 * 
+	 * @param request
+	 * @return an Observable that will emit one item for the response from each member in the entire cluster.
+	 */
+	default Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+		return submitBroadcastRequest(request).flatMapIterable(responses -> responses);
+	}
+	
+	/**
+	 * Sends a service invocation request to the given member of the cluster. Only used if
+	 * {@link #supportsPartitionRequests()} returns true.
+	 * 
+	 * @param request
+	 * @param partition - the index of the target member, between 0 (inclusive) and {@link #partitionCount()} (exclusive)
+	 * @return an Observable that will emit one item for the response from the given member.
+	 */
+	default Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+		return Observable.error(new UnsupportedOperationException("Partition requests not supported by: " + getClass().getName()));
+	}
+	
+	/**
+	 * Defines whether this transport can send an invocation request to a given member of 
+	 * the cluster, see {@link #submitPartitionRequest(AstrixServiceInvocationRequest, int)}.
+	 * 
+	 * @return
+	 */
+	default boolean supportsPartitionRequests() {
+		return false;
+	}
+	
+	/**
+	 * Sends a service invocation request to a replica of the given member of the cluster, i.e. to another 
+	 * instance serving the same partition than the one invoked by {@link #submitPartitionRequest(AstrixServiceInvocationRequest, int)}.
+	 * Used to hedge slow members of a broadcasted invocation, and only used if {@link #supportsReplicaRequests()} 
+	 * returns true.
+	 * 
+	 * @param request
+	 * @param partition - the index of the target member, between 0 (inclusive) and {@link #partitionCount()} (exclusive)
+	 * @return an Observable that will emit one item for the response from a replica of the given member.
+	 */
+	default Observable<AstrixServiceInvocationResponse> submitReplicaRequest(AstrixServiceInvocationRequest request, int partition) {
+		return Observable.error(new UnsupportedOperationException("Replica requests not supported by: " + getClass().getName()));
+	}
+	
+	/**
+	 * Defines whether this transport can send an invocation request to a replica of a given member 
+	 * of the cluster, see {@link #submitReplicaRequest(AstrixServiceInvocationRequest, int)}. A transport
+	 * that only knows of one instance of each member should return false, since re-issuing a request 
+	 * to the same instance adds load without reducing latency.
+	 * 
+	 * @return
+	 */
+	default boolean supportsReplicaRequests() {
+		return false;
+	}
+	
+	/**
+	 * Sends a single routed invocation request to a service method returning an Observable. <p>
+	 * 
+	 * Transports that support streaming emit one response for each element emitted by the
+	 * remote Observable, and should respect the backpressure of the subscriber. The default
+	 * implementation sends an ordinary routed request, in which case the server returns all elements
+	 * in a single response.
 	 * 
-	 * @return the number of members in the target cluster.
+	 * @param request
+	 * @param routingKey
+	 * @return an Observable that will emit one or more responses for the given invocation request.
+	 */
+	default Observable<AstrixServiceInvocationResponse> submitStreamingRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return submitRoutedRequest(request, routingKey);
+	}
+	
+	/**
+	 * Defines whether this transport accepts {@link SerializedArgument}'s as arguments in the
+	 * invocation requests, i.e. whether it writes the arguments directly into its own buffers
+	 * when the request is sent. Transports that returns false receive arguments in the serialized 
+	 * form returned by the AstrixObjectSerializer.
+	 * 
+	 * @return
+	 */
+	default boolean supportsSerializedArguments() {
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @return the number of members in the target cluster, fixed for the lifetime of the transport.
 	 */
 	int partitionCount();
+	
+	/**
+	 * The Partitioner used by this transport to route a {@link RoutingKey} to a member of the 
+	 * target cluster. Used by partitioned service methods to group the elements of the partitioned
+	 * argument by target member.
+	 * 
+	 * @return
+	 */
+	default Partitioner partitioner() {
+		return new Partitioner.Modulo();
+	}
 }
\ No newline at end of file
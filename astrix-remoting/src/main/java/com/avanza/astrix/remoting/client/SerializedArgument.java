@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+/**
+ * An argument to a remote service invocation in the binary format of the AstrixObjectSerializer. 
+ * The argument is serialized by the AstrixObjectSerializer when the SerializedArgument is created, 
+ * i.e on the thread that marshals the request, without creating an intermediate serialized form (String) 
+ * of the argument. The serializer writes into a buffer owned by the SerializedArgument, which the 
+ * transport copies once into the buffer of the request. Hence the transport never runs the serializer 
+ * on its own i/o threads. <p>
+ * 
+ * SerializedArgument's are only sent to transports that {@link RemotingTransportSpi#supportsSerializedArguments()}.
+ * The first {@link #getLength()} bytes of {@link #getBuffer()} should be passed as a byte[] to the server side
+ * AstrixObjectSerializer.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class SerializedArgument {
+	
+	private static final int INITIAL_BUFFER_SIZE = 256;
+	
+	private final byte[] buffer;
+	private final int length;
+	private final int version;
+	
+	public SerializedArgument(Object element, AstrixObjectSerializer objectSerializer, int version) {
+		ArgumentBuffer out = new ArgumentBuffer();
+		try {
+			objectSerializer.serializeTo(element, version, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to serialize: " + element, e);
+		}
+		this.buffer = out.buffer();
+		this.length = out.size();
+		this.version = version;
+	}
+	
+	/**
+	 * @return the buffer holding the serialized argument in its first {@link #getLength()} bytes, 
+	 * never modified by the transport
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+	
+	/**
+	 * @return the number of bytes of the serialized argument
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	@Override
+	public String toString() {
+		return "SerializedArgument [bytes=" + length + ", version=" + version + "]";
+	}
+	
+	/**
+	 * Exposes the written bytes without copying them.
+	 */
+	private static final class ArgumentBuffer extends ByteArrayOutputStream {
+		
+		ArgumentBuffer() {
+			super(INITIAL_BUFFER_SIZE);
+		}
+		
+		byte[] buffer() {
+			return buf;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Type;
+
+import com.avanza.astrix.core.remoting.Router;
+import com.avanza.astrix.core.remoting.RoutingKey;
+
+import rx.Observable;
+/**
+ * Remote service method for service methods returning an Observable. Each element emitted by 
+ * the remote Observable is emitted as soon as it is received by the transport.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class StreamingRemoteServiceMethod extends RoutedRemoteServiceMethod {
+
+	private final RemotingEngine remotingEngine;
+	private final Type elementType;
+
+	public StreamingRemoteServiceMethod(String signature, 
+										Router router,
+										RemotingEngine remotingEngine, 
+										Type elementType) {
+		super(signature, router, remotingEngine, elementType);
+		this.remotingEngine = remotingEngine;
+		this.elementType = elementType;
+	}
+	
+	@Override
+	protected Observable<Object> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return remotingEngine.submitStreamingRequest(request, routingKey)
+							 .flatMapIterable(response -> remotingEngine.toStreamElements(response, elementType));
+	}
+	
+}
@@ -15,14 +15,60 @@
  */
 package com.avanza.astrix.remoting.server;
 
+import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
+import rx.Observable;
+
 public interface AstrixServiceActivator {
 
 	AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest invocationRequest);
+	
+	/**
+	 * Invokes a service method returning an Observable, and emits one response for each element emitted by
+	 * the Observable returned by the service. Invocations of other service methods emit a single response. 
+	 * 
+	 * @param invocationRequest
+	 * @return
+	 */
+	default Observable<AstrixServiceInvocationResponse> invokeStreamingService(AstrixServiceInvocationRequest invocationRequest) {
+		return Observable.just(invokeService(invocationRequest));
+	}
+
+	/**
+	 * Invokes a service method and emits a single response once the invocation completes. Service methods 
+	 * returning a reactive type (for instance CompletableFuture or rx.Single) complete asynchronously, i.e
+	 * the invoking thread is not blocked while waiting for the service to complete.
+	 * 
+	 * @param invocationRequest
+	 * @return
+	 */
+	default Observable<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest invocationRequest) {
+		return Observable.fromCallable(() -> invokeService(invocationRequest));
+	}
 
 	void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi);
+	
+	/**
+	 * Creates the response sent to the client when an invocation fails without the service activator 
+	 * creating a response, i.e when the Observable returned by {@link #invokeServiceAsync(AstrixServiceInvocationRequest)} 
+	 * emits an error. The exception is reported in the same way as an exception thrown by a service method, 
+	 * except for ServiceUnavailableException's which are reported as an unavailable service.
+	 * 
+	 * @param e
+	 * @return
+	 */
+	static AstrixServiceInvocationResponse createErrorResponse(Throwable e) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setExceptionMsg(e.getMessage());
+		if (e instanceof ServiceUnavailableException) {
+			response.setServiceUnavailable(true);
+		} else {
+			response.setThrownExceptionType(e.getClass().getName());
+		}
+		return response;
+	}
 
 }
@@ -28,14 +28,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avanza.astrix.beans.config.AstrixConfig;
 import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.tracing.AstrixTraceProvider;
 import com.avanza.astrix.beans.tracing.InvocationExecutionWatcher;
 import com.avanza.astrix.config.DynamicBooleanProperty;
@@ -44,6 +47,7 @@ import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.context.metrics.Timer;
 import com.avanza.astrix.core.ServiceInvocationException;
 import com.avanza.astrix.core.function.Command;
+import com.avanza.astrix.core.util.MethodInvoker;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.modules.AstrixInject;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
@@ -51,6 +55,8 @@ import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponseHeaders;
 import com.avanza.astrix.remoting.client.MissingServiceMethodException;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+import rx.Observable;
 /**
  * Server side component used to invoke exported services. <p> 
  * 
@@ -66,15 +72,17 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 	private final ServiceInvocationMonitor allServicesAggregated;
 	private final DynamicBooleanProperty exportedServiceMetricsEnabled;
 	private final AstrixTraceProvider astrixTraceProvider;
+	private final ReactiveTypeConverter reactiveTypeConverter;
 
 	@AstrixInject
 	public AstrixServiceActivatorImpl(
 			AstrixConfig astrixConfig,
 			Metrics metrics,
 			MBeanExporter mbeanExporter,
-			AstrixTraceProvider astrixTraceProvider
+			AstrixTraceProvider astrixTraceProvider,
+			ReactiveTypeConverter reactiveTypeConverter
 	) {
-		this(astrixConfig.get(AstrixSettings.EXPORTED_SERVICE_METRICS_ENABLED), metrics, mbeanExporter, astrixTraceProvider);
+		this(astrixConfig.get(AstrixSettings.EXPORTED_SERVICE_METRICS_ENABLED), metrics, mbeanExporter, astrixTraceProvider, reactiveTypeConverter);
 	}
 	
 	// For testnig
@@ -82,7 +90,8 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 			DynamicBooleanProperty exportedServiceMetricsEnabled,
 			Metrics metrics,
 			MBeanExporter mbeanExporter,
-			AstrixTraceProvider astrixTraceProvider
+			AstrixTraceProvider astrixTraceProvider,
+			ReactiveTypeConverter reactiveTypeConverter
 	) {
 		this.exportedServiceMetricsEnabled = exportedServiceMetricsEnabled;
 		this.metrics = metrics;
@@ -91,6 +100,7 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 		this.allServicesAggregated = new ServiceInvocationMonitor(metrics.createTimer());
 		mbeanExporter.registerMBean(this.allServicesAggregated, "ExportedServices", "AllServicesAggregated");
 		this.astrixTraceProvider = Objects.requireNonNull(astrixTraceProvider);
+		this.reactiveTypeConverter = Objects.requireNonNull(reactiveTypeConverter);
 	}
 	
 	private static class ServiceInvocationMonitors {
@@ -111,15 +121,27 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 			}
 			return execution;
 		}
+		
+		public Supplier<Observable<AstrixServiceInvocationResponse>> monitorAsyncServiceInvocation(Supplier<Observable<AstrixServiceInvocationResponse>> execution) {
+			if (!serviceMonitorEnabled.get()) {
+				return execution;
+			}
+			for (ServiceInvocationMonitor monitor : monitor) {
+				execution = monitor.monitorAsync(execution);
+			}
+			return execution;
+		}
 	}
 	
 	private static class PublishedServiceMethod<T> {
 		private final ServiceInvocationMonitors serviceInvocationMonitors;
 		private final List<InvocationExecutionWatcher> invocationExecutionWatchers;
 		private final Method serviceMethod;
+		private final MethodInvoker serviceMethodInvoker;
 		private final AstrixObjectSerializer objectSerializer;
 		private final T service;
 		private final AstrixTraceProvider astrixTraceProvider;
+		private final ReactiveTypeConverter reactiveTypeConverter;
 
 		public PublishedServiceMethod(
 				ServiceInvocationMonitors serviceInvocationMonitors,
@@ -127,17 +149,24 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 				Method method,
 				AstrixObjectSerializer objectSerializer,
 				T service,
-				AstrixTraceProvider astrixTraceProvider
+				AstrixTraceProvider astrixTraceProvider,
+				ReactiveTypeConverter reactiveTypeConverter
 		) {
 			this.serviceInvocationMonitors = serviceInvocationMonitors;
 			this.invocationExecutionWatchers = invocationExecutionWatchers;
 			this.serviceMethod = method;
+			this.serviceMethodInvoker = MethodInvoker.create(method);
 			this.objectSerializer = objectSerializer;
 			this.service = service;
 			this.astrixTraceProvider = astrixTraceProvider;
+			this.reactiveTypeConverter = reactiveTypeConverter;
 		}
 		
 		private AstrixServiceInvocationResponse timeInvocation(AstrixServiceInvocationRequest request, int version) {
+			if (completesAsynchronously()) {
+				// Invoked through the synchronous api, hence the invoking thread waits for the asynchronous invocation
+				return timeAsyncInvocation(request, version).toBlocking().single();
+			}
 			return serviceInvocationMonitors.monitorServiceInvocation(() -> invoke(request, version)).call();
 		}
 		
@@ -146,27 +175,117 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 			try {
 				return invokeService(request, version);
 			} catch (Exception e) {
-				Throwable exceptionThrownByService = resolveException(e);
-				AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-				invocationResponse.setExceptionMsg(exceptionThrownByService.getMessage());
-				invocationResponse.setCorrelationId(getCorrelationId(astrixTraceProvider, request));
-				if (exceptionThrownByService instanceof ServiceInvocationException) {
-					invocationResponse.setException(this.objectSerializer.serialize(exceptionThrownByService, version));
-				} else {
-					invocationResponse.setThrownExceptionType(exceptionThrownByService.getClass().getName());
-				}
-				logger.info(String.format("Service invocation ended with exception. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()), exceptionThrownByService);
-				return invocationResponse;
+				return createExceptionResponse(request, version, e);
 			} finally {
 				afterInvocationWatchers.run();
 			}
 		}
+		
+		private Observable<AstrixServiceInvocationResponse> timeAsyncInvocation(AstrixServiceInvocationRequest request, int version) {
+			if (!completesAsynchronously()) {
+				return Observable.just(timeInvocation(request, version));
+			}
+			return serviceInvocationMonitors.monitorAsyncServiceInvocation(() -> invokeAsync(request, version)).get();
+		}
+		
+		private Observable<AstrixServiceInvocationResponse> invokeAsync(AstrixServiceInvocationRequest request, int version) {
+			// The watchers only span the invocation of the service method, not the completion of the returned reactive type
+			Runnable afterInvocationWatchers = InvocationExecutionWatcher.apply(invocationExecutionWatchers, request.getHeaders());
+			Observable<Object> result;
+			try {
+				result = invokeReactiveService(request, version);
+			} catch (Exception e) {
+				return Observable.just(createExceptionResponse(request, version, e));
+			} finally {
+				afterInvocationWatchers.run();
+			}
+			return result.toList()
+						 .map(values -> returnsObservable() ? createObservableListResponse(values, version) : createReactiveResponse(values, version))
+						 .onErrorReturn(e -> createExceptionResponse(request, version, e));
+		}
+		
+		private Observable<AstrixServiceInvocationResponse> invokeStreaming(AstrixServiceInvocationRequest request, int version) {
+			if (!returnsObservable()) {
+				return timeAsyncInvocation(request, version);
+			}
+			// The watchers only span the invocation of the service method, not the emission of the elements
+			Runnable afterInvocationWatchers = InvocationExecutionWatcher.apply(invocationExecutionWatchers, request.getHeaders());
+			Observable<?> elements;
+			try {
+				Object[] arguments = unmarshal(request.getArguments(), serviceMethod.getGenericParameterTypes(), version);
+				elements = (Observable<?>) invokeServiceMethod(arguments);
+			} catch (Exception e) {
+				return Observable.just(createExceptionResponse(request, version, e));
+			} finally {
+				afterInvocationWatchers.run();
+			}
+			return elements.map(element -> {
+				AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+				invocationResponse.setResponseBody(objectSerializer.serialize(element, version));
+				return invocationResponse;
+			}).onErrorReturn(e -> createExceptionResponse(request, version, e));
+		}
+		
+		private boolean returnsObservable() {
+			return serviceMethod.getReturnType().equals(Observable.class);
+		}
+		
+		private boolean returnsReactiveType() {
+			return reactiveTypeConverter.isReactiveType(serviceMethod.getReturnType());
+		}
+		
+		private boolean completesAsynchronously() {
+			return returnsObservable() || returnsReactiveType();
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Observable<Object> invokeReactiveService(AstrixServiceInvocationRequest request, int version) throws IllegalAccessException, InvocationTargetException {
+			Object[] arguments = unmarshal(request.getArguments(), serviceMethod.getGenericParameterTypes(), version);
+			Object result = invokeServiceMethod(arguments);
+			if (returnsObservable()) {
+				return (Observable<Object>) result;
+			}
+			return reactiveTypeConverter.toObservable((Class<Object>) serviceMethod.getReturnType(), result);
+		}
+		
+		/**
+		 * Used when a service method returning an Observable is invoked by a transport without
+		 * streaming support, in which case all elements are returned at once.
+		 */
+		private AstrixServiceInvocationResponse createObservableListResponse(List<Object> elements, int version) {
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setHeader(AstrixServiceInvocationResponseHeaders.OBSERVABLE_RETURN_VALUE_IS_LIST, "true");
+			invocationResponse.setResponseBody(objectSerializer.serialize(elements, version));
+			return invocationResponse;
+		}
+		
+		private AstrixServiceInvocationResponse createReactiveResponse(List<Object> values, int version) {
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			if (!values.isEmpty()) {
+				// Empty for reactive types without a value, i.e rx.Completable
+				invocationResponse.setResponseBody(objectSerializer.serialize(values.get(0), version));
+			}
+			return invocationResponse;
+		}
+
+		private AstrixServiceInvocationResponse createExceptionResponse(AstrixServiceInvocationRequest request, int version, Throwable e) {
+			Throwable exceptionThrownByService = resolveException(e);
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setExceptionMsg(exceptionThrownByService.getMessage());
+			invocationResponse.setCorrelationId(getCorrelationId(astrixTraceProvider, request));
+			if (exceptionThrownByService instanceof ServiceInvocationException) {
+				invocationResponse.setException(this.objectSerializer.serialize(exceptionThrownByService, version));
+			} else {
+				invocationResponse.setThrownExceptionType(exceptionThrownByService.getClass().getName());
+			}
+			logger.info(String.format("Service invocation ended with exception. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()), exceptionThrownByService);
+			return invocationResponse;
+		}
 
-		private AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest request, int version) throws IllegalAccessException,
-				InvocationTargetException {
+		private AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest request, int version) throws IllegalAccessException, InvocationTargetException {
 			Object[] arguments = unmarshal(request.getArguments(), serviceMethod.getGenericParameterTypes(), version);
 
-			Object result = serviceMethod.invoke(service, arguments);
+			Object result = invokeServiceMethod(arguments);
 
 			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
 			if (serviceMethod.getReturnType().equals(Void.TYPE)) {
@@ -186,6 +305,11 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 			return invocationResponse;
 		}
 
+		private Object invokeServiceMethod(Object[] arguments) throws IllegalAccessException, InvocationTargetException {
+			// Same contract as Method.invoke, see resolveException
+			return serviceMethodInvoker.invokeWrapped(service, arguments);
+		}
+
 		private Object[] unmarshal(Object[] elements, Type[] types, int version) {
 			Object[] result = new Object[elements.length];
 			for (int i = 0; i < result.length; i++) {
@@ -224,7 +348,8 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 								m,
 								objectSerializer,
 								service,
-								astrixTraceProvider
+								astrixTraceProvider,
+								reactiveTypeConverter
 						)
 				);
 			}
@@ -240,12 +365,24 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 		}
 		
 		private AstrixServiceInvocationResponse invoke(AstrixServiceInvocationRequest request, int version, String serviceApi) {
+			return getServiceMethod(request, serviceApi).timeInvocation(request, version);
+		}
+		
+		private Observable<AstrixServiceInvocationResponse> invokeAsync(AstrixServiceInvocationRequest request, int version, String serviceApi) {
+			return getServiceMethod(request, serviceApi).timeAsyncInvocation(request, version);
+		}
+		
+		private Observable<AstrixServiceInvocationResponse> invokeStreaming(AstrixServiceInvocationRequest request, int version, String serviceApi) {
+			return getServiceMethod(request, serviceApi).invokeStreaming(request, version);
+		}
+		
+		private PublishedServiceMethod<T> getServiceMethod(AstrixServiceInvocationRequest request, String serviceApi) {
 			String serviceMethodSignature = request.getHeader(SERVICE_METHOD_SIGNATURE);
 			PublishedServiceMethod<T> serviceMethod = methodBySignature.get(serviceMethodSignature);
 			if (serviceMethod == null) {
 				throw new MissingServiceMethodException(String.format("Missing service method: service=%s method=%s", serviceApi, serviceMethodSignature));
 			}
-			return serviceMethod.timeInvocation(request, version);
+			return serviceMethod;
 		}
 		
 	}
@@ -270,25 +407,55 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 		final String serviceApi = request.getHeader(SERVICE_API);
 		final PublishedService<?> publishedService = this.serviceByType.get(serviceApi);
 		if (publishedService == null) {
-			/*
-			 * Service not available. This might happen in rare conditions when a processing unit
-			 * is restarted and old clients connects to the space before the framework is fully initialized. 
-			 */
-			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-			invocationResponse.setServiceUnavailable(true);
-			invocationResponse.setExceptionMsg("Service not available in service activator: " + serviceApi);
-			invocationResponse.setCorrelationId(getCorrelationId(astrixTraceProvider, request));
-			logger.info(String.format("Service not available. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
-			return invocationResponse;
+			return createServiceUnavailableResponse(request, serviceApi);
 		}
 		return publishedService.invoke(request, version, serviceApi);
 	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest request) {
+		final int version = Integer.parseInt(request.getHeader(API_VERSION));
+		final String serviceApi = request.getHeader(SERVICE_API);
+		final PublishedService<?> publishedService = this.serviceByType.get(serviceApi);
+		if (publishedService == null) {
+			return Observable.just(createServiceUnavailableResponse(request, serviceApi));
+		}
+		return publishedService.invokeAsync(request, version, serviceApi);
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> invokeStreamingService(AstrixServiceInvocationRequest request) {
+		final int version = Integer.parseInt(request.getHeader(API_VERSION));
+		final String serviceApi = request.getHeader(SERVICE_API);
+		final PublishedService<?> publishedService = this.serviceByType.get(serviceApi);
+		if (publishedService == null) {
+			return Observable.just(createServiceUnavailableResponse(request, serviceApi));
+		}
+		return publishedService.invokeStreaming(request, version, serviceApi);
+	}
+
+	private AstrixServiceInvocationResponse createServiceUnavailableResponse(AstrixServiceInvocationRequest request, String serviceApi) {
+		/*
+		 * Service not available. This might happen in rare conditions when a processing unit
+		 * is restarted and old clients connects to the space before the framework is fully initialized. 
+		 */
+		AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+		invocationResponse.setServiceUnavailable(true);
+		invocationResponse.setExceptionMsg("Service not available in service activator: " + serviceApi);
+		invocationResponse.setCorrelationId(getCorrelationId(astrixTraceProvider, request));
+		logger.info(String.format("Service not available. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
+		return invocationResponse;
+	}
 
-	private static Throwable resolveException(Exception e) {
+	private static Throwable resolveException(Throwable e) {
 		if (e instanceof InvocationTargetException) {
 			// Invoked service threw an exception
 			return InvocationTargetException.class.cast(e).getTargetException();
 		}
+		if (e instanceof CompletionException && e.getCause() != null) {
+			// CompletableFuture returned by service completed exceptionally
+			return e.getCause();
+		}
 		return e;
 	}
 
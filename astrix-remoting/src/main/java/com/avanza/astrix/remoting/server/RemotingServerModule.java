@@ -16,6 +16,7 @@
 package com.avanza.astrix.remoting.server;
 
 import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.tracing.AstrixTraceProvider;
 import com.avanza.astrix.context.AstrixContextPlugin;
 import com.avanza.astrix.context.AstrixStrategiesConfig;
@@ -33,6 +34,7 @@ public class RemotingServerModule implements AstrixContextPlugin {
 		moduleContext.importType(MBeanExporter.class);
 		moduleContext.importType(AstrixConfig.class);
 		moduleContext.importType(AstrixTraceProvider.class);
+		moduleContext.importType(ReactiveTypeConverter.class);
 
 		moduleContext.export(AstrixServiceActivator.class);
 	}
@@ -17,11 +17,14 @@ package com.avanza.astrix.remoting.server;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import com.avanza.astrix.context.metrics.Timer;
 import com.avanza.astrix.core.function.Command;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 
+import rx.Observable;
+
 public class ServiceInvocationMonitor implements ServiceInvocationMonitorMBean {
 	
 	private Timer timer;
@@ -41,6 +44,14 @@ public class ServiceInvocationMonitor implements ServiceInvocationMonitorMBean {
 		};
 	}
 	
+	public Supplier<Observable<AstrixServiceInvocationResponse>> monitorAsync(Supplier<Observable<AstrixServiceInvocationResponse>> execution) {
+		return () -> timer.timeObservable(execution).get().doOnNext(result -> {
+			if (result.getThrownExceptionType() != null) {
+				errorCount.incrementAndGet();
+			}
+		});
+	}
+	
 	public ServiceInvocationMonitor(Timer timer, AtomicLong errorCount) {
 		this.timer = timer;
 		this.errorCount = errorCount;
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+import com.avanza.astrix.remoting.client.SerializedArgument;
+/**
+ * Binary encoding of the arguments and return values of remote invocations, shared by the 
+ * transports that use a binary wire format. <p>
+ * 
+ * Each value is written as a single byte type followed by the value. Values that are already 
+ * serialized by the AstrixObjectSerializer (byte[], String or {@link SerializedArgument}) are written 
+ * as a varint length followed by the raw (UTF-8) bytes. Other objects can only be sent by transports 
+ * that allow java serialization, since reading java serialized data received from the network is 
+ * only safe between trusted peers.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class BinaryValueFormat {
+	
+	public static final byte VALUE_NULL = 0;
+	public static final byte VALUE_BYTES = 1;
+	public static final byte VALUE_STRING = 2;
+	public static final byte VALUE_SERIALIZED = 3;
+	
+	private BinaryValueFormat() {
+	}
+	
+	/**
+	 * @param out
+	 * @param value
+	 * @param javaSerializationAllowed - whether objects not serialized by the AstrixObjectSerializer might be written using java serialization
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the value requires java serialization and javaSerializationAllowed is false
+	 */
+	public static void writeValue(DataOutput out, Object value, boolean javaSerializationAllowed) throws IOException {
+		if (value == null) {
+			out.writeByte(VALUE_NULL);
+		} else if (value instanceof byte[]) {
+			out.writeByte(VALUE_BYTES);
+			writeBytes(out, (byte[]) value);
+		} else if (value instanceof SerializedArgument) {
+			SerializedArgument argument = (SerializedArgument) value;
+			out.writeByte(VALUE_BYTES);
+			writeVarInt(out, argument.getLength());
+			out.write(argument.getBuffer(), 0, argument.getLength());
+		} else if (value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+		} else {
+			if (!javaSerializationAllowed) {
+				throw new IllegalArgumentException("Only values serialized by the AstrixObjectSerializer (byte[] or String) are supported, got: " + value.getClass().getName());
+			}
+			ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+			try (ObjectOutputStream objectOutput = new ObjectOutputStream(serialized)) {
+				objectOutput.writeObject(value);
+			}
+			out.writeByte(VALUE_SERIALIZED);
+			writeBytes(out, serialized.toByteArray());
+		}
+	}
+	
+	/**
+	 * @param in
+	 * @param javaSerializationAllowed - whether java serialized values are accepted
+	 * @param maxLength - the maximum length in bytes of the value, checked before the value is allocated
+	 * @return the value, values written as a {@link SerializedArgument} are returned as byte[]
+	 * @throws IOException
+	 * @throws StreamCorruptedException if the value is java serialized and javaSerializationAllowed is false
+	 * @throws SizeLimitExceededException if the length of the value exceeds maxLength
+	 */
+	public static Object readValue(DataInput in, boolean javaSerializationAllowed, long maxLength) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_BYTES:
+			return readBytes(in, maxLength);
+		case VALUE_STRING:
+			return new String(readBytes(in, maxLength), StandardCharsets.UTF_8);
+		case VALUE_SERIALIZED:
+			if (!javaSerializationAllowed) {
+				throw new StreamCorruptedException("Java serialized values are not accepted");
+			}
+			try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(readBytes(in, maxLength)))) {
+				return objectInput.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new StreamCorruptedException("Failed to deserialize value: " + e.getMessage());
+			}
+		default:
+			throw new StreamCorruptedException("Unknown value type: " + type);
+		}
+	}
+	
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	public static int readVarInt(DataInput in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new StreamCorruptedException("Malformed varint");
+	}
+	
+	private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+	
+	private static byte[] readBytes(DataInput in, long maxLength) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0) {
+			throw new StreamCorruptedException("Negative value length: " + length);
+		}
+		if (length > maxLength) {
+			throw new SizeLimitExceededException("Value length: " + length + " exceeds the limit: " + maxLength);
+		}
+		byte[] result = new byte[length];
+		in.readFully(result);
+		return result;
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown when decoding data received from the network that is, or claims to be, larger
+ * than the number of bytes the receiver accepts.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class SizeLimitExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public SizeLimitExceededException(String msg) {
+		super(msg);
+	}
+
+}
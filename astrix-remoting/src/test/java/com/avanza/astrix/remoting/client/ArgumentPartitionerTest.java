@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.avanza.astrix.core.remoting.Partitioner;
+import com.avanza.astrix.remoting.client.ArgumentPartitioner.PartitionedArgument;
+
+public class ArgumentPartitionerTest {
+	
+	private final Partitioner partitioner = new Partitioner.Modulo();
+	
+	@Test
+	public void partitionsIntArrayWithoutChangingOrderWithinPartition() throws Exception {
+		ArgumentPartitioner argumentPartitioner = ArgumentPartitioner.array(int.class, PartitionedRouter.identity());
+		
+		List<PartitionedArgument> result = argumentPartitioner.partition(new int[] { 1, 2, 3, 4, 5, 7 }, partitioner, 3);
+		
+		assertEquals(3, result.size());
+		assertArrayEquals(new int[] { 3 }, (int[]) result.get(0).getElements());
+		assertArrayEquals(new int[] { 1, 4, 7 }, (int[]) result.get(1).getElements());
+		assertArrayEquals(new int[] { 2, 5 }, (int[]) result.get(2).getElements());
+	}
+	
+	@Test
+	public void routesPrimitiveElementsLikeBoxedElements() throws Exception {
+		long[] keys = new long[] { -1L, Long.MAX_VALUE, 1L << 40, 17 };
+		Long[] boxedKeys = new Long[] { -1L, Long.MAX_VALUE, 1L << 40, 17L };
+		
+		List<PartitionedArgument> primitive = ArgumentPartitioner.array(long.class, PartitionedRouter.identity()).partition(keys, partitioner, 5);
+		List<PartitionedArgument> boxed = ArgumentPartitioner.array(Long.class, PartitionedRouter.identity()).partition(boxedKeys, partitioner, 5);
+		
+		assertEquals(boxed.size(), primitive.size());
+		for (int i = 0; i < boxed.size(); i++) {
+			assertEquals(boxed.get(i).getRoutingKey(), primitive.get(i).getRoutingKey());
+			assertArrayEquals((Long[]) boxed.get(i).getElements(), Arrays.stream((long[]) primitive.get(i).getElements()).boxed().toArray());
+		}
+	}
+	
+	@Test
+	public void partitionsOtherPrimitiveArrays() throws Exception {
+		List<PartitionedArgument> result = ArgumentPartitioner.array(short.class, PartitionedRouter.identity()).partition(new short[] { 1, 2, 3 }, partitioner, 2);
+		
+		assertArrayEquals(new short[] { 2 }, (short[]) result.get(0).getElements());
+		assertArrayEquals(new short[] { 1, 3 }, (short[]) result.get(1).getElements());
+	}
+	
+	@Test
+	public void partitionsListIntoCollectionsOfGivenType() throws Exception {
+		ArgumentPartitioner argumentPartitioner = ArgumentPartitioner.collection(ArrayList.class, PartitionedRouter.identity());
+		
+		List<PartitionedArgument> result = argumentPartitioner.partition(Arrays.asList(1, 2, 3, 4), partitioner, 2);
+		
+		assertEquals(Arrays.asList(2, 4), result.get(0).getElements());
+		assertEquals(Arrays.asList(1, 3), result.get(1).getElements());
+		assertEquals(ArrayList.class, result.get(0).getElements().getClass());
+	}
+	
+	@Test
+	public void partitionsNonRandomAccessCollections() throws Exception {
+		ArgumentPartitioner argumentPartitioner = ArgumentPartitioner.collection(HashSet.class, PartitionedRouter.identity());
+		Set<Integer> keys = IntStream.range(0, 1000).boxed().collect(Collectors.toSet());
+		
+		List<PartitionedArgument> result = argumentPartitioner.partition(new LinkedList<>(keys), partitioner, 4);
+		
+		assertEquals(4, result.size());
+		Set<Object> allKeys = new HashSet<>();
+		for (PartitionedArgument partitionedArgument : result) {
+			Set<?> partition = (Set<?>) partitionedArgument.getElements();
+			assertEquals(250, partition.size());
+			for (Object key : partition) {
+				assertEquals(partitioner.partition(partitionedArgument.getRoutingKey(), 4), (int) key % 4);
+			}
+			allKeys.addAll(partition);
+		}
+		assertEquals(keys, allKeys);
+	}
+	
+	@Test
+	public void onlyReturnsTargetedPartitions() throws Exception {
+		List<PartitionedArgument> result = ArgumentPartitioner.array(Integer.class, PartitionedRouter.identity()).partition(new Integer[] { 4, 8 }, partitioner, 4);
+		
+		assertEquals(1, result.size());
+		assertArrayEquals(new Integer[] { 4, 8 }, (Integer[]) result.get(0).getElements());
+		assertEquals(0, partitioner.partition(result.get(0).getRoutingKey(), 4));
+	}
+	
+	@Test
+	public void partitionsArgumentsLargerThanPooledBuffers() throws Exception {
+		int[] keys = IntStream.range(0, ArgumentPartitioner.MAX_POOLED_ELEMENTS + 1).toArray();
+		
+		List<PartitionedArgument> result = ArgumentPartitioner.array(int.class, PartitionedRouter.identity()).partition(keys, partitioner, 2);
+		
+		assertEquals(2, result.size());
+		int totalSize = 0;
+		for (PartitionedArgument partitionedArgument : result) {
+			totalSize += ((int[]) partitionedArgument.getElements()).length;
+		}
+		assertEquals(keys.length, totalSize);
+		assertTrue(((int[]) result.get(0).getElements()).length >= ((int[]) result.get(1).getElements()).length);
+	}
+	
+	@Test
+	public void partitionsArgumentsTargetingMorePartitionsThanPooledBuffers() throws Exception {
+		int partitionCount = ArgumentPartitioner.MAX_POOLED_PARTITIONS + 1;
+		int[] keys = IntStream.range(0, partitionCount).toArray();
+		
+		List<PartitionedArgument> result = ArgumentPartitioner.array(int.class, PartitionedRouter.identity()).partition(keys, partitioner, partitionCount);
+		
+		assertEquals(partitionCount, result.size());
+		assertArrayEquals(new int[] { partitionCount - 1 }, (int[]) result.get(partitionCount - 1).getElements());
+	}
+	
+	@Test
+	public void emptyArgumentTargetsNoPartition() throws Exception {
+		assertEquals(0, ArgumentPartitioner.array(int.class, PartitionedRouter.identity()).partition(new int[0], partitioner, 2).size());
+	}
+
+}
@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -30,12 +31,14 @@ import java.util.stream.IntStream;
 
 import org.junit.Assert;
 
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.core.ReactiveTypeConverterImpl;
 import com.avanza.astrix.beans.core.ReactiveTypeHandlerPlugin;
 import com.avanza.astrix.beans.tracing.AstrixTraceProvider;
 import com.avanza.astrix.beans.tracing.DefaultTraceProvider;
 import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
 import com.avanza.astrix.context.JavaSerializationSerializer;
 import com.avanza.astrix.context.mbeans.MBeanExporter;
 import com.avanza.astrix.context.metrics.Metrics;
@@ -43,13 +46,16 @@ import com.avanza.astrix.context.metrics.Timer;
 import com.avanza.astrix.context.metrics.TimerSnaphot;
 import com.avanza.astrix.context.metrics.TimerSpi;
 import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.core.function.CheckedCommand;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingSettings;
 import com.avanza.astrix.remoting.client.RemotingTransport;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
@@ -57,6 +63,7 @@ import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
 import rx.Observable;
 import rx.Subscriber;
+import rx.schedulers.Schedulers;
 
 public class AstrixRemotingDriver {
 	
@@ -82,8 +89,11 @@ public class AstrixRemotingDriver {
 	private ReactiveTypeConverter reactiveTypeConverter = new ReactiveTypeConverterImpl(Collections.<ReactiveTypeHandlerPlugin<?>>emptyList());
 	private DynamicBooleanProperty exportedServiceMetricsEnabled = new DynamicBooleanProperty(true);
 	private final AstrixTraceProvider astrixTraceProvider;
+	private final Partitioner partitioner;
 
 	private AstrixServiceActivatorImpl[] partitions;
+	private AstrixServiceActivatorImpl[] replicas;
+	private final Set<Integer> unavailablePartitions = ConcurrentHashMap.newKeySet();
 	
 	public AstrixRemotingDriver() {
 		this(1);
@@ -98,9 +108,23 @@ public class AstrixRemotingDriver {
 	}
 
 	public AstrixRemotingDriver(int partitionCount, AstrixTraceProvider astrixTraceProvider) {
+		this(partitionCount, astrixTraceProvider, new Partitioner.Modulo());
+	}
+	
+	/**
+	 * @param partitioner - the partitioner used by the transport to route requests to a partition
+	 */
+	public AstrixRemotingDriver(int partitionCount, Partitioner partitioner) {
+		this(partitionCount, new DefaultTraceProvider(), partitioner);
+	}
+
+	public AstrixRemotingDriver(int partitionCount, AstrixTraceProvider astrixTraceProvider, Partitioner partitioner) {
 		this.partitions = new AstrixServiceActivatorImpl[partitionCount];
+		this.replicas = new AstrixServiceActivatorImpl[partitionCount];
 		this.astrixTraceProvider = Objects.requireNonNull(astrixTraceProvider);
-		IntStream.range(0, partitionCount).forEach(index -> partitions[index] = new AstrixServiceActivatorImpl(exportedServiceMetricsEnabled, metrics, exporter, astrixTraceProvider));
+		this.partitioner = Objects.requireNonNull(partitioner);
+		IntStream.range(0, partitionCount).forEach(index -> partitions[index] = new AstrixServiceActivatorImpl(exportedServiceMetricsEnabled, metrics, exporter, astrixTraceProvider, reactiveTypeConverter));
+		IntStream.range(0, partitionCount).forEach(index -> replicas[index] = new AstrixServiceActivatorImpl(exportedServiceMetricsEnabled, metrics, exporter, astrixTraceProvider, reactiveTypeConverter));
 	}
 	
 	public <T> T hasExportedMbeanOfType(Class<T> expectedType, MBeanKey key) {
@@ -129,6 +153,40 @@ public class AstrixRemotingDriver {
 		return RemotingProxy.create(proxyApi, targetApi, directTransport(), objectSerializer, routingStrategyOverride, reactiveTypeConverter, astrixTraceProvider);
 	}
 	
+	public <T> T createRemotingProxy(Class<T> proxyAndTargetApi, RemotingSettings settings) {
+		return RemotingProxy.create(proxyAndTargetApi, proxyAndTargetApi, directTransport(), objectSerializer, new NoRoutingStrategy(), reactiveTypeConverter, astrixTraceProvider, settings);
+	}
+	
+	/**
+	 * Creates a proxy whose invocations are served using {@link AstrixServiceActivator#invokeServiceAsync(AstrixServiceInvocationRequest)},
+	 * i.e the same way as the netty and http transports serve invocations.
+	 */
+	public <T> T createAsyncRemotingProxy(Class<T> proxyAndTargetApi) {
+		return createAsyncRemotingProxy(proxyAndTargetApi, proxyAndTargetApi);
+	}
+	
+	public <T> T createAsyncRemotingProxy(Class<T> proxyApi, Class<?> targetApi) {
+		return RemotingProxy.create(proxyApi, targetApi, asyncDirectTransport(), objectSerializer, new NoRoutingStrategy(), reactiveTypeConverter, astrixTraceProvider);
+	}
+	
+	/**
+	 * Creates a proxy that is an instance of a generated proxy class, see {@link AstrixBeanSettings#GENERATED_PROXIES}.
+	 */
+	public <T> T createGeneratedRemotingProxy(Class<T> proxyAndTargetApi) {
+		return createRemotingProxy(proxyAndTargetApi, new RemotingSettings(new DynamicIntProperty(0), 
+																		   new DynamicIntProperty(-1), 
+																		   new DynamicIntProperty(-1), 
+																		   new DynamicIntProperty(-1),
+																		   new DynamicBooleanProperty(true)));
+	}
+	
+	public <T> T createParallelMarshallingRemotingProxy(Class<T> proxyAndTargetApi, int minPartitions) {
+		return createRemotingProxy(proxyAndTargetApi, new RemotingSettings(new DynamicIntProperty(minPartitions), 
+																		   new DynamicIntProperty(-1), 
+																		   new DynamicIntProperty(-1), 
+																		   new DynamicIntProperty(-1)));
+	}
+	
 	/**
 	 * Registers a service in the first partition
 	 */
@@ -140,22 +198,53 @@ public class AstrixRemotingDriver {
 		this.partitions[paritionIndex].register(provider, objectSerializer, publishedApi);
 	}
 	
+	/**
+	 * Registers a service in the replica of the given partition, which is only invoked by
+	 * proxies created using {@link #createAsyncRemotingProxy(Class, Class)} to hedge slow partitions.
+	 */
+	public <T> void registerServerPartitionReplica(int paritionIndex, Class<T> publishedApi, T provider) {
+		this.replicas[paritionIndex].register(provider, objectSerializer, publishedApi);
+	}
+	
+	/**
+	 * Makes partition requests to the given partition, as sent by proxies created using {@link #createAsyncRemotingProxy(Class, Class)}, 
+	 * fail with a {@link ServiceUnavailableException} as if the partition could not be reached.
+	 */
+	public void makePartitionUnavailable(int paritionIndex) {
+		this.unavailablePartitions.add(paritionIndex);
+	}
+	
 	
 	private RemotingTransport directTransport() {
-		return RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(this.partitions)));
+		return RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(this.partitions), Arrays.asList(this.replicas), unavailablePartitions, partitioner, false));
+	}
+	
+	private RemotingTransport asyncDirectTransport() {
+		return RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(this.partitions), Arrays.asList(this.replicas), unavailablePartitions, partitioner, true));
 	}
 	
 	
 	private static class PartitionedDirectTransport implements RemotingTransportSpi {
 
 		private List<AstrixServiceActivatorImpl> partitions;
+		private List<AstrixServiceActivatorImpl> replicas;
+		private Set<Integer> unavailablePartitions;
+		private Partitioner partitioner;
+		private boolean asyncInvocation;
 		
-		public PartitionedDirectTransport(List<AstrixServiceActivatorImpl> partitions) {
+		public PartitionedDirectTransport(List<AstrixServiceActivatorImpl> partitions, List<AstrixServiceActivatorImpl> replicas, Set<Integer> unavailablePartitions, Partitioner partitioner, boolean asyncInvocation) {
 			this.partitions = partitions;
+			this.replicas = replicas;
+			this.unavailablePartitions = unavailablePartitions;
+			this.partitioner = partitioner;
+			this.asyncInvocation = asyncInvocation;
 		}
 
 		@Override
 		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey){
+			if (asyncInvocation) {
+				return getActivator(routingKey).invokeServiceAsync(request);
+			}
 			final AstrixServiceInvocationResponse response = getActivator(routingKey).invokeService(request);
 			return Observable.unsafeCreate(new Observable.OnSubscribe<AstrixServiceInvocationResponse>() {
 				@Override
@@ -167,7 +256,7 @@ public class AstrixRemotingDriver {
 		}
 
 		private AstrixServiceActivatorImpl getActivator(RoutingKey routingKey) {
-			return partitions.get(routingKey.hashCode() % partitions.size());
+			return partitions.get(partitioner.partition(routingKey, partitions.size()));
 		}
 
 		@Override
@@ -188,10 +277,57 @@ public class AstrixRemotingDriver {
 			
 		}
 
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitBroadcastRequestIncrementally(AstrixServiceInvocationRequest request) {
+			if (!asyncInvocation) {
+				return RemotingTransportSpi.super.submitBroadcastRequestIncrementally(request);
+			}
+			List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(partitions.size());
+			for (int partition = 0; partition < partitions.size(); partition++) {
+				responses.add(submitPartitionRequest(request, partition));
+			}
+			return Observable.merge(responses);
+		}
+		
+		/**
+		 * Serves the request on its own thread to let responses arrive in the order the partitions complete. 
+		 */
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitPartitionRequest(AstrixServiceInvocationRequest request, int partition) {
+			if (unavailablePartitions.contains(partition)) {
+				return Observable.error(new ServiceUnavailableException("Partition unavailable: " + partition));
+			}
+			return invokeAsync(partitions.get(partition), request);
+		}
+		
+		@Override
+		public boolean supportsPartitionRequests() {
+			return asyncInvocation;
+		}
+		
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitReplicaRequest(AstrixServiceInvocationRequest request, int partition) {
+			return invokeAsync(replicas.get(partition), request);
+		}
+		
+		@Override
+		public boolean supportsReplicaRequests() {
+			return asyncInvocation;
+		}
+		
+		private static Observable<AstrixServiceInvocationResponse> invokeAsync(AstrixServiceActivatorImpl activator, AstrixServiceInvocationRequest request) {
+			return Observable.defer(() -> activator.invokeServiceAsync(request)).subscribeOn(Schedulers.io());
+		}
+
 		@Override
 		public int partitionCount() {
 			return this.partitions.size();
 		}
+		
+		@Override
+		public Partitioner partitioner() {
+			return this.partitioner;
+		}
 
 		@Override
 		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
@@ -15,16 +15,24 @@
  */
 package com.avanza.astrix.remoting.server;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.verify;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,30 +45,43 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.async.ContextPropagator;
+import com.avanza.astrix.beans.tracing.DefaultTraceProvider;
+import com.avanza.astrix.config.DynamicIntProperty;
 import com.avanza.astrix.core.AstrixBroadcast;
 import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.AstrixRoutingStrategy;
+import com.avanza.astrix.core.DefaultAstrixRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.RemoteServiceInvocationException;
 import com.avanza.astrix.core.ServiceInvocationException;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.function.CheckedCommand;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.remoting.client.IncompatibleRemoteResultReducerException;
+import com.avanza.astrix.remoting.client.RemotingSettings;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
 import rx.Observable;
+import rx.subjects.PublishSubject;
 
 /**
  * 
@@ -152,6 +173,176 @@ public class AstrixRemotingTest {
 		assertEquals("foo", replys.get(1));
 	}
 	
+	@Test
+	public void streamingReducerAccumulatesResponsesBeforeSlowestPartitionResponds() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		CountDownLatch slowPartitionLatch = new CountDownLatch(1);
+		remotingDriver.registerServerPartition(0, BroadcastPingService.class, msg -> {
+			awaitUninterruptibly(slowPartitionLatch);
+			return Arrays.asList("slow-" + msg);
+		});
+		remotingDriver.registerServerPartition(1, BroadcastPingService.class, msg -> Arrays.asList("fast-" + msg));
+		AccumulationRecordingReducer.accumulated.clear();
+
+		BroadcastPingServiceAsync broadcastService = remotingDriver.createAsyncRemotingProxy(BroadcastPingServiceAsync.class, BroadcastPingService.class);
+		CompletableFuture<List<String>> reply = broadcastService.ping("foo");
+		try {
+			assertEquals(Arrays.asList("fast-foo"), AccumulationRecordingReducer.accumulated.poll(1, TimeUnit.SECONDS));
+			assertFalse(reply.isDone());
+		} finally {
+			slowPartitionLatch.countDown();
+		}
+		assertThat(reply.get(1, TimeUnit.SECONDS), containsInAnyOrder("fast-foo", "slow-foo"));
+	}
+	
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	@Test
+	public void broadcastRequestWithMinResponsesCompletesWithPartialResult() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		PartialPingService impl = new PartialPingService() {
+			@Override
+			public List<String> ping(String msg) {
+				return Arrays.asList(msg);
+			}
+			@Override
+			public String countResponses(String msg) {
+				return msg;
+			}
+		};
+		remotingDriver.registerServerPartition(0, PartialPingService.class, impl);
+		remotingDriver.registerServerPartition(1, PartialPingService.class, impl);
+
+		PartialPingService broadcastService = remotingDriver.createRemotingProxy(PartialPingService.class);
+		assertEquals(Arrays.asList("foo"), broadcastService.ping("foo"));
+		assertEquals("received=1 missing=1", broadcastService.countResponses("foo"));
+	}
+	
+	@Test
+	public void failedMemberIsPassedToReducerAsMissingAndDoesNotCountAsResponse() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(3);
+		PartialPingService impl = new PartialPingService() {
+			@Override
+			public List<String> ping(String msg) {
+				return Arrays.asList(msg);
+			}
+			@Override
+			public String countResponses(String msg) {
+				return msg;
+			}
+		};
+		remotingDriver.registerServerPartition(0, PartialPingService.class, impl);
+		remotingDriver.registerServerPartition(1, PartialPingService.class, impl);
+		remotingDriver.registerServerPartition(2, PartialPingService.class, impl);
+		remotingDriver.makePartitionUnavailable(0);
+		
+		PartialPingService broadcastService = remotingDriver.createAsyncRemotingProxy(PartialPingService.class);
+		assertEquals(Arrays.asList("foo"), broadcastService.ping("foo"));
+		assertEquals("received=1 missing=2", broadcastService.countResponses("foo"));
+	}
+	
+	@Test
+	public void failedMemberIsReportedAsMissingWhenDeadlineIsUsed() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		remotingDriver.registerServerPartition(0, DeadlinePingService.class, msg -> "unavailable-" + msg);
+		remotingDriver.registerServerPartition(1, DeadlinePingService.class, msg -> "fast-" + msg);
+		remotingDriver.makePartitionUnavailable(0);
+
+		DeadlinePingService broadcastService = remotingDriver.createAsyncRemotingProxy(DeadlinePingService.class);
+		String reply = broadcastService.ping("foo");
+		assertThat(reply, containsString("fast-foo"));
+		assertThat(reply, containsString("missing: Member 0 of 2 members failed: com.avanza.astrix.core.ServiceUnavailableException"));
+	}
+	
+	@Test
+	public void broadcastPolicyCanBeOverriddenUsingBeanSettings() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		PingService impl = new PingService() {
+			@Override
+			public List<String> ping(String msg) {
+				return Arrays.asList(msg);
+			}
+		};
+		remotingDriver.registerServerPartition(0, PingService.class, impl);
+		remotingDriver.registerServerPartition(1, PingService.class, impl);
+
+		RemotingSettings settings = new RemotingSettings(new DynamicIntProperty(0), new DynamicIntProperty(-1), new DynamicIntProperty(1), new DynamicIntProperty(-1));
+		PingService broadcastService = remotingDriver.createRemotingProxy(PingService.class, settings);
+		assertEquals(Arrays.asList("foo"), broadcastService.ping("foo"));
+	}
+	
+	@Test
+	public void broadcastPolicyCanBeDisabledUsingBeanSettings() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		PartialPingService impl = new PartialPingService() {
+			@Override
+			public List<String> ping(String msg) {
+				return Arrays.asList(msg);
+			}
+			@Override
+			public String countResponses(String msg) {
+				return msg;
+			}
+		};
+		remotingDriver.registerServerPartition(0, PartialPingService.class, impl);
+		remotingDriver.registerServerPartition(1, PartialPingService.class, impl);
+
+		RemotingSettings settings = new RemotingSettings(new DynamicIntProperty(0), new DynamicIntProperty(-1), new DynamicIntProperty(0), new DynamicIntProperty(-1));
+		PartialPingService broadcastService = remotingDriver.createRemotingProxy(PartialPingService.class, settings);
+		assertEquals(Arrays.asList("foo", "foo"), broadcastService.ping("foo"));
+	}
+	
+	@Test
+	public void broadcastRequestWithPartialResultDeadlineCompletesWithoutSlowPartition() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		CountDownLatch slowPartitionLatch = new CountDownLatch(1);
+		remotingDriver.registerServerPartition(0, DeadlinePingService.class, msg -> {
+			awaitUninterruptibly(slowPartitionLatch);
+			return "slow-" + msg;
+		});
+		remotingDriver.registerServerPartition(1, DeadlinePingService.class, msg -> "fast-" + msg);
+
+		DeadlinePingService broadcastService = remotingDriver.createAsyncRemotingProxy(DeadlinePingService.class);
+		try {
+			long start = System.nanoTime();
+			String reply = broadcastService.ping("foo");
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertThat(reply, startsWith("fast-foo,missing: No response received from member 0 of 2 members"));
+			assertTrue("Expected invocation to complete at the deadline, took: " + elapsedMillis + " ms", elapsedMillis < 1000);
+		} finally {
+			slowPartitionLatch.countDown();
+		}
+	}
+	
+	@Test
+	public void broadcastRequestWithHedgeDelayUsesResponseFromReplicaOfSlowPartition() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		CountDownLatch slowPartitionLatch = new CountDownLatch(1);
+		remotingDriver.registerServerPartition(0, HedgedPingService.class, msg -> {
+			awaitUninterruptibly(slowPartitionLatch);
+			return Arrays.asList("slow-" + msg);
+		});
+		remotingDriver.registerServerPartitionReplica(0, HedgedPingService.class, msg -> Arrays.asList("replica-" + msg));
+		remotingDriver.registerServerPartition(1, HedgedPingService.class, msg -> Arrays.asList("fast-" + msg));
+
+		HedgedPingService broadcastService = remotingDriver.createAsyncRemotingProxy(HedgedPingService.class);
+		try {
+			long start = System.nanoTime();
+			List<String> reply = broadcastService.ping("foo");
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertThat(reply, containsInAnyOrder("replica-foo", "fast-foo"));
+			assertTrue("Expected invocation to complete after the hedge delay, took: " + elapsedMillis + " ms", elapsedMillis < 1000);
+		} finally {
+			slowPartitionLatch.countDown();
+		}
+	}
+	
 	@Test
 	public void partitionedRequest() throws Exception {
 		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
@@ -190,6 +381,171 @@ public class AstrixRemotingTest {
 		assertEquals(1 + 4 + 9 + 16 + 25, squareSum);
 	}
 	
+	@Test
+	public void partitionedRequestIsPartitionedUsingThePartitionerOfTheTransport() throws Exception {
+		Partitioner partitioner = new Partitioner.Rendezvous();
+		List<Integer> nums = IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toList());
+		assertTrue("Expected some elements to be routed differently than using modulo", 
+				   nums.stream().anyMatch(num -> partitioner.partition(RoutingKey.create(num), 3) != num % 3));
+		
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(3, partitioner);
+		for (int partition = 0; partition < 3; partition++) {
+			int partitionIndex = partition;
+			remotingDriver.registerServerPartition(partition, CalculatorListService.class, new CalculatorListService() {
+				@Override
+				public Integer squareSum(Collection<Integer> partitionNums) {
+					int squareSum = 0;
+					for (int num : partitionNums) {
+						if (partitioner.partition(RoutingKey.create(num), 3) != partitionIndex) {
+							throw new AssertionError("Partition " + partitionIndex + " received element routed to another partition: " + num);
+						}
+						squareSum += num * num;
+					}
+					return squareSum;
+				}
+			});
+		}
+
+		CalculatorListService calculatorService = remotingDriver.createRemotingProxy(CalculatorListService.class);
+		int squareSum = calculatorService.squareSum(nums);
+		assertEquals(nums.stream().mapToInt(num -> num * num).sum(), squareSum);
+	}
+	
+	@Test
+	public void partitionedRequestWithParallelMarshalling() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		CalculatorListService calculator = new CalculatorListService() {
+			@Override
+			public Integer squareSum(Collection<Integer> nums) {
+				int squareSum = 0;
+				for (int num : nums) {
+					squareSum += num * num;
+				}
+				return squareSum;
+			}
+		};
+		remotingDriver.registerServerPartition(0, CalculatorListService.class, calculator);
+		remotingDriver.registerServerPartition(1, CalculatorListService.class, calculator);
+
+		CalculatorListService calculatorService = remotingDriver.createParallelMarshallingRemotingProxy(CalculatorListService.class, 2);
+		int squareSum = calculatorService.squareSum(Arrays.asList(1, 2, 3, 4, 5));
+		assertEquals(1 + 4 + 9 + 16 + 25, squareSum);
+	}
+	
+	@Test
+	public void partitionedRequestWithParallelMarshalling_marshallsArgumentsOffTheInvokingThread() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		MarshallingThreadService service = nums -> nums.size();
+		remotingDriver.registerServerPartition(0, MarshallingThreadService.class, service);
+		remotingDriver.registerServerPartition(1, MarshallingThreadService.class, service);
+		
+		MarshallingThreadService serviceProxy = remotingDriver.createParallelMarshallingRemotingProxy(MarshallingThreadService.class, 2);
+		List<MarshallingThreadRecordingNum> nums = Arrays.asList(new MarshallingThreadRecordingNum(1), new MarshallingThreadRecordingNum(2));
+		assertEquals(2, serviceProxy.count(nums).intValue());
+		for (MarshallingThreadRecordingNum num : nums) {
+			assertNotNull("Expected argument to be marshalled: " + num.getNum(), num.marshallingThread);
+			assertNotSame(Thread.currentThread(), num.marshallingThread);
+			assertThat(num.marshallingThread.getName(), startsWith("AstrixRemotingMarshalling"));
+		}
+	}
+	
+	@Test
+	public void partitionedRequestWithParallelMarshalling_propagatesContextOfInvokingThread() throws Exception {
+		ThreadLocal<String> traceId = new ThreadLocal<>();
+		ContextPropagator traceIdPropagator = new ContextPropagator() {
+			@Override
+			public <T> CheckedCommand<T> wrap(CheckedCommand<T> call) {
+				String invokerTraceId = traceId.get();
+				return () -> {
+					String previousTraceId = traceId.get();
+					traceId.set(invokerTraceId);
+					try {
+						return call.call();
+					} finally {
+						traceId.set(previousTraceId);
+					}
+				};
+			}
+			@Override
+			public Runnable wrap(Runnable runnable) {
+				String invokerTraceId = traceId.get();
+				return () -> {
+					String previousTraceId = traceId.get();
+					traceId.set(invokerTraceId);
+					try {
+						runnable.run();
+					} finally {
+						traceId.set(previousTraceId);
+					}
+				};
+			}
+		};
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2, new DefaultTraceProvider() {
+			@Override
+			public List<ContextPropagator> getContextPropagators() {
+				return Collections.singletonList(traceIdPropagator);
+			}
+		});
+		BlockingQueue<String> traceIdByInvocation = new LinkedBlockingQueue<>();
+		CalculatorListService calculator = nums -> {
+			traceIdByInvocation.add(Objects.toString(traceId.get()));
+			return 0;
+		};
+		remotingDriver.registerServerPartition(0, CalculatorListService.class, calculator);
+		remotingDriver.registerServerPartition(1, CalculatorListService.class, calculator);
+
+		CalculatorListService calculatorService = remotingDriver.createParallelMarshallingRemotingProxy(CalculatorListService.class, 2);
+		traceId.set("trace-1");
+		try {
+			calculatorService.squareSum(Arrays.asList(1, 2));
+		} finally {
+			traceId.remove();
+		}
+		assertEquals(Arrays.asList("trace-1", "trace-1"), new ArrayList<>(traceIdByInvocation));
+	}
+	
+	@Test
+	public void generatedProxy_invokesServiceMethodsAndObjectMethods() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
+		CalculatorListService calculator = new CalculatorListService() {
+			@Override
+			public Integer squareSum(Collection<Integer> nums) {
+				int squareSum = 0;
+				for (int num : nums) {
+					squareSum += num * num;
+				}
+				return squareSum;
+			}
+		};
+		remotingDriver.registerServerPartition(0, CalculatorListService.class, calculator);
+		remotingDriver.registerServerPartition(1, CalculatorListService.class, calculator);
+
+		CalculatorListService calculatorService = remotingDriver.createGeneratedRemotingProxy(CalculatorListService.class);
+		assertFalse(Proxy.isProxyClass(calculatorService.getClass()));
+		assertEquals(1 + 4 + 9 + 16 + 25, calculatorService.squareSum(Arrays.asList(1, 2, 3, 4, 5)).intValue());
+		assertEquals("RemotingProxy[" + CalculatorListService.class.getName() + "]", calculatorService.toString());
+	}
+	
+	@Test
+	public void generatedProxy_throwsExceptionOfServiceInvocationType() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		TestService impl = new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				throw new MyCustomServiceException();
+			}
+		};
+		remotingDriver.registerServer(TestService.class, impl);
+
+		TestService testService = remotingDriver.createGeneratedRemotingProxy(TestService.class);
+		try {
+			testService.hello(new HelloRequest("foo"));
+			fail("Expected remote service exception to be thrown");
+		} catch (MyCustomServiceException e) {
+			// Expected
+		}
+	}
+	
 	@Test
 	public void customRoutingRequest() throws Exception {
 		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver(2);
@@ -506,6 +862,49 @@ public class AstrixRemotingTest {
 		assertEquals("reply-kalle", message.toBlocking().first().getGreeting());
 	}
 	
+	@Test
+	public void serviceMethodReturningObservable_allElementsAreReturnedByNonStreamingTransport() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		StreamingTestService impl = count -> Observable.range(1, count).map(i -> "element-" + i);
+		remotingDriver.registerServer(StreamingTestService.class, impl);
+		
+		StreamingTestService service = remotingDriver.createRemotingProxy(StreamingTestService.class);
+		
+		assertEquals(Arrays.asList("element-1", "element-2", "element-3"), service.elements(3).toList().toBlocking().single());
+	}
+	
+	@Test(timeout = 5000)
+	public void serviceMethodReturningObservable_nonStreamingTransportDoesNotBlockUntilAllElementsAreEmitted() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		PublishSubject<String> elements = PublishSubject.create();
+		StreamingTestService impl = count -> elements;
+		remotingDriver.registerServer(StreamingTestService.class, impl);
+		StreamingTestService service = remotingDriver.createAsyncRemotingProxy(StreamingTestService.class);
+		
+		Observable<List<String>> result = service.elements(2).toList().cache();
+		result.subscribe();
+		elements.onNext("element-1");
+		elements.onNext("element-2");
+		elements.onCompleted();
+		
+		assertEquals(Arrays.asList("element-1", "element-2"), result.toBlocking().single());
+	}
+	
+	@Test
+	public void serviceMethodReturningObservable_errorEmittedByServiceIsPropagated() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		StreamingTestService impl = count -> Observable.error(new IllegalArgumentException("Remote service error message"));
+		remotingDriver.registerServer(StreamingTestService.class, impl);
+		
+		StreamingTestService service = remotingDriver.createRemotingProxy(StreamingTestService.class);
+		try {
+			service.elements(3).toBlocking().first();
+			fail("Expected remote service exception to be thrown");
+		} catch (RemoteServiceInvocationException e) {
+			assertEquals(IllegalArgumentException.class.getName(), e.getExceptionType());
+		}
+	}
+	
 	@Test
 	public void useAsyncVersionOfAService() throws Exception {
 		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
@@ -788,6 +1187,60 @@ public class AstrixRemotingTest {
 		assertEquals(null, pingService.ping("foo"));
 	}
 	
+	@Test
+	public void supportsServiceMethodsReturningCompletableFuture() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		CompletableFuture<String> serverResult = new CompletableFuture<>();
+		remotingDriver.registerServer(CompletableFuturePing.class, new CompletableFuturePing() {
+			@Override
+			public CompletableFuture<String> ping(String message) {
+				return serverResult;
+			}
+		});
+		
+		CompletableFuturePing pingService = remotingDriver.createAsyncRemotingProxy(CompletableFuturePing.class);
+		CompletableFuture<String> reply = pingService.ping("foo");
+		assertFalse("Invocation should not complete before service completes", reply.isDone());
+		
+		serverResult.complete("foo");
+		assertEquals("foo", reply.get(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void serviceMethodsReturningCompletableFutureCanBeInvokedUsingSynchronousApi() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		remotingDriver.registerServer(CompletableFuturePing.class, new CompletableFuturePing() {
+			@Override
+			public CompletableFuture<String> ping(String message) {
+				return CompletableFuture.supplyAsync(() -> message);
+			}
+		});
+		
+		SyncPing pingService = remotingDriver.createRemotingProxy(SyncPing.class, CompletableFuturePing.class);
+
+		assertEquals("foo", pingService.ping("foo"));
+	}
+	
+	@Test(expected = MyCustomServiceException.class)
+	public void completableFutureCompletedExceptionallyThrowsServiceException() throws Throwable {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		remotingDriver.registerServer(CompletableFuturePing.class, new CompletableFuturePing() {
+			@Override
+			public CompletableFuture<String> ping(String message) {
+				return CompletableFuture.supplyAsync(() -> {
+					throw new MyCustomServiceException();
+				});
+			}
+		});
+		
+		CompletableFuturePing pingService = remotingDriver.createRemotingProxy(CompletableFuturePing.class);
+		try {
+			pingService.ping("foo").get(1, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+	
 	@SuppressWarnings("serial")
 	public static class HelloRequest implements Serializable {
 		private String messsage;
@@ -897,6 +1350,41 @@ public class AstrixRemotingTest {
 		List<String> ping(String msg);
 	}
 	
+	interface PartialPingService {
+		@AstrixBroadcast(minResponses = 1)
+		List<String> ping(String msg);
+		
+		@AstrixBroadcast(minResponses = 1, reducer = ResponseCountReducer.class)
+		String countResponses(String msg);
+	}
+	
+	interface DeadlinePingService {
+		@AstrixBroadcast(partialResultDeadlineMillis = 100, reducer = ResultDescribingReducer.class)
+		String ping(String msg);
+	}
+	
+	public static class ResultDescribingReducer implements RemoteResultReducer<String> {
+		@Override
+		public String reduce(List<AstrixRemoteResult<String>> results) {
+			return results.stream()
+						  .map(result -> result.isMissing() ? "missing: " + result.getThrownException().getMessage() : result.getResult())
+						  .collect(Collectors.joining(","));
+		}
+	}
+	
+	interface HedgedPingService {
+		@AstrixBroadcast(hedgeDelayMillis = 50)
+		List<String> ping(String msg);
+	}
+	
+	public static class ResponseCountReducer implements RemoteResultReducer<String> {
+		@Override
+		public String reduce(List<AstrixRemoteResult<String>> results) {
+			long missing = results.stream().filter(AstrixRemoteResult::isMissing).count();
+			return "received=" + (results.size() - missing) + " missing=" + missing;
+		}
+	}
+	
 	interface CalculatorListService {
 		Integer squareSum(@AstrixPartitionedRouting(reducer = SummingReducer.class) Collection<Integer> nums);
 	}
@@ -994,6 +1482,26 @@ public class AstrixRemotingTest {
 		}
 	}
 	
+	interface MarshallingThreadService {
+		Integer count(@AstrixPartitionedRouting(routingMethod = "getNum", reducer = SummingReducer.class) List<MarshallingThreadRecordingNum> nums);
+	}
+	
+	public static class MarshallingThreadRecordingNum implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int num;
+		private transient Thread marshallingThread;
+		public MarshallingThreadRecordingNum(int num) {
+			this.num = num;
+		}
+		public int getNum() {
+			return num;
+		}
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			this.marshallingThread = Thread.currentThread();
+			out.defaultWriteObject();
+		}
+	}
+	
 	interface InvalidCollectionTypePartitionedService {
 		Integer squareSum(@AstrixPartitionedRouting(reducer = SummingReducer.class) Set<Integer> nums);
 	}
@@ -1137,6 +1645,50 @@ public class AstrixRemotingTest {
 		void hello(String message);
 	}
 	
+	@Test(expected = MyCustomServiceException.class)
+	public void completableFutureCompletedExceptionallyThrowsServiceException_asyncInvocation() throws Throwable {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		CompletableFuture<String> serverResult = new CompletableFuture<>();
+		remotingDriver.registerServer(CompletableFuturePing.class, new CompletableFuturePing() {
+			@Override
+			public CompletableFuture<String> ping(String message) {
+				return serverResult;
+			}
+		});
+		
+		CompletableFuturePing pingService = remotingDriver.createAsyncRemotingProxy(CompletableFuturePing.class);
+		CompletableFuture<String> reply = pingService.ping("foo");
+		serverResult.completeExceptionally(new MyCustomServiceException());
+		try {
+			reply.get(1, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+	
+	@Test
+	public void serviceMethodsReturningCompletableFutureCanBeInvokedUsingSynchronousApi_asyncInvocation() throws Exception {
+		AstrixRemotingDriver remotingDriver = new AstrixRemotingDriver();
+		remotingDriver.registerServer(CompletableFuturePing.class, new CompletableFuturePing() {
+			@Override
+			public CompletableFuture<String> ping(String message) {
+				return CompletableFuture.supplyAsync(() -> message);
+			}
+		});
+		
+		SyncPing pingService = remotingDriver.createAsyncRemotingProxy(SyncPing.class, CompletableFuturePing.class);
+
+		assertEquals("foo", pingService.ping("foo"));
+	}
+	
+	interface CompletableFuturePing {
+		CompletableFuture<String> ping(String message);
+	}
+	
+	interface SyncPing {
+		String ping(String message);
+	}
+	
 	interface OptionalPing {
 		Optional<String> ping(String message);
 		@AstrixBroadcast(reducer = FirstNonEmpty.class)
@@ -1173,10 +1725,33 @@ public class AstrixRemotingTest {
 		Observable<HelloResponse> hello(HelloRequest message);
 	}
 	
+	interface StreamingTestService {
+		Observable<String> elements(int count);
+	}
+	
 	interface TestServiceAsync {
 		Future<HelloResponse> hello(HelloRequest message);
 	}
 	
+	interface BroadcastPingService {
+		@AstrixBroadcast(reducer = AccumulationRecordingReducer.class)
+		List<String> ping(String msg);
+	}
+	
+	interface BroadcastPingServiceAsync {
+		@AstrixBroadcast(reducer = AccumulationRecordingReducer.class)
+		CompletableFuture<List<String>> ping(String msg);
+	}
+	
+	public static class AccumulationRecordingReducer<T> extends DefaultAstrixRemoteResultReducer<T> {
+		static final BlockingQueue<Object> accumulated = new LinkedBlockingQueue<>();
+		@Override
+		public void accumulate(AstrixRemoteResult<List<T>> remoteResult) {
+			accumulated.add(remoteResult.getResult());
+			super.accumulate(remoteResult);
+		}
+	}
+	
 	interface BroadcastService {
 		@AstrixBroadcast(reducer = GenericReducer.class)
 		String broadcast(BroadcastRequest request);
@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.versioning.core;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 
 public interface AstrixObjectSerializer {
@@ -39,6 +41,31 @@ public interface AstrixObjectSerializer {
 	 */
 	Object serialize(Object element, int version);
 	
+	/**
+	 * Defines whether this serializer is able to write the serialized form of an object directly
+	 * to a stream using {@link #serializeTo(Object, int, OutputStream)}. The bytes written are
+	 * accepted by {@link #deserialize(Object, Type, int)} when passed as a byte[]. 
+	 * 
+	 * @param version
+	 * @return
+	 */
+	default boolean supportsBinaryFormat(int version) {
+		return false;
+	}
+	
+	/**
+	 * Writes the serialized form of a given object directly to a stream, without creating an 
+	 * intermediate serialized object. Only supported if {@link #supportsBinaryFormat(int)} returns true.
+	 * 
+	 * @param element
+	 * @param version - the version of the serialized data format to serialize the object to.
+	 * @param out
+	 * @throws IOException
+	 */
+	default void serializeTo(Object element, int version, OutputStream out) throws IOException {
+		throw new UnsupportedOperationException("Binary format not supported by: " + getClass().getName());
+	}
+	
 	int version();
 
 	public static class NoVersioningSupport implements AstrixObjectSerializer {
@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.versioning.jackson2;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -50,6 +52,9 @@ class Jackson2AstrixObjectSerializer implements AstrixObjectSerializer {
 			T castedElement = (T) element;
 			return castedElement;
 		}
+		if (element instanceof byte[]) {
+			return objectMapper.deserialize((byte[]) element, type, fromVersion);
+		}
 		return objectMapper.deserialize((String) element, type, fromVersion);
 	}
 
@@ -60,6 +65,16 @@ class Jackson2AstrixObjectSerializer implements AstrixObjectSerializer {
 		}
 		return objectMapper.serialize(element, version);
 	}
+	
+	@Override
+	public boolean supportsBinaryFormat(int version) {
+		return version != NoVersioningSupport.NO_VERSIONING;
+	}
+	
+	@Override
+	public void serializeTo(Object element, int version, OutputStream out) throws IOException {
+		objectMapper.serializeTo(element, version, out);
+	}
 
 	@Override
 	public int version() {
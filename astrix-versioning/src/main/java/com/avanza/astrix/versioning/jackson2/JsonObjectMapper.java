@@ -15,7 +15,10 @@
  */
 package com.avanza.astrix.versioning.jackson2;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -37,6 +40,19 @@ public class JsonObjectMapper {
 		}
 	}
 	
+	/**
+	 * Writes the json (UTF-8) of a given object directly to a stream.
+	 */
+	public void serializeTo(Object object, int toVersion, OutputStream out) throws IOException {
+		try {
+			impl.serializeTo(object, toVersion, out);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to serialize: " + object + ".", e);
+		}
+	}
+	
 	public <T> T deserialize(String json, Class<T> target, int fromVersion) {
 		try {
 			return impl.deserialize(json, target, fromVersion);
@@ -53,6 +69,17 @@ public class JsonObjectMapper {
 		}
 	}
 	
+	/**
+	 * Deserializes json encoded as UTF-8.
+	 */
+	public <T> T deserialize(byte[] json, Type target, int fromVersion) {
+		try {
+			return impl.deserialize(json, target, fromVersion);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to deserialize " + json.length + " bytes into type: " + target, e);
+		}
+	}
+	
 	public static JsonObjectMapper create(Impl impl) {
 		return new JsonObjectMapper(impl);
 	}
@@ -61,6 +88,22 @@ public class JsonObjectMapper {
 	public interface Impl {
 		String serialize(Object object, int toVersion) throws Exception;
 		<T> T deserialize(String json, Type target, int fromVersion) throws Exception;
+		
+		/**
+		 * Writes the json (UTF-8) of a given object to a stream. The default implementation writes
+		 * the String returned by {@link #serialize(Object, int)}.
+		 */
+		default void serializeTo(Object object, int toVersion, OutputStream out) throws Exception {
+			out.write(serialize(object, toVersion).getBytes(StandardCharsets.UTF_8));
+		}
+		
+		/**
+		 * Deserializes json encoded as UTF-8. The default implementation decodes the bytes into a String 
+		 * and delegates to {@link #deserialize(String, Type, int)}.
+		 */
+		default <T> T deserialize(byte[] json, Type target, int fromVersion) throws Exception {
+			return deserialize(new String(json, StandardCharsets.UTF_8), target, fromVersion);
+		}
 	}
 	
 }
@@ -16,6 +16,7 @@
 package com.avanza.astrix.versioning.jackson2;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -65,6 +66,27 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 		}
 	}
 	
+	@Override
+	public void serializeTo(Object object, int toVersion, OutputStream out) throws Exception {
+		versionHolder.set(toVersion);
+		try {
+			migratingMapper.writeValue(out, object);
+		} finally {
+			versionHolder.remove();
+		}
+	}
+	
+	@Override
+	public <T> T deserialize(byte[] json, Type target, int fromVersion) throws Exception {
+		versionHolder.set(fromVersion);
+		try {
+			JavaType javaType = migratingMapper.getTypeFactory().constructType(target);
+			return migratingMapper.readValue(json, javaType);
+		} finally {
+			versionHolder.remove();
+		}
+	}
+	
 	// TODO: document whats going on in this class (the migrating object mapper)
 	
 	static class JsonSerializerHolder<T> {
@@ -20,6 +20,8 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -74,6 +76,41 @@ public class VersionedJsonObjectMapperTest {
 		assertEquals("f1", v1Pojo.getFoo());
 	}
 	
+	@Test
+	public void migratesDocumentsWrittenToStream() throws Exception {
+		this.apiMigrations.add(new TestPojoV1ToV2Migration());
+		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(apiMigrations);
+		VersionedJsonObjectMapper objectMapper = objectMapperBuilder.build();
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		objectMapper.serializeTo(new TestPojoV1("kalle"), 1, out);
+		
+		TestPojoV2 v2Pojo = objectMapper.deserialize(out.toByteArray(), TestPojoV2.class, 1);
+		assertEquals("kalle", v2Pojo.getFoo());
+		assertEquals("defaultBar", v2Pojo.getBar());
+	}
+	
+	@Test
+	public void implWithoutBinaryFormatFallsBackToStringFormat() throws Exception {
+		VersionedJsonObjectMapper versionedObjectMapper = new VersionedObjectMapperBuilder(apiMigrations).build();
+		JsonObjectMapper objectMapper = JsonObjectMapper.create(new JsonObjectMapper.Impl() {
+			@Override
+			public String serialize(Object object, int toVersion) throws Exception {
+				return versionedObjectMapper.serialize(object, toVersion);
+			}
+			@Override
+			public <T> T deserialize(String json, Type target, int fromVersion) throws Exception {
+				return versionedObjectMapper.deserialize(json, target, fromVersion);
+			}
+		});
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		objectMapper.serializeTo(new TestPojoV1("kalle"), 1, out);
+		
+		TestPojoV1 pojo = objectMapper.deserialize(out.toByteArray(), TestPojoV1.class, 1);
+		assertEquals("kalle", pojo.getFoo());
+	}
+	
 	@Test
 	public void deserializesGenericTypes() throws Exception {
 		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(apiMigrations);